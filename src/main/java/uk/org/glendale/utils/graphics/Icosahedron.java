@@ -21,6 +21,7 @@ import javax.imageio.ImageIO;
 
 import uk.org.glendale.utils.rpg.Die;
 import uk.org.glendale.worldgen.astro.planets.tiles.Cratered;
+import uk.org.glendale.worldgen.trace.Tracer;
 
 /**
  * Model for mapping world surfaces as an icosahedron. This would split the
@@ -784,6 +785,10 @@ public class Icosahedron {
      * @throws IOException  Error writing the image.
      */
 	public SimpleImage draw(Tile[][] map, int width) throws IOException {
+		return Tracer.span("render", "Icosahedron.draw", () -> drawTiles(map, width));
+	}
+
+	private SimpleImage drawTiles(Tile[][] map, int width) {
 	    int maxColumns = 0;
 	    for (int row = 0; row < xpos.length; row++) {
 	        int w = xpos[row][xpos[row].length-1];
@@ -20,6 +20,7 @@ import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.imageio.ImageIO;
 
@@ -32,6 +33,9 @@ import uk.org.glendale.utils.rpg.Die;
  * @author Samuel Penn
  */
 public class SimpleImage implements ImageObserver {
+	private static final LongAdder encodeCount = new LongAdder();
+	private static final LongAdder encodeTime = new LongAdder();
+
 	private Image image = null;
 
 	private String fontName = "Verdana";
@@ -609,14 +613,32 @@ public class SimpleImage implements ImageObserver {
 	}
 
 	public ByteArrayOutputStream save(boolean alpha) throws IOException {
+		long						start = System.nanoTime();
 		BufferedImage				bimage = getBufferedImage(alpha);
 		ByteArrayOutputStream		out = new ByteArrayOutputStream();
 
 		ImageIO.write(bimage, format, out);
 
+		encodeCount.increment();
+		encodeTime.add(System.nanoTime() - start);
+
 		return out;
 	}
 
+	/**
+	 * Gets the number of images which have been encoded to memory.
+	 */
+	public static long getEncodeCount() {
+		return encodeCount.sum();
+	}
+
+	/**
+	 * Gets the total time spent encoding images to memory, in nanoseconds.
+	 */
+	public static long getEncodeTime() {
+		return encodeTime.sum();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
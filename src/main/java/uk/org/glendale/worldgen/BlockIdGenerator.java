@@ -0,0 +1,114 @@
+/**
+ * BlockIdGenerator.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.jdbc.AbstractReturningWork;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Id generator which hands out ids from blocks reserved in the id_blocks table. Each table
+ * has its own row holding the next free id. A process reserves a whole block of ids with a
+ * single update of that row, and then assigns ids from the block in memory, so ids are
+ * known as soon as an entity is persisted and inserts can be batched.
+ *
+ * The row is updated in its own transaction with a row lock, so several generator processes
+ * can share a database safely. Each simply gets different blocks. Ids may have gaps, where
+ * a process finished without using all of its block.
+ *
+ * The first time a process allocates an id, the id_blocks table is brought up to date with
+ * any rows which were inserted without using it (see synchronise()).
+ *
+ * To use, annotate the id of an entity with:
+ *
+ *   @GeneratedValue(generator = "block")
+ *   @GenericGenerator(name = "block", strategy = "uk.org.glendale.worldgen.BlockIdGenerator")
+ */
+public class BlockIdGenerator extends TableGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(BlockIdGenerator.class);
+
+    public static final String TABLE_NAME = "id_blocks";
+    public static final String SEGMENT_COLUMN = "table_name";
+    public static final String VALUE_COLUMN = "next_id";
+    public static final int    BLOCK_SIZE = 100;
+
+    // Tables which have their ids allocated by this generator.
+    private static final String[] TABLES = {
+            "sectors", "systems", "stars", "planets", "planet_maps", "commodities", "facilities", "blobs"
+    };
+
+    private static volatile boolean synchronised = false;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        params.putIfAbsent(TABLE_PARAM, TABLE_NAME);
+        params.putIfAbsent(SEGMENT_COLUMN_PARAM, SEGMENT_COLUMN);
+        params.putIfAbsent(VALUE_COLUMN_PARAM, VALUE_COLUMN);
+        params.putIfAbsent(INCREMENT_PARAM, String.valueOf(BLOCK_SIZE));
+        params.putIfAbsent(INITIAL_PARAM, "1");
+        // The stored value is the first id of the next free block.
+        params.putIfAbsent(OPT_PARAM, "pooled-lo");
+        // One row per entity table, named after the table.
+        params.putIfAbsent(CONFIG_PREFER_SEGMENT_PER_ENTITY, "true");
+
+        logger.debug(String.format("Configuring block ids for [%s]", params.getProperty(PersistentIdentifierGenerator.TABLE)));
+        super.configure(type, params, serviceRegistry);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object obj) {
+        if (!synchronised) {
+            synchronise(session);
+        }
+        return super.generate(session, obj);
+    }
+
+    /**
+     * Makes sure that the next block for each table starts after any ids which already exist.
+     * This is needed for databases which had ids assigned by AUTO_INCREMENT, or rows loaded
+     * with explicit ids by an import. Values are only ever moved forwards, so it is safe to
+     * run while other processes are allocating ids.
+     *
+     * This is done once per process, in its own transaction, so that it doesn't hold locks
+     * on id_blocks for the rest of the caller's transaction.
+     *
+     * @param session   Session which needs an id.
+     */
+    private static synchronized void synchronise(SharedSessionContractImplementor session) {
+        if (synchronised) {
+            return;
+        }
+        session.getTransactionCoordinator().createIsolationDelegate().delegateWork(new AbstractReturningWork<Void>() {
+            @Override
+            public Void execute(Connection connection) throws SQLException {
+                try (Statement statement = connection.createStatement()) {
+                    for (String table : TABLES) {
+                        statement.executeUpdate(String.format(
+                                "INSERT INTO %s (%s, %s) SELECT '%s', COALESCE(MAX(id), 0) + 1 FROM %s " +
+                                "ON DUPLICATE KEY UPDATE %s = GREATEST(%s, VALUES(%s))",
+                                TABLE_NAME, SEGMENT_COLUMN, VALUE_COLUMN, table, table,
+                                VALUE_COLUMN, VALUE_COLUMN, VALUE_COLUMN));
+                    }
+                }
+                return null;
+            }
+        }, true);
+        synchronised = true;
+    }
+}
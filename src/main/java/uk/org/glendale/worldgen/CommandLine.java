@@ -14,13 +14,38 @@ import uk.org.glendale.worldgen.astro.systems.NoSuchStarSystemException;
 import uk.org.glendale.worldgen.astro.systems.StarSystem;
 import uk.org.glendale.worldgen.astro.systems.StarSystemFactory;
 import uk.org.glendale.worldgen.astro.systems.StarSystemSelector;
+import uk.org.glendale.worldgen.dump.DumpFormat;
+import uk.org.glendale.worldgen.dump.DumpReader;
+import uk.org.glendale.worldgen.dump.DumpWriter;
+import uk.org.glendale.worldgen.dump.ImportResult;
+import uk.org.glendale.worldgen.dump.UniverseExporter;
+import uk.org.glendale.worldgen.dump.UniverseImporter;
 import uk.org.glendale.worldgen.exceptions.DuplicateObjectException;
+import uk.org.glendale.worldgen.jobs.GenerationJob;
+import uk.org.glendale.worldgen.jobs.JobQueue;
+import uk.org.glendale.worldgen.jobs.SectorWorker;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler.Profile;
 import uk.org.glendale.worldgen.web.Server;
 
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Command line based interface to WorldGen. Provides a number of simple commands that allow
@@ -42,8 +67,19 @@ public class CommandLine extends Main {
         System.out.println("             <x,y> <name> ...");
         System.out.println("  system   - Create one or more new systems.");
         System.out.println("             <sector> <xxyy> [<name>]");
-        System.out.println("  populate - Populate a sector.");
-        System.out.println("             <sector>");
+        System.out.println("  populate - Populate a sector, resuming if interrupted.");
+        System.out.println("             <sector> [<sub sector>]");
+        System.out.println("  queue    - Queue a sector to be populated by workers.");
+        System.out.println("             <sector> [subsectors]");
+        System.out.println("  worker   - Populate queued sectors until none are left.");
+        System.out.println("             [<lease seconds>]");
+        System.out.println("  jobs     - Show the state of the generation queue.");
+        System.out.println("  export   - Export the whole universe to a file.");
+        System.out.println("             <file> [json|binary] [<threads>] [nomaps]");
+        System.out.println("  import   - Import a universe from an exported file.");
+        System.out.println("             <file> [<batch size>]");
+        System.out.println("  storemaps - Move images from the database into the map store.");
+        System.out.println("             [<batch size>]");
     }
 
     private void execute(String[] args) {
@@ -75,6 +111,18 @@ public class CommandLine extends Main {
             commandCreateSystem(options);
         } else if (cmd.equals("populate")) {
             commandPopulateSector(options);
+        } else if (cmd.equals("queue")) {
+            commandQueue(options);
+        } else if (cmd.equals("worker")) {
+            commandWorker(options);
+        } else if (cmd.equals("jobs")) {
+            commandJobs(options);
+        } else if (cmd.equals("export")) {
+            commandExport(options);
+        } else if (cmd.equals("import")) {
+            commandImport(options);
+        } else if (cmd.equals("storemaps")) {
+            commandStoreMaps(options);
         }
 
     }
@@ -287,7 +335,10 @@ public class CommandLine extends Main {
             }
 
             SectorGenerator generator = new SectorGenerator(wg);
-            generator.createSectorByDensity(sector, subSector);
+            Profile         profile = generator.createSectorByDensity(sector, subSector);
+            if (GenerationProfiler.isEnabled()) {
+                System.out.println(profile.getSummary());
+            }
 
         } catch (NoSuchSectorException e) {
             System.out.println(e.getMessage());
@@ -295,6 +346,279 @@ public class CommandLine extends Main {
         }
     }
 
+    /**
+     * Adds a sector to the generation queue, to be populated by worker processes. If
+     * 'subsectors' is given, then each of the sixteen sub sectors is queued as its own
+     * job, so that several workers can share the sector between them.
+     *
+     * @param options   Sector, [subsectors]
+     */
+    private void commandQueue(String[] options) {
+        if (options.length < 1) {
+            System.out.println("Usage: queue <sector> [subsectors]");
+            return;
+        }
+        try (WorldGen wg = getWorldGen()) {
+            Sector   sector = wg.getSectorFactory().getSectorByIdentifier(options[0]);
+            JobQueue queue = wg.getJobQueue();
+
+            if (options.length > 1 && options[1].equals("subsectors")) {
+                for (SubSector subSector : SubSector.values()) {
+                    queue.addJob(sector.getId(), subSector);
+                }
+            } else {
+                queue.addJob(sector.getId(), null);
+            }
+            System.out.println(String.format("Queued sector [%s]", sector.getName()));
+        } catch (NoSuchSectorException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a worker which claims jobs from the generation queue until it is empty. Any
+     * number of workers can be run at once against the same database.
+     *
+     * @param options   [lease seconds]
+     */
+    private void commandWorker(String[] options) {
+        int lease = 300;
+        if (options.length > 0) {
+            lease = Integer.parseInt(options[0]);
+        }
+        SectorWorker worker = new SectorWorker(lease, 10);
+        System.out.println(String.format("Starting worker [%s]", worker.getWorkerId()));
+        try {
+            int completed = worker.run();
+            System.out.println(String.format("Completed %d jobs, queue is empty", completed));
+        } catch (InterruptedException e) {
+            System.out.println("Worker interrupted");
+        }
+    }
+
+    /**
+     * Shows how many jobs are in each state on the generation queue, followed by the
+     * generation profile of any running jobs which are being profiled.
+     *
+     * @param options   Options, ignored.
+     */
+    private void commandJobs(String[] options) {
+        try (WorldGen wg = getWorldGen()) {
+            for (Map.Entry<JobQueue.Status, Integer> entry : wg.getJobQueue().getStatusCounts().entrySet()) {
+                print(entry.getKey().name(), entry.getValue());
+            }
+            for (Map.Entry<GenerationJob, String> entry : wg.getJobQueue().getRunningProfiles().entrySet()) {
+                if (entry.getValue() != null) {
+                    System.out.println();
+                    System.out.println(String.format("%s on %s", entry.getKey(), entry.getKey().getOwner()));
+                    System.out.print(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Exports the entire universe to a file, in either JSON Lines or binary format. Data is
+     * streamed from the database, so this can be used on universes of any size. If a number
+     * of threads greater than one is given, then sectors are exported in parallel, each on
+     * its own database session. Sectors are always written as complete blocks, but in
+     * parallel mode they may not be in id order.
+     *
+     * @param options   File, [json|binary], [threads], [nomaps]
+     */
+    private void commandExport(String[] options) {
+        if (options.length < 1) {
+            System.out.println("Usage: export <file> [json|binary] [<threads>] [nomaps]");
+            return;
+        }
+        String      filename = options[0];
+        DumpFormat  format = DumpFormat.JSON;
+        int         threads = 1;
+        boolean     maps = true;
+
+        for (String option : Arrays.copyOfRange(options, 1, options.length)) {
+            if (option.equals("nomaps")) {
+                maps = false;
+            } else if (option.matches("[0-9]+")) {
+                threads = Integer.parseInt(option);
+            } else {
+                format = DumpFormat.fromName(option);
+            }
+        }
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), 65536)) {
+            DumpWriter      writer = format.createWriter(out, false);
+            List<Integer>   sectorIds;
+
+            try (WorldGen wg = getWorldGen()) {
+                UniverseExporter exporter = wg.getUniverseExporter();
+
+                exporter.exportGlobals(writer, maps);
+                sectorIds = exporter.getSectorIds();
+
+                if (threads < 2) {
+                    int done = 0;
+                    for (int sectorId : sectorIds) {
+                        long rows = exporter.exportSector(writer, sectorId, maps);
+                        System.out.println(String.format("Exported sector [%d] (%d/%d) with %d rows",
+                                sectorId, ++done, sectorIds.size(), rows));
+                    }
+                }
+            }
+            writer.flush();
+
+            if (threads > 1) {
+                exportSectorsInParallel(out, format, sectorIds, maps, threads);
+            }
+        } catch (IOException e) {
+            System.out.println(String.format("Unable to export to [%s] (%s)", filename, e.getMessage()));
+        }
+    }
+
+    /**
+     * Exports each sector to its own temporary file in a pool of threads, appending each
+     * file to the output once it is complete.
+     */
+    private void exportSectorsInParallel(OutputStream out, DumpFormat format, List<Integer> sectorIds,
+                                         boolean maps, int threads) throws IOException {
+        ExecutorService     pool = Executors.newFixedThreadPool(threads);
+        List<Future<Long>>  results = new ArrayList<>();
+        AtomicInteger       done = new AtomicInteger();
+
+        for (int sectorId : sectorIds) {
+            results.add(pool.submit(() -> {
+                Path part = Files.createTempFile("worldgen-sector-" + sectorId + "-", ".part");
+                try {
+                    long rows;
+                    try (OutputStream partOut = new BufferedOutputStream(Files.newOutputStream(part), 65536);
+                         WorldGen wg = getWorldGen()) {
+                        DumpWriter writer = format.createWriter(partOut, true);
+                        rows = wg.getUniverseExporter().exportSector(writer, sectorId, maps);
+                        writer.flush();
+                    }
+                    synchronized (out) {
+                        Files.copy(part, out);
+                    }
+                    System.out.println(String.format("Exported sector [%d] (%d/%d) with %d rows",
+                            sectorId, done.incrementAndGet(), sectorIds.size(), rows));
+                    return rows;
+                } finally {
+                    Files.deleteIfExists(part);
+                }
+            }));
+        }
+        pool.shutdown();
+
+        try {
+            for (Future<Long> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            throw new IOException("Export was interrupted", e);
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            throw new IOException("Failed to export sector", e.getCause());
+        }
+    }
+
+    /**
+     * Imports a universe from a file created by the export command. Each sector is imported
+     * in its own transaction, and sectors which have been fully imported are remembered, so
+     * an interrupted import can be restarted by running the same command again.
+     *
+     * @param options   File, [batch size]
+     */
+    private void commandImport(String[] options) {
+        if (options.length < 1) {
+            System.out.println("Usage: import <file> [<batch size>]");
+            return;
+        }
+        String  filename = options[0];
+        int     batchSize = 500;
+
+        if (options.length > 1) {
+            batchSize = Integer.parseInt(options[1]);
+        }
+
+        try (FileInputStream fis = new FileInputStream(filename);
+             DumpReader reader = DumpFormat.openReader(fis)) {
+            UniverseImporter importer = new UniverseImporter(reader, batchSize);
+            long    size = Math.max(1, fis.getChannel().size());
+            long    start = System.currentTimeMillis();
+            long    total = 0;
+
+            while (true) {
+                ImportResult result;
+                try (WorldGen wg = getWorldGen()) {
+                    result = wg.importBlock(importer);
+                }
+                if (result == null) {
+                    break;
+                }
+                total += result.getRows();
+
+                long percent = (fis.getChannel().position() * 100) / size;
+                long rate = (total * 1000) / Math.max(1, System.currentTimeMillis() - start);
+                if (!result.isSector()) {
+                    System.out.println(String.format("Imported global tables with %d rows", result.getRows()));
+                } else if (result.isSkipped()) {
+                    System.out.println(String.format("Skipped sector [%d], already imported (%d%%)",
+                            result.getSectorId(), percent));
+                } else {
+                    System.out.println(String.format("Imported sector [%d] with %d rows (%d%%, %d rows/s)",
+                            result.getSectorId(), result.getRows(), percent, rate));
+                }
+            }
+
+            try (WorldGen wg = getWorldGen()) {
+                // The import may have replaced the commodities table.
+                wg.getCommodityFactory().reloadRegistry();
+
+                Map<String, Long> orphans = wg.getOrphanCounts();
+                for (String table : orphans.keySet()) {
+                    if (orphans.get(table) > 0) {
+                        System.out.println(String.format("Warning: %d rows in [%s] have no parent",
+                                orphans.get(table), table));
+                    }
+                }
+            }
+            System.out.println(String.format("Import complete, %d rows in %ds",
+                    total, (System.currentTimeMillis() - start) / 1000));
+        } catch (IOException e) {
+            System.out.println(String.format("Unable to import from [%s] (%s)", filename, e.getMessage()));
+        }
+    }
+
+    /**
+     * Moves planet maps and images which are held in the database into the map store given
+     * by 'storage.mapPath'. Each batch is moved in its own transaction, so this can be
+     * stopped and run again.
+     *
+     * @param options   [batch size]
+     */
+    private void commandStoreMaps(String[] options) {
+        if (Config.getConfiguration().getMapStorePath() == null) {
+            System.out.println("No map store is configured, set storage.mapPath first");
+            return;
+        }
+        int batchSize = 100;
+        if (options.length > 0) {
+            batchSize = Integer.parseInt(options[0]);
+        }
+
+        long total = 0;
+        try (WorldGen wg = getWorldGen()) {
+            int moved;
+            while ((moved = wg.moveToContentStore(batchSize)) > 0) {
+                wg.commit();
+                total += moved;
+                System.out.println(String.format("Moved %d images to the map store", total));
+            }
+        }
+        System.out.println(String.format("Map store is up to date, %d images moved", total));
+    }
+
     public static void main(String[] args) {
         logger.info("== WorldGen CommandLine ==");
 
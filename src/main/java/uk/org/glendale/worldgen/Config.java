@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.org.glendale.worldgen.exceptions.InvalidConfigurationException;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -27,8 +28,11 @@ public class Config {
     private String databaseUrl;
     private String databaseUsername;
     private String databasePassword;
+    private int    databasePoolSize;
+    private int    databaseCheckoutTimeout;
 
     private int    httpPort;
+    private boolean virtualThreads;
 
     private int mapDensityMin;
     private int mapDensityMax;
@@ -37,6 +41,22 @@ public class Config {
     private int planetMapFaceSize;
     private int planetResolution;
 
+    private int generationCommitInterval;
+    private boolean generationProfile;
+
+    private boolean lazyDescriptions;
+    private int descriptionCacheSize;
+
+    private int renderCacheSize;
+    private int renderThreads;
+    private int renderQueueSize;
+    private int renderTimeout;
+
+    private String mapStorePath;
+
+    private String tracePath;
+    private int traceThreshold;
+
     private int simFrequency;
     private boolean skipDowntime;
 
@@ -101,8 +121,20 @@ public class Config {
         setDatabaseURL(getString(bundle, "database.url"));
         setDatabaseUsername(getString(bundle, "database.username"));
         setDatabasePassword(getString(bundle, "database.password"));
+        setDatabasePoolSize(getInt(bundle, "database.poolSize", 20));
+        setDatabaseCheckoutTimeout(getInt(bundle, "database.checkoutTimeout", 5));
 
         setHttpPort(getInt(bundle, "server.port", 4567));
+        setVirtualThreads(getBoolean(bundle, "server.virtualThreads", false));
+        setRenderCacheSize(getInt(bundle, "server.renderCacheSize", 64));
+        setRenderThreads(getInt(bundle, "server.renderThreads", 4));
+        setRenderQueueSize(getInt(bundle, "server.renderQueueSize", 16));
+        setRenderTimeout(getInt(bundle, "server.renderTimeout", 30));
+
+        setMapStorePath(getString(bundle, "storage.mapPath", null));
+
+        setTracePath(getString(bundle, "trace.path", null));
+        setTraceThreshold(getInt(bundle, "trace.threshold", 1000));
 
         setDensityMinimum(getInt(bundle,"map.density.min", 1));
         setDensityMaximum(getInt(bundle,"map.density.max", 90));
@@ -112,6 +144,12 @@ public class Config {
         setPlanetMapFaceSize(getInt(bundle, "planet.map.faceSize", 12));
         setPlanetMapResolution(getInt(bundle, "planet.map.resolution", 2048));
 
+        setGenerationCommitInterval(getInt(bundle, "generation.commitInterval", 10));
+        setGenerationProfile(getBoolean(bundle, "generation.profile", false));
+
+        setLazyDescriptions(getBoolean(bundle, "text.lazyDescriptions", false));
+        setDescriptionCacheSize(getInt(bundle, "text.descriptionCacheSize", 1000));
+
         setSimFrequency(getInt(bundle, "sim.frequency", 60));
         setSkipDowntime(getBoolean(bundle, "sim.skipDowntime", false));
     }
@@ -180,6 +218,40 @@ public class Config {
         return databasePassword;
     }
 
+    private void setDatabasePoolSize(int size) {
+        if (size < 1) {
+            throw new InvalidConfigurationException("database.poolSize", ""+size);
+        }
+        this.databasePoolSize = size;
+    }
+
+    /**
+     * Gets the maximum number of database connections which are kept open. Anything which
+     * needs a connection when they are all in use has to wait. Defaults to 20.
+     *
+     * @return  Maximum size of the connection pool.
+     */
+    public int getDatabasePoolSize() {
+        return databasePoolSize;
+    }
+
+    private void setDatabaseCheckoutTimeout(int timeout) {
+        if (timeout < 1) {
+            throw new InvalidConfigurationException("database.checkoutTimeout", ""+timeout);
+        }
+        this.databaseCheckoutTimeout = timeout;
+    }
+
+    /**
+     * Gets the number of seconds to wait for a database connection when they are all in use,
+     * before giving up. Defaults to 5.
+     *
+     * @return  Seconds to wait for a connection.
+     */
+    public int getDatabaseCheckoutTimeout() {
+        return databaseCheckoutTimeout;
+    }
+
     private void setDensityMinimum(int density) {
         if (density < 0 || density > 100) {
             throw new InvalidConfigurationException("map.density.min", ""+density);
@@ -261,6 +333,72 @@ public class Config {
         return planetResolution;
     }
 
+    private void setGenerationCommitInterval(int interval) {
+        if (interval < 1) {
+            throw new InvalidConfigurationException("generation.commitInterval", ""+interval);
+        }
+        logger.info(String.format("generationCommitInterval [%d]", interval));
+        this.generationCommitInterval = interval;
+    }
+
+    /**
+     * Gets the number of star systems to generate in each transaction when populating a
+     * sector. Smaller values use less memory and lose less work on failure, but are slower.
+     * Defaults to 10 if not set.
+     *
+     * @return  Number of star systems to commit at a time.
+     */
+    public int getGenerationCommitInterval() {
+        return generationCommitInterval;
+    }
+
+    private void setGenerationProfile(boolean profile) {
+        this.generationProfile = profile;
+    }
+
+    /**
+     * Gets whether the time spent in each stage of generating star systems should be
+     * recorded, and a summary printed after each sector. Defaults to false.
+     *
+     * @return  True if generation should be profiled.
+     */
+    public boolean getGenerationProfile() {
+        return generationProfile;
+    }
+
+
+    private void setLazyDescriptions(boolean lazyDescriptions) {
+        this.lazyDescriptions = lazyDescriptions;
+    }
+
+    /**
+     * Gets whether generated planets and star systems should store just the seed for their
+     * description, rather than the full text. The text is rendered from the seed when it is
+     * read. Defaults to false.
+     *
+     * @return  True if only description seeds should be stored.
+     */
+    public boolean getLazyDescriptions() {
+        return lazyDescriptions;
+    }
+
+    private void setDescriptionCacheSize(int size) {
+        if (size < 1) {
+            throw new InvalidConfigurationException("text.descriptionCacheSize", ""+size);
+        }
+        this.descriptionCacheSize = size;
+    }
+
+    /**
+     * Gets the maximum number of descriptions rendered from seeds which are kept in memory.
+     * Defaults to 1000 if not set.
+     *
+     * @return  Maximum number of cached descriptions.
+     */
+    public int getDescriptionCacheSize() {
+        return descriptionCacheSize;
+    }
+
 
     private void setSimFrequency(int frequency) {
         if (frequency < 1) {
@@ -304,4 +442,136 @@ public class Config {
     public int getHttpPort() {
         return httpPort;
     }
+
+    private void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Gets whether web requests are handled on virtual threads rather than a fixed pool of
+     * threads. This needs Java 21 or later, and is ignored on older versions. Defaults to false.
+     *
+     * @return  True iff requests should use virtual threads.
+     */
+    public boolean getVirtualThreads() {
+        return virtualThreads;
+    }
+
+    private void setRenderCacheSize(int size) {
+        if (size < 0) {
+            throw new InvalidConfigurationException("server.renderCacheSize", ""+size);
+        }
+        this.renderCacheSize = size;
+    }
+
+    /**
+     * Gets the maximum size, in megabytes, of the images drawn on request which are kept
+     * in memory. Defaults to 64. If zero, images are not kept.
+     *
+     * @return  Maximum size of the render cache in MB.
+     */
+    public int getRenderCacheSize() {
+        return renderCacheSize;
+    }
+
+    private void setRenderThreads(int threads) {
+        if (threads < 1) {
+            throw new InvalidConfigurationException("server.renderThreads", ""+threads);
+        }
+        this.renderThreads = threads;
+    }
+
+    /**
+     * Gets the number of threads used to draw images on request. Defaults to 4.
+     *
+     * @return  Number of render threads.
+     */
+    public int getRenderThreads() {
+        return renderThreads;
+    }
+
+    private void setRenderQueueSize(int size) {
+        if (size < 1) {
+            throw new InvalidConfigurationException("server.renderQueueSize", ""+size);
+        }
+        this.renderQueueSize = size;
+    }
+
+    /**
+     * Gets the maximum number of images which can be waiting to be drawn. Requests for
+     * more are refused until the server is less busy. Defaults to 16.
+     *
+     * @return  Maximum number of images waiting to be drawn.
+     */
+    public int getRenderQueueSize() {
+        return renderQueueSize;
+    }
+
+    private void setRenderTimeout(int seconds) {
+        if (seconds < 1) {
+            throw new InvalidConfigurationException("server.renderTimeout", ""+seconds);
+        }
+        this.renderTimeout = seconds;
+    }
+
+    /**
+     * Gets the number of seconds a request will wait for its image to be drawn before
+     * giving up. Defaults to 30.
+     *
+     * @return  Render timeout in seconds.
+     */
+    public int getRenderTimeout() {
+        return renderTimeout;
+    }
+
+    private void setMapStorePath(String path) {
+        if (path != null && new File(path).exists() && !new File(path).isDirectory()) {
+            throw new InvalidConfigurationException("storage.mapPath", path);
+        }
+        this.mapStorePath = path;
+    }
+
+    /**
+     * Gets the directory in which planet maps and other images are stored as files. If not
+     * set, they are stored in the database.
+     *
+     * @return  Path of the map store directory, or null if images are kept in the database.
+     */
+    public String getMapStorePath() {
+        return mapStorePath;
+    }
+
+    private void setTracePath(String path) {
+        if (path != null && new File(path).exists() && !new File(path).isDirectory()) {
+            throw new InvalidConfigurationException("trace.path", path);
+        }
+        this.tracePath = path;
+    }
+
+    /**
+     * Gets the directory in which traces of slow requests are written. If not set,
+     * requests aren't traced.
+     *
+     * @return  Path of the trace directory, or null if tracing is turned off.
+     */
+    public String getTracePath() {
+        return tracePath;
+    }
+
+    private void setTraceThreshold(int millis) {
+        if (millis < 0) {
+            throw new InvalidConfigurationException("trace.threshold", ""+millis);
+        }
+        this.traceThreshold = millis;
+    }
+
+    /**
+     * Gets the number of milliseconds a request must take for its trace to be written.
+     * Defaults to 1000.
+     *
+     * @return  Trace threshold in milliseconds.
+     */
+    public int getTraceThreshold() {
+        return traceThreshold;
+    }
 }
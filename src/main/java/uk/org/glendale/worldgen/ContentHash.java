@@ -0,0 +1,44 @@
+/**
+ * ContentHash.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes of stored image data. A hash is stored alongside each planet map and image blob
+ * when it is written, so that it can be used as an HTTP ETag without loading the data.
+ */
+public final class ContentHash {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {
+    }
+
+    /**
+     * Gets the hash of some data, as a hex string.
+     *
+     * @param data  Data to hash, may be null.
+     * @return      40 character SHA-1 hash, or null if there is no data.
+     */
+    public static String of(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            byte[]        digest = MessageDigest.getInstance("SHA-1").digest(data);
+            StringBuilder buffer = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                buffer.append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+            }
+            return buffer.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1.
+            throw new IllegalStateException(e);
+        }
+    }
+}
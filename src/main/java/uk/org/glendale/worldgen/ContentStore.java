@@ -0,0 +1,201 @@
+/**
+ * ContentStore.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stores planet maps and image blobs as files on local disk rather than in the database.
+ * Each file is named by the hash of its content, and files are sharded into directories
+ * by the first two pairs of characters of the hash, such as 'ab/cd/abcd1234...'. The
+ * database only holds the hash, which is used to find the file.
+ *
+ * Since files are named by their content, identical maps are only stored once, and a
+ * file never changes once it has been written. Files are not removed when the rows which
+ * refer to them are deleted or rolled back.
+ *
+ * The store is only used if 'storage.mapPath' is set in the configuration. Otherwise
+ * data is kept in the database as before. Data which is still in the database is always
+ * read from there, so a database can hold a mix of both.
+ */
+public final class ContentStore {
+    private static final Logger logger = LoggerFactory.getLogger(ContentStore.class);
+
+    private static volatile ContentStore store = null;
+    private static volatile boolean      configured = false;
+
+    private final Path root;
+
+    ContentStore(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Gets the configured store.
+     *
+     * @return  Shared store, or null if data is kept in the database.
+     */
+    public static ContentStore getStore() {
+        if (!configured) {
+            synchronized (ContentStore.class) {
+                if (!configured) {
+                    String path = Config.getConfiguration().getMapStorePath();
+                    if (path != null) {
+                        logger.info(String.format("Storing maps in [%s]", path));
+                        store = new ContentStore(Paths.get(path));
+                    }
+                    configured = true;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Replaces the configured store, for tests. Setting it to null means the configuration
+     * is read again the next time the store is needed.
+     */
+    static void setStore(ContentStore s) {
+        synchronized (ContentStore.class) {
+            store = s;
+            configured = (s != null);
+        }
+    }
+
+    /**
+     * Writes data to the configured store, if there is one. This is used by entities when
+     * their data is set, to decide what they should hold in the database.
+     *
+     * @param hash  Hash of the data.
+     * @param data  Data to store.
+     * @return      Null if the data was written to the store, otherwise the data itself.
+     */
+    public static byte[] keep(String hash, byte[] data) {
+        ContentStore s = getStore();
+        if (s == null || data == null) {
+            return data;
+        }
+        try {
+            s.put(hash, data);
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads data from the configured store. This is used by entities which have a hash
+     * but no data in the database.
+     *
+     * @param hash  Hash of the data.
+     * @return      Stored data, or null if there is no store.
+     */
+    public static byte[] fetch(String hash) {
+        ContentStore s = getStore();
+        if (s == null) {
+            return null;
+        }
+        try {
+            return s.get(hash);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the path of the file which holds the data with the given hash.
+     */
+    Path getPath(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    /**
+     * Checks whether data with the given hash is in the store.
+     */
+    public boolean contains(String hash) {
+        return Files.isRegularFile(getPath(hash));
+    }
+
+    /**
+     * Writes data to the store, unless it is already there. The data is written to a
+     * temporary file which is then moved into place, so a partly written file is never
+     * seen by readers.
+     *
+     * @param hash  Hash of the data, as given by ContentHash.of().
+     * @param data  Data to write.
+     * @throws IOException  If the data could not be written.
+     */
+    public void put(String hash, byte[] data) throws IOException {
+        Path path = getPath(hash);
+        if (Files.exists(path)) {
+            return;
+        }
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), hash, ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Another thread has stored the same data.
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads data from the store.
+     *
+     * @param hash  Hash of the data.
+     * @return      The data.
+     * @throws IOException  If there is no such data, or it could not be read.
+     */
+    public byte[] get(String hash) throws IOException {
+        return Files.readAllBytes(getPath(hash));
+    }
+
+    /**
+     * Copies data from the store to an output, without reading it into memory. The file
+     * is transferred to the output by the file channel, which lets the operating system
+     * avoid copying it where it can.
+     *
+     * @param hash      Hash of the data.
+     * @param output    Where to write the data to.
+     * @return          True if the data was copied, false if it isn't in the store.
+     * @throws IOException  If the data could not be read or written.
+     */
+    public boolean write(String hash, StoredData.Output output) throws IOException {
+        Path path = getPath(hash);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long                size = channel.size();
+            OutputStream        out = output.open(size);
+            WritableByteChannel target = Channels.newChannel(out);
+
+            for (long position = 0; position < size; ) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            out.flush();
+        }
+        return true;
+    }
+}
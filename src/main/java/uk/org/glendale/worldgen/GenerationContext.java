@@ -0,0 +1,126 @@
+/**
+ * GenerationContext.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import uk.org.glendale.worldgen.astro.commodities.Commodity;
+import uk.org.glendale.worldgen.astro.commodities.CommodityFactory;
+import uk.org.glendale.worldgen.astro.commodities.CommodityName;
+import uk.org.glendale.worldgen.astro.commodities.NoSuchCommodityException;
+import uk.org.glendale.worldgen.astro.planets.PlanetFactory;
+import uk.org.glendale.worldgen.astro.stars.StarFactory;
+import uk.org.glendale.worldgen.astro.systems.StarSystemFactory;
+
+import java.util.Random;
+
+/**
+ * Everything that the star system, star, planet and civilisation generators share while
+ * creating star systems in a session. The factories are created once, rather than every
+ * time a generator asks for one.
+ *
+ * It also carries the type of star system currently being generated, which is set by
+ * each of the createXxx() methods of a StarSystemGenerator, and is used to find the
+ * phrases to describe the system with.
+ *
+ * A context belongs to a single WorldGen session, and isn't thread safe.
+ */
+public class GenerationContext {
+    private final WorldGen          worldgen;
+    private final StarSystemFactory starSystemFactory;
+    private final StarFactory       starFactory;
+    private final PlanetFactory     planetFactory;
+    private final CommodityFactory  commodityFactory;
+    private final Random            random;
+
+    private String generatorName = null;
+    private String systemType = null;
+
+    GenerationContext(WorldGen worldgen, StarSystemFactory starSystemFactory, StarFactory starFactory,
+                      PlanetFactory planetFactory, CommodityFactory commodityFactory) {
+        this.worldgen = worldgen;
+        this.starSystemFactory = starSystemFactory;
+        this.starFactory = starFactory;
+        this.planetFactory = planetFactory;
+        this.commodityFactory = commodityFactory;
+        this.random = new Random();
+    }
+
+    public WorldGen getWorldGen() {
+        return worldgen;
+    }
+
+    public StarSystemFactory getStarSystemFactory() {
+        return starSystemFactory;
+    }
+
+    public StarFactory getStarFactory() {
+        return starFactory;
+    }
+
+    public PlanetFactory getPlanetFactory() {
+        return planetFactory;
+    }
+
+    public CommodityFactory getCommodityFactory() {
+        return commodityFactory;
+    }
+
+    /**
+     * Gets the random number generator for this session. This is used for values which
+     * need a random seed, such as stored descriptions.
+     *
+     * @return  Random number generator.
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Gets a commodity by name from the shared commodity registry, so no database access
+     * is needed once the registry has been loaded.
+     *
+     * @param name  Name of the commodity.
+     * @return      Commodity, never null.
+     * @throws NoSuchCommodityException     If the commodity isn't in the database.
+     */
+    public Commodity getCommodity(CommodityName name) throws NoSuchCommodityException {
+        return commodityFactory.getRegistry().getCommodity(name);
+    }
+
+    /**
+     * Sets the type of star system which is being generated. This is the name of the
+     * generator, and the name of the createXxx() method without the 'create'.
+     *
+     * @param generatorName Simple class name of the StarSystemGenerator.
+     * @param systemType    Type of system, such as 'SmallDwarf'. May be null to clear it.
+     */
+    public void setSystemType(String generatorName, String systemType) {
+        this.generatorName = generatorName;
+        this.systemType = systemType;
+    }
+
+    /**
+     * Gets the type of star system being generated, as set by setSystemType().
+     *
+     * @return  Type of system, or null if it hasn't been set.
+     */
+    public String getSystemType() {
+        return systemType;
+    }
+
+    /**
+     * Gets the name of the phrase resource for the type of star system being generated,
+     * such as 'Barren.SmallDwarf'.
+     *
+     * @return  Name of the resource, or null if no system type has been set.
+     */
+    public String getSystemResource() {
+        if (generatorName == null || systemType == null) {
+            return null;
+        }
+        return generatorName + "." + systemType;
+    }
+}
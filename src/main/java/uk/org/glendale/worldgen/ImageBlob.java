@@ -1,11 +1,15 @@
 package uk.org.glendale.worldgen;
 
+import org.hibernate.annotations.GenericGenerator;
+
 import javax.persistence.*;
 
 @Entity
 @Table(name="blobs")
 public class ImageBlob {
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "block")
+    @GenericGenerator(name = "block", strategy = "uk.org.glendale.worldgen.BlockIdGenerator")
     private int id;
 
     @Column
@@ -14,13 +18,16 @@ public class ImageBlob {
     @Column
     private byte[] data;
 
+    @Column
+    private String hash;
+
     protected ImageBlob() {
 
     }
 
     public ImageBlob(String name, byte[] data) {
         this.name = name;
-        this.data = data;
+        setData(data);
     }
 
     public int getId() {
@@ -39,13 +46,45 @@ public class ImageBlob {
         return name;
     }
 
+    /**
+     * Sets the image data. If a content store is configured, the data is written to it,
+     * and only the hash is kept in the database.
+     */
     public void setData(final byte[] data) {
-        this.data = data;
+        this.hash = ContentHash.of(data);
+        this.data = ContentStore.keep(hash, data);
     }
 
     public byte[] getData() {
+        if (data == null && hash != null) {
+            return ContentStore.fetch(hash);
+        }
         return data;
     }
 
+    /**
+     * Checks whether the data is held in the database, rather than in the content store.
+     */
+    public boolean isInDatabase() {
+        return data != null;
+    }
+
+    /**
+     * Gets the hash of the image data, or null if it was stored before hashes were added
+     * and fillHash() hasn't been called.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Sets the hash from the data, if it isn't already set.
+     */
+    public void fillHash() {
+        if (hash == null) {
+            hash = ContentHash.of(data);
+        }
+    }
+
 
 }
@@ -8,6 +8,7 @@ package uk.org.glendale.worldgen;
 
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
 import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +23,8 @@ import uk.org.glendale.worldgen.astro.stars.Luminosity;
 import uk.org.glendale.worldgen.astro.stars.SpectralType;
 import uk.org.glendale.worldgen.astro.stars.Star;
 import uk.org.glendale.worldgen.astro.systems.*;
+import uk.org.glendale.worldgen.metrics.StatementCounter;
+import uk.org.glendale.worldgen.trace.TraceSessionListener;
 import uk.org.glendale.worldgen.web.ConfigController;
 import uk.org.glendale.worldgen.web.Controller;
 
@@ -43,6 +46,17 @@ public class Main {
         cfg.getProperties().setProperty("hibernate.dialect", "org.hibernate.dialect.MySQL57Dialect");
         cfg.getProperties().setProperty("hibernate.connection.username", configuration.getDatabaseUsername());
         cfg.getProperties().setProperty("hibernate.connection.password", configuration.getDatabasePassword());
+        // The connection pool limits how many requests can use the database at once.
+        cfg.getProperties().setProperty("hibernate.c3p0.max_size", String.valueOf(configuration.getDatabasePoolSize()));
+        cfg.getProperties().setProperty("hibernate.c3p0.checkoutTimeout", String.valueOf(configuration.getDatabaseCheckoutTimeout() * 1000));
+        // Count queries and SQL statements for the metrics endpoint.
+        cfg.getProperties().setProperty("hibernate.generate_statistics", "true");
+        cfg.getProperties().setProperty("hibernate.session_factory.statement_inspector",
+                StatementCounter.class.getName());
+        // Statistics would otherwise log a summary at the end of every session.
+        cfg.getProperties().setProperty("hibernate.session.events.log", "false");
+        // Add database work to the trace of slow requests.
+        cfg.getProperties().setProperty("hibernate.session.events.auto", TraceSessionListener.class.getName());
 
         sessionFactory = cfg.buildSessionFactory();
     }
@@ -61,6 +75,15 @@ public class Main {
         return sessionFactory;
     }
 
+    /**
+     * Gets the statistics which Hibernate has gathered since the server started.
+     *
+     * @return  Session factory statistics.
+     */
+    public static Statistics getStatistics() {
+        return sessionFactory.getStatistics();
+    }
+
     protected static EntityManager getSession() {
         return sessionFactory.createEntityManager();
     }
@@ -87,9 +110,16 @@ public class Main {
                     Sector sector1 = null;
                     try {
                         sector1 = sectorFactory.getSector(x, y);
+                        if (sectorFactory.getGenerationCheckpoint(sector1, null) >= 0) {
+                            // An earlier run was interrupted part way through this sector.
+                            new SectorGenerator(worldGen).createSectorByDensity(sector1, null);
+                        }
                     } catch (NoSuchSectorException e) {
                         sector1 = new Sector("Sector " + SectorFactory.getSectorNumber(x, y), x, y);
                         sectorFactory.persist(sector1);
+                        // Record the sector as started, so it is resumed if we fail before the first commit.
+                        sectorFactory.setGenerationCheckpoint(sector1, null, 0, 0);
+                        worldGen.commit();
                         new SectorGenerator(worldGen).createSectorByDensity(sector1, null);
                     }
                     logger.debug("Sector 1: " + sector1.getId());
@@ -0,0 +1,237 @@
+/**
+ * RenderCache.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.org.glendale.worldgen.exceptions.ServerBusyException;
+
+import javax.persistence.EntityManager;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of encoded images which are drawn on request, such as star system and sub sector
+ * maps. Drawing these is expensive, but the result only depends on the request parameters
+ * and the objects being drawn, so the encoded bytes can be kept and sent again.
+ *
+ * The cache is bounded by the total size of the images in it, as set by the
+ * server.renderCacheSize option, and throws away the least recently used images first.
+ * If several requests for the same image arrive at once, it is only drawn once, and
+ * they all wait for it to finish and share the result.
+ *
+ * Keys start with the type and id of the object being drawn, such as "system/123/", so
+ * that all the images of an object can be thrown away when the object changes. Since a
+ * change isn't visible to other sessions until it is committed, changes are recorded
+ * against the session that made them, and invalidated again once it commits.
+ */
+public final class RenderCache {
+    private static final Logger logger = LoggerFactory.getLogger(RenderCache.class);
+
+    private static final Map<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<String, CompletableFuture<byte[]>> rendering = new ConcurrentHashMap<>();
+    private static final Map<EntityManager, Set<String>> changes = new WeakHashMap<>();
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private static long size = 0;
+    private static long epoch = 0;
+
+    /**
+     * Draws and encodes an image.
+     */
+    public interface Renderer {
+        byte[] render() throws Exception;
+    }
+
+    private RenderCache() {
+    }
+
+    public static String getSystemKey(int systemId) {
+        return "system/" + systemId + "/";
+    }
+
+    public static String getSectorKey(int sectorId) {
+        return "sector/" + sectorId + "/";
+    }
+
+    private static long getMaxSize() {
+        return Config.getConfiguration().getRenderCacheSize() * 1024L * 1024L;
+    }
+
+    /**
+     * Gets an image from the cache, drawing it if it isn't there. If the same image is
+     * already being drawn for another request, then waits for that instead. Images are
+     * drawn by the RenderExecutor, so the renderer is called on a different thread. If the
+     * request gives up waiting, the image is still cached once it has been drawn.
+     *
+     * @param key       Key for the image, starting with the object key and including every
+     *                  parameter which affects how it is drawn.
+     * @param renderer  Draws the image if it isn't cached. This must open its own session
+     *                  if it needs one.
+     * @return          Encoded image.
+     * @throws ServerBusyException  If too many images are being drawn, or it isn't drawn in time.
+     * @throws Exception            Anything thrown by the renderer.
+     */
+    public static byte[] get(String key, Renderer renderer) throws Exception {
+        long start;
+        synchronized (cache) {
+            byte[] data = cache.get(key);
+            if (data != null) {
+                hits.increment();
+                return data;
+            }
+            start = epoch;
+        }
+        misses.increment();
+
+        RenderExecutor            executor = RenderExecutor.getExecutor();
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = rendering.putIfAbsent(key, future);
+        if (existing == null) {
+            try {
+                executor.submit(key.substring(0, Math.max(key.indexOf('/'), 0)), renderer).whenComplete((data, e) -> {
+                    if (e == null) {
+                        put(key, data, start);
+                        future.complete(data);
+                    } else {
+                        future.completeExceptionally(e);
+                    }
+                    rendering.remove(key, future);
+                });
+            } catch (ServerBusyException e) {
+                rendering.remove(key, future);
+                future.completeExceptionally(e);
+                throw e;
+            }
+            existing = future;
+        }
+        return executor.await(existing);
+    }
+
+    private static void put(String key, byte[] data, long start) {
+        long max = getMaxSize();
+        synchronized (cache) {
+            // Don't keep an image which was being drawn while something was invalidated.
+            if (start != epoch || data == null || data.length > max) {
+                return;
+            }
+            byte[] old = cache.put(key, data);
+            size += data.length - (old == null ? 0 : old.length);
+
+            Iterator<byte[]> iterator = cache.values().iterator();
+            while (size > max && iterator.hasNext()) {
+                size -= iterator.next().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Throws away every cached image whose key starts with the given prefix.
+     *
+     * @param prefix    Object key, such as from getSystemKey().
+     */
+    public static void invalidate(String prefix) {
+        synchronized (cache) {
+            epoch++;
+            Iterator<Map.Entry<String, byte[]>> iterator = cache.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, byte[]> entry = iterator.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    size -= entry.getValue().length;
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that an object has been changed by a session. Its images are invalidated
+     * now, and again when the session commits.
+     *
+     * @param session   Session which has made the change.
+     * @param prefix    Object key, such as from getSystemKey().
+     */
+    public static void changed(EntityManager session, String prefix) {
+        invalidate(prefix);
+        synchronized (changes) {
+            changes.computeIfAbsent(session, k -> new HashSet<>()).add(prefix);
+        }
+    }
+
+    /**
+     * Called when a session has committed, to invalidate the images of everything it changed.
+     *
+     * @param session   Session which has committed.
+     */
+    public static void committed(EntityManager session) {
+        Set<String> prefixes;
+        synchronized (changes) {
+            prefixes = changes.remove(session);
+        }
+        if (prefixes != null) {
+            logger.debug(String.format("Invalidating [%d] cached objects", prefixes.size()));
+            for (String prefix : prefixes) {
+                invalidate(prefix);
+            }
+        }
+    }
+
+    /**
+     * Called when a session has rolled back, so nothing it changed needs to be invalidated.
+     *
+     * @param session   Session which has rolled back.
+     */
+    public static void discarded(EntityManager session) {
+        synchronized (changes) {
+            changes.remove(session);
+        }
+    }
+
+    /**
+     * Discards all cached images.
+     */
+    public static void clear() {
+        synchronized (cache) {
+            epoch++;
+            cache.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Gets the total size in bytes of all the cached images.
+     */
+    public static long getSize() {
+        synchronized (cache) {
+            return size;
+        }
+    }
+
+    /**
+     * Gets the number of images which have been found in the cache.
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of images which weren't in the cache, and had to be drawn or waited for.
+     */
+    public static long getMisses() {
+        return misses.sum();
+    }
+}
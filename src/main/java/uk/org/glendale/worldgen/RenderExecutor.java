@@ -0,0 +1,178 @@
+/**
+ * RenderExecutor.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.org.glendale.worldgen.exceptions.ServerBusyException;
+import uk.org.glendale.worldgen.metrics.Metrics;
+import uk.org.glendale.worldgen.metrics.StatementCounter;
+import uk.org.glendale.worldgen.trace.Trace;
+import uk.org.glendale.worldgen.trace.Tracer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Draws images on a fixed number of threads, rather than on the threads which handle web
+ * requests. This stops a burst of requests for large maps from tying up every request
+ * thread, so that other requests can still be answered.
+ *
+ * Only a limited number of images can be waiting to be drawn. Once that is reached, new
+ * images are refused straight away with a ServerBusyException. Each request also only
+ * waits for so long for its image. If it gives up, an image which has already started is
+ * still finished (so it can be cached for next time), but one which hasn't started yet
+ * is dropped when its turn comes.
+ *
+ * The number of threads, the queue size and the time to wait are set by the
+ * server.renderThreads, server.renderQueueSize and server.renderTimeout options.
+ */
+public final class RenderExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(RenderExecutor.class);
+
+    /**
+     * Number of seconds after which clients are told to try again when the server is busy.
+     */
+    private static final int RETRY_AFTER = 5;
+
+    private static volatile RenderExecutor executor = null;
+
+    private final ThreadPoolExecutor pool;
+    private final long               timeout;
+
+    RenderExecutor(int threads, int queueSize, long timeout) {
+        AtomicInteger count = new AtomicInteger();
+
+        this.timeout = timeout;
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "render-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets the shared executor, configured from the server options.
+     *
+     * @return  Shared render executor.
+     */
+    public static RenderExecutor getExecutor() {
+        RenderExecutor e = executor;
+        if (e == null) {
+            synchronized (RenderExecutor.class) {
+                e = executor;
+                if (e == null) {
+                    Config config = Config.getConfiguration();
+                    logger.info(String.format("Drawing images on [%d] threads, with up to [%d] waiting",
+                            config.getRenderThreads(), config.getRenderQueueSize()));
+                    e = executor = new RenderExecutor(config.getRenderThreads(), config.getRenderQueueSize(),
+                            config.getRenderTimeout() * 1000L);
+                }
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Queues an image to be drawn.
+     *
+     * @param type      Type of image, such as 'system', which the time taken is recorded against.
+     * @param renderer  Draws the image. This is called on a different thread, so it must
+     *                  open its own session if it needs one.
+     * @return          Future which is completed with the image once it has been drawn.
+     * @throws ServerBusyException  If too many images are already waiting to be drawn.
+     */
+    public CompletableFuture<byte[]> submit(String type, RenderCache.Renderer renderer) throws ServerBusyException {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        long                      deadline = System.currentTimeMillis() + timeout;
+        Trace                     trace = Tracer.current();
+        AtomicInteger             statements = StatementCounter.current();
+
+        try {
+            pool.execute(() -> {
+                if (System.currentTimeMillis() > deadline) {
+                    // Nobody is waiting for this any more.
+                    future.completeExceptionally(new ServerBusyException("Timed out waiting to draw image", RETRY_AFTER));
+                    return;
+                }
+                long start = System.nanoTime();
+                // Drawing is part of the request which asked for it.
+                Tracer.attach(trace);
+                StatementCounter.attach(statements);
+                try {
+                    future.complete(Tracer.span("render", "render " + type, renderer::render));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    Tracer.attach(null);
+                    StatementCounter.attach(null);
+                    Metrics.recordRender(type, System.nanoTime() - start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn(String.format("Refusing to draw image, [%d] already waiting", pool.getQueue().size()));
+            throw new ServerBusyException("Too many images are being drawn", RETRY_AFTER);
+        }
+        return future;
+    }
+
+    /**
+     * Waits for an image to be drawn, for no longer than the configured timeout.
+     *
+     * @param future    Future from submit().
+     * @return          The image.
+     * @throws ServerBusyException  If the image isn't drawn in time.
+     * @throws Exception            Anything thrown by the renderer.
+     */
+    public byte[] await(CompletableFuture<byte[]> future) throws Exception {
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ServerBusyException("Timed out drawing image", RETRY_AFTER);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServerBusyException("Interrupted while drawing image", RETRY_AFTER);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Draws an image, waiting for it to be finished.
+     *
+     * @param type      Type of image, such as 'planet', which the time taken is recorded against.
+     * @param renderer  Draws the image, on a different thread.
+     * @return          The image.
+     * @throws ServerBusyException  If there are too many images to draw, or it isn't drawn in time.
+     * @throws Exception            Anything thrown by the renderer.
+     */
+    public byte[] render(String type, RenderCache.Renderer renderer) throws Exception {
+        return await(submit(type, renderer));
+    }
+
+    /**
+     * Gets the number of images which are currently being drawn.
+     */
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * Gets the number of images which are waiting to be drawn.
+     */
+    public int getQueueSize() {
+        return pool.getQueue().size();
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * StoredData.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Copies binary data, such as stored images, from the database to an output stream
+ * without reading it into an entity first. The data is read from the JDBC result as
+ * a stream, so when the driver supports streaming results (as MySQL does) the whole
+ * image never needs to be held in memory.
+ */
+public final class StoredData {
+    private static final int BUFFER_SIZE = 16384;
+
+    /**
+     * Where the data is written to. It is only opened once the data has been found,
+     * so that nothing is written if there is no data.
+     */
+    public interface Output {
+        /**
+         * Gets the stream to write the data to.
+         *
+         * @param length    Length of the data in bytes.
+         * @return          Stream to write to. It is flushed but not closed.
+         */
+        OutputStream open(long length) throws IOException;
+    }
+
+    private StoredData() {
+    }
+
+    /**
+     * Copies a single binary column to an output. The query must return the data as
+     * its first column and the length of the data as its second, for example
+     * "SELECT data, LENGTH(data) FROM blobs WHERE name = ?". Only the first row is read.
+     *
+     * Changes in the session which haven't been flushed won't be seen, since the data is
+     * read directly from the database.
+     *
+     * @param session   Session whose connection is used to read the data.
+     * @param sql       Query to select the data and its length.
+     * @param output    Where to write the data to.
+     * @param params    Parameters to the query.
+     * @return          True if the data was copied, false if there was no data.
+     * @throws IOException  If the data could not be written.
+     */
+    public static boolean copy(EntityManager session, String sql, Output output, Object... params)
+            throws IOException {
+        try {
+            return session.unwrap(Session.class).doReturningWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    if (isMySQL(connection)) {
+                        // Tells MySQL to stream the row, rather than reading it all into memory.
+                        statement.setFetchSize(Integer.MIN_VALUE);
+                    }
+                    for (int i = 0; i < params.length; i++) {
+                        statement.setObject(i + 1, params[i]);
+                    }
+                    try (ResultSet rs = statement.executeQuery()) {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        long length = rs.getLong(2);
+                        try (InputStream in = rs.getBinaryStream(1)) {
+                            if (in == null) {
+                                return false;
+                            }
+                            OutputStream out = output.open(length);
+                            transfer(in, out);
+                            out.flush();
+                        }
+                        return true;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isMySQL(Connection connection) throws SQLException {
+        return connection.getMetaData().getDriverName().startsWith("MySQL");
+    }
+
+    private static void transfer(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int    read;
+
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
@@ -52,5 +52,16 @@ public class Ticker implements Job {
         }
 
         worldGen.close();
+
+        // Pick up universe data committed by other processes, such as sector workers. This
+        // uses its own session, so that a failure here doesn't lose the time update.
+        WorldGen indexes = Server.getWorldGen();
+        try {
+            indexes.refreshIndexes();
+        } catch (RuntimeException e) {
+            logger.warn("Unable to refresh indexes", e);
+        } finally {
+            indexes.close();
+        }
     }
 }
@@ -12,14 +12,25 @@ import org.slf4j.LoggerFactory;
 import uk.org.glendale.utils.graphics.SimpleImage;
 import uk.org.glendale.worldgen.astro.Universe;
 import uk.org.glendale.worldgen.astro.commodities.CommodityFactory;
+import uk.org.glendale.worldgen.astro.commodities.ResourceIndex;
 import uk.org.glendale.worldgen.astro.planets.PlanetFactory;
+import uk.org.glendale.worldgen.astro.planets.PlanetMap;
 import uk.org.glendale.worldgen.astro.sectors.NoSuchSectorException;
 import uk.org.glendale.worldgen.astro.sectors.Sector;
 import uk.org.glendale.worldgen.astro.sectors.SectorFactory;
 import uk.org.glendale.worldgen.astro.stars.StarFactory;
 import uk.org.glendale.worldgen.astro.systems.StarSystem;
 import uk.org.glendale.worldgen.astro.systems.StarSystemFactory;
+import uk.org.glendale.worldgen.dump.ImportResult;
+import uk.org.glendale.worldgen.dump.UniverseExporter;
+import uk.org.glendale.worldgen.dump.UniverseImporter;
+import uk.org.glendale.worldgen.jobs.JobQueue;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
+import uk.org.glendale.worldgen.search.NameIndex;
+import uk.org.glendale.worldgen.search.SearchIndex;
 import uk.org.glendale.worldgen.text.NameGenerator;
+import uk.org.glendale.worldgen.trace.Span;
+import uk.org.glendale.worldgen.trace.Tracer;
 
 import javax.imageio.ImageIO;
 import javax.persistence.*;
@@ -29,6 +40,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * High level application class that does session and transaction management, providing
@@ -40,6 +52,8 @@ public class WorldGen implements AutoCloseable {
     private EntityManager       session;
     private EntityTransaction   transaction;
     private Config              configuration;
+    private GenerationContext   generationContext;
+    private Span                span;
 
     private static int          count = 0;
 
@@ -55,6 +69,7 @@ public class WorldGen implements AutoCloseable {
         }
         this.configuration = configuration;
         this.session = session;
+        this.span = Tracer.span("worldgen", "WorldGen session");
         session.setFlushMode(FlushModeType.COMMIT);
         transaction = session.getTransaction();
         transaction.begin();
@@ -77,15 +92,55 @@ public class WorldGen implements AutoCloseable {
             if (transaction.getRollbackOnly()) {
                 System.out.println("Transaction marked for rollback.");
                 transaction.rollback();
+                RenderCache.discarded(session);
+                ResourceIndex.discarded(session);
+                NameIndex.discarded(session);
             } else {
-                transaction.commit();
+                Tracer.span("db", "commit", transaction::commit);
+                RenderCache.committed(session);
+                ResourceIndex.committed(session);
+                NameIndex.committed(session);
             }
         } catch (PersistenceException e) {
             System.out.println(String.format("Cannot commit transaction (%s), rolling back.", e.getMessage()));
             transaction.rollback();
+            RenderCache.discarded(session);
+            ResourceIndex.discarded(session);
+            NameIndex.discarded(session);
         }
         transaction = null;
         session = null;
+        generationContext = null;
+        span.close();
+    }
+
+    /**
+     * Commits everything done so far and starts a new transaction, without closing this
+     * session. The persistence context is cleared, so any entities which have been loaded
+     * or created become detached, and memory used by them can be reclaimed. This allows
+     * long running generation tasks to work in chunks, so that memory use doesn't grow
+     * with the size of the task and a failure only loses the current chunk.
+     */
+    public void commit() {
+        validate();
+        if (transaction.getRollbackOnly()) {
+            throw new IllegalStateException("Transaction has been marked for rollback.");
+        }
+        GenerationProfiler.time("db/commit", transaction::commit);
+        RenderCache.committed(session);
+        ResourceIndex.committed(session);
+        NameIndex.committed(session);
+        session.clear();
+        transaction.begin();
+    }
+
+    /**
+     * Marks the current transaction so that it will be rolled back rather than committed
+     * when this session is closed.
+     */
+    public void setRollbackOnly() {
+        validate();
+        transaction.setRollbackOnly();
     }
 
     public Config getConfig() {
@@ -123,6 +178,96 @@ public class WorldGen implements AutoCloseable {
         return new CommodityFactory(session);
     }
 
+    /**
+     * Gets the context shared by generators in this session. It is created the first time
+     * it is asked for, and the same one is returned until the session is closed.
+     *
+     * @return  Shared generation context.
+     */
+    public GenerationContext getGenerationContext() {
+        validate();
+        if (generationContext == null) {
+            generationContext = new GenerationContext(this, getStarSystemFactory(), getStarFactory(),
+                    getPlanetFactory(), getCommodityFactory());
+        }
+        return generationContext;
+    }
+
+    /**
+     * Gets the index used to search star systems and planets by their attributes. It is
+     * shared between sessions, read from the database when first needed, and checked for
+     * new rows from time to time after that.
+     *
+     * @return  Shared search index.
+     */
+    public SearchIndex getSearchIndex() {
+        validate();
+        return SearchIndex.getIndex(session);
+    }
+
+    /**
+     * Gets the index of sector, star system and planet names, used for finding names by
+     * prefix. It is shared between sessions, and read from the database when first needed.
+     * Names created by a session are added to it when the session commits.
+     *
+     * @return  Shared name index.
+     */
+    public NameIndex getNameIndex() {
+        validate();
+        return NameIndex.getIndex(session);
+    }
+
+    /**
+     * Brings the shared indexes up to date with anything which has been committed since
+     * they were loaded, including universe data generated by other processes. Indexes which
+     * haven't been loaded yet are left alone.
+     */
+    public void refreshIndexes() {
+        validate();
+        getCommodityFactory().refreshResourceIndex();
+        SearchIndex.refresh(session);
+        NameIndex.refresh(session);
+    }
+
+    public JobQueue getJobQueue() {
+        validate();
+        return new JobQueue(session);
+    }
+
+    public UniverseExporter getUniverseExporter() {
+        validate();
+        return new UniverseExporter(session);
+    }
+
+    /**
+     * Imports the next block of a universe dump as part of this session's transaction.
+     * If the import fails, the transaction is marked for rollback so that none of the
+     * block is committed.
+     *
+     * @param importer  Importer which is reading the dump.
+     * @return          Result of the import, or null if the dump has been fully read.
+     */
+    public ImportResult importBlock(UniverseImporter importer) throws IOException {
+        validate();
+        try {
+            return importer.importNextBlock(session);
+        } catch (IOException | RuntimeException e) {
+            transaction.setRollbackOnly();
+            throw e;
+        }
+    }
+
+    /**
+     * Counts rows which refer to parent rows that don't exist, for checking the
+     * consistency of the data after an import.
+     *
+     * @return  Number of orphaned rows for each table.
+     */
+    public Map<String, Long> getOrphanCounts() {
+        validate();
+        return UniverseImporter.countOrphans(session);
+    }
+
     /**
      * Gets a text generator for random star system names.
      *
@@ -229,24 +374,103 @@ public class WorldGen implements AutoCloseable {
         }
     }
 
-    public SimpleImage getImage(String name) {
+    /**
+     * Moves planet maps and images which are held in the database into the content store,
+     * leaving only their hashes in the database. This is done a batch at a time, so it
+     * should be called repeatedly, committing each time, until nothing is left to move.
+     *
+     * @param batchSize     Maximum number of maps and images to move.
+     * @return              Number moved, or zero if there are none left.
+     * @throws IllegalStateException    If no content store is configured.
+     */
+    public int moveToContentStore(int batchSize) {
+        if (ContentStore.getStore() == null) {
+            throw new IllegalStateException("No content store is configured");
+        }
+        List<PlanetMap> maps = session.createQuery("FROM PlanetMap M WHERE data IS NOT NULL", PlanetMap.class)
+                .setMaxResults(batchSize).getResultList();
+        for (PlanetMap map : maps) {
+            map.setData(map.getData());
+        }
+        int moved = maps.size();
+        if (moved < batchSize) {
+            List<ImageBlob> blobs = session.createQuery("FROM ImageBlob I WHERE data IS NOT NULL", ImageBlob.class)
+                    .setMaxResults(batchSize - moved).getResultList();
+            for (ImageBlob blob : blobs) {
+                blob.setData(blob.getData());
+            }
+            moved += blobs.size();
+        }
+        return moved;
+    }
+
+    /**
+     * Gets the hash of a stored image, without loading the image itself.
+     *
+     * @param name  Name of the image.
+     * @return      Hash of the image, or null if there is no such image or it has no hash yet.
+     */
+    public String getImageHash(String name) {
+        Query query = session.createQuery("SELECT I.hash FROM ImageBlob I WHERE name=:name");
+        query.setParameter("name", name);
+
+        List<String> hashes = (List<String>) query.getResultList();
+        return hashes.isEmpty() ? null : hashes.get(0);
+    }
+
+    /**
+     * Gets a stored image, as it is held in the database. If it was stored before hashes
+     * were added, its hash is filled in, and saved when the session commits.
+     *
+     * @param name  Name of the image.
+     * @return      Stored image, or null if there is no such image.
+     */
+    public ImageBlob getImageBlob(String name) {
         Query query = session.createQuery("FROM ImageBlob I WHERE name=:name");
         query.setParameter("name", name);
 
         try {
             ImageBlob blob = (ImageBlob) query.getSingleResult();
-
-            try {
-                ByteArrayInputStream bais = new ByteArrayInputStream(blob.getData());
-                SimpleImage image = new SimpleImage(ImageIO.read(bais));
-                return image;
-            } catch (IOException e) {
-                logger.error(String.format("Unable to create image from data (%s)", e.getMessage()));
-            }
+            blob.fillHash();
+            return blob;
         } catch (NoResultException e) {
-            logger.error(String.format("No image [%s] found.", name), e);
             return null;
         }
+    }
+
+    /**
+     * Writes a stored image, exactly as it is stored, without decoding it. If the image is
+     * in the content store, it is copied from its file, otherwise it is read from the database.
+     *
+     * @param name      Name of the image.
+     * @param output    Where to write the image to.
+     * @return          True if the image was written, false if there is no such image.
+     * @throws IOException  If the image could not be written.
+     */
+    public boolean writeImage(String name, StoredData.Output output) throws IOException {
+        ContentStore store = ContentStore.getStore();
+        String       hash = getImageHash(name);
+
+        if (store != null && hash != null && store.write(hash, output)) {
+            return true;
+        }
+        return StoredData.copy(session, "SELECT data, LENGTH(data) FROM blobs WHERE name = ?", output, name);
+    }
+
+    public SimpleImage getImage(String name) {
+        ImageBlob blob = getImageBlob(name);
+        if (blob == null) {
+            logger.error(String.format("No image [%s] found.", name));
+            return null;
+        }
+
+        try {
+            ByteArrayInputStream bais = new ByteArrayInputStream(blob.getData());
+            SimpleImage image = new SimpleImage(ImageIO.read(bais));
+            return image;
+        } catch (IOException e) {
+            logger.error(String.format("Unable to create image from data (%s)", e.getMessage()));
+        }
 
         return null;
 
@@ -6,6 +6,8 @@
  */
 package uk.org.glendale.worldgen.astro.commodities;
 
+import org.hibernate.annotations.GenericGenerator;
+
 import javax.persistence.*;
 
 /**
@@ -16,7 +18,9 @@ import javax.persistence.*;
 @Entity
 @Table(name = "commodities")
 public class Commodity {
-    @Id @GeneratedValue @Column
+    @Id @Column
+    @GeneratedValue(generator = "block")
+    @GenericGenerator(name = "block", strategy = "uk.org.glendale.worldgen.BlockIdGenerator")
     private int id;
 
     @Column
@@ -13,6 +13,7 @@ import uk.org.glendale.worldgen.astro.planets.Planet;
 import uk.org.glendale.worldgen.astro.planets.PlanetFactory;
 
 import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
 import javax.persistence.Query;
 import java.util.ArrayList;
 
@@ -70,11 +71,48 @@ public class CommodityFactory {
         Query query = session.createQuery(BY_NAME);
         query.setParameter("name", name);
 
-        Commodity commodity = (Commodity) query.getSingleResult();
-        if (commodity == null) {
+        try {
+            return (Commodity) query.getSingleResult();
+        } catch (NoResultException e) {
             throw new NoSuchCommodityException(name);
         }
+    }
 
-        return commodity;
+    /**
+     * Gets the registry of well known commodities, which is shared between all sessions.
+     * It is read from the database the first time it is needed.
+     *
+     * @return  Shared commodity registry.
+     */
+    public CommodityRegistry getRegistry() {
+        return CommodityRegistry.getRegistry(session);
+    }
+
+    /**
+     * Reads the commodity registry again. This should be called if the commodities in the
+     * database have been changed.
+     *
+     * @return  New shared commodity registry.
+     */
+    public CommodityRegistry reloadRegistry() {
+        return CommodityRegistry.reload(session);
+    }
+
+    /**
+     * Gets the index of which planets have each commodity as a resource, which is shared
+     * between all sessions. It is read from the database the first time it is needed.
+     *
+     * @return  Shared resource index.
+     */
+    public ResourceIndex getResourceIndex() {
+        return ResourceIndex.getIndex(session);
+    }
+
+    /**
+     * Adds planets to the resource index which have been committed since it was loaded,
+     * such as those generated outside of this process.
+     */
+    public void refreshResourceIndex() {
+        ResourceIndex.refresh(session);
     }
 }
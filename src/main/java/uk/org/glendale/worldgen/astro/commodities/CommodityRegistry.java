@@ -0,0 +1,111 @@
+/**
+ * CommodityRegistry.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.astro.commodities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All the well known commodities, read from the database once and then shared by every
+ * session. They are indexed by the ordinal of their CommodityName, so looking one up is
+ * just an array access.
+ *
+ * The commodities held here are detached from any session. They are only meant to be
+ * referred to (such as by a planet's resources), not modified. If the commodities table
+ * is changed, then reload() should be called so that the changes are picked up.
+ */
+public final class CommodityRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(CommodityRegistry.class);
+
+    private static final String ALL = "FROM Commodity";
+
+    private static volatile CommodityRegistry registry = null;
+
+    private final Commodity[] commodities;
+
+    private CommodityRegistry(Commodity[] commodities) {
+        this.commodities = commodities;
+    }
+
+    /**
+     * Gets the shared registry, reading it from the database if it hasn't yet been loaded.
+     *
+     * @param session   Session to use if the registry needs to be read.
+     * @return          Shared commodity registry.
+     */
+    static CommodityRegistry getRegistry(EntityManager session) {
+        CommodityRegistry r = registry;
+        if (r == null) {
+            synchronized (CommodityRegistry.class) {
+                r = registry;
+                if (r == null) {
+                    r = registry = load(session);
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Reads the registry again from the database, replacing the shared registry.
+     *
+     * @param session   Session to read the commodities with.
+     * @return          New shared commodity registry.
+     */
+    static CommodityRegistry reload(EntityManager session) {
+        synchronized (CommodityRegistry.class) {
+            registry = load(session);
+            return registry;
+        }
+    }
+
+    private static CommodityRegistry load(EntityManager session) {
+        Map<String, CommodityName> names = new HashMap<>();
+        for (CommodityName name : CommodityName.values()) {
+            names.put(name.getName(), name);
+        }
+
+        List<Commodity> list = session.createQuery(ALL, Commodity.class).getResultList();
+        Commodity[]     commodities = new Commodity[CommodityName.values().length];
+
+        for (Commodity commodity : list) {
+            CommodityName name = names.get(commodity.getName());
+            if (name != null) {
+                session.detach(commodity);
+                commodities[name.ordinal()] = commodity;
+            }
+        }
+        for (CommodityName name : CommodityName.values()) {
+            if (commodities[name.ordinal()] == null) {
+                logger.warn(String.format("Well defined commodity [%s] is not in the database", name.getName()));
+            }
+        }
+        logger.info(String.format("Loaded [%d] commodities", list.size()));
+
+        return new CommodityRegistry(commodities);
+    }
+
+    /**
+     * Gets a well known commodity.
+     *
+     * @param name  Name of the commodity.
+     * @return      Commodity, never null.
+     * @throws NoSuchCommodityException     If the commodity isn't in the database.
+     */
+    public Commodity getCommodity(CommodityName name) throws NoSuchCommodityException {
+        Commodity commodity = commodities[name.ordinal()];
+        if (commodity == null) {
+            throw new NoSuchCommodityException(name.getName());
+        }
+        return commodity;
+    }
+}
@@ -0,0 +1,443 @@
+/**
+ * ResourceIndex.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.astro.commodities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.org.glendale.worldgen.astro.sectors.Sector;
+import uk.org.glendale.worldgen.search.IndexedIds;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In memory inverted index from commodities to the planets which have them as a resource.
+ * For each commodity, the planets are held in parallel primitive arrays ordered by density
+ * (highest first), so a search for sources above a minimum density can stop as soon as
+ * it reaches one below it, without loading any planets.
+ *
+ * Each planet also records the galactic hex coordinates of its star system, so results
+ * can be restricted to those within a given number of parsecs of a location.
+ *
+ * The index is read from the database the first time it is used. After that, planets
+ * which are generated in this process are added to it once the session which created
+ * them commits, and are thrown away if it rolls back. Planets generated by another
+ * process (such as a separate worker) are picked up when the index is refreshed, which
+ * only reads the planets which haven't been indexed yet.
+ */
+public final class ResourceIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ResourceIndex.class);
+
+    // Every planet is returned, with a row for each of its resources or a single row without one.
+    private static final String ROWS_QUERY =
+            "SELECT p.id, p.system_id, r.commodity_id, r.density, sec.x, sec.y, s.x, s.y FROM planets p " +
+            "JOIN systems s ON s.id = p.system_id " +
+            "JOIN sectors sec ON sec.id = s.sector_id " +
+            "LEFT JOIN resources r ON r.planet_id = p.id";
+
+    // Maximum number of planets read at once when looking for ones which were missed.
+    private static final int BATCH_SIZE = 1000;
+
+    private static volatile ResourceIndex index = null;
+
+    // Planets created by each session, which are added to the index when it commits.
+    private static final Map<EntityManager, List<NewPlanet>> changes = new WeakHashMap<>();
+
+    private final Map<Integer, Postings> byCommodity = new ConcurrentHashMap<>();
+    private final IndexedIds             planets = new IndexedIds("planets");
+
+    /**
+     * A planet which has a resource, as returned by a search.
+     */
+    public static class Source {
+        private final int planetId;
+        private final int systemId;
+        private final int density;
+        private final int distance;
+
+        Source(int planetId, int systemId, int density, int distance) {
+            this.planetId = planetId;
+            this.systemId = systemId;
+            this.density = density;
+            this.distance = distance;
+        }
+
+        public int getPlanetId() {
+            return planetId;
+        }
+
+        public int getSystemId() {
+            return systemId;
+        }
+
+        public int getDensity() {
+            return density;
+        }
+
+        /**
+         * Gets the distance in parsecs from the search location, or -1 if the search
+         * wasn't restricted to a location.
+         */
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    /**
+     * The resources of a planet which has been created but not yet committed.
+     */
+    private static class NewPlanet {
+        final int   planetId;
+        final int   systemId;
+        final int   x;
+        final int   y;
+        final int[] commodities;
+        final int[] densities;
+
+        NewPlanet(int planetId, int systemId, int x, int y, List<Resource> resources) {
+            this.planetId = planetId;
+            this.systemId = systemId;
+            this.x = x;
+            this.y = y;
+            this.commodities = new int[resources.size()];
+            this.densities = new int[resources.size()];
+            for (int r = 0; r < resources.size(); r++) {
+                commodities[r] = resources.get(r).getCommodity().getId();
+                densities[r] = resources.get(r).getDensity();
+            }
+        }
+    }
+
+    /**
+     * All the planets which have one commodity. New planets are appended to the end, and the
+     * arrays are sorted again the next time they are searched.
+     */
+    private static class Postings {
+        private int[]   planets = new int[16];
+        private int[]   systems = new int[16];
+        private int[]   densities = new int[16];
+        private int[]   hexX = new int[16];
+        private int[]   hexY = new int[16];
+        private int     size = 0;
+        private boolean sorted = true;
+
+        synchronized void add(int planet, int system, int density, int x, int y) {
+            if (size == planets.length) {
+                int length = size * 2;
+                planets = Arrays.copyOf(planets, length);
+                systems = Arrays.copyOf(systems, length);
+                densities = Arrays.copyOf(densities, length);
+                hexX = Arrays.copyOf(hexX, length);
+                hexY = Arrays.copyOf(hexY, length);
+            }
+            planets[size] = planet;
+            systems[size] = system;
+            densities[size] = density;
+            hexX[size] = x;
+            hexY[size] = y;
+            size++;
+            sorted = false;
+        }
+
+        /**
+         * Sorts by density, highest first. Each entry is packed into a long of inverted
+         * density and position, so that a primitive sort can be used.
+         */
+        private void sort() {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) (Integer.MAX_VALUE - densities[i]) << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            int[] p = new int[planets.length], s = new int[planets.length], d = new int[planets.length];
+            int[] x = new int[planets.length], y = new int[planets.length];
+            for (int i = 0; i < size; i++) {
+                int from = (int) keys[i];
+                p[i] = planets[from];
+                s[i] = systems[from];
+                d[i] = densities[from];
+                x[i] = hexX[from];
+                y[i] = hexY[from];
+            }
+            planets = p;
+            systems = s;
+            densities = d;
+            hexX = x;
+            hexY = y;
+            sorted = true;
+        }
+
+        synchronized List<Source> find(int minimum, boolean near, int x, int y, int radius, int limit) {
+            if (!sorted) {
+                sort();
+            }
+            List<Source> sources = new ArrayList<>();
+            for (int i = 0; i < size && densities[i] >= minimum; i++) {
+                int distance = -1;
+                if (near) {
+                    distance = getDistance(x, y, hexX[i], hexY[i]);
+                    if (distance > radius) {
+                        continue;
+                    }
+                }
+                sources.add(new Source(planets[i], systems[i], densities[i], distance));
+                // Without a location, the first results are the best, so stop early.
+                if (!near && sources.size() >= limit) {
+                    break;
+                }
+            }
+            return sources;
+        }
+    }
+
+    private ResourceIndex() {
+    }
+
+    /**
+     * Gets the shared index, reading it from the database if it hasn't been loaded yet.
+     *
+     * @param session   Session to read the index with.
+     * @return          Shared resource index.
+     */
+    public static ResourceIndex getIndex(EntityManager session) {
+        ResourceIndex i = index;
+        if (i == null) {
+            synchronized (ResourceIndex.class) {
+                i = index;
+                if (i == null) {
+                    i = index = load(session);
+                }
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Gets whether the shared index has been read from the database yet.
+     */
+    public static boolean isLoaded() {
+        return index != null;
+    }
+
+    /**
+     * Reads any planets which have been committed since the shared index was loaded, such
+     * as those generated by other processes. Does nothing if the index hasn't been loaded.
+     *
+     * @param session   Session to read the new planets with.
+     */
+    public static void refresh(EntityManager session) {
+        ResourceIndex i = index;
+        if (i != null) {
+            long start = System.currentTimeMillis();
+            int  added = i.update(session);
+            if (added > 0) {
+                logger.info(String.format("Indexed resources of [%d] new planets in [%d]ms",
+                        added, System.currentTimeMillis() - start));
+            }
+        }
+    }
+
+    private static ResourceIndex load(EntityManager session) {
+        long          start = System.currentTimeMillis();
+        ResourceIndex i = new ResourceIndex();
+        int           added = i.update(session);
+
+        logger.info(String.format("Indexed resources of [%d] planets in [%d]ms", added, System.currentTimeMillis() - start));
+
+        return i;
+    }
+
+    /**
+     * Reads planets which haven't been indexed yet. These are normally all above the highest
+     * planet id which has been indexed, but any which were committed out of order are then
+     * read by id.
+     *
+     * @return  Number of planets added.
+     */
+    private int update(EntityManager session) {
+        Query query = session.createNativeQuery(ROWS_QUERY + " WHERE p.id > :id ORDER BY p.id");
+        query.setParameter("id", planets.getMaximum());
+        int added = addRows(query);
+
+        List<Integer> missing = planets.findMissing(session);
+        for (int from = 0; from < missing.size(); from += BATCH_SIZE) {
+            query = session.createNativeQuery(ROWS_QUERY + " WHERE p.id IN (:ids) ORDER BY p.id");
+            query.setParameter("ids", missing.subList(from, Math.min(from + BATCH_SIZE, missing.size())));
+            added += addRows(query);
+        }
+        return added;
+    }
+
+    /**
+     * Adds the rows read by a ROWS_QUERY, which must be ordered by planet. Planets which have
+     * already been indexed are skipped.
+     */
+    private int addRows(Query query) {
+        // A native query with several columns returns each row as an untyped array.
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+
+        int     added = 0;
+        int     planetId = 0;
+        boolean adding = false;
+
+        for (Object[] row : rows) {
+            if (((Number) row[0]).intValue() != planetId) {
+                planetId = ((Number) row[0]).intValue();
+                adding = planets.add(planetId);
+                if (adding) {
+                    added++;
+                }
+            }
+            if (adding && row[2] != null) {
+                add(((Number) row[2]).intValue(), planetId, ((Number) row[1]).intValue(),
+                        ((Number) row[3]).intValue(),
+                        getHexX(((Number) row[4]).intValue(), ((Number) row[6]).intValue()),
+                        getHexY(((Number) row[5]).intValue(), ((Number) row[7]).intValue()));
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Records the resources of a newly created planet, to be added to the shared index when
+     * the session commits. Does nothing if the index hasn't been loaded, since the planet
+     * will be read along with everything else when it is.
+     *
+     * @param session       Session which created the planet.
+     * @param planetId      Id of the planet.
+     * @param systemId      Id of the star system the planet is in.
+     * @param resources     Resources of the planet.
+     * @param sector        Sector the star system is in.
+     * @param x             X coordinate of the star system in the sector (1-32).
+     * @param y             Y coordinate of the star system in the sector (1-40).
+     */
+    public static void addPlanet(EntityManager session, int planetId, int systemId, List<Resource> resources,
+                                 Sector sector, int x, int y) {
+        if (index == null) {
+            return;
+        }
+        NewPlanet planet = new NewPlanet(planetId, systemId, getHexX(sector.getX(), x), getHexY(sector.getY(), y),
+                resources);
+        synchronized (changes) {
+            changes.computeIfAbsent(session, k -> new ArrayList<>()).add(planet);
+        }
+    }
+
+    /**
+     * Called when a session has committed, to add the planets it created to the index.
+     *
+     * @param session   Session which has committed.
+     */
+    public static void committed(EntityManager session) {
+        List<NewPlanet> created;
+        synchronized (changes) {
+            created = changes.remove(session);
+        }
+        ResourceIndex i = index;
+        if (created == null || i == null) {
+            return;
+        }
+        for (NewPlanet planet : created) {
+            if (i.planets.add(planet.planetId)) {
+                for (int r = 0; r < planet.commodities.length; r++) {
+                    i.add(planet.commodities[r], planet.planetId, planet.systemId, planet.densities[r],
+                            planet.x, planet.y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when a session has rolled back, so the planets it created are never indexed.
+     *
+     * @param session   Session which has rolled back.
+     */
+    public static void discarded(EntityManager session) {
+        synchronized (changes) {
+            changes.remove(session);
+        }
+    }
+
+    private void add(int commodityId, int planetId, int systemId, int density, int x, int y) {
+        byCommodity.computeIfAbsent(commodityId, k -> new Postings()).add(planetId, systemId, density, x, y);
+    }
+
+    /**
+     * Finds planets which have a commodity, ordered by density, highest first.
+     *
+     * @param commodityId   Id of the commodity to look for.
+     * @param minimum       Minimum density of the resource.
+     * @param limit         Maximum number of results to return.
+     * @return              List of sources, may be empty.
+     */
+    public List<Source> find(int commodityId, int minimum, int limit) {
+        Postings postings = byCommodity.get(commodityId);
+        if (postings == null) {
+            return Collections.emptyList();
+        }
+        return postings.find(minimum, false, 0, 0, 0, limit);
+    }
+
+    /**
+     * Finds planets which have a commodity within a number of parsecs of a location. The
+     * results are ordered by distance, nearest first, and then by density.
+     *
+     * @param commodityId   Id of the commodity to look for.
+     * @param minimum       Minimum density of the resource.
+     * @param sector        Sector of the location to search around.
+     * @param x             X coordinate of the location in the sector (1-32).
+     * @param y             Y coordinate of the location in the sector (1-40).
+     * @param radius        Maximum distance in parsecs.
+     * @param limit         Maximum number of results to return.
+     * @return              List of sources, may be empty.
+     */
+    public List<Source> find(int commodityId, int minimum, Sector sector, int x, int y, int radius, int limit) {
+        Postings postings = byCommodity.get(commodityId);
+        if (postings == null) {
+            return Collections.emptyList();
+        }
+        List<Source> sources = postings.find(minimum, true,
+                getHexX(sector.getX(), x), getHexY(sector.getY(), y), radius, limit);
+
+        // The sort is stable, so sources at the same distance stay in density order.
+        sources.sort((a, b) -> Integer.compare(a.distance, b.distance));
+        return (sources.size() > limit) ? new ArrayList<>(sources.subList(0, limit)) : sources;
+    }
+
+    static int getHexX(int sectorX, int x) {
+        return sectorX * Sector.WIDTH + x - 1;
+    }
+
+    static int getHexY(int sectorY, int y) {
+        return sectorY * Sector.HEIGHT + y - 1;
+    }
+
+    /**
+     * Gets the distance in parsecs between two hexes, given as galactic hex coordinates.
+     * Odd numbered columns (1, 3, ...) are half a hex higher than even numbered ones, as
+     * on the sector maps. The coordinates are converted to cube coordinates, for which the
+     * distance is simple.
+     */
+    static int getDistance(int x1, int y1, int x2, int y2) {
+        int z1 = y1 - (x1 - (x1 & 1)) / 2;
+        int z2 = y2 - (x2 - (x2 & 1)) / 2;
+        int dx = x1 - x2;
+        int dz = z1 - z2;
+        int dy = -dx - dz;
+
+        return Math.max(Math.abs(dx), Math.max(Math.abs(dy), Math.abs(dz)));
+    }
+}
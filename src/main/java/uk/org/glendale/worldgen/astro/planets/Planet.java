@@ -7,6 +7,7 @@
 package uk.org.glendale.worldgen.astro.planets;
 
 import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.GenericGenerator;
 import uk.org.glendale.utils.rpg.Die;
 import uk.org.glendale.worldgen.astro.commodities.Commodity;
 import uk.org.glendale.worldgen.astro.commodities.Resource;
@@ -29,7 +30,9 @@ import java.util.Set;
 @Entity
 @Table(name="planets")
 public class Planet {
-    @Id @GeneratedValue @Column
+    @Id @Column
+    @GeneratedValue(generator = "block")
+    @GenericGenerator(name = "block", strategy = "uk.org.glendale.worldgen.BlockIdGenerator")
     private int id;
 
     @Column
@@ -10,18 +10,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.org.glendale.utils.graphics.Icosahedron;
 import uk.org.glendale.utils.graphics.SimpleImage;
+import uk.org.glendale.worldgen.ContentStore;
 import uk.org.glendale.worldgen.ImageBlob;
+import uk.org.glendale.worldgen.StoredData;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.astro.Physics;
+import uk.org.glendale.worldgen.astro.commodities.ResourceIndex;
 import uk.org.glendale.worldgen.astro.planets.codes.PlanetClass;
 import uk.org.glendale.worldgen.astro.planets.codes.PlanetGroup;
 import uk.org.glendale.worldgen.astro.planets.codes.PlanetType;
+import uk.org.glendale.worldgen.astro.sectors.Sector;
 import uk.org.glendale.worldgen.astro.stars.Star;
 import uk.org.glendale.worldgen.astro.systems.StarSystem;
 import uk.org.glendale.worldgen.civ.Facility;
 import uk.org.glendale.worldgen.exceptions.UnsupportedException;
 import uk.org.glendale.worldgen.exceptions.WorldGenException;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler.Stage;
+import uk.org.glendale.worldgen.search.NameIndex;
+import uk.org.glendale.worldgen.text.Description;
+import uk.org.glendale.worldgen.text.DescriptionCache;
 import uk.org.glendale.worldgen.text.TextGenerator;
+import uk.org.glendale.worldgen.trace.Tracer;
 
 import javax.imageio.ImageIO;
 import javax.persistence.EntityManager;
@@ -49,6 +59,15 @@ public class PlanetFactory {
     private static String STAR_QUERY = "FROM Planet WHERE parentId = :starId ORDER BY distance";
     private static String FACILITY_QUERY = "FROM Facility WHERE planetId = :planetId ORDER BY id";
 
+    // Columns selected for a PlanetSummary, in the order of its constructor.
+    private static String SUMMARY_FIELDS = "SELECT new uk.org.glendale.worldgen.astro.planets.PlanetSummary(" +
+            "P.id, P.name, P.systemId, P.parentId, P.moonOf, P.distance, P.radius, P.type, P.temperature, " +
+            "P.atmosphere, P.pressure, P.hydrographics, P.life, P.port, P.population, P.techLevel) ";
+    private static String SYSTEM_SUMMARY_QUERY = SUMMARY_FIELDS +
+            "FROM Planet P WHERE P.systemId = :systemId ORDER BY P.parentId, P.distance";
+    private static String STAR_SUMMARY_QUERY = SUMMARY_FIELDS +
+            "FROM Planet P WHERE P.parentId = :starId ORDER BY P.distance";
+
     /**
      * Constructor using a session object.
      *
@@ -89,6 +108,10 @@ public class PlanetFactory {
      * @return          List of planets, may be an empty list. Ordered by parent and distance.
      */
     public List<Planet> getPlanets(StarSystem system) {
+        return Tracer.span("factory", "PlanetFactory.getPlanets", () -> readPlanets(system));
+    }
+
+    private List<Planet> readPlanets(StarSystem system) {
         ArrayList<Planet> planets;
 
         Query query = session.createQuery(SYSTEM_QUERY);
@@ -115,6 +138,39 @@ public class PlanetFactory {
         return planets;
     }
 
+    /**
+     * Gets a summary of all the planets in the given star system. This is a projection
+     * query, so doesn't load descriptions or resources, and should be preferred for list
+     * views. Ordering is the same as getPlanets(StarSystem).
+     *
+     * @param system    Star system to look in.
+     * @return          List of planet summaries, may be an empty list.
+     */
+    public List<PlanetSummary> getPlanetSummaries(StarSystem system) {
+        return Tracer.span("factory", "PlanetFactory.getPlanetSummaries", () -> readPlanetSummaries(system));
+    }
+
+    private List<PlanetSummary> readPlanetSummaries(StarSystem system) {
+        Query query = session.createQuery(SYSTEM_SUMMARY_QUERY);
+        query.setParameter("systemId", system.getId());
+
+        return (List<PlanetSummary>) query.getResultList();
+    }
+
+    /**
+     * Gets a summary of all the planets around a given star. This is a projection query,
+     * so doesn't load descriptions or resources.
+     *
+     * @param star      Star to get planets for.
+     * @return          List of planet summaries, may be an empty list. Ordered by distance.
+     */
+    public List<PlanetSummary> getPlanetSummaries(Star star) {
+        Query query = session.createQuery(STAR_SUMMARY_QUERY);
+        query.setParameter("starId", star.getId());
+
+        return (List<PlanetSummary>) query.getResultList();
+    }
+
     /**
      * Gets a count of the total number of planets.
      *
@@ -127,6 +183,40 @@ public class PlanetFactory {
         return (int) count.get(0).intValue();
     }
 
+    /**
+     * Gets the text description of a planet. If only the seed of the description has been
+     * stored, then the text is rendered from the seed, and cached.
+     *
+     * @param planet    Planet to get the description of.
+     * @return          HTML description of the planet.
+     */
+    public String getDescription(Planet planet) {
+        String      stored = planet.getDescription();
+        Description seed = Description.parse(stored);
+        if (seed == null) {
+            return stored;
+        }
+        return DescriptionCache.get("planet/" + planet.getId() + "/" + stored, () ->
+                seed.render(planet, seed.hasFacilities() ? getFacilities(planet) : new ArrayList<>()));
+    }
+
+    /**
+     * Replaces description seeds with their text, so the planets can be returned to a client.
+     * Planets which are changed are detached from the session first, so that the text isn't
+     * written back to the database.
+     *
+     * @param planets   Planets to render the descriptions of.
+     */
+    public void renderDescriptions(List<Planet> planets) {
+        for (Planet planet : planets) {
+            if (Description.isSeed(planet.getDescription())) {
+                String text = getDescription(planet);
+                session.detach(planet);
+                planet.setDescription(text);
+            }
+        }
+    }
+
     public List<Facility> getFacilities(Planet planet) {
         Query query = session.createQuery(FACILITY_QUERY);
         query.setParameter("planetId", planet.getId());
@@ -149,7 +239,7 @@ public class PlanetFactory {
      * @throws IOException
      */
     public void setPlanetMap(int planetId, String name, SimpleImage image) throws IOException {
-        ByteArrayOutputStream stream = image.save();
+        ByteArrayOutputStream stream = GenerationProfiler.time("png", () -> image.save());
 
         Query query = session.createQuery("FROM PlanetMap G WHERE planetId = :planetId AND name=:name");
         query.setParameter("planetId", planetId);
@@ -166,11 +256,81 @@ public class PlanetFactory {
         session.persist(map);
     }
 
-    public SimpleImage getPlanetMap(int planetId, String name) throws IOException {
+    /**
+     * Stores the maps for a newly created planet. Since the planet is new it can't have any
+     * existing maps, so they are persisted without checking, and will be inserted in a batch
+     * along with the planet when the session is flushed.
+     *
+     * @param planet        Planet to store maps for. Must already have been persisted.
+     * @param maps          Maps to store, keyed by name.
+     * @throws IOException
+     */
+    private void addPlanetMaps(Planet planet, Map<String,SimpleImage> maps) throws IOException {
+        for (String mapType : maps.keySet()) {
+            byte[] data = GenerationProfiler.time("png", () -> maps.get(mapType).save().toByteArray());
+            session.persist(new PlanetMap(planet.getId(), mapType, data));
+        }
+    }
+
+    /**
+     * Gets the hash of a stored planet map, without loading the map itself.
+     *
+     * @param planetId  Id of the planet.
+     * @param name      Name of the map.
+     * @return          Hash of the map, or null if there is no such map or it has no hash yet.
+     */
+    public String getPlanetMapHash(int planetId, String name) {
+        Query query = session.createQuery("SELECT G.hash FROM PlanetMap G WHERE planetId = :planetId AND name=:name");
+        query.setParameter("planetId", planetId);
+        query.setParameter("name", name);
+
+        List<String> hashes = (List<String>) query.getResultList();
+        return hashes.isEmpty() ? null : hashes.get(0);
+    }
+
+    /**
+     * Gets a stored planet map, as it is held in the database. If the map was stored before
+     * hashes were added, its hash is filled in, and saved when the session commits.
+     *
+     * @param planetId  Id of the planet.
+     * @param name      Name of the map.
+     * @return          Stored map.
+     * @throws NoResultException    If the planet doesn't have the map.
+     */
+    public PlanetMap getStoredPlanetMap(int planetId, String name) {
         Query query = session.createQuery("FROM PlanetMap G WHERE planetId = :planetId AND name=:name");
         query.setParameter("planetId", planetId);
         query.setParameter("name", name);
         PlanetMap map = (PlanetMap) query.getSingleResult();
+        map.fillHash();
+
+        return map;
+    }
+
+    /**
+     * Writes a stored planet map, exactly as it is stored, without decoding it. The map is
+     * in PNG format. If the map is in the content store, it is copied from its file,
+     * otherwise it is read from the database.
+     *
+     * @param planetId  Id of the planet.
+     * @param name      Name of the map.
+     * @param output    Where to write the map to.
+     * @return          True if the map was written, false if the planet doesn't have the map.
+     * @throws IOException  If the map could not be written.
+     */
+    public boolean writePlanetMap(int planetId, String name, StoredData.Output output) throws IOException {
+        ContentStore store = ContentStore.getStore();
+        String       hash = getPlanetMapHash(planetId, name);
+
+        if (store != null && hash != null && store.write(hash, output)) {
+            return true;
+        }
+        return StoredData.copy(session, "SELECT data, LENGTH(data) FROM planet_maps WHERE planet_id = ? AND name = ?",
+                output, planetId, name);
+    }
+
+    public SimpleImage getPlanetMap(int planetId, String name) throws IOException {
+        PlanetMap map = getStoredPlanetMap(planetId, name);
 
         try {
             ByteArrayInputStream bais = new ByteArrayInputStream(map.getData());
@@ -239,6 +399,11 @@ public class PlanetFactory {
      * @return          List containing the planet and any moons.
      */
     public List<Planet> createPlanet(StarSystem system, Star star, String name, PlanetType type, long distance, Planet previous) throws UnsupportedException {
+        return GenerationProfiler.time("planet/" + type.name(),
+                () -> generatePlanet(system, star, name, type, distance, previous));
+    }
+
+    private List<Planet> generatePlanet(StarSystem system, Star star, String name, PlanetType type, long distance, Planet previous) throws UnsupportedException {
         Class genClass = getGeneratorClass(name, type);
         PlanetGenerator generator;
         List<Planet>    planets = new ArrayList<Planet>();
@@ -255,18 +420,13 @@ public class PlanetFactory {
             } catch (UnsupportedException e) {
                 planet = generator.getPlanet(name, type);
             }
-            generator.generateDescription(planet);
+            describe(generator, planet);
 
             session.persist(planet);
-            session.flush();
             planets.add(planet);
 
             if (type.getGroup() != PlanetGroup.Belt) {
-                Map<String,SimpleImage> maps = generator.getPlanetMaps(planet);
-
-                for (String mapType : maps.keySet()) {
-                    setPlanetMap(planet.getId(), mapType, maps.get(mapType));
-                }
+                drawPlanetMaps(generator, planet, type);
             }
             List<Planet> moons = generator.getMoons(planet, this);
             if (moons.size() > 0) {
@@ -276,6 +436,10 @@ public class PlanetFactory {
                 }
                 planets.addAll(moons);
             }
+            indexResources(system, planets);
+            for (Planet p : planets) {
+                NameIndex.addName(session, p.getName(), NameIndex.Type.Planet, p.getId(), system.getId());
+            }
 
             return planets;
         } catch (NoSuchMethodException e) {
@@ -293,8 +457,49 @@ public class PlanetFactory {
         return null;
     }
 
+    /**
+     * Writes the description of a newly created planet.
+     */
+    private void describe(PlanetGenerator generator, Planet planet) {
+        GenerationProfiler.time("text", () -> generator.generateDescription(planet));
+    }
+
+    /**
+     * Draws and stores the maps of a newly created planet.
+     */
+    private void drawPlanetMaps(PlanetGenerator generator, Planet planet, PlanetType type)
+            throws UnsupportedException, IOException {
+        Stage stage = GenerationProfiler.start("map/" + type.name());
+        try {
+            addPlanetMaps(planet, generator.getPlanetMaps(planet));
+        } finally {
+            stage.close();
+        }
+    }
+
+    /**
+     * Records the resources of newly created planets, so that they are added to the shared
+     * resource index once this session commits.
+     */
+    private void indexResources(StarSystem system, List<Planet> planets) {
+        if (!ResourceIndex.isLoaded()) {
+            return;
+        }
+        Sector sector = session.find(Sector.class, system.getSectorId());
+        for (Planet planet : planets) {
+            ResourceIndex.addPlanet(session, planet.getId(), system.getId(), planet.getResources(),
+                    sector, system.getX(), system.getY());
+        }
+    }
+
     public Planet createMoon(StarSystem system, Star star, String name, PlanetType type,
                              long distance, Planet parent, PlanetFeature... features) {
+        return GenerationProfiler.time("planet/" + type.name(),
+                () -> generateMoon(system, star, name, type, distance, parent, features));
+    }
+
+    private Planet generateMoon(StarSystem system, Star star, String name, PlanetType type,
+                                long distance, Planet parent, PlanetFeature... features) {
         Class genClass = getGeneratorClass(name, type);
         PlanetGenerator generator;
 
@@ -316,17 +521,12 @@ public class PlanetFactory {
                 moon = generator.getPlanet(name, type);
             }
             moon.setMoonOf(parent.getId());
-            generator.generateDescription(moon);
+            describe(generator, moon);
 
             session.persist(moon);
-            session.flush();
 
             if (type.getGroup() != PlanetGroup.Belt) {
-                Map<String,SimpleImage> maps = generator.getPlanetMaps(moon);
-
-                for (String mapType : maps.keySet()) {
-                    setPlanetMap(moon.getId(), mapType, maps.get(mapType));
-                }
+                drawPlanetMaps(generator, moon, type);
             }
 
             return moon;
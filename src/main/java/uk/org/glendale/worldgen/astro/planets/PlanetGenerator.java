@@ -11,6 +11,8 @@ import org.slf4j.LoggerFactory;
 import uk.org.glendale.utils.graphics.Icosahedron;
 import uk.org.glendale.utils.graphics.SimpleImage;
 import uk.org.glendale.utils.rpg.Die;
+import uk.org.glendale.worldgen.Config;
+import uk.org.glendale.worldgen.GenerationContext;
 import uk.org.glendale.worldgen.Main;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.astro.Physics;
@@ -27,6 +29,7 @@ import uk.org.glendale.worldgen.astro.systems.StarSystemGenerator;
 import uk.org.glendale.worldgen.civ.CivilisationFeature;
 import uk.org.glendale.worldgen.exceptions.UnsupportedException;
 import uk.org.glendale.worldgen.exceptions.WorldGenException;
+import uk.org.glendale.worldgen.text.Description;
 import uk.org.glendale.worldgen.text.TextGenerator;
 import uk.org.glendale.worldgen.web.Server;
 
@@ -49,6 +52,7 @@ public abstract class PlanetGenerator {
     protected long  parentDistance;
     protected final CommodityFactory commodityFactory;
     protected final WorldGen worldGen;
+    protected final GenerationContext context;
 
     private List<PlanetFeature> features = new ArrayList<PlanetFeature>();
 
@@ -59,7 +63,8 @@ public abstract class PlanetGenerator {
         this.distance = distance;
         this.previousPlanet = previous;
 
-        this.commodityFactory = worldGen.getCommodityFactory();
+        this.context = worldGen.getGenerationContext();
+        this.commodityFactory = context.getCommodityFactory();
     }
 
     /**
@@ -94,7 +99,17 @@ public abstract class PlanetGenerator {
         return features;
     }
 
+    /**
+     * Sets the description of the planet. If lazy descriptions are configured, then only
+     * the seed of the description is stored, and it is rendered when it is read.
+     *
+     * @param planet    Planet to describe.
+     */
     protected void generateDescription(Planet planet) {
+        if (Config.getConfiguration().getLazyDescriptions()) {
+            planet.setDescription(Description.forPlanet(planet, context.getRandom().nextLong()).toString());
+            return;
+        }
         TextGenerator text = new TextGenerator(planet);
         planet.setDescription("<p>" + text.getFullDescription() + "</p>");
     }
@@ -256,7 +271,7 @@ public abstract class PlanetGenerator {
      */
     private final void addResource(Planet planet, CommodityName name, int density) {
         try {
-            Commodity commodity = commodityFactory.getCommodity(name.getName());
+            Commodity commodity = context.getCommodity(name);
             planet.addResource(commodity, density);
         } catch (NoSuchCommodityException e) {
             // This shouldn't happen, since use of the enum should be well defined.
@@ -6,6 +6,10 @@
  */
 package uk.org.glendale.worldgen.astro.planets;
 
+import org.hibernate.annotations.GenericGenerator;
+import uk.org.glendale.worldgen.ContentHash;
+import uk.org.glendale.worldgen.ContentStore;
+
 import javax.persistence.*;
 
 /**
@@ -16,7 +20,8 @@ import javax.persistence.*;
 @Table(name="planet_maps")
 public class PlanetMap {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "block")
+    @GenericGenerator(name = "block", strategy = "uk.org.glendale.worldgen.BlockIdGenerator")
     private int id;
 
     @Column (name = "planet_id")
@@ -28,6 +33,9 @@ public class PlanetMap {
     @Column
     private byte[] data;
 
+    @Column
+    private String hash;
+
     // The name for the main map for this planet.
     public final static String MAIN = "main";
     // Hieght map for this planet.
@@ -49,7 +57,7 @@ public class PlanetMap {
     public PlanetMap(int planetId, String name, byte[] data) {
         this.planetId = planetId;
         this.name = name;
-        this.data = data;
+        setData(data);
     }
 
     public int getId() {
@@ -76,12 +84,46 @@ public class PlanetMap {
         return name;
     }
 
+    /**
+     * Sets the map data. If a content store is configured, the data is written to it,
+     * and only the hash is kept in the database.
+     */
     public void setData(final byte[] data) {
-        this.data = data;
+        this.hash = ContentHash.of(data);
+        this.data = ContentStore.keep(hash, data);
     }
 
     public byte[] getData() {
+        if (data == null && hash != null) {
+            return ContentStore.fetch(hash);
+        }
         return data;
     }
 
+    /**
+     * Checks whether the data is held in the database, rather than in the content store.
+     */
+    public boolean isInDatabase() {
+        return data != null;
+    }
+
+    /**
+     * Gets the hash of the map data. Maps stored before hashes were added won't have one
+     * until it is filled in by fillHash().
+     *
+     * @return  Hash of the map data, or null if it hasn't been set.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Sets the hash from the data, if it isn't already set.
+     */
+    public void fillHash() {
+        if (hash == null) {
+            hash = ContentHash.of(data);
+        }
+    }
+
 }
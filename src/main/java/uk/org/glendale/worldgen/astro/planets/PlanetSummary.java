@@ -0,0 +1,132 @@
+/**
+ * PlanetSummary.java
+ *
+ * Copyright (C) 2017 Samuel Penn, sam@glendale.org.uk
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.astro.planets;
+
+import uk.org.glendale.worldgen.astro.planets.codes.Atmosphere;
+import uk.org.glendale.worldgen.astro.planets.codes.Life;
+import uk.org.glendale.worldgen.astro.planets.codes.PlanetType;
+import uk.org.glendale.worldgen.astro.planets.codes.StarPort;
+
+/**
+ * Lightweight read-only view of a Planet, used for list views where the full entity is not
+ * needed. It doesn't include the description or resources, so can be read with a single
+ * projection query without loading the resource collection for each planet.
+ *
+ * Field names match those of Planet, so the JSON produced is a subset of the full planet.
+ */
+public class PlanetSummary {
+    private final int        id;
+    private final String     name;
+    private final int        systemId;
+    private final int        parentId;
+    private final int        moonOf;
+    private final long       distance;
+    private final int        radius;
+    private final PlanetType type;
+    private final int        temperature;
+    private final Atmosphere atmosphere;
+    private final int        pressure;
+    private final int        hydrographics;
+    private final Life       life;
+    private final StarPort   port;
+    private final long       population;
+    private final int        techLevel;
+
+    /**
+     * Constructor used by the persistence layer for 'SELECT new' projection queries.
+     * The order of the parameters must match that of PlanetFactory.SUMMARY_FIELDS.
+     */
+    public PlanetSummary(int id, String name, int systemId, int parentId, int moonOf, long distance,
+                         int radius, PlanetType type, int temperature, Atmosphere atmosphere,
+                         int pressure, int hydrographics, Life life, StarPort port, long population,
+                         int techLevel) {
+        this.id = id;
+        this.name = name;
+        this.systemId = systemId;
+        this.parentId = parentId;
+        this.moonOf = moonOf;
+        this.distance = distance;
+        this.radius = radius;
+        this.type = type;
+        this.temperature = temperature;
+        this.atmosphere = atmosphere;
+        this.pressure = pressure;
+        this.hydrographics = hydrographics;
+        this.life = life;
+        this.port = port;
+        this.population = population;
+        this.techLevel = techLevel;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSystemId() {
+        return systemId;
+    }
+
+    public int getParentId() {
+        return parentId;
+    }
+
+    public int getMoonOf() {
+        return moonOf;
+    }
+
+    public boolean isMoon() {
+        return moonOf > 0;
+    }
+
+    public long getDistance() {
+        return distance;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public PlanetType getType() {
+        return type;
+    }
+
+    public int getTemperature() {
+        return temperature;
+    }
+
+    public Atmosphere getAtmosphere() {
+        return atmosphere;
+    }
+
+    public int getPressure() {
+        return pressure;
+    }
+
+    public int getHydrographics() {
+        return hydrographics;
+    }
+
+    public Life getLife() {
+        return life;
+    }
+
+    public StarPort getStarPort() {
+        return port;
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    public int getTechLevel() {
+        return techLevel;
+    }
+}
@@ -115,4 +115,20 @@ public enum Pressure {
         }
 
         return false;
-    }}
+    }
+
+    /**
+     * Given a pressure in Pascals, return the nearest matching enum for that pressure.
+     *
+     * @param pascals   Pressure in Pascals.
+     * @return          Pressure enum.
+     */
+    public static Pressure getPressure(int pascals) {
+        Pressure p = None;
+        while (p != SuperDense && pascals > (p.getPascals() + p.getDenser().getPascals()) / 2) {
+            p = p.getDenser();
+        }
+
+        return p;
+    }
+}
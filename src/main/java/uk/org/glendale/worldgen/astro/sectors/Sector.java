@@ -7,6 +7,8 @@
 
 package uk.org.glendale.worldgen.astro.sectors;
 
+import org.hibernate.annotations.GenericGenerator;
+
 import javax.persistence.*;
 
 /**
@@ -24,7 +26,8 @@ import javax.persistence.*;
 @Table(name = "sectors")
 public class Sector {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "block")
+    @GenericGenerator(name = "block", strategy = "uk.org.glendale.worldgen.BlockIdGenerator")
     @Column(name = "id")
     private int id;
 
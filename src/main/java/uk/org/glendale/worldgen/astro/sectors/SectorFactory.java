@@ -7,6 +7,8 @@
 package uk.org.glendale.worldgen.astro.sectors;
 
 import org.hibernate.exception.ConstraintViolationException;
+import uk.org.glendale.worldgen.search.NameIndex;
+import uk.org.glendale.worldgen.trace.Tracer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
@@ -26,6 +28,17 @@ public class SectorFactory {
     private static String NAME_QUERY = "FROM Sector WHERE name = :name";
     private static String COORD_QUERY = "FROM Sector WHERE x = :x AND y = :y";
 
+    // Progress of sector generation, so that an interrupted run can be resumed.
+    private static final String CHECKPOINT_QUERY =
+            "SELECT hex FROM generation_checkpoints WHERE sector_id = :sector AND area = :area";
+    private static final String CHECKPOINT_UPDATE =
+            "INSERT INTO generation_checkpoints (sector_id, area, hex, systems, updated_date) " +
+            "VALUES (:sector, :area, :hex, :systems, NOW()) ON DUPLICATE KEY UPDATE " +
+            "hex = VALUES(hex), systems = systems + VALUES(systems), updated_date = VALUES(updated_date)";
+    private static final String CHECKPOINT_DELETE =
+            "DELETE FROM generation_checkpoints WHERE sector_id = :sector AND area = :area";
+    private static final String ALL_AREA = "ALL";
+
     /**
      * Constructor using a session object.
      *
@@ -149,6 +162,10 @@ public class SectorFactory {
     }
 
     public Sector getSectorByIdentifier(String identifier) throws NoSuchSectorException {
+        return Tracer.span("factory", "SectorFactory.getSectorByIdentifier", () -> findSectorByIdentifier(identifier));
+    }
+
+    private Sector findSectorByIdentifier(String identifier) throws NoSuchSectorException {
         if (SectorFactory.isId(identifier)) {
             return getSector(Integer.parseInt(identifier));
         } else if (SectorFactory.isCoord(identifier)) {
@@ -173,6 +190,7 @@ public class SectorFactory {
         Sector sector = new Sector(name, x, y);
 
         persist(sector);
+        NameIndex.addName(session, name, NameIndex.Type.Sector, sector.getId(), 0);
 
         return sector;
     }
@@ -216,6 +234,10 @@ public class SectorFactory {
      * @return      True iff sector exists, otherwise false.
      */
     public boolean hasSector(int x, int y) {
+        return Tracer.span("factory", "SectorFactory.hasSector", () -> isSector(x, y));
+    }
+
+    private boolean isSector(int x, int y) {
         try {
             getSector(x, y);
             return true;
@@ -278,4 +300,60 @@ public class SectorFactory {
         }
     }
 
+    private static String getArea(SubSector subSector) {
+        return (subSector == null) ? ALL_AREA : subSector.name();
+    }
+
+    /**
+     * Gets how far an earlier, unfinished, generation of a sector got. Hexes are numbered
+     * from 1 in the order they are generated, and the returned value is the last hex
+     * which was completely generated and committed.
+     *
+     * @param sector        Sector being generated.
+     * @param subSector     Sub sector being generated, or null for the whole sector.
+     * @return              Last completed hex, 0 if generation has been started but no hexes
+     *                      have been completed, or -1 if there is no unfinished generation.
+     */
+    public int getGenerationCheckpoint(Sector sector, SubSector subSector) {
+        Query query = session.createNativeQuery(CHECKPOINT_QUERY);
+        query.setParameter("sector", sector.getId());
+        query.setParameter("area", getArea(subSector));
+
+        List<?> results = query.getResultList();
+        if (results.isEmpty()) {
+            return -1;
+        }
+        return ((Number) results.get(0)).intValue();
+    }
+
+    /**
+     * Records the progress of generating a sector. This is written as part of the current
+     * transaction, so it is committed along with the star systems that it describes.
+     *
+     * @param sector        Sector being generated.
+     * @param subSector     Sub sector being generated, or null for the whole sector.
+     * @param hex           Last hex which has been completely generated.
+     * @param systems       Number of systems created since the last checkpoint.
+     */
+    public void setGenerationCheckpoint(Sector sector, SubSector subSector, int hex, int systems) {
+        Query query = session.createNativeQuery(CHECKPOINT_UPDATE);
+        query.setParameter("sector", sector.getId());
+        query.setParameter("area", getArea(subSector));
+        query.setParameter("hex", hex);
+        query.setParameter("systems", systems);
+        query.executeUpdate();
+    }
+
+    /**
+     * Removes the progress record for a sector, once generation of it has finished.
+     *
+     * @param sector        Sector which has been generated.
+     * @param subSector     Sub sector which has been generated, or null for the whole sector.
+     */
+    public void clearGenerationCheckpoint(Sector sector, SubSector subSector) {
+        Query query = session.createNativeQuery(CHECKPOINT_DELETE);
+        query.setParameter("sector", sector.getId());
+        query.setParameter("area", getArea(subSector));
+        query.executeUpdate();
+    }
 }
@@ -13,8 +13,12 @@ import uk.org.glendale.utils.rpg.Die;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.astro.systems.*;
 import uk.org.glendale.worldgen.exceptions.DuplicateObjectException;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler.Profile;
+import uk.org.glendale.worldgen.text.NameGenerator;
 
 import javax.persistence.EntityManager;
+import java.util.Set;
 
 
 /**
@@ -23,6 +27,23 @@ import javax.persistence.EntityManager;
 public class SectorGenerator {
     private static final Logger logger = LoggerFactory.getLogger(SectorGenerator.class);
     private final WorldGen  worldgen;
+    private CommitListener  commitListener = null;
+
+    /**
+     * Listener which is told when generated star systems are about to be committed.
+     * It is called within the transaction, so anything it writes is committed along with
+     * the star systems. If it throws an exception then generation stops, and the caller
+     * should roll back the transaction.
+     */
+    public interface CommitListener {
+        /**
+         * @param sector        Sector being generated.
+         * @param subSector     Sub sector being generated, or null for the whole sector.
+         * @param hex           Last hex which has been generated.
+         * @param finished      True if this is the final commit, and generation is complete.
+         */
+        void beforeCommit(Sector sector, SubSector subSector, int hex, boolean finished);
+    }
 
     /**
      * Constructor for a new Generator.
@@ -33,6 +54,15 @@ public class SectorGenerator {
         this.worldgen = worldgen;
     }
 
+    /**
+     * Sets a listener to be called before each chunk of generated systems is committed.
+     *
+     * @param listener  Listener to call, or null for none.
+     */
+    public void setCommitListener(CommitListener listener) {
+        this.commitListener = listener;
+    }
+
     public void createEmptySector(String name, int x, int y) throws DuplicateSectorException {
         Sector sector = new Sector(name, x, y);
 
@@ -100,14 +130,48 @@ public class SectorGenerator {
      *
      * If a sub-sector is provided, then systems are only created in that sub sector.
      *
+     * Work is committed every few star systems (see Config.getGenerationCommitInterval()),
+     * along with a checkpoint of how far through the sector generation has got. If generation
+     * is interrupted, calling this again for the same sector and sub sector continues on
+     * from the last checkpoint. The session is cleared on each commit, so the sector passed
+     * in will be detached once this returns.
+     *
+     * If generation is being profiled, a summary of where the time went is logged once
+     * the sector has been finished.
+     *
      * @param sector    Sector to create systems in.
      * @param subSector Optional sub sector to limit creation to.
+     * @return          Profile of where the time went, which is empty if generation isn't
+     *                  being profiled.
      */
-    public void createSectorByDensity(Sector sector, SubSector subSector) {
+    public Profile createSectorByDensity(Sector sector, SubSector subSector) {
+        Profile profile = new Profile();
+        createSectorByDensity(sector, subSector, profile);
+        return profile;
+    }
+
+    /**
+     * Generates star systems as above, recording where the time goes into the given
+     * profile, so that it can be looked at from another thread while generation runs.
+     *
+     * @param sector    Sector to create systems in.
+     * @param subSector Optional sub sector to limit creation to.
+     * @param profile   Profile to record this run into.
+     */
+    public void createSectorByDensity(Sector sector, SubSector subSector, Profile profile) {
+        profile.record(() -> GenerationProfiler.time("sector", () -> populate(sector, subSector)));
+        if (GenerationProfiler.isEnabled()) {
+            logger.info(String.format("Generation profile for sector [%d]:\n%s", sector.getId(), profile.getSummary()));
+        }
+    }
+
+    private void populate(Sector sector, SubSector subSector) {
+        SectorFactory     sectorFactory = worldgen.getSectorFactory();
         StarSystemFactory systemFactory = worldgen.getStarSystemFactory();
+        int               interval = worldgen.getConfig().getGenerationCommitInterval();
 
-        int minX = 1, maxX = 40;
-        int minY = 1, maxY = 32;
+        int minX = 1, maxX = Sector.WIDTH;
+        int minY = 1, maxY = Sector.HEIGHT;
 
         if (subSector != null) {
             minX = subSector.getMinX();
@@ -120,36 +184,68 @@ public class SectorGenerator {
         int totalHexes = (1 + maxX - minX) * (1 + maxY - minY);
         int checkedHexes = 0;
         int count = 0;
+        int uncommitted = 0;
+        int reported = -1;
+
+        // Names in use are checked in memory. The database's unique key on sector and
+        // name still catches any clash with systems added by someone else meanwhile.
+        NameGenerator names = worldgen.getStarSystemNameGenerator();
+        Set<String>   usedNames = systemFactory.getStarSystemNames(sector);
+        String        name = null;
+
+        int resumeFrom = Math.max(0, sectorFactory.getGenerationCheckpoint(sector, subSector));
+        if (resumeFrom > 0) {
+            logger.info(String.format("Resuming generation of sector [%d] after hex [%d/%d]",
+                    sector.getId(), resumeFrom, totalHexes));
+        }
         for (int y=minY; y <= maxY; y++) {
             for (int x=minX; x <= maxX; x++) {
                 checkedHexes += 1;
-                System.out.println("createSectorByDensity: " + (int)((100 * checkedHexes) / (totalHexes)) + "%");
+                if (checkedHexes <= resumeFrom) {
+                    // Already generated by an earlier run.
+                    continue;
+                }
+                // Progress is shown every 10%, rather than for every hex.
+                int percent = (100 * checkedHexes) / totalHexes;
+                if (percent / 10 != reported) {
+                    reported = percent / 10;
+                    System.out.println("createSectorByDensity: " + percent + "%");
+                }
                 int density = getDensity(sector, x, y);
                 if (Die.d100() <= density) {
                     // Create a new star system.
                     try {
                         if (!systemFactory.hasStarSystem(sector, x, y)) {
-                            while (true) {
-                                String name = worldgen.getStarSystemNameGenerator().generateName();
-
-                                try {
-                                    // See if a system with this name already exists in the system.
-                                    systemFactory.getStarSystem(sector, name);
-                                } catch (NoSuchStarSystemException e) {
-                                    // We have a unique system name.
-                                    StarSystemSelector selector = new StarSystemSelector(worldgen);
-                                    selector.createRandomSystem(sector, name, x, y);
-                                    break;
-                                }
-                            }
+                            do {
+                                // Trimmed here, as it will be when stored, so it matches the used names.
+                                name = names.generateName().trim();
+                            } while (usedNames.contains(name));
+                            // Added first, so the name isn't tried again even if creation fails.
+                            usedNames.add(name);
+
+                            StarSystemSelector selector = new StarSystemSelector(worldgen);
+                            selector.createRandomSystem(sector, name, x, y);
                         }
                     } catch (DuplicateObjectException e) {
-                        logger.warn("Duplicate star system creation");
+                        logger.warn(String.format("Duplicate star system creation [%s]", name));
                     }
                     count++;
+                    if (++uncommitted >= interval) {
+                        sectorFactory.setGenerationCheckpoint(sector, subSector, checkedHexes, uncommitted);
+                        if (commitListener != null) {
+                            commitListener.beforeCommit(sector, subSector, checkedHexes, false);
+                        }
+                        worldgen.commit();
+                        uncommitted = 0;
+                    }
                 }
             }
         }
+        sectorFactory.clearGenerationCheckpoint(sector, subSector);
+        if (commitListener != null) {
+            commitListener.beforeCommit(sector, subSector, checkedHexes, true);
+        }
+        worldgen.commit();
         logger.info(String.format("Created [%d] systems.", count));
     }
 }
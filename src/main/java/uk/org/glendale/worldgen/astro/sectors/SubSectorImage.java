@@ -19,6 +19,7 @@ import uk.org.glendale.worldgen.astro.systems.NoSuchStarSystemException;
 import uk.org.glendale.worldgen.astro.systems.StarSystem;
 import uk.org.glendale.worldgen.astro.systems.Zone;
 import uk.org.glendale.worldgen.exceptions.NoSuchObjectException;
+import uk.org.glendale.worldgen.trace.Tracer;
 import uk.org.glendale.worldgen.web.Server;
 
 import java.awt.Font;
@@ -431,6 +432,10 @@ public class SubSectorImage {
     }
 
     public SimpleImage getImage() throws NoSuchObjectException {
+        return Tracer.span("render", "SubSectorImage.draw", this::drawImage);
+    }
+
+    private SimpleImage drawImage() throws NoSuchObjectException {
         drawBaseMap();
         return image;
     }
@@ -6,6 +6,7 @@
  */
 package uk.org.glendale.worldgen.astro.stars;
 
+import org.hibernate.annotations.GenericGenerator;
 import uk.org.glendale.utils.rpg.Die;
 import uk.org.glendale.worldgen.astro.planets.codes.Temperature;
 import uk.org.glendale.worldgen.astro.Physics;
@@ -35,7 +36,8 @@ import static uk.org.glendale.worldgen.astro.Physics.AU;
 public class Star {
     // Unique identifier used as primary key.
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "block")
+    @GenericGenerator(name = "block", strategy = "uk.org.glendale.worldgen.BlockIdGenerator")
     @Column(name = "id")
     private int id;
 
@@ -10,9 +10,11 @@ package uk.org.glendale.worldgen.astro.stars;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.org.glendale.utils.rpg.Die;
+import uk.org.glendale.worldgen.GenerationContext;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.astro.sectors.SectorGenerator;
 import uk.org.glendale.worldgen.astro.systems.StarSystem;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
 
 /**
  * Generates stars for a star system. Created stars are automatically persisted upon creation.
@@ -39,10 +41,7 @@ public class StarGenerator {
      * @param system
      */
     public StarGenerator(WorldGen worldgen, StarSystem system) {
-        this.worldgen = worldgen;
-        this.system = system;
-        this.multipleStars = false;
-        this.factory = worldgen.getStarFactory();
+        this(worldgen.getGenerationContext(), system, false);
     }
 
     /**
@@ -53,10 +52,21 @@ public class StarGenerator {
      * @param multipleStars
      */
     public StarGenerator(WorldGen worldgen, StarSystem system, boolean multipleStars) {
-        this.worldgen = worldgen;
+        this(worldgen.getGenerationContext(), system, multipleStars);
+    }
+
+    /**
+     * Star Generator which uses the factories of an existing generation context.
+     *
+     * @param context       Context of the star system being generated.
+     * @param system        Star system to generate stars for.
+     * @param multipleStars True if the system might have multiple stars.
+     */
+    public StarGenerator(GenerationContext context, StarSystem system, boolean multipleStars) {
+        this.worldgen = context.getWorldGen();
         this.system = system;
         this.multipleStars = multipleStars;
-        this.factory = worldgen.getStarFactory();
+        this.factory = context.getStarFactory();
     }
 
     private Star generateStar(String name, Luminosity luminosity, SpectralType type) {
@@ -82,7 +92,7 @@ public class StarGenerator {
      */
     public Star generatePrimary(Luminosity luminosity, SpectralType type) throws DuplicateStarException {
         primary = generateStar(system.getName() + ((multipleStars) ? FIRST_SUFFIX : ""), luminosity, type);
-        factory.persist(primary);
+        persist(primary);
 
         return primary;
     }
@@ -90,14 +100,14 @@ public class StarGenerator {
     public Star generatePrimary(Star star) throws DuplicateStarException {
         star.setName(system.getName() + ((multipleStars) ? FIRST_SUFFIX : ""));
         this.primary = star;
-        factory.persist(primary);
+        persist(primary);
 
         return primary;
     }
 
     public Star generateSecondary(Luminosity luminosity, SpectralType type) throws DuplicateStarException {
         secondary = generateStar(system.getName() + ((multipleStars) ? SECOND_SUFFIX : ""), luminosity, type);
-        factory.persist(secondary);
+        persist(secondary);
 
         return secondary;
     }
@@ -105,7 +115,7 @@ public class StarGenerator {
     public Star generateSecondary(Star star) throws DuplicateStarException {
         star.setName(system.getName() + SECOND_SUFFIX);
         this.secondary = secondary;
-        factory.persist(primary);
+        persist(primary);
 
         return secondary;
     }
@@ -273,7 +283,7 @@ public class StarGenerator {
                 break;
         }
         StarGenerator.calculateBrownDwarf(primary);
-        factory.persist(primary);
+        persist(primary);
 
         return primary;
     }
@@ -305,8 +315,12 @@ public class StarGenerator {
         star.setMass((star.getRadius() / 95500.0)  * 0.08);
     }
 
+    /**
+     * Persists a newly generated star. Every generated star goes through here, so this is
+     * where time spent on stars is recorded in the generation profile.
+     */
     public void persist(Star star) throws DuplicateStarException {
-        factory.persist(star);
+        GenerationProfiler.time("stars", () -> factory.persist(star));
     }
 
     /**
@@ -340,7 +354,7 @@ public class StarGenerator {
         primary.setSpectralType(SpectralType.valueOf("M" + Die.rollZero(10)));
         primary.setStandardMass();
 
-        factory.persist(primary);
+        persist(primary);
 
         return primary;
     }
@@ -374,7 +388,7 @@ public class StarGenerator {
         }
         primary.setStandardMass();
 
-        factory.persist(primary);
+        persist(primary);
 
         return primary;
     }
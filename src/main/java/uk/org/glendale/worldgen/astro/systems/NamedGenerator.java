@@ -12,6 +12,7 @@ import uk.org.glendale.worldgen.astro.sectors.Sector;
 import uk.org.glendale.worldgen.astro.systems.generators.Barren;
 import uk.org.glendale.worldgen.exceptions.DuplicateObjectException;
 import uk.org.glendale.worldgen.exceptions.UnsupportedException;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
 import uk.org.glendale.worldgen.web.Server;
 
 import java.lang.reflect.Constructor;
@@ -45,7 +46,7 @@ class NamedGenerator extends StarSystemGenerator {
 
         String generatorName = "uk.org.glendale.worldgen.astro.systems.generators." + generator;
 
-        StarSystemGenerator g = null;
+        StarSystemGenerator g;
         Class c = null;
         try {
             c = Class.forName(generatorName);
@@ -61,7 +62,7 @@ class NamedGenerator extends StarSystemGenerator {
         try {
             Method method = c.getMethod(methodName, StarSystem.class);
             method.invoke(g, system);
-            g.colonise(system);
+            GenerationProfiler.time("civilisation", () -> g.colonise(system));
         } catch (NoSuchMethodException e) {
             logger.error(String.format("Unable to find method type [%s.%s]", generator, methodName));
             throw new UnsupportedException(String.format("Star system generator [%s] does not have method [%s]",
@@ -1,5 +1,6 @@
 package uk.org.glendale.worldgen.astro.systems;
 
+import org.hibernate.annotations.GenericGenerator;
 import uk.org.glendale.worldgen.astro.planets.Planet;
 import uk.org.glendale.worldgen.astro.planets.PlanetFactory;
 import uk.org.glendale.worldgen.astro.planets.codes.StarPort;
@@ -17,7 +18,9 @@ import java.util.*;
 @Entity
 @Table(name = "systems")
 public class StarSystem {
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "block")
+    @GenericGenerator(name = "block", strategy = "uk.org.glendale.worldgen.BlockIdGenerator")
     @Column(name = "id")
     private int id;
 
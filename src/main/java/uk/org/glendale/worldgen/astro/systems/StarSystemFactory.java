@@ -7,15 +7,26 @@
 package uk.org.glendale.worldgen.astro.systems;
 
 import org.hibernate.exception.ConstraintViolationException;
+import uk.org.glendale.worldgen.RenderCache;
 import uk.org.glendale.worldgen.astro.sectors.DuplicateSectorException;
 import uk.org.glendale.worldgen.astro.sectors.Sector;
+import uk.org.glendale.worldgen.astro.stars.Luminosity;
+import uk.org.glendale.worldgen.astro.stars.SpectralType;
 import uk.org.glendale.worldgen.astro.stars.Star;
+import uk.org.glendale.worldgen.search.NameIndex;
+import uk.org.glendale.worldgen.text.Description;
+import uk.org.glendale.worldgen.text.DescriptionCache;
+import uk.org.glendale.worldgen.trace.Tracer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
 import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class StarSystemFactory {
     private final EntityManager session;
@@ -23,6 +34,15 @@ public class StarSystemFactory {
     private static String BY_SECTOR_QUERY = "FROM StarSystem WHERE sectorId = :sector  ORDER BY x, y";
     private static String BY_XY_QUERY = "FROM StarSystem WHERE sectorId = :sector AND x = :x AND y = :y";
     private static String BY_NAME_QUERY = "FROM StarSystem WHERE sectorId = :sector AND name = :name";
+    private static String NAMES_BY_SECTOR_QUERY = "SELECT S.name FROM StarSystem S WHERE S.sectorId = :sector";
+
+    private static String SUMMARY_BY_SECTOR_QUERY =
+            "SELECT new uk.org.glendale.worldgen.astro.systems.StarSystemSummary(" +
+            "S.id, S.sectorId, S.name, S.x, S.y, S.type, S.zone, S.planetCount, S.port, S.tech, S.population) " +
+            "FROM StarSystem S WHERE S.sectorId = :sector ORDER BY S.x, S.y";
+    private static String STARS_BY_SECTOR_QUERY =
+            "SELECT S.system.id, S.id, S.name, S.type, S.luminosity FROM Star S " +
+            "WHERE S.system.sectorId = :sector ORDER BY S.id";
 
 
     public StarSystemFactory(EntityManager session) {
@@ -32,6 +52,7 @@ public class StarSystemFactory {
     public StarSystem createStarSystem(Sector sector, String name, int x, int y, StarSystemType type) throws DuplicateStarSystemException {
         StarSystem system = new StarSystem(sector, name, x, y, type, Zone.GREEN);
         persist(system);
+        NameIndex.addName(session, name, NameIndex.Type.StarSystem, system.getId(), system.getId());
 
         return system;
     }
@@ -44,6 +65,41 @@ public class StarSystemFactory {
         return (List<StarSystem>) query.getResultList();
     }
 
+    /**
+     * Gets a summary of each of the star systems in a sector, suitable for listing them.
+     * This uses two queries regardless of the number of systems, one for the systems and
+     * one for all of their stars, rather than eagerly loading the stars of each system.
+     *
+     * @param sector    Sector to get systems for.
+     * @return          List of system summaries, ordered by x then y. May be empty.
+     */
+    public List<StarSystemSummary> getStarSystemSummaries(Sector sector) {
+        return Tracer.span("factory", "StarSystemFactory.getStarSystemSummaries", () -> readStarSystemSummaries(sector));
+    }
+
+    private List<StarSystemSummary> readStarSystemSummaries(Sector sector) {
+        Query query = session.createQuery(SUMMARY_BY_SECTOR_QUERY);
+        query.setParameter("sector", sector.getId());
+        List<StarSystemSummary> systems = (List<StarSystemSummary>) query.getResultList();
+
+        Map<Integer, StarSystemSummary> byId = new HashMap<>();
+        for (StarSystemSummary system : systems) {
+            byId.put(system.getId(), system);
+        }
+
+        query = session.createQuery(STARS_BY_SECTOR_QUERY);
+        query.setParameter("sector", sector.getId());
+        for (Object[] row : (List<Object[]>) query.getResultList()) {
+            StarSystemSummary system = byId.get((Integer) row[0]);
+            if (system != null) {
+                system.addStar(new StarSystemSummary.StarSummary((Integer) row[1], (String) row[2],
+                        (SpectralType) row[3], (Luminosity) row[4]));
+            }
+        }
+
+        return systems;
+    }
+
     /**
      * Gets a count of the total number of star systems.
      *
@@ -60,6 +116,8 @@ public class StarSystemFactory {
         try {
             session.persist(system);
             session.flush();
+            RenderCache.changed(session, RenderCache.getSystemKey(system.getId()));
+            RenderCache.changed(session, RenderCache.getSectorKey(system.getSectorId()));
         } catch (ConstraintViolationException e) {
             throw new DuplicateStarSystemException(system);
         }
@@ -74,6 +132,10 @@ public class StarSystemFactory {
      * @throws NoSuchStarSystemException    Thrown if the system does not exist.
      */
     public StarSystem getStarSystem(int id) throws NoSuchStarSystemException {
+        return Tracer.span("factory", "StarSystemFactory.getStarSystem", () -> findStarSystem(id));
+    }
+
+    private StarSystem findStarSystem(int id) throws NoSuchStarSystemException {
         StarSystem system = session.find(StarSystem.class, id);
 
         if (system == null) {
@@ -104,6 +166,21 @@ public class StarSystemFactory {
         }
     }
 
+    /**
+     * Gets the names of all the star systems in a sector. This is much cheaper than checking
+     * names one at a time when many new systems need unique names. The returned set can be
+     * modified, so it can be kept up to date as new systems are added.
+     *
+     * @param sector    Sector to look in.
+     * @return          Set of system names, which may be empty.
+     */
+    public Set<String> getStarSystemNames(Sector sector) {
+        Query query = session.createQuery(NAMES_BY_SECTOR_QUERY);
+        query.setParameter("sector", sector.getId());
+
+        return new HashSet<String>((List<String>) query.getResultList());
+    }
+
     /**
      * Gets the named star system in a sector. Each system in a given sector will have
      * a unique name. System names aren't guaranteed to be unique across all sectors.
@@ -125,6 +202,22 @@ public class StarSystemFactory {
         }
     }
 
+    /**
+     * Gets the text description of a star system. If only the seed of the description has
+     * been stored, then the text is rendered from the seed, and cached.
+     *
+     * @param system    Star system to get the description of.
+     * @return          HTML description of the star system.
+     */
+    public String getDescription(StarSystem system) {
+        String      stored = system.getDescription();
+        Description seed = Description.parse(stored);
+        if (seed == null) {
+            return stored;
+        }
+        return DescriptionCache.get("system/" + system.getId() + "/" + stored, () -> seed.render(system));
+    }
+
     /**
      * Is there an existing star system at the given coordinates?
      *
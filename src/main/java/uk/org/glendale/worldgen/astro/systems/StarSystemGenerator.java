@@ -9,6 +9,8 @@ package uk.org.glendale.worldgen.astro.systems;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.org.glendale.utils.rpg.Die;
+import uk.org.glendale.worldgen.Config;
+import uk.org.glendale.worldgen.GenerationContext;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.astro.planets.Planet;
 import uk.org.glendale.worldgen.astro.planets.PlanetFactory;
@@ -17,6 +19,8 @@ import uk.org.glendale.worldgen.astro.sectors.Sector;
 import uk.org.glendale.worldgen.astro.stars.*;
 import uk.org.glendale.worldgen.exceptions.DuplicateObjectException;
 import uk.org.glendale.worldgen.exceptions.UnsupportedException;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
+import uk.org.glendale.worldgen.text.Description;
 import uk.org.glendale.worldgen.text.TextGenerator;
 
 import java.util.List;
@@ -30,13 +34,22 @@ public abstract class StarSystemGenerator {
     private static final Logger logger = LoggerFactory.getLogger(StarSystemGenerator.class);
 
     protected final WorldGen worldgen;
+    protected final GenerationContext context;
     protected final StarSystemFactory factory;
     protected final StarFactory starFactory;
 
     public StarSystemGenerator(WorldGen worldgen) {
-        this.worldgen = worldgen;
-        this.factory = worldgen.getStarSystemFactory();
-        this.starFactory = worldgen.getStarFactory();
+        this(worldgen.getGenerationContext());
+    }
+
+    public StarSystemGenerator(GenerationContext context) {
+        this.worldgen = context.getWorldGen();
+        this.context = context;
+        this.factory = context.getStarSystemFactory();
+        this.starFactory = context.getStarFactory();
+
+        // A new generator is used for each star system, so forget about the last one.
+        context.setSystemType(getClass().getSimpleName(), null);
     }
 
     /**
@@ -55,7 +68,7 @@ public abstract class StarSystemGenerator {
     public abstract void colonise(StarSystem system);
 
     protected void updateStarSystem(StarSystem system) {
-        List<Planet> planets = worldgen.getPlanetFactory().getPlanets(system);
+        List<Planet> planets = context.getPlanetFactory().getPlanets(system);
         system.setSystemData(planets);
         try {
             factory.persist(system);
@@ -96,27 +109,43 @@ public abstract class StarSystemGenerator {
     }
 
     /**
-     * Sets a description of this star system. Must be called from a createX() method of a StarSystemGenerator.
-     * This is because it dynamically figures out what property file to use by examining the call stack.
+     * Sets the type of star system being generated. Each createXxx() method should call this
+     * with its own name (without the 'create'), since it decides which phrases are used to
+     * describe the system.
+     *
+     * @param type      Type of star system, such as 'SmallDwarf'.
+     */
+    protected void setSystemType(String type) {
+        context.setSystemType(getClass().getSimpleName(), type);
+    }
+
+    /**
+     * Sets a description of this star system. The phrases used are those for the type of
+     * system set by setSystemType().
      *
      * @param system    Star system to describe.
-     * @param key       Root key to use to describe this system.
+     * @param key       Root key to use to describe this system, or null to use the system type.
      */
     protected void setDescription(StarSystem system, String key) {
-        String generatorName = this.getClass().getSimpleName();
+        GenerationProfiler.time("text", () -> describe(system, key));
+    }
 
-        StackTraceElement[] stack = Thread.currentThread().getStackTrace();
-        String methodName = stack[2].getMethodName();
+    private void describe(StarSystem system, String key) {
+        String resource = context.getSystemResource();
 
-        if (methodName != null && methodName.startsWith("create")) {
-            methodName = methodName.replaceAll("create", "");
-        } else {
+        if (resource == null) {
             system.setDescription("<p>Mostly harmless.</p>");
             return;
         }
-        String resource = generatorName + "." + methodName;
+        if (key == null) {
+            key = context.getSystemType();
+        }
 
+        if (Config.getConfiguration().getLazyDescriptions()) {
+            system.setDescription(Description.forSystem(resource, key, context.getRandom().nextLong()).toString());
+            return;
+        }
         TextGenerator text = new TextGenerator(system, resource);
-        system.setDescription("<p>" + text.getSystemDescription((key!=null)?key:methodName) + "</p>");
+        system.setDescription("<p>" + text.getSystemDescription(key) + "</p>");
     }
 }
@@ -20,6 +20,7 @@ import uk.org.glendale.worldgen.astro.sectors.Sector;
 import uk.org.glendale.worldgen.astro.sectors.SubSector;
 import uk.org.glendale.worldgen.astro.sectors.SubSectorImage;
 import uk.org.glendale.worldgen.astro.stars.Star;
+import uk.org.glendale.worldgen.trace.Tracer;
 
 import java.awt.*;
 import java.text.DecimalFormat;
@@ -230,6 +231,10 @@ public class StarSystemImage {
     }
 
     public SimpleImage draw() {
+        return Tracer.span("render", "StarSystemImage.draw", this::drawSystem);
+    }
+
+    private SimpleImage drawSystem() {
         image = new SimpleImage(width, width, "#ffffff");
 
         if (scale == -1) {
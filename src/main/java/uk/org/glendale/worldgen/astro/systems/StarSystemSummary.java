@@ -0,0 +1,142 @@
+/**
+ * StarSystemSummary.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.astro.systems;
+
+import uk.org.glendale.worldgen.astro.planets.codes.StarPort;
+import uk.org.glendale.worldgen.astro.stars.Luminosity;
+import uk.org.glendale.worldgen.astro.stars.SpectralType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lightweight read-only view of a StarSystem, used when listing many systems (such as all
+ * the systems in a sector). Unlike StarSystem, the stars are not an eagerly fetched entity
+ * collection, but are filled in by a single query for the whole list.
+ */
+public class StarSystemSummary {
+    private final int            id;
+    private final int            sectorId;
+    private final String         name;
+    private final int            x;
+    private final int            y;
+    private final StarSystemType type;
+    private final Zone           zone;
+    private final int            planetCount;
+    private final StarPort       port;
+    private final int            tech;
+    private final long           population;
+    private final List<StarSummary> stars = new ArrayList<>();
+
+    /**
+     * The type and class of a star in a summarised system. This is enough to display
+     * the star in a list, without needing to load the full Star.
+     */
+    public static class StarSummary {
+        private final int          id;
+        private final String       name;
+        private final SpectralType type;
+        private final Luminosity   luminosity;
+
+        public StarSummary(int id, String name, SpectralType type, Luminosity luminosity) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.luminosity = luminosity;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public SpectralType getSpectralType() {
+            return type;
+        }
+
+        public Luminosity getLuminosity() {
+            return luminosity;
+        }
+    }
+
+    /**
+     * Constructor used by the persistence layer for 'SELECT new' projection queries.
+     */
+    public StarSystemSummary(int id, int sectorId, String name, int x, int y, StarSystemType type,
+                             Zone zone, int planetCount, StarPort port, int tech, long population) {
+        this.id = id;
+        this.sectorId = sectorId;
+        this.name = name;
+        this.x = x;
+        this.y = y;
+        this.type = type;
+        this.zone = zone;
+        this.planetCount = planetCount;
+        this.port = port;
+        this.tech = tech;
+        this.population = population;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getSectorId() {
+        return sectorId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public StarSystemType getType() {
+        return type;
+    }
+
+    public Zone getZone() {
+        return zone;
+    }
+
+    public int getPlanetCount() {
+        return planetCount;
+    }
+
+    public StarPort getStarPort() {
+        return port;
+    }
+
+    public int getTechLevel() {
+        return tech;
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    public List<StarSummary> getStars() {
+        return stars;
+    }
+
+    void addStar(StarSummary star) {
+        stars.add(star);
+    }
+
+    public String toString() {
+        return String.format("%s [%02d%02d]", name, x, y);
+    }
+}
@@ -19,6 +19,7 @@ import uk.org.glendale.worldgen.astro.systems.*;
 import uk.org.glendale.worldgen.civ.CivilisationGenerator;
 import uk.org.glendale.worldgen.civ.civilisation.FreeSettlers;
 import uk.org.glendale.worldgen.exceptions.DuplicateObjectException;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
 import uk.org.glendale.worldgen.text.TextGenerator;
 
 import java.util.ArrayList;
@@ -71,7 +72,7 @@ public class Barren extends StarSystemGenerator {
         }
         updateStarSystem(system);
 
-        colonise(system);
+        GenerationProfiler.time("civilisation", () -> colonise(system));
 
         return system;
     }
@@ -94,8 +95,9 @@ public class Barren extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createAsteroidBelt(StarSystem system) throws DuplicateObjectException {
+        setSystemType("AsteroidBelt");
         logger.info(String.format("Generating [Barren] [AsteroidBelt] system [%s]", system.getName()));
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, false);
+        StarGenerator starGenerator = new StarGenerator(context, system, false);
         // On average a cool main-sequence star will be generated.
         Star primary = starGenerator.generatePrimary(Luminosity.V,
                 SpectralType.K7.getSpectralType(Die.dieV(8)));
@@ -139,17 +141,17 @@ public class Barren extends StarSystemGenerator {
     }
 
     private List<Planet> addVulcanianBelt(StarSystem system, String name, long distance) {
-        return worldgen.getPlanetFactory().createPlanet(system, system.getStars().get(0),
+        return context.getPlanetFactory().createPlanet(system, system.getStars().get(0),
                 name, PlanetType.VulcanianBelt, distance);
     }
 
     private List<Planet> addAsteroidBelt(StarSystem system, String name, long distance) {
-        return worldgen.getPlanetFactory().createPlanet(system, system.getStars().get(0),
+        return context.getPlanetFactory().createPlanet(system, system.getStars().get(0),
                 name, PlanetType.AsteroidBelt, distance);
     }
 
     private List<Planet> addIceBelt(StarSystem system, String name, long distance) {
-        return worldgen.getPlanetFactory().createPlanet(system, system.getStars().get(0),
+        return context.getPlanetFactory().createPlanet(system, system.getStars().get(0),
                 name, PlanetType.IceBelt, distance);
     }
 
@@ -162,9 +164,10 @@ public class Barren extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createSmallDwarf(StarSystem system) throws DuplicateStarException {
+        setSystemType("SmallDwarf");
         system.setType(StarSystemType.SINGLE);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, false);
-        PlanetFactory factory = worldgen.getPlanetFactory();
+        StarGenerator starGenerator = new StarGenerator(context, system, false);
+        PlanetFactory factory = context.getPlanetFactory();
 
         Star primary = starGenerator.generatePrimary(Luminosity.V,
                 SpectralType.K6.getSpectralType(Die.dieV(6)));
@@ -224,8 +227,9 @@ public class Barren extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createProtoStar(StarSystem system) throws DuplicateStarException {
+        setSystemType("ProtoStar");
         system.setType(StarSystemType.SINGLE);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, false);
+        StarGenerator starGenerator = new StarGenerator(context, system, false);
         Star primary;
         String type;
 
@@ -247,7 +251,7 @@ public class Barren extends StarSystemGenerator {
                 break;
         }
 
-        PlanetFactory factory = worldgen.getPlanetFactory();
+        PlanetFactory factory = context.getPlanetFactory();
         String name = StarSystemFactory.getBeltName(primary, 1);
         long   distance = primary.getMinimumDistance() * 10;
         system.addPlanets(factory.createPlanet(system, primary, name, PlanetType.DustDisc, distance));
@@ -260,13 +264,14 @@ public class Barren extends StarSystemGenerator {
      * some cold minor worlds.
      */
     public void createBrownDwarf(StarSystem system) throws DuplicateStarException {
+        setSystemType("BrownDwarf");
         system.setType(StarSystemType.SINGLE);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, false);
+        StarGenerator starGenerator = new StarGenerator(context, system, false);
         List<Planet> planets = new ArrayList<Planet>();
         Star primary = starGenerator.generateBrownDwarfPrimary();
 
         if (Die.d3() == 1) {
-            PlanetFactory planetFactory = worldgen.getPlanetFactory();
+            PlanetFactory planetFactory = context.getPlanetFactory();
             String planetName;
             int distance = 5 + Die.d6(2);
             int orbit = 1;
@@ -288,8 +293,9 @@ public class Barren extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createSmallDwarfPair(StarSystem system) throws DuplicateStarException {
+        setSystemType("SmallDwarfPair");
         system.setType(StarSystemType.CLOSE_BINARY);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, true);
+        StarGenerator starGenerator = new StarGenerator(context, system, true);
 
         int distance = 5 + Die.d6(2);
         Star primary = starGenerator.generatePrimary(Luminosity.VI, SpectralType.G5);
@@ -323,8 +329,9 @@ public class Barren extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createRedGiant(StarSystem system) throws DuplicateStarException {
+        setSystemType("RedGiant");
         system.setType(StarSystemType.SINGLE);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, false);
+        StarGenerator starGenerator = new StarGenerator(context, system, false);
 
         Star primary = starGenerator.generateRedGiantPrimary();
         addBarrenWorlds(system, primary);
@@ -338,7 +345,7 @@ public class Barren extends StarSystemGenerator {
      * @param star      Star worlds are orbiting around.
      */
     private void addProtoWorlds(StarSystem system, Star star) {
-        PlanetFactory planetFactory = worldgen.getPlanetFactory();
+        PlanetFactory planetFactory = context.getPlanetFactory();
         String      planetName;
         int         orbit = 1;
         long        distance = star.getMinimumDistance();
@@ -405,7 +412,7 @@ public class Barren extends StarSystemGenerator {
      * @param star      Parent star of these planets.
      */
     private void addBarrenWorlds(StarSystem system, Star star) {
-        PlanetFactory planetFactory = worldgen.getPlanetFactory();
+        PlanetFactory planetFactory = context.getPlanetFactory();
         String          planetName;
         int             orbit = 1;
         long            distance = star.getMinimumDistance() + Die.d10(2);
@@ -464,7 +471,7 @@ public class Barren extends StarSystemGenerator {
      * @param secondary
      */
     private void addBarrenWorlds(StarSystem system, Star primary, Star secondary) {
-        PlanetFactory planetFactory = worldgen.getPlanetFactory();
+        PlanetFactory planetFactory = context.getPlanetFactory();
         String          planetName;
         int             orbit = 1;
         long            distance = primary.getMinimumDistance() + secondary.getMinimumDistance();
@@ -47,6 +47,7 @@ public class BlueGiant extends StarSystemGenerator {
      * @return          Updated star system object.
      */
     private StarSystem createSuperGiant(StarSystem system) throws DuplicateObjectException {
+        setSystemType("SuperGiant");
         system.setType(StarSystemType.SINGLE);
 
         Star primary = new Star();
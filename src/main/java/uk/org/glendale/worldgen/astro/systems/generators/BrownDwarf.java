@@ -76,8 +76,9 @@ public class BrownDwarf extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createLoneDwarf(StarSystem system) throws DuplicateStarException {
+        setSystemType("LoneDwarf");
         system.setType(StarSystemType.SINGLE);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, false);
+        StarGenerator starGenerator = new StarGenerator(context, system, false);
         starGenerator.generateBrownDwarfPrimary();
 
         setDescription(system, null);
@@ -91,10 +92,11 @@ public class BrownDwarf extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createDwarfWithRing(StarSystem system) throws DuplicateStarException {
-        PlanetFactory planetFactory = worldgen.getPlanetFactory();
+        setSystemType("DwarfWithRing");
+        PlanetFactory planetFactory = context.getPlanetFactory();
 
         system.setType(StarSystemType.SINGLE);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, false);
+        StarGenerator starGenerator = new StarGenerator(context, system, false);
         Star dwarf = starGenerator.generateBrownDwarfPrimary();
 
         String planetName = StarSystemFactory.getBeltName(dwarf, 1);
@@ -111,10 +113,11 @@ public class BrownDwarf extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createDwarfWithAsteroid(StarSystem system) throws DuplicateStarException {
-        PlanetFactory planetFactory = worldgen.getPlanetFactory();
+        setSystemType("DwarfWithAsteroid");
+        PlanetFactory planetFactory = context.getPlanetFactory();
 
         system.setType(StarSystemType.SINGLE);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, false);
+        StarGenerator starGenerator = new StarGenerator(context, system, false);
         Star dwarf = starGenerator.generateBrownDwarfPrimary();
 
         String      planetName = StarSystemFactory.getPlanetName(dwarf, 1);
@@ -145,11 +148,12 @@ public class BrownDwarf extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createConjoinedTwins(StarSystem system) throws DuplicateStarException {
-        PlanetFactory planetFactory = worldgen.getPlanetFactory();
+        setSystemType("ConjoinedTwins");
+        PlanetFactory planetFactory = context.getPlanetFactory();
 
         system.setType(StarSystemType.CONJOINED_BINARY);
         system.setZone(Zone.AMBER);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, true);
+        StarGenerator starGenerator = new StarGenerator(context, system, true);
         Star primary = starGenerator.generateBrownDwarfPrimary();
         Star secondary = new Star(primary);
 
@@ -191,10 +195,11 @@ public class BrownDwarf extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createClosePair(StarSystem system) throws DuplicateStarException {
-        PlanetFactory planetFactory = worldgen.getPlanetFactory();
+        setSystemType("ClosePair");
+        PlanetFactory planetFactory = context.getPlanetFactory();
 
         system.setType(StarSystemType.CLOSE_BINARY);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, true);
+        StarGenerator starGenerator = new StarGenerator(context, system, true);
         Star primary = starGenerator.generateBrownDwarfPrimary();
         Star secondary = new Star(primary);
 
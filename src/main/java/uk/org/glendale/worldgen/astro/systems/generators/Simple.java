@@ -55,8 +55,9 @@ public class Simple extends StarSystemGenerator {
 
     @SuppressWarnings("WeakerAccess")
     public void createSol(StarSystem system) throws DuplicateStarException {
+        setSystemType("Sol");
         system.setType(StarSystemType.SINGLE);
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, false);
+        StarGenerator starGenerator = new StarGenerator(context, system, false);
         List<Planet> planets;
 
         // Generate a Sol-like star.
@@ -75,7 +76,7 @@ public class Simple extends StarSystemGenerator {
                 break;
         }
 
-        PlanetFactory planetFactory = worldgen.getPlanetFactory();
+        PlanetFactory planetFactory = context.getPlanetFactory();
         String  planetName;
         int     orbit = 1;
 
@@ -129,10 +130,11 @@ public class Simple extends StarSystemGenerator {
      */
     @SuppressWarnings("WeakerAccess")
     public void createSingleStar(StarSystem system) throws DuplicateObjectException {
+        setSystemType("SingleStar");
         system.setType(StarSystemType.SINGLE);
 
-        PlanetFactory planetFactory = worldgen.getPlanetFactory();
-        StarGenerator starGenerator = new StarGenerator(worldgen, system, false);
+        PlanetFactory planetFactory = context.getPlanetFactory();
+        StarGenerator starGenerator = new StarGenerator(context, system, false);
         List<Planet> planets;
 
         // Generate a Sol-like star.
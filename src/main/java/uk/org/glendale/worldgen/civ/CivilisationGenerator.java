@@ -5,10 +5,12 @@
 
 package uk.org.glendale.worldgen.civ;
 
+import uk.org.glendale.worldgen.GenerationContext;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.astro.planets.Planet;
 import uk.org.glendale.worldgen.astro.systems.StarSystem;
-import uk.org.glendale.worldgen.text.TextGenerator;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
+import uk.org.glendale.worldgen.text.Description;
 
 import java.util.HashSet;
 import java.util.List;
@@ -21,11 +23,13 @@ import java.util.Set;
  */
 public abstract class CivilisationGenerator {
     protected WorldGen worldGen;
+    protected GenerationContext context;
     protected StarSystem system;
     protected Set<CivilisationFeature> features;
 
     public CivilisationGenerator(WorldGen worldGen, StarSystem system) {
         this.worldGen = worldGen;
+        this.context = worldGen.getGenerationContext();
         this.system = system;
 
         this.features = new HashSet<CivilisationFeature>();
@@ -60,19 +64,19 @@ public abstract class CivilisationGenerator {
      * @param facilities    List of facilities to describe.
      */
     protected void generateDescription(Planet planet, List<Facility> facilities) {
-        String text = planet.getDescription();
-        for (Facility f : facilities) {
-            TextGenerator t = new TextGenerator(planet, f);
-            String          description = t.getFacilityDescription();
-            if (description.length() > 0) {
-                String type = f.getType().getTitle();
-                if (type.length() > 0) {
-                    type = " (" + type + ")";
-                }
-                text += "<h5>" + f.getTitle() + type + "</h5>";
-                text += "<p>" + description + "</p>";
+        GenerationProfiler.time("text", () -> describe(planet, facilities));
+    }
+
+    private void describe(Planet planet, List<Facility> facilities) {
+        String      text = planet.getDescription();
+        Description seed = Description.parse(text);
+        if (seed != null) {
+            // Only the seed is stored, so just record that facilities are to be described.
+            if (facilities.size() > 0) {
+                planet.setDescription(seed.withFacilities().toString());
             }
+            return;
         }
-        planet.setDescription(text);
+        planet.setDescription(text + Description.describeFacilities(planet, facilities, null));
     }
 }
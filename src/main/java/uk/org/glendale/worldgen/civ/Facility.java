@@ -5,13 +5,16 @@
 
 package uk.org.glendale.worldgen.civ;
 
+import org.hibernate.annotations.GenericGenerator;
+
 import javax.persistence.*;
 
 @Entity
 @Table(name = "facilities")
 public class Facility {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "block")
+    @GenericGenerator(name = "block", strategy = "uk.org.glendale.worldgen.BlockIdGenerator")
     @Column(name = "id")
     private int id;
 
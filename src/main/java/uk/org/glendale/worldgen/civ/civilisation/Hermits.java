@@ -111,11 +111,11 @@ public class Hermits extends CivilisationGenerator {
         }
 
         logger.debug("Setting residential");
-        worldGen.getPlanetFactory().setFacility(residential);
+        context.getPlanetFactory().setFacility(residential);
         facilities.add(residential);
 
         Facility port = new RamshackleDocks(planet).getFacility();
-        worldGen.getPlanetFactory().setFacility(port);
+        context.getPlanetFactory().setFacility(port);
         facilities.add(port);
     }
 
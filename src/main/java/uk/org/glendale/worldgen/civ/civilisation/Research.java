@@ -77,15 +77,15 @@ public class Research extends CivilisationGenerator {
         }
 
         logger.debug("Setting residential");
-        worldGen.getPlanetFactory().setFacility(residential);
+        context.getPlanetFactory().setFacility(residential);
         facilities.add(residential);
 
         Facility port = new SmallDocks(planet).getFacility();
-        worldGen.getPlanetFactory().setFacility(port);
+        context.getPlanetFactory().setFacility(port);
         facilities.add(port);
 
         Facility research = new ResearchStation(planet).getFacility();
-        worldGen.getPlanetFactory().setFacility(research);
+        context.getPlanetFactory().setFacility(research);
         facilities.add(research);
     }
 }
@@ -0,0 +1,98 @@
+/**
+ * BinaryDumpReader.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a dump written by BinaryDumpWriter. The file header must already have been read
+ * and checked before the reader is created.
+ */
+public class BinaryDumpReader implements DumpReader {
+    private final DataInputStream   in;
+    private String                  table;
+    private List<String>            columns;
+
+    public BinaryDumpReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    public DumpRecord read() throws IOException {
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            byte type = in.readByte();
+
+            if (type == BinaryDumpWriter.TABLE) {
+                table = in.readUTF();
+                int count = in.readUnsignedShort();
+                columns = new ArrayList<>(count);
+                for (int c = 0; c < count; c++) {
+                    columns.add(in.readUTF());
+                }
+            } else if (type == BinaryDumpWriter.ROW) {
+                if (table == null) {
+                    throw new IOException("Row found before any table header");
+                }
+                int count = in.readUnsignedShort();
+                Object[] values = new Object[count];
+                for (int v = 0; v < count; v++) {
+                    values[v] = readValue();
+                }
+                return new DumpRecord(table, columns, values);
+            } else {
+                // Unknown record type, which the length prefix allows us to skip over.
+                in.readFully(new byte[length - 1]);
+            }
+        }
+    }
+
+    private Object readValue() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case BinaryDumpWriter.NULL:
+                return null;
+            case BinaryDumpWriter.INT:
+                return in.readInt();
+            case BinaryDumpWriter.LONG:
+                return in.readLong();
+            case BinaryDumpWriter.DOUBLE:
+                return in.readDouble();
+            case BinaryDumpWriter.BOOLEAN:
+                return in.readBoolean();
+            case BinaryDumpWriter.DATE:
+                return new Timestamp(in.readLong());
+            case BinaryDumpWriter.STRING:
+                return new String(readBytes(), StandardCharsets.UTF_8);
+            case BinaryDumpWriter.BYTES:
+                return readBytes();
+            default:
+                throw new IOException(String.format("Unknown value tag [%d]", tag));
+        }
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return data;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+}
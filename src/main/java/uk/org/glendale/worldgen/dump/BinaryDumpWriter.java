@@ -0,0 +1,125 @@
+/**
+ * BinaryDumpWriter.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes a dump in a compact binary format. The file starts with the four bytes 'WGD1',
+ * followed by a sequence of records. Each record is a big-endian int giving the length
+ * of the record, followed by that many bytes. The first byte of a record is its type:
+ *
+ *   'T' - Table header. UTF table name, short column count, then UTF column names.
+ *   'R' - Row for the most recent table. Short value count, then a tagged value for each.
+ *
+ * Each value is a tag byte followed by the value data. Column names are only written once
+ * per table section, so rows contain nothing but their values.
+ */
+public class BinaryDumpWriter implements DumpWriter {
+    static final byte[] MAGIC = { 'W', 'G', 'D', '1' };
+
+    static final byte TABLE = 'T';
+    static final byte ROW = 'R';
+
+    static final byte NULL = 0;
+    static final byte INT = 1;
+    static final byte LONG = 2;
+    static final byte DOUBLE = 3;
+    static final byte STRING = 4;
+    static final byte BYTES = 5;
+    static final byte BOOLEAN = 6;
+    static final byte DATE = 7;
+
+    private final DataOutputStream      out;
+    // Records are assembled here first so that their length is known. Reused between records.
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream      record = new DataOutputStream(buffer);
+
+    public BinaryDumpWriter(OutputStream out, boolean header) {
+        this.out = new DataOutputStream(out);
+        if (header) {
+            try {
+                this.out.write(MAGIC);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to write dump header", e);
+            }
+        }
+    }
+
+    public void beginTable(String table, List<String> columns) throws IOException {
+        buffer.reset();
+        record.writeByte(TABLE);
+        record.writeUTF(table);
+        record.writeShort(columns.size());
+        for (String column : columns) {
+            record.writeUTF(column);
+        }
+        writeRecord();
+    }
+
+    public void writeRow(Object[] values) throws IOException {
+        buffer.reset();
+        record.writeByte(ROW);
+        record.writeShort(values.length);
+        for (Object value : values) {
+            writeValue(value);
+        }
+        writeRecord();
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            record.writeByte(NULL);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            record.writeByte(INT);
+            record.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long || value instanceof java.math.BigInteger) {
+            record.writeByte(LONG);
+            record.writeLong(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            record.writeByte(DOUBLE);
+            record.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            record.writeByte(BOOLEAN);
+            record.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            byte[] data = (byte[]) value;
+            record.writeByte(BYTES);
+            record.writeInt(data.length);
+            record.write(data);
+        } else if (value instanceof Date) {
+            record.writeByte(DATE);
+            record.writeLong(((Date) value).getTime());
+        } else {
+            // writeUTF() is limited to 64KB, which descriptions could exceed.
+            byte[] data = value.toString().getBytes(StandardCharsets.UTF_8);
+            record.writeByte(STRING);
+            record.writeInt(data.length);
+            record.write(data);
+        }
+    }
+
+    private void writeRecord() throws IOException {
+        record.flush();
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * DumpFormat.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Supported file formats for universe dumps.
+ */
+public enum DumpFormat {
+    // One JSON object per line, easy to process with other tools.
+    JSON,
+    // Compact length prefixed binary records.
+    BINARY;
+
+    /**
+     * Gets the format from a name given on the command line. Case is ignored, and
+     * 'jsonl' is accepted as an alias for JSON.
+     *
+     * @param name  Name of the format.
+     * @return      Matching format.
+     */
+    public static DumpFormat fromName(String name) {
+        if (name.equalsIgnoreCase("jsonl")) {
+            return JSON;
+        }
+        return DumpFormat.valueOf(name.toUpperCase());
+    }
+
+    /**
+     * Creates a writer for this format.
+     *
+     * @param out       Stream to write to.
+     * @param fragment  If true, no file header is written. Used for parts of a dump that
+     *                  will be appended to a stream which already has a header.
+     * @return          New writer.
+     */
+    public DumpWriter createWriter(OutputStream out, boolean fragment) {
+        switch (this) {
+            case BINARY:
+                return new BinaryDumpWriter(out, !fragment);
+            default:
+                return new JsonDumpWriter(out);
+        }
+    }
+
+    /**
+     * Opens a dump for reading. The format is detected from the start of the stream,
+     * since binary dumps always start with a fixed header.
+     *
+     * @param in    Stream to read from.
+     * @return      Reader for the detected format.
+     */
+    public static DumpReader openReader(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 65536);
+        byte[]              header = new byte[BinaryDumpWriter.MAGIC.length];
+
+        buffered.mark(header.length);
+        int read = buffered.read(header);
+        if (read == header.length && Arrays.equals(header, BinaryDumpWriter.MAGIC)) {
+            return new BinaryDumpReader(buffered);
+        }
+        buffered.reset();
+        return new JsonDumpReader(buffered);
+    }
+}
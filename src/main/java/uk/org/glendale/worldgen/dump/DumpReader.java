@@ -0,0 +1,22 @@
+/**
+ * DumpReader.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads rows back from a universe dump, one at a time, in the order they were written.
+ */
+public interface DumpReader extends Closeable {
+    /**
+     * Reads the next row from the dump.
+     *
+     * @return  Next row, or null if the end of the dump has been reached.
+     */
+    DumpRecord read() throws IOException;
+}
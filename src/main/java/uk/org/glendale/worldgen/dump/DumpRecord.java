@@ -0,0 +1,57 @@
+/**
+ * DumpRecord.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import java.util.List;
+
+/**
+ * A single row read back from a universe dump.
+ */
+public class DumpRecord {
+    private final String        table;
+    private final List<String>  columns;
+    private final Object[]      values;
+
+    public DumpRecord(String table, List<String> columns, Object[] values) {
+        if (columns.size() != values.length) {
+            throw new IllegalArgumentException(String.format("Row for [%s] has %d columns but %d values",
+                    table, columns.size(), values.length));
+        }
+        this.table = table;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Gets the names of the columns. Rows from the same table section share the same list,
+     * so it must not be modified.
+     *
+     * @return  Column names, in the same order as the values.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public Object[] getValues() {
+        return values;
+    }
+
+    /**
+     * Gets the value of the named column.
+     *
+     * @param column    Name of the column.
+     * @return          Value, which may be null. Also null if there is no such column.
+     */
+    public Object getValue(String column) {
+        int i = columns.indexOf(column);
+        return (i < 0) ? null : values[i];
+    }
+}
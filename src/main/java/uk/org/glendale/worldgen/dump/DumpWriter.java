@@ -0,0 +1,37 @@
+/**
+ * DumpWriter.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes rows of database tables to a universe dump. A dump is a sequence of table sections,
+ * each of which starts with a call to beginTable() and is followed by zero or more rows.
+ * Rows are written as they are read, so nothing is held in memory beyond the current row.
+ */
+public interface DumpWriter extends Closeable {
+    /**
+     * Starts a new section of rows for the given table. All following rows belong to this
+     * table until the next call to beginTable().
+     *
+     * @param table     Name of the database table.
+     * @param columns   Names of the columns, in the order that values will be given.
+     */
+    void beginTable(String table, List<String> columns) throws IOException;
+
+    /**
+     * Writes a single row for the current table. Values may be null, numbers, strings,
+     * booleans, dates or byte arrays.
+     *
+     * @param values    Column values, in the order given to beginTable().
+     */
+    void writeRow(Object[] values) throws IOException;
+
+    void flush() throws IOException;
+}
@@ -0,0 +1,54 @@
+/**
+ * ImportResult.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+/**
+ * Outcome of importing a single block of a universe dump. A block is either the global
+ * tables at the start of the dump, or a single sector and everything in it.
+ */
+public class ImportResult {
+    private final int     sectorId;
+    private final long    rows;
+    private final boolean skipped;
+
+    ImportResult(int sectorId, long rows, boolean skipped) {
+        this.sectorId = sectorId;
+        this.rows = rows;
+        this.skipped = skipped;
+    }
+
+    /**
+     * Gets the id of the sector that was imported.
+     *
+     * @return  Sector id, or zero if this was the block of global tables.
+     */
+    public int getSectorId() {
+        return sectorId;
+    }
+
+    public boolean isSector() {
+        return sectorId > 0;
+    }
+
+    /**
+     * Gets the number of rows read for this block.
+     *
+     * @return  Number of rows read.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * True if the sector had already been imported by an earlier run, and so was skipped.
+     *
+     * @return  True iff the block was skipped.
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * JsonDumpReader.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a dump written by JsonDumpWriter. Whole numbers are returned as Longs and other
+ * numbers as Doubles. Dates are returned as strings, in a format which the database accepts.
+ */
+public class JsonDumpReader implements DumpReader {
+    private final BufferedReader    reader;
+    private final JsonParser        parser = new JsonParser();
+    private String                  table;
+    private List<String>            columns = new ArrayList<>();
+    private int                     lineNumber = 0;
+
+    public JsonDumpReader(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    public DumpRecord read() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            lineNumber++;
+            if (line == null) {
+                return null;
+            }
+        } while (line.trim().isEmpty());
+
+        try {
+            JsonObject json = parser.parse(line).getAsJsonObject();
+            String     rowTable = json.get(JsonDumpWriter.TABLE).getAsString();
+            JsonObject row = json.getAsJsonObject(JsonDumpWriter.ROW);
+
+            List<String>  rowColumns = new ArrayList<>();
+            List<Object>  values = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> entry : row.entrySet()) {
+                rowColumns.add(entry.getKey());
+                values.add(toValue(entry.getValue()));
+            }
+            // Share the column list between rows of the same table, as the binary reader does.
+            if (!rowTable.equals(table) || !rowColumns.equals(columns)) {
+                table = rowTable;
+                columns = rowColumns;
+            }
+            return new DumpRecord(table, columns, values.toArray());
+        } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+            throw new IOException(String.format("Invalid dump record at line %d (%s)", lineNumber, e.getMessage()));
+        }
+    }
+
+    private Object toValue(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return null;
+        } else if (element.isJsonObject()) {
+            String data = element.getAsJsonObject().get(JsonDumpWriter.BASE64).getAsString();
+            return Base64.getDecoder().decode(data);
+        }
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return primitive.getAsBoolean();
+        } else if (primitive.isNumber()) {
+            String number = primitive.getAsString();
+            if (number.contains(".") || number.contains("e") || number.contains("E")) {
+                return primitive.getAsDouble();
+            }
+            return primitive.getAsLong();
+        }
+        return primitive.getAsString();
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+}
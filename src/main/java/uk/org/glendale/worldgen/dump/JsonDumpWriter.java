@@ -0,0 +1,99 @@
+/**
+ * JsonDumpWriter.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes a dump as JSON Lines. Each row is a single line of the form:
+ *
+ *   {"table":"planets","row":{"id":1,"name":"Sol III",...}}
+ *
+ * Dates are written as "yyyy-MM-dd HH:mm:ss" strings, and binary data as an object
+ * of the form {"base64":"..."} so that it can be told apart from text.
+ */
+public class JsonDumpWriter implements DumpWriter {
+    static final String TABLE = "table";
+    static final String ROW = "row";
+    static final String BASE64 = "base64";
+    static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+    private final Writer            writer;
+    private final SimpleDateFormat  dateFormat = new SimpleDateFormat(DATE_FORMAT);
+    private String                  table;
+    private List<String>            columns = new ArrayList<>();
+
+    public JsonDumpWriter(OutputStream out) {
+        this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    public void beginTable(String table, List<String> columns) {
+        this.table = table;
+        this.columns = new ArrayList<>(columns);
+    }
+
+    public void writeRow(Object[] values) throws IOException {
+        if (table == null) {
+            throw new IllegalStateException("Must call beginTable() before writing rows.");
+        }
+        // A fresh JsonWriter per line, since JsonWriter only allows a single top level value.
+        StringWriter line = new StringWriter();
+        JsonWriter   json = new JsonWriter(line);
+
+        json.beginObject();
+        json.name(TABLE).value(table);
+        json.name(ROW).beginObject();
+        for (int i = 0; i < columns.size(); i++) {
+            json.name(columns.get(i));
+            writeValue(json, values[i]);
+        }
+        json.endObject();
+        json.endObject();
+        json.close();
+
+        writer.write(line.toString());
+        writer.write('\n');
+    }
+
+    private void writeValue(JsonWriter json, Object value) throws IOException {
+        if (value == null) {
+            json.nullValue();
+        } else if (value instanceof Boolean) {
+            json.value((Boolean) value);
+        } else if (value instanceof Number) {
+            json.value((Number) value);
+        } else if (value instanceof byte[]) {
+            json.beginObject();
+            json.name(BASE64).value(Base64.getEncoder().encodeToString((byte[]) value));
+            json.endObject();
+        } else if (value instanceof Date) {
+            json.value(dateFormat.format((Date) value));
+        } else {
+            json.value(value.toString());
+        }
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    public void close() throws IOException {
+        writer.close();
+    }
+}
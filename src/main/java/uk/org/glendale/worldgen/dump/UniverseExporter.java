@@ -0,0 +1,178 @@
+/**
+ * UniverseExporter.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.org.glendale.worldgen.ContentStore;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the contents of the universe out to a DumpWriter. Tables are read directly over
+ * JDBC with forward only, read only cursors, so rows are written as they arrive from the
+ * database and never become managed entities. Memory use is constant regardless of the
+ * size of the universe.
+ *
+ * The dump consists of the global tables (universe, constants, commodities and optionally
+ * image blobs), followed by one block per sector. Each sector block contains the sector and
+ * everything in it, so sector blocks can be exported and imported independently.
+ */
+public class UniverseExporter {
+    private static final Logger logger = LoggerFactory.getLogger(UniverseExporter.class);
+    private final EntityManager session;
+
+    private static final String[][] GLOBAL_TABLES = {
+            { "universe", "SELECT * FROM universe" },
+            { "constants", "SELECT * FROM constants ORDER BY name" },
+            { "commodities", "SELECT * FROM commodities ORDER BY id" }
+    };
+
+    private static final String BLOBS_QUERY = "SELECT * FROM blobs ORDER BY id";
+
+    private static final String SECTOR_IDS_QUERY = "SELECT id FROM sectors ORDER BY id";
+
+    // Every query takes the sector id as its only parameter.
+    private static final String[][] SECTOR_TABLES = {
+            { "sectors", "SELECT * FROM sectors WHERE id = ?" },
+            { "systems", "SELECT * FROM systems WHERE sector_id = ? ORDER BY id" },
+            { "stars", "SELECT st.* FROM stars st JOIN systems s ON s.id = st.system_id " +
+                    "WHERE s.sector_id = ? ORDER BY st.id" },
+            { "planets", "SELECT p.* FROM planets p JOIN systems s ON s.id = p.system_id " +
+                    "WHERE s.sector_id = ? ORDER BY p.id" },
+            { "resources", "SELECT r.* FROM resources r JOIN planets p ON p.id = r.planet_id " +
+                    "JOIN systems s ON s.id = p.system_id WHERE s.sector_id = ? ORDER BY r.id" },
+            { "facilities", "SELECT f.* FROM facilities f JOIN planets p ON p.id = f.planet_id " +
+                    "JOIN systems s ON s.id = p.system_id WHERE s.sector_id = ? ORDER BY f.id" }
+    };
+
+    private static final String[] MAPS_TABLE = {
+            "planet_maps", "SELECT m.* FROM planet_maps m JOIN planets p ON p.id = m.planet_id " +
+                    "JOIN systems s ON s.id = p.system_id WHERE s.sector_id = ? ORDER BY m.id"
+    };
+
+    public UniverseExporter(final EntityManager session) {
+        if (session == null || !session.isOpen()) {
+            throw new IllegalArgumentException("Session object must be open and non-null.");
+        }
+        this.session = session;
+    }
+
+    /**
+     * Gets the ids of all the sectors, in order. Each of these can be passed to exportSector().
+     *
+     * @return  List of sector ids.
+     */
+    public List<Integer> getSectorIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (Object id : session.createNativeQuery(SECTOR_IDS_QUERY).getResultList()) {
+            ids.add(((Number) id).intValue());
+        }
+        return ids;
+    }
+
+    /**
+     * Writes out the tables which aren't specific to a sector. These need to come first
+     * in the dump, since sector data refers to them.
+     *
+     * @param writer        Writer to output to.
+     * @param includeBlobs  If true, also include stored images such as the galaxy map.
+     * @return              Number of rows written.
+     */
+    public long exportGlobals(final DumpWriter writer, final boolean includeBlobs) throws IOException {
+        long rows = 0;
+        for (String[] table : GLOBAL_TABLES) {
+            rows += exportTable(writer, table[0], table[1], null);
+        }
+        if (includeBlobs) {
+            rows += exportTable(writer, "blobs", BLOBS_QUERY, null);
+        }
+        return rows;
+    }
+
+    /**
+     * Writes out a sector along with all of its systems, stars, planets, resources and facilities.
+     *
+     * @param writer        Writer to output to.
+     * @param sectorId      Id of the sector to export.
+     * @param includeMaps   If true, also include the planet map images.
+     * @return              Number of rows written.
+     */
+    public long exportSector(final DumpWriter writer, final int sectorId, final boolean includeMaps) throws IOException {
+        long rows = 0;
+        for (String[] table : SECTOR_TABLES) {
+            rows += exportTable(writer, table[0], table[1], sectorId);
+        }
+        if (includeMaps) {
+            rows += exportTable(writer, MAPS_TABLE[0], MAPS_TABLE[1], sectorId);
+        }
+        logger.debug(String.format("Exported sector [%d] with [%d] rows", sectorId, rows));
+        return rows;
+    }
+
+    private long exportTable(final DumpWriter writer, final String table, final String sql,
+                             final Integer parameter) throws IOException {
+        try {
+            return session.unwrap(Session.class).doReturningWork(connection ->
+                    streamTable(connection, writer, table, sql, parameter));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long streamTable(Connection connection, DumpWriter writer, String table, String sql,
+                             Integer parameter) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // MySQL only streams results row by row if the fetch size is MIN_VALUE.
+            // Otherwise the whole result set is read into memory first.
+            statement.setFetchSize(Integer.MIN_VALUE);
+            if (parameter != null) {
+                statement.setInt(1, parameter);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int               count = meta.getColumnCount();
+                List<String>      columns = new ArrayList<>();
+                for (int c = 1; c <= count; c++) {
+                    columns.add(meta.getColumnLabel(c));
+                }
+
+                // Images which are in the content store only have their hash in the database.
+                int dataColumn = columns.indexOf("data");
+                int hashColumn = columns.indexOf("hash");
+
+                long rows = 0;
+                writer.beginTable(table, columns);
+                while (rs.next()) {
+                    Object[] values = new Object[count];
+                    for (int c = 1; c <= count; c++) {
+                        values[c - 1] = rs.getObject(c);
+                    }
+                    if (dataColumn >= 0 && hashColumn >= 0 && values[dataColumn] == null && values[hashColumn] != null) {
+                        values[dataColumn] = ContentStore.fetch((String) values[hashColumn]);
+                    }
+                    writer.writeRow(values);
+                    rows++;
+                }
+                return rows;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * UniverseImporter.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads a universe dump, as written by UniverseExporter, into the database. Rows keep the
+ * ids they had in the dump, and are written with multi-row INSERT statements directly over
+ * JDBC. Foreign key and unique checks are turned off while each block is loaded, and can
+ * be verified once everything has been imported with countOrphans().
+ *
+ * The dump is imported a block at a time, each block in its own transaction. Completed
+ * sectors are recorded in the dump_imports table, so if an import is interrupted it can
+ * be run again and will skip over the sectors which were already loaded.
+ */
+public class UniverseImporter {
+    private static final Logger logger = LoggerFactory.getLogger(UniverseImporter.class);
+
+    private static final String SECTORS = "sectors";
+
+    // Only these tables may be written to from a dump.
+    private static final Set<String> GLOBAL_TABLES = new HashSet<>(Arrays.asList(
+            "universe", "constants", "commodities", "blobs"));
+    private static final Set<String> SECTOR_TABLES = new HashSet<>(Arrays.asList(
+            "sectors", "systems", "stars", "planets", "resources", "facilities", "planet_maps"));
+
+    private static final String CHECKPOINT_QUERY = "SELECT 1 FROM dump_imports WHERE sector_id = ?";
+    private static final String CHECKPOINT_INSERT =
+            "INSERT INTO dump_imports (sector_id, row_count, imported_date) VALUES (?, ?, NOW())";
+
+    // Rows which reference a parent that doesn't exist. Keyed by the table of the child rows.
+    private static final String[][] ORPHAN_QUERIES = {
+            { "systems", "SELECT COUNT(*) FROM systems c LEFT JOIN sectors p ON p.id = c.sector_id WHERE p.id IS NULL" },
+            { "stars", "SELECT COUNT(*) FROM stars c LEFT JOIN systems p ON p.id = c.system_id WHERE p.id IS NULL" },
+            { "planets", "SELECT COUNT(*) FROM planets c LEFT JOIN systems p ON p.id = c.system_id WHERE p.id IS NULL" },
+            { "resources", "SELECT COUNT(*) FROM resources c LEFT JOIN planets p ON p.id = c.planet_id WHERE p.id IS NULL" },
+            { "facilities", "SELECT COUNT(*) FROM facilities c LEFT JOIN planets p ON p.id = c.planet_id WHERE p.id IS NULL" },
+            { "planet_maps", "SELECT COUNT(*) FROM planet_maps c LEFT JOIN planets p ON p.id = c.planet_id WHERE p.id IS NULL" }
+    };
+
+    // Statements are limited by MySQL's max_allowed_packet, so large blobs end a batch early.
+    private static final long MAX_BATCH_BYTES = 2 * 1024 * 1024;
+
+    private final DumpReader    reader;
+    private final int           batchRows;
+    private DumpRecord          pending = null;
+
+    /**
+     * Creates a new importer which reads from the given dump.
+     *
+     * @param reader        Dump to read from.
+     * @param batchRows     Maximum number of rows in each INSERT statement.
+     */
+    public UniverseImporter(final DumpReader reader, final int batchRows) {
+        if (batchRows < 1) {
+            throw new IllegalArgumentException("Batch size must be strictly positive.");
+        }
+        this.reader = reader;
+        this.batchRows = batchRows;
+    }
+
+    /**
+     * Imports the next block from the dump, within the current transaction of the session.
+     * The caller should commit the transaction after each block, which allows the import
+     * to be resumed from the next block if it fails.
+     *
+     * @param session   Session to import with.
+     * @return          Result of the import, or null if there is nothing left to import.
+     */
+    public ImportResult importNextBlock(final EntityManager session) throws IOException {
+        DumpRecord first = (pending != null) ? pending : reader.read();
+        pending = null;
+        if (first == null) {
+            return null;
+        }
+        try {
+            return session.unwrap(Session.class).doReturningWork(connection -> importBlock(connection, first));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private ImportResult importBlock(Connection connection, DumpRecord first) throws SQLException {
+        boolean isSector = first.getTable().equals(SECTORS);
+        int     sectorId = isSector ? ((Number) first.getValue("id")).intValue() : 0;
+
+        try (Statement statement = connection.createStatement()) {
+            // Session variables, which apply only to this connection until they are reset.
+            statement.execute("SET FOREIGN_KEY_CHECKS = 0, UNIQUE_CHECKS = 0");
+        }
+
+        try {
+            boolean skip = isSector && isImported(connection, sectorId);
+            if (skip) {
+                logger.info(String.format("Sector [%d] has already been imported, skipping", sectorId));
+            }
+            // The global tables may already have default rows, so they replace existing data.
+            BatchInserter inserter = new BatchInserter(connection, isSector ? SECTOR_TABLES : GLOBAL_TABLES, !isSector);
+            long          rows = 0;
+            DumpRecord    record = first;
+
+            while (record != null) {
+                if (!skip) {
+                    inserter.add(record);
+                }
+                rows++;
+                record = readRecord();
+                if (record != null && record.getTable().equals(SECTORS)) {
+                    // Start of the next block.
+                    pending = record;
+                    break;
+                }
+            }
+            inserter.flush();
+
+            if (isSector && !skip) {
+                try (PreparedStatement statement = connection.prepareStatement(CHECKPOINT_INSERT)) {
+                    statement.setInt(1, sectorId);
+                    statement.setLong(2, rows);
+                    statement.executeUpdate();
+                }
+            }
+            return new ImportResult(sectorId, rows, skip);
+        } finally {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET FOREIGN_KEY_CHECKS = 1, UNIQUE_CHECKS = 1");
+            }
+        }
+    }
+
+    private DumpRecord readRecord() {
+        try {
+            return reader.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isImported(Connection connection, int sectorId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(CHECKPOINT_QUERY)) {
+            statement.setInt(1, sectorId);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Counts rows which refer to a parent row that doesn't exist. Since foreign keys aren't
+     * checked during an import, this should be run once the import is complete. All counts
+     * should be zero for a consistent universe.
+     *
+     * @param session   Session to check with.
+     * @return          Number of orphaned rows for each table.
+     */
+    public static Map<String, Long> countOrphans(final EntityManager session) {
+        Map<String, Long> orphans = new LinkedHashMap<>();
+        for (String[] check : ORPHAN_QUERIES) {
+            Number count = (Number) session.createNativeQuery(check[1]).getSingleResult();
+            orphans.put(check[0], count.longValue());
+        }
+        return orphans;
+    }
+
+    /**
+     * Builds a multi-row INSERT statement with a placeholder for every value.
+     *
+     * @param table     Name of the table.
+     * @param columns   Columns to be written.
+     * @param rows      Number of rows.
+     * @param upsert    If true, rows with a duplicate key replace the existing values.
+     * @return          SQL for the statement.
+     */
+    static String getInsertSql(String table, List<String> columns, int rows, boolean upsert) {
+        StringBuilder sql = new StringBuilder("INSERT INTO `").append(table).append("` (");
+        StringBuilder row = new StringBuilder("(");
+        for (int c = 0; c < columns.size(); c++) {
+            if (c > 0) {
+                sql.append(", ");
+                row.append(", ");
+            }
+            sql.append('`').append(columns.get(c)).append('`');
+            row.append('?');
+        }
+        row.append(')');
+        sql.append(") VALUES ");
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+        if (upsert) {
+            sql.append(" ON DUPLICATE KEY UPDATE ");
+            for (int c = 0; c < columns.size(); c++) {
+                if (c > 0) {
+                    sql.append(", ");
+                }
+                sql.append('`').append(columns.get(c)).append("` = VALUES(`").append(columns.get(c)).append("`)");
+            }
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Collects consecutive rows for the same table, and writes them out as a single
+     * statement once there are enough of them.
+     */
+    private class BatchInserter {
+        private final Connection        connection;
+        private final Set<String>       tables;
+        private final boolean           upsert;
+        private final List<Object[]>    rows = new ArrayList<>();
+        private String                  table;
+        private List<String>            columns;
+        private long                    bytes = 0;
+
+        BatchInserter(Connection connection, Set<String> tables, boolean upsert) {
+            this.connection = connection;
+            this.tables = tables;
+            this.upsert = upsert;
+        }
+
+        void add(DumpRecord record) throws SQLException {
+            if (!record.getTable().equals(table) || !record.getColumns().equals(columns)) {
+                flush();
+                table = record.getTable();
+                columns = record.getColumns();
+                validate(table, columns);
+            }
+            rows.add(record.getValues());
+            for (Object value : record.getValues()) {
+                if (value instanceof byte[]) {
+                    bytes += ((byte[]) value).length;
+                } else if (value instanceof String) {
+                    bytes += ((String) value).length();
+                } else {
+                    bytes += 8;
+                }
+            }
+            if (rows.size() >= batchRows || bytes >= MAX_BATCH_BYTES) {
+                flush();
+            }
+        }
+
+        /**
+         * Table and column names are put directly into the SQL, so make sure they are
+         * ones we expect rather than trusting the dump.
+         */
+        private void validate(String table, List<String> columns) throws SQLException {
+            if (!tables.contains(table)) {
+                throw new SQLException(String.format("Table [%s] is not allowed here in a dump", table));
+            }
+            for (String column : columns) {
+                if (!column.matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
+                    throw new SQLException(String.format("Invalid column name [%s] for table [%s]", column, table));
+                }
+            }
+        }
+
+        void flush() throws SQLException {
+            if (rows.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    getInsertSql(table, columns, rows.size(), upsert))) {
+                int p = 1;
+                for (Object[] row : rows) {
+                    for (Object value : row) {
+                        statement.setObject(p++, value);
+                    }
+                }
+                statement.executeUpdate();
+            }
+            rows.clear();
+            bytes = 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * ServerBusyException.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.exceptions;
+
+/**
+ * Exception thrown when a request can't be handled because the server has too much work
+ * on, such as when too many images are already being drawn. The request can be tried
+ * again later.
+ */
+public class ServerBusyException extends WorldGenException {
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfter;
+
+    public ServerBusyException(String message, int retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Gets the number of seconds after which the request is worth trying again.
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+}
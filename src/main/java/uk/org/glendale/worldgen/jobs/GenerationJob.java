@@ -0,0 +1,65 @@
+/**
+ * GenerationJob.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.jobs;
+
+import uk.org.glendale.worldgen.astro.sectors.SubSector;
+
+/**
+ * A unit of generation work which has been claimed from the JobQueue. Each job is a
+ * sector, or a single sub sector of a sector, to be populated with star systems.
+ * The owner identifies this particular claim of the job, and is needed to renew the
+ * lease or to mark the job as finished.
+ */
+public class GenerationJob {
+    private final int       id;
+    private final int       sectorId;
+    private final SubSector subSector;
+    private final String    owner;
+    private final int       attempts;
+
+    GenerationJob(int id, int sectorId, SubSector subSector, String owner, int attempts) {
+        this.id = id;
+        this.sectorId = sectorId;
+        this.subSector = subSector;
+        this.owner = owner;
+        this.attempts = attempts;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getSectorId() {
+        return sectorId;
+    }
+
+    /**
+     * Gets the sub sector to be generated.
+     *
+     * @return  Sub sector, or null if the whole sector is to be generated.
+     */
+    public SubSector getSubSector() {
+        return subSector;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Gets the number of times this job has been claimed, including this time.
+     *
+     * @return  Number of attempts at this job.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String toString() {
+        return String.format("Job %d [%d/%s]", id, sectorId, (subSector == null) ? "ALL" : subSector.name());
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * JobQueue.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.jobs;
+
+import uk.org.glendale.worldgen.astro.sectors.SubSector;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queue of sector generation work, held in the generation_jobs table so that it can be
+ * shared by any number of worker processes using the same database.
+ *
+ * A worker claims a job by taking out a lease on it, which lasts for a set number of
+ * seconds and must be renewed regularly while the job runs. If a worker dies, its lease
+ * expires and the job becomes available to be claimed again, up to MAX_ATTEMPTS times.
+ * All times are taken from the database clock, so workers on different hosts don't need
+ * to have their clocks in step.
+ *
+ * Each method runs within the current transaction of the session. Claims should be
+ * committed straight away, so that other workers can see them.
+ *
+ * If generation is being profiled, workers store a summary of their profile against the
+ * job while it runs, so that it can be seen which stages of generation are slowest.
+ */
+public class JobQueue {
+    public static final int MAX_ATTEMPTS = 3;
+
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    private static final String ALL_AREA = "ALL";
+
+    // Adding a job which already exists only resets it if it previously failed.
+    private static final String ADD_JOB =
+            "INSERT INTO generation_jobs (sector_id, area, status, attempts, updated_date) " +
+            "VALUES (:sector, :area, 'PENDING', 0, NOW()) ON DUPLICATE KEY UPDATE " +
+            "attempts = IF(status = 'FAILED', 0, attempts), " +
+            "status = IF(status = 'FAILED', 'PENDING', status), updated_date = NOW()";
+
+    // Expired jobs which have used all their attempts are given up on.
+    private static final String EXPIRE_JOBS =
+            "UPDATE generation_jobs SET status = 'FAILED', owner = NULL, " +
+            "last_error = 'Lease expired too many times', updated_date = NOW() " +
+            "WHERE status = 'RUNNING' AND lease_expires < NOW() AND attempts >= :max";
+
+    // A single statement, so two workers can never claim the same job.
+    private static final String CLAIM_JOB =
+            "UPDATE generation_jobs SET status = 'RUNNING', owner = :owner, profile = NULL, " +
+            "lease_expires = NOW() + INTERVAL :lease SECOND, attempts = attempts + 1, updated_date = NOW() " +
+            "WHERE (status = 'PENDING' OR (status = 'RUNNING' AND lease_expires < NOW())) " +
+            "AND attempts < :max ORDER BY id LIMIT 1";
+
+    private static final String CLAIMED_JOB =
+            "SELECT id, sector_id, area, attempts FROM generation_jobs WHERE owner = :owner AND status = 'RUNNING'";
+
+    private static final String RENEW_LEASE =
+            "UPDATE generation_jobs SET lease_expires = NOW() + INTERVAL :lease SECOND, updated_date = NOW() " +
+            "WHERE id = :id AND owner = :owner AND status = 'RUNNING'";
+
+    private static final String COMPLETE_JOB =
+            "UPDATE generation_jobs SET status = 'DONE', owner = NULL, lease_expires = NULL, " +
+            "last_error = NULL, updated_date = NOW() WHERE id = :id AND owner = :owner AND status = 'RUNNING'";
+
+    private static final String FAIL_JOB =
+            "UPDATE generation_jobs SET status = IF(attempts >= :max, 'FAILED', 'PENDING'), owner = NULL, " +
+            "lease_expires = NULL, last_error = :error, updated_date = NOW() " +
+            "WHERE id = :id AND owner = :owner AND status = 'RUNNING'";
+
+    private static final String SET_PROFILE =
+            "UPDATE generation_jobs SET profile = :profile WHERE id = :id AND owner = :owner AND status = 'RUNNING'";
+
+    private static final String RUNNING_PROFILES =
+            "SELECT id, sector_id, area, owner, attempts, profile FROM generation_jobs " +
+            "WHERE status = 'RUNNING' ORDER BY id";
+
+    private static final String STATUS_COUNTS = "SELECT status, COUNT(*) FROM generation_jobs GROUP BY status";
+
+    private final EntityManager session;
+
+    public JobQueue(final EntityManager session) {
+        if (session == null || !session.isOpen()) {
+            throw new IllegalArgumentException("Session object must be open and non-null.");
+        }
+        this.session = session;
+    }
+
+    /**
+     * Adds a job to generate a sector, or a sub sector of it. If the job is already on
+     * the queue then it is left alone, unless it had failed in which case it is reset
+     * so that it will be tried again.
+     *
+     * @param sectorId      Id of the sector to generate.
+     * @param subSector     Sub sector to generate, or null for the whole sector.
+     */
+    public void addJob(int sectorId, SubSector subSector) {
+        Query query = session.createNativeQuery(ADD_JOB);
+        query.setParameter("sector", sectorId);
+        query.setParameter("area", (subSector == null) ? ALL_AREA : subSector.name());
+        query.executeUpdate();
+    }
+
+    /**
+     * Claims the next available job. This is either a job which has never been run, or a
+     * job whose previous lease has expired without it being finished.
+     *
+     * @param owner         Identifier for this claim, which must be unique across all workers.
+     * @param leaseSeconds  How long the lease lasts before it must be renewed.
+     * @return              Claimed job, or null if there are no jobs available.
+     */
+    public GenerationJob claim(String owner, int leaseSeconds) {
+        Query expire = session.createNativeQuery(EXPIRE_JOBS);
+        expire.setParameter("max", MAX_ATTEMPTS);
+        expire.executeUpdate();
+
+        Query claim = session.createNativeQuery(CLAIM_JOB);
+        claim.setParameter("owner", owner);
+        claim.setParameter("lease", leaseSeconds);
+        claim.setParameter("max", MAX_ATTEMPTS);
+        if (claim.executeUpdate() == 0) {
+            return null;
+        }
+
+        Query query = session.createNativeQuery(CLAIMED_JOB);
+        query.setParameter("owner", owner);
+        Object[] row = (Object[]) query.getSingleResult();
+
+        String area = (String) row[2];
+        return new GenerationJob(((Number) row[0]).intValue(), ((Number) row[1]).intValue(),
+                ALL_AREA.equals(area) ? null : SubSector.valueOf(area), owner, ((Number) row[3]).intValue());
+    }
+
+    /**
+     * Extends the lease on a job. If the lease has already expired and the job has been
+     * claimed by someone else, then the lease is not renewed.
+     *
+     * @param job           Job to renew the lease for.
+     * @param leaseSeconds  Number of seconds from now that the lease should last.
+     * @return              True if the lease was renewed, false if it has been lost.
+     */
+    public boolean renew(GenerationJob job, int leaseSeconds) {
+        Query query = session.createNativeQuery(RENEW_LEASE);
+        query.setParameter("lease", leaseSeconds);
+        query.setParameter("id", job.getId());
+        query.setParameter("owner", job.getOwner());
+        return query.executeUpdate() > 0;
+    }
+
+    /**
+     * Marks a job as successfully finished.
+     *
+     * @param job   Job which has been finished.
+     * @return      True if the job was still held by this owner.
+     */
+    public boolean complete(GenerationJob job) {
+        Query query = session.createNativeQuery(COMPLETE_JOB);
+        query.setParameter("id", job.getId());
+        query.setParameter("owner", job.getOwner());
+        return query.executeUpdate() > 0;
+    }
+
+    /**
+     * Releases a job which failed. It will be retried by a later claim, unless it has
+     * already been tried MAX_ATTEMPTS times in which case it is marked as failed.
+     *
+     * @param job       Job which failed.
+     * @param error     Description of the error.
+     */
+    public void fail(GenerationJob job, String error) {
+        if (error != null && error.length() > 1024) {
+            error = error.substring(0, 1024);
+        }
+        Query query = session.createNativeQuery(FAIL_JOB);
+        query.setParameter("max", MAX_ATTEMPTS);
+        query.setParameter("error", error);
+        query.setParameter("id", job.getId());
+        query.setParameter("owner", job.getOwner());
+        query.executeUpdate();
+    }
+
+    /**
+     * Stores the generation profile of a running job, replacing any previous one.
+     *
+     * @param job       Job which is running.
+     * @param profile   Summary of the time spent in each stage of generation.
+     */
+    public void setProfile(GenerationJob job, String profile) {
+        Query query = session.createNativeQuery(SET_PROFILE);
+        query.setParameter("profile", profile);
+        query.setParameter("id", job.getId());
+        query.setParameter("owner", job.getOwner());
+        query.executeUpdate();
+    }
+
+    /**
+     * Gets the latest generation profile of each running job.
+     *
+     * @return  Profile of each running job, in the order they were queued. The profile is
+     *          null if the job isn't being profiled, or hasn't stored one yet.
+     */
+    public Map<GenerationJob, String> getRunningProfiles() {
+        Map<GenerationJob, String> profiles = new LinkedHashMap<>();
+        // Native queries with several columns can only return rows as untyped arrays.
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = session.createNativeQuery(RUNNING_PROFILES).getResultList();
+        for (Object[] row : rows) {
+            String area = (String) row[2];
+            GenerationJob job = new GenerationJob(((Number) row[0]).intValue(), ((Number) row[1]).intValue(),
+                    ALL_AREA.equals(area) ? null : SubSector.valueOf(area), (String) row[3], ((Number) row[4]).intValue());
+            profiles.put(job, (String) row[5]);
+        }
+        return profiles;
+    }
+
+    /**
+     * Gets the number of jobs in each state.
+     *
+     * @return  Count of jobs for every status, including those with none.
+     */
+    public Map<Status, Integer> getStatusCounts() {
+        Map<Status, Integer> counts = new LinkedHashMap<>();
+        for (Status status : Status.values()) {
+            counts.put(status, 0);
+        }
+        // Native queries with several columns can only return rows as untyped arrays.
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = session.createNativeQuery(STATUS_COUNTS).getResultList();
+        for (Object[] row : rows) {
+            counts.put(Status.valueOf((String) row[0]), ((Number) row[1]).intValue());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * LeaseLostException.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.jobs;
+
+/**
+ * Thrown when a worker finds that its lease on a job has expired and the job may have been
+ * claimed by another worker. Any uncommitted work for the job must be thrown away.
+ */
+public class LeaseLostException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public LeaseLostException(GenerationJob job) {
+        super(String.format("Lease on [%s] has been lost", job));
+    }
+}
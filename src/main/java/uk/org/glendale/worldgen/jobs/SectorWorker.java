@@ -0,0 +1,169 @@
+/**
+ * SectorWorker.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.jobs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.org.glendale.worldgen.Main;
+import uk.org.glendale.worldgen.WorldGen;
+import uk.org.glendale.worldgen.astro.sectors.NoSuchSectorException;
+import uk.org.glendale.worldgen.astro.sectors.Sector;
+import uk.org.glendale.worldgen.astro.sectors.SectorGenerator;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler.Profile;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claims jobs from the JobQueue and populates the sectors they describe, until there are
+ * no jobs left. Any number of workers can be run at once, in separate processes or on
+ * separate hosts, as long as they use the same database.
+ *
+ * While a job is running its lease is renewed in the background. The lease is also
+ * checked as part of each chunk of generated star systems being committed, so if the
+ * lease has been lost to another worker the chunk is rolled back rather than being
+ * generated twice. Since the generator checkpoints its progress, a job which is picked
+ * up again after a worker died carries on from the last committed chunk.
+ *
+ * If generation is being profiled, the profile so far is stored against the job each
+ * time the lease is renewed, so it can be looked at while the job is still running.
+ */
+public class SectorWorker {
+    private static final Logger logger = LoggerFactory.getLogger(SectorWorker.class);
+
+    private final String workerId;
+    private final int    leaseSeconds;
+    private final int    pollSeconds;
+    private int          claims = 0;
+
+    /**
+     * Creates a new worker.
+     *
+     * @param leaseSeconds  Length of the lease on each job. Should be comfortably longer
+     *                      than it takes to generate a few star systems.
+     * @param pollSeconds   How long to wait before looking again when all remaining jobs
+     *                      are claimed by other workers.
+     */
+    public SectorWorker(int leaseSeconds, int pollSeconds) {
+        if (leaseSeconds < 3 || pollSeconds < 1) {
+            throw new IllegalArgumentException("Lease must be at least 3 seconds, and poll at least 1 second.");
+        }
+        this.leaseSeconds = leaseSeconds;
+        this.pollSeconds = pollSeconds;
+        // Process name is normally pid@host, the random part makes it unique if that is reused.
+        this.workerId = ManagementFactory.getRuntimeMXBean().getName() + ":" +
+                UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Runs jobs until none are left. Jobs held by other workers are waited on, since they
+     * may still become available if the other worker dies.
+     *
+     * @return  Number of jobs which this worker completed.
+     */
+    public int run() throws InterruptedException {
+        int completed = 0;
+        logger.info(String.format("Worker [%s] starting", workerId));
+
+        while (true) {
+            GenerationJob job;
+            try (WorldGen wg = Main.getWorldGen()) {
+                job = wg.getJobQueue().claim(workerId + ":" + (++claims), leaseSeconds);
+            }
+            if (job == null) {
+                Map<JobQueue.Status, Integer> counts;
+                try (WorldGen wg = Main.getWorldGen()) {
+                    counts = wg.getJobQueue().getStatusCounts();
+                }
+                if (counts.get(JobQueue.Status.PENDING) == 0 && counts.get(JobQueue.Status.RUNNING) == 0) {
+                    break;
+                }
+                Thread.sleep(pollSeconds * 1000L);
+                continue;
+            }
+            if (runJob(job)) {
+                completed++;
+            }
+        }
+        logger.info(String.format("Worker [%s] finished after completing [%d] jobs", workerId, completed));
+
+        return completed;
+    }
+
+    /**
+     * Runs a single claimed job.
+     *
+     * @param job   Job to be run.
+     * @return      True if the job was completed.
+     */
+    private boolean runJob(final GenerationJob job) {
+        logger.info(String.format("Worker [%s] running [%s], attempt [%d]", workerId, job, job.getAttempts()));
+        System.out.println(String.format("Running %s (attempt %d)", job, job.getAttempts()));
+
+        Profile                  profile = new Profile();
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+        heartbeat.scheduleAtFixedRate(() -> renew(job, profile), leaseSeconds / 3, leaseSeconds / 3, TimeUnit.SECONDS);
+
+        String error = null;
+        try (WorldGen wg = Main.getWorldGen()) {
+            try {
+                Sector          sector = wg.getSectorFactory().getSector(job.getSectorId());
+                SectorGenerator generator = new SectorGenerator(wg);
+
+                generator.setCommitListener((s, subSector, hex, finished) -> {
+                    JobQueue queue = wg.getJobQueue();
+                    if (GenerationProfiler.isEnabled()) {
+                        queue.setProfile(job, profile.getSummary());
+                    }
+                    // Both lock the job row until the commit, so the lease can't be taken over part way.
+                    if (!(finished ? queue.complete(job) : queue.renew(job, leaseSeconds))) {
+                        throw new LeaseLostException(job);
+                    }
+                });
+                generator.createSectorByDensity(sector, job.getSubSector(), profile);
+                return true;
+            } catch (LeaseLostException e) {
+                logger.warn(e.getMessage());
+                wg.setRollbackOnly();
+                return false;
+            } catch (NoSuchSectorException | RuntimeException e) {
+                logger.error(String.format("Failed to run [%s]", job), e);
+                wg.setRollbackOnly();
+                error = e.toString();
+            }
+        } finally {
+            heartbeat.shutdownNow();
+        }
+
+        try (WorldGen wg = Main.getWorldGen()) {
+            wg.getJobQueue().fail(job, error);
+        }
+        return false;
+    }
+
+    private void renew(GenerationJob job, Profile profile) {
+        try (WorldGen wg = Main.getWorldGen()) {
+            if (!wg.getJobQueue().renew(job, leaseSeconds)) {
+                logger.warn(String.format("Unable to renew lease on [%s]", job));
+            } else if (GenerationProfiler.isEnabled()) {
+                wg.getJobQueue().setProfile(job, profile.getSummary());
+            }
+        } catch (RuntimeException e) {
+            // Keep trying, the lease may not have run out yet.
+            logger.warn(String.format("Error renewing lease on [%s]", job), e);
+        }
+    }
+}
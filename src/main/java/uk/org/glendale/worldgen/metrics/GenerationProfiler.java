@@ -0,0 +1,294 @@
+/**
+ * GenerationProfiler.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.metrics;
+
+import uk.org.glendale.worldgen.Config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records where the time goes when star systems are generated, broken down into stages
+ * such as generating stars, each type of planet, drawing maps and writing to the database,
+ * so that it is clear which generator is worth making faster.
+ *
+ * Stages nest, so drawing a map is part of generating a planet. Each stage records both
+ * its total time, and its self time which leaves out any stages within it, so the self
+ * times add up to the time spent generating. Memory allocated by each stage is recorded
+ * in the same way, if the JVM is able to measure it.
+ *
+ * Stages are recorded into a Profile, which holds the totals for one run such as
+ * populating a sector. Only stages on a thread which is recording a profile are counted,
+ * so work done at the same time on other threads, such as a worker renewing its lease,
+ * is left out, and separate runs each get their own totals.
+ *
+ * Profiling is only done if generation.profile is set. Otherwise stages cost almost nothing.
+ */
+public final class GenerationProfiler {
+    private static final Stage NONE = new Stage(null, null);
+
+    private static final ThreadLocal<Deque<Stage>> running = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final ThreadLocal<Profile>      recording = new ThreadLocal<>();
+
+    private static final com.sun.management.ThreadMXBean threads = getThreadBean();
+
+    private static volatile Boolean enabled = null;
+
+    /**
+     * Work done as a stage, which gives a result.
+     */
+    public interface Work<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Work done as a stage, which has no result.
+     */
+    public interface Action<E extends Exception> {
+        void run() throws E;
+    }
+
+    /**
+     * Times for one stage, added up over every time it has been run.
+     */
+    static class Totals {
+        final String name;
+        long count = 0;
+        long totalTime = 0;
+        long selfTime = 0;
+        long selfBytes = 0;
+
+        Totals(String name) {
+            this.name = name;
+        }
+
+        synchronized void add(long time, long self, long bytes) {
+            count++;
+            totalTime += time;
+            selfTime += self;
+            selfBytes += bytes;
+        }
+
+        synchronized Totals copy() {
+            Totals copy = new Totals(name);
+            copy.count = count;
+            copy.totalTime = totalTime;
+            copy.selfTime = selfTime;
+            copy.selfBytes = selfBytes;
+            return copy;
+        }
+    }
+
+    /**
+     * The totals of every stage recorded during one run. A profile can be read from any
+     * thread while it is being recorded.
+     */
+    public static final class Profile {
+        private final ConcurrentMap<String, Totals> totals = new ConcurrentHashMap<>();
+
+        /**
+         * Does a run, recording the stages it runs on this thread into this profile.
+         *
+         * @param run       Work to record.
+         * @throws E        Anything thrown by the work.
+         */
+        public <E extends Exception> void record(Action<E> run) throws E {
+            Profile previous = recording.get();
+            recording.set(this);
+            try {
+                run.run();
+            } finally {
+                if (previous == null) {
+                    recording.remove();
+                } else {
+                    recording.set(previous);
+                }
+            }
+        }
+
+        /**
+         * Gets the totals recorded for a stage.
+         *
+         * @param name  Name of the stage.
+         * @return      Copy of the totals, or null if the stage hasn't been run.
+         */
+        Totals getTotals(String name) {
+            Totals stage = totals.get(name);
+            return (stage == null) ? null : stage.copy();
+        }
+
+        /**
+         * Gets a table of the time spent in each stage, with the stages which took the most
+         * time on their own first. Allocation is shown as '-' if the JVM can't measure it.
+         *
+         * @return  Summary table, one line for each stage.
+         */
+        public String getSummary() {
+            List<Totals> stages = new ArrayList<>();
+            long         selfTime = 0;
+            for (Map.Entry<String, Totals> entry : totals.entrySet()) {
+                Totals stage = entry.getValue().copy();
+                stages.add(stage);
+                selfTime += stage.selfTime;
+            }
+            stages.sort((a, b) -> Long.compare(b.selfTime, a.selfTime));
+
+            StringBuilder buffer = new StringBuilder();
+            buffer.append(String.format("%-30s %8s %10s %10s %7s %9s %9s\n",
+                    "Stage", "Count", "Total ms", "Self ms", "Self %", "Avg ms", "Alloc MB"));
+            for (Totals stage : stages) {
+                buffer.append(String.format("%-30s %8d %10.1f %10.1f %6.1f%% %9.2f %9s\n",
+                        stage.name, stage.count,
+                        stage.totalTime / 1e6, stage.selfTime / 1e6,
+                        (selfTime == 0) ? 0.0 : (100.0 * stage.selfTime) / selfTime,
+                        stage.totalTime / 1e6 / stage.count,
+                        (threads == null) ? "-" : String.format("%.1f", stage.selfBytes / (1024.0 * 1024.0))));
+            }
+            return buffer.toString();
+        }
+    }
+
+    /**
+     * A single run of a stage. Stages are started by GenerationProfiler.start(), and are
+     * recorded when they are closed. Where the work can be passed as a callback, time()
+     * does both.
+     */
+    public static final class Stage implements AutoCloseable {
+        private final String  name;
+        private final Profile profile;
+        private final long    start;
+        private final long    startBytes;
+        private long          childTime = 0;
+        private long          childBytes = 0;
+
+        private Stage(String name, Profile profile) {
+            this.name = name;
+            this.profile = profile;
+            this.startBytes = (name == null) ? 0 : getAllocatedBytes();
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            if (name == null) {
+                return;
+            }
+            long time = System.nanoTime() - start;
+            long bytes = getAllocatedBytes() - startBytes;
+
+            Deque<Stage> stages = running.get();
+            stages.remove(this);
+            Stage parent = stages.peek();
+            if (parent != null) {
+                parent.childTime += time;
+                parent.childBytes += bytes;
+            }
+            profile.totals.computeIfAbsent(name, Totals::new).add(time, time - childTime, bytes - childBytes);
+        }
+    }
+
+    private GenerationProfiler() {
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    private static long getAllocatedBytes() {
+        return (threads == null) ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Turns profiling on or off, rather than it being set by the configuration.
+     */
+    static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Checks whether generation is being profiled.
+     */
+    public static boolean isEnabled() {
+        if (enabled == null) {
+            enabled = Config.getConfiguration().getGenerationProfile();
+        }
+        return enabled;
+    }
+
+    /**
+     * Starts timing a stage of generation on this thread. If the stage is started again
+     * from within itself, such as one generator calling another, it is only timed once.
+     *
+     * @param name  Name of the stage, such as 'stars' or 'planet/Jovian'.
+     * @return      Stage which must be closed when finished. Does nothing if generation
+     *              isn't being profiled, or this thread isn't recording a profile.
+     */
+    public static Stage start(String name) {
+        if (!isEnabled()) {
+            return NONE;
+        }
+        Profile profile = recording.get();
+        if (profile == null) {
+            return NONE;
+        }
+        Deque<Stage> stages = running.get();
+        Stage        parent = stages.peek();
+        if (parent != null && parent.name.equals(name)) {
+            return NONE;
+        }
+        Stage stage = new Stage(name, profile);
+        stages.push(stage);
+        return stage;
+    }
+
+    /**
+     * Times some work as a stage of generation on this thread.
+     *
+     * @param name  Name of the stage, such as 'stars' or 'planet/Jovian'.
+     * @param work  Work to time.
+     * @return      Result of the work.
+     * @throws E    Anything thrown by the work.
+     */
+    public static <T, E extends Exception> T time(String name, Work<T, E> work) throws E {
+        Stage stage = start(name);
+        try {
+            return work.run();
+        } finally {
+            stage.close();
+        }
+    }
+
+    /**
+     * Times some work which has no result as a stage of generation on this thread.
+     *
+     * @param name      Name of the stage, such as 'stars' or 'planet/Jovian'.
+     * @param action    Work to time.
+     * @throws E        Anything thrown by the work.
+     */
+    public static <E extends Exception> void time(String name, Action<E> action) throws E {
+        Stage stage = start(name);
+        try {
+            action.run();
+        } finally {
+            stage.close();
+        }
+    }
+}
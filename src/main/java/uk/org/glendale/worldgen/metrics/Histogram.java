@@ -0,0 +1,105 @@
+/**
+ * Histogram.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long something takes, in a fixed set of buckets. Recording a time is just
+ * an atomic increment, so it can be called on every request. Percentiles are estimated
+ * from the buckets, so are only as accurate as the bucket sizes allow.
+ */
+public class Histogram {
+    /**
+     * Upper bounds of the buckets, in seconds. There is a final bucket for everything larger.
+     */
+    static final double[] BOUNDS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30
+    };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+    private final LongAdder       total = new LongAdder();
+
+    /**
+     * Records a single time.
+     *
+     * @param nanos     Time taken, in nanoseconds.
+     */
+    public void record(long nanos) {
+        double seconds = nanos / 1e9;
+        int    bucket = 0;
+        while (bucket < BOUNDS.length && seconds > BOUNDS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        total.add(nanos);
+    }
+
+    /**
+     * Gets the number of times recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the total of all times recorded, in seconds.
+     */
+    public double getSum() {
+        return total.sum() / 1e9;
+    }
+
+    /**
+     * Gets the number of times which were no larger than the upper bound of a bucket,
+     * including those in all the smaller buckets.
+     *
+     * @param bucket    Index into BOUNDS, or BOUNDS.length for all times.
+     * @return          Cumulative count up to and including the bucket.
+     */
+    long getCumulativeCount(int bucket) {
+        long count = 0;
+        for (int i = 0; i <= bucket; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Estimates a quantile of the recorded times, assuming times are spread evenly within
+     * each bucket. Times in the last bucket are assumed to be at its lower bound.
+     *
+     * @param quantile  Quantile to get, from 0 to 1, such as 0.99.
+     * @return          Estimated time in seconds, or zero if nothing has been recorded.
+     */
+    public double getQuantile(double quantile) {
+        long[] snapshot = new long[counts.length()];
+        long   count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        double rank = quantile * count;
+        long   seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            if (snapshot[i] > 0 && seen + snapshot[i] >= rank) {
+                double lower = (i == 0) ? 0 : BOUNDS[i - 1];
+                return lower + (BOUNDS[i] - lower) * (rank - seen) / snapshot[i];
+            }
+            seen += snapshot[i];
+        }
+        return BOUNDS[BOUNDS.length - 1];
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Metrics.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long web requests and image rendering take, so they can be reported by the
+ * metrics endpoint. Everything is held in memory, from when the server was started.
+ *
+ * Requests are grouped by route. Since the route which matched isn't known after the
+ * request, it is worked out from the path by replacing numbers and coordinates with ':id'.
+ * Paths which contain names, such as sector names, would each be a separate route, so
+ * once MAX_ROUTES have been seen all new ones are grouped together as 'other'.
+ */
+public final class Metrics {
+    static final int    MAX_ROUTES = 200;
+    static final String OTHER = "other";
+
+    private static final ConcurrentMap<String, Route>     routes = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Histogram> renders = new ConcurrentHashMap<>();
+
+    private static final double[] QUANTILES = { 0.5, 0.95, 0.99 };
+
+    /**
+     * Metrics for a single route.
+     */
+    private static class Route {
+        final String     method;
+        final String     path;
+        final Histogram  latency = new Histogram();
+        final LongAdder  statements = new LongAdder();
+        final LongAdder[] statuses = new LongAdder[6];
+
+        Route(String method, String path) {
+            this.method = method;
+            this.path = path;
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] = new LongAdder();
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Gets the route for a path, by replacing any part of it which is a number, or a pair
+     * of sector coordinates such as '-1,2', with ':id'.
+     *
+     * @param path  Path of the request.
+     * @return      Path with ids replaced.
+     */
+    public static String getRoute(String path) {
+        StringBuilder route = new StringBuilder();
+        for (String part : path.split("/")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            route.append('/').append(part.matches("-?[0-9]+(,-?[0-9]+)?") ? ":id" : part);
+        }
+        return (route.length() == 0) ? "/" : route.toString();
+    }
+
+    /**
+     * Records a web request which has finished.
+     *
+     * @param method        HTTP method, such as GET.
+     * @param path          Path of the request.
+     * @param status        HTTP status of the response.
+     * @param nanos         Time taken to handle the request.
+     * @param statements    Number of SQL statements made by the request.
+     */
+    public static void recordRequest(String method, String path, int status, long nanos, int statements) {
+        String route = getRoute(path);
+        String key = method + " " + route;
+        Route  r = routes.get(key);
+        if (r == null) {
+            if (routes.size() >= MAX_ROUTES) {
+                key = method + " " + OTHER;
+                route = OTHER;
+            }
+            final String p = route;
+            r = routes.computeIfAbsent(key, k -> new Route(method, p));
+        }
+        r.latency.record(nanos);
+        r.statements.add(statements);
+        r.statuses[Math.min(Math.max(status / 100, 0), 5)].increment();
+    }
+
+    /**
+     * Records the time taken to draw and encode an image.
+     *
+     * @param type      Type of image, such as 'system' or 'planet'.
+     * @param nanos     Time taken.
+     */
+    public static void recordRender(String type, long nanos) {
+        renders.computeIfAbsent(type, k -> new Histogram()).record(nanos);
+    }
+
+    /**
+     * Writes all the request and render metrics.
+     *
+     * @param writer    Writer to write them to.
+     */
+    public static void write(PrometheusWriter writer) {
+        // Sort so that the output is stable between scrapes.
+        List<Route> sorted = new ArrayList<>(new TreeMap<>(routes).values());
+
+        writer.declare("worldgen_http_request_duration_seconds", "histogram",
+                "Time taken to handle web requests, by route.");
+        for (Route r : sorted) {
+            writer.histogram("worldgen_http_request_duration_seconds", r.latency,
+                    "method", r.method, "route", r.path);
+        }
+        writer.declare("worldgen_http_request_duration_quantile_seconds", "gauge",
+                "Estimated percentiles of the time taken to handle web requests, by route.");
+        for (Route r : sorted) {
+            for (double q : QUANTILES) {
+                writer.sample("worldgen_http_request_duration_quantile_seconds", r.latency.getQuantile(q),
+                        "method", r.method, "route", r.path, "quantile", String.valueOf(q));
+            }
+        }
+        writer.declare("worldgen_http_responses_total", "counter",
+                "Number of responses, by route and status class.");
+        for (Route r : sorted) {
+            for (int s = 1; s < r.statuses.length; s++) {
+                long count = r.statuses[s].sum();
+                if (count > 0) {
+                    writer.sample("worldgen_http_responses_total", count,
+                            "method", r.method, "route", r.path, "status", s + "xx");
+                }
+            }
+        }
+        writer.declare("worldgen_http_db_statements_total", "counter",
+                "Number of SQL statements made while handling web requests, by route.");
+        for (Route r : sorted) {
+            writer.sample("worldgen_http_db_statements_total", r.statements.sum(),
+                    "method", r.method, "route", r.path);
+        }
+
+        writer.declare("worldgen_render_duration_seconds", "histogram",
+                "Time taken to draw and encode images, by type of image.");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(renders).entrySet()) {
+            writer.histogram("worldgen_render_duration_seconds", entry.getValue(), "type", entry.getKey());
+        }
+    }
+
+    /**
+     * Discards everything which has been recorded.
+     */
+    static void clear() {
+        routes.clear();
+        renders.clear();
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * PrometheusWriter.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.metrics;
+
+/**
+ * Writes metrics in the Prometheus text exposition format. Each metric is declared with
+ * its type and help text, followed by its samples.
+ */
+public class PrometheusWriter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * Declares a metric. This must come before any of its samples.
+     *
+     * @param name  Name of the metric.
+     * @param type  One of counter, gauge, histogram, summary or untyped.
+     * @param help  Description of the metric.
+     */
+    public PrometheusWriter declare(String name, String type, String help) {
+        buffer.append("# HELP ").append(name).append(' ')
+                .append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        buffer.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes a sample of a metric.
+     *
+     * @param name      Name of the metric, possibly with a suffix such as _count.
+     * @param value     Value of the sample.
+     * @param labels    Label names and values, in pairs.
+     */
+    public PrometheusWriter sample(String name, double value, String... labels) {
+        buffer.append(name);
+        if (labels.length > 0) {
+            buffer.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                buffer.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            }
+            buffer.append('}');
+        }
+        buffer.append(' ').append(format(value)).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes all the samples of a histogram, as buckets, sum and count.
+     *
+     * @param name      Name of the metric, which must have been declared as a histogram.
+     * @param histogram Histogram to write.
+     * @param labels    Label names and values, in pairs.
+     */
+    public PrometheusWriter histogram(String name, Histogram histogram, String... labels) {
+        String[] withLe = new String[labels.length + 2];
+        System.arraycopy(labels, 0, withLe, 0, labels.length);
+        withLe[labels.length] = "le";
+
+        for (int i = 0; i <= Histogram.BOUNDS.length; i++) {
+            withLe[labels.length + 1] = (i < Histogram.BOUNDS.length) ? format(Histogram.BOUNDS[i]) : "+Inf";
+            sample(name + "_bucket", histogram.getCumulativeCount(i), withLe);
+        }
+        sample(name + "_sum", histogram.getSum(), labels);
+        sample(name + "_count", histogram.getCumulativeCount(Histogram.BOUNDS.length), labels);
+        return this;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+}
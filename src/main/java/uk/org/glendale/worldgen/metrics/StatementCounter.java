@@ -0,0 +1,71 @@
+/**
+ * StatementCounter.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import uk.org.glendale.worldgen.trace.Tracer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the SQL statements which Hibernate prepares on each thread, so that the number
+ * of statements made by a single web request can be found. This is registered with
+ * Hibernate as its statement inspector, and doesn't change the SQL. The statement is
+ * also passed to the Tracer, so it can be shown in the trace of a slow request.
+ *
+ * Code which hands work for a request to another thread must pass the request's count
+ * with it, using current() and attach(), in the same way as a trace.
+ */
+public class StatementCounter implements StatementInspector {
+    private static final long serialVersionUID = 1L;
+
+    private static final ThreadLocal<AtomicInteger> count = ThreadLocal.withInitial(AtomicInteger::new);
+
+    @Override
+    public String inspect(String sql) {
+        count.get().incrementAndGet();
+        Tracer.setStatement(sql);
+        return sql;
+    }
+
+    /**
+     * Starts counting statements on this thread from zero.
+     */
+    public static void reset() {
+        count.set(new AtomicInteger());
+    }
+
+    /**
+     * Gets the number of statements prepared on this thread since it was last reset.
+     */
+    public static int getCount() {
+        return count.get().get();
+    }
+
+    /**
+     * Gets the count on this thread, so that it can be passed to another thread.
+     *
+     * @return  Count which statements on this thread are added to.
+     */
+    public static AtomicInteger current() {
+        return count.get();
+    }
+
+    /**
+     * Adds statements prepared on this thread to the given count. This is used by threads
+     * which work on behalf of a request, and should be undone with attach(null) when finished.
+     *
+     * @param counter   Count to add statements to, or null to stop adding to it.
+     */
+    public static void attach(AtomicInteger counter) {
+        if (counter == null) {
+            count.remove();
+        } else {
+            count.set(counter);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * IndexedIds.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.search;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Keeps track of which rows of a table have been read into an in memory index, so that
+ * the index can be brought up to date by reading just the rows which have been added
+ * since, rather than reading the whole table again.
+ *
+ * New rows normally have ids above any which have been indexed, so they are found with a
+ * range query on the primary key. Since ids are handed out in blocks, a process can commit
+ * rows with lower ids after rows with higher ones have already been indexed. These are
+ * found by comparing the number of rows in the table with the number indexed, and only
+ * if they differ are all the ids read to find the ones which are missing.
+ *
+ * Rows are never removed from an index, so rows deleted from the table are not noticed.
+ */
+public final class IndexedIds {
+    private final String table;
+    private final BitSet ids = new BitSet();
+    private int          count = 0;
+    private int          maximum = 0;
+
+    /**
+     * @param table     Table whose rows are indexed. It must have an integer 'id' column.
+     */
+    public IndexedIds(String table) {
+        this.table = table;
+    }
+
+    /**
+     * Records that a row has been indexed.
+     *
+     * @param id    Id of the row.
+     * @return      True if the row hadn't already been indexed.
+     */
+    public synchronized boolean add(int id) {
+        if (ids.get(id)) {
+            return false;
+        }
+        ids.set(id);
+        count++;
+        maximum = Math.max(maximum, id);
+        return true;
+    }
+
+    public synchronized boolean contains(int id) {
+        return ids.get(id);
+    }
+
+    /**
+     * Gets the highest id which has been indexed. Rows above this are all new.
+     *
+     * @return  Highest indexed id, or zero if nothing has been indexed.
+     */
+    public synchronized int getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Finds rows of the table which have been committed but not indexed, and whose ids are
+     * below the highest indexed id. Rows above the highest id should be read first, using
+     * getMaximum(), so that normally there is nothing left for this to find.
+     *
+     * @param session   Session to read the table with.
+     * @return          Ids of rows which haven't been indexed, may be empty.
+     */
+    public List<Integer> findMissing(EntityManager session) {
+        List<Integer> missing = new ArrayList<>();
+        long          rows = ((Number) session.createNativeQuery("SELECT COUNT(*) FROM " + table)
+                .getSingleResult()).longValue();
+
+        synchronized (this) {
+            if (rows <= count) {
+                return missing;
+            }
+        }
+        // A native query can't be typed, but ids are always returned as numbers.
+        @SuppressWarnings("unchecked")
+        List<Number> all = session.createNativeQuery("SELECT id FROM " + table).getResultList();
+        for (Number id : all) {
+            if (!contains(id.intValue())) {
+                missing.add(id.intValue());
+            }
+        }
+        return missing;
+    }
+}
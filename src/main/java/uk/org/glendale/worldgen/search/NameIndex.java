@@ -0,0 +1,416 @@
+/**
+ * NameIndex.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * In memory index of the names of sectors, star systems and planets, for finding
+ * everything whose name starts with a given prefix, ignoring case.
+ *
+ * The names are kept sorted, packed end to end in a single char array, with parallel
+ * arrays of offsets, ids and types, so there is no per name object overhead. A prefix
+ * search is a binary search for the first name at or after the prefix, followed by a
+ * scan forwards while the names still match.
+ *
+ * Names which are added after the index has been built are held in a small unsorted list,
+ * which is searched linearly and merged into the sorted arrays once it grows large enough.
+ * Names generated in this process are added once the session which created them commits,
+ * and are thrown away if it rolls back. Names committed by other processes (such as sector
+ * workers) are picked up when the index is refreshed, which only reads the rows which
+ * haven't been indexed yet.
+ */
+public final class NameIndex {
+    private static final Logger logger = LoggerFactory.getLogger(NameIndex.class);
+
+    private static final String SECTORS_QUERY = "SELECT id, 0, name FROM sectors";
+    private static final String SYSTEMS_QUERY = "SELECT id, id, name FROM systems";
+    private static final String PLANETS_QUERY = "SELECT id, system_id, name FROM planets";
+
+    /**
+     * Maximum number of matches which are looked at to find the best ones.
+     */
+    private static final int MAX_SCAN = 2000;
+
+    /**
+     * Number of new names which are held before they are merged into the sorted names.
+     */
+    private static final int MERGE_SIZE = 1000;
+
+    // Maximum number of rows read at once when looking for ones which were missed.
+    private static final int BATCH_SIZE = 1000;
+
+    private static volatile NameIndex index = null;
+
+    // Names created by each session, which are added to the index when it commits.
+    private static final Map<EntityManager, List<Entry>> changes = new WeakHashMap<>();
+
+    /**
+     * The type of thing which is named. The order is used to rank matches, so that
+     * sectors come before star systems, which come before planets.
+     */
+    public enum Type {
+        Sector, StarSystem, Planet
+    }
+
+    /**
+     * A single name, as added to the index or returned from a search.
+     */
+    public static class Entry {
+        private final String name;
+        private final Type   type;
+        private final int    id;
+        private final int    systemId;
+
+        Entry(String name, Type type, int id, int systemId) {
+            this.name = name;
+            this.type = type;
+            this.id = id;
+            this.systemId = systemId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Gets the id of the star system this is in, or zero for a sector.
+         */
+        public int getSystemId() {
+            return systemId;
+        }
+    }
+
+    /**
+     * Immutable sorted set of names. The name of entry i is chars[offsets[i]] up to
+     * chars[offsets[i + 1]].
+     */
+    private static class Names {
+        final char[] chars;
+        final int[]  offsets;
+        final int[]  ids;
+        final int[]  systemIds;
+        final byte[] types;
+
+        Names(List<Entry> entries) {
+            entries.sort(Comparator.comparing(Entry::getName, String.CASE_INSENSITIVE_ORDER));
+
+            int length = 0;
+            for (Entry e : entries) {
+                length += e.name.length();
+            }
+            chars = new char[length];
+            offsets = new int[entries.size() + 1];
+            ids = new int[entries.size()];
+            systemIds = new int[entries.size()];
+            types = new byte[entries.size()];
+
+            int offset = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                Entry e = entries.get(i);
+                e.name.getChars(0, e.name.length(), chars, offset);
+                offsets[i] = offset;
+                ids[i] = e.id;
+                systemIds[i] = e.systemId;
+                types[i] = (byte) e.type.ordinal();
+                offset += e.name.length();
+            }
+            offsets[entries.size()] = offset;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        Entry get(int i) {
+            return new Entry(new String(chars, offsets[i], offsets[i + 1] - offsets[i]),
+                    Type.values()[types[i]], ids[i], systemIds[i]);
+        }
+
+        /**
+         * Compares the start of name i against a prefix, ignoring case in the same way
+         * as String.CASE_INSENSITIVE_ORDER. Returns zero if the name starts with the prefix.
+         */
+        int compare(int i, String prefix) {
+            int start = offsets[i], length = offsets[i + 1] - start;
+            for (int c = 0; c < prefix.length(); c++) {
+                if (c == length) {
+                    return -1;
+                }
+                int d = fold(chars[start + c]) - fold(prefix.charAt(c));
+                if (d != 0) {
+                    return d;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Finds the first name which is not before the prefix.
+         */
+        int lowerBound(String prefix) {
+            int low = 0, high = size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(mid, prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private volatile Names      names;
+    private final List<Entry>   added = new ArrayList<>();
+    private final IndexedIds    sectorIds = new IndexedIds("sectors");
+    private final IndexedIds    systemIds = new IndexedIds("systems");
+    private final IndexedIds    planetIds = new IndexedIds("planets");
+    private final Object        updating = new Object();
+
+    private NameIndex(List<Entry> entries) {
+        this.names = new Names(entries);
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Gets the shared index, reading it from the database if it hasn't been built yet.
+     *
+     * @param session   Session to read the names with.
+     * @return          Shared name index.
+     */
+    public static NameIndex getIndex(EntityManager session) {
+        NameIndex i = index;
+        if (i == null) {
+            synchronized (NameIndex.class) {
+                i = index;
+                if (i == null) {
+                    i = index = load(session);
+                }
+            }
+        }
+        return i;
+    }
+
+    private static NameIndex load(EntityManager session) {
+        long        start = System.currentTimeMillis();
+        NameIndex   i = new NameIndex(new ArrayList<>());
+        List<Entry> entries = new ArrayList<>();
+
+        synchronized (i.updating) {
+            i.read(session, SECTORS_QUERY, Type.Sector, entries);
+            i.read(session, SYSTEMS_QUERY, Type.StarSystem, entries);
+            i.read(session, PLANETS_QUERY, Type.Planet, entries);
+        }
+        i.names = new Names(entries);
+        logger.info(String.format("Indexed [%d] names in [%d]ms", entries.size(), System.currentTimeMillis() - start));
+
+        return i;
+    }
+
+    /**
+     * Reads any names which have been committed since the shared index was built, such as
+     * those generated by other processes. Does nothing if the index hasn't been built.
+     *
+     * @param session   Session to read the new names with.
+     */
+    public static void refresh(EntityManager session) {
+        NameIndex i = index;
+        if (i == null) {
+            return;
+        }
+        long        start = System.currentTimeMillis();
+        List<Entry> entries = new ArrayList<>();
+        synchronized (i.updating) {
+            i.read(session, SECTORS_QUERY, Type.Sector, entries);
+            i.read(session, SYSTEMS_QUERY, Type.StarSystem, entries);
+            i.read(session, PLANETS_QUERY, Type.Planet, entries);
+        }
+        for (Entry e : entries) {
+            i.add(e);
+        }
+        if (entries.size() > 0) {
+            logger.info(String.format("Indexed [%d] new names in [%d]ms", entries.size(), System.currentTimeMillis() - start));
+        }
+    }
+
+    /**
+     * Reads the names of rows which haven't been indexed yet. These are normally all above
+     * the highest indexed id, but any which were committed out of order are then read by id.
+     */
+    private void read(EntityManager session, String sql, Type type, List<Entry> entries) {
+        IndexedIds ids = getIds(type);
+
+        add(session.createNativeQuery(sql + " WHERE id > :id")
+                .setParameter("id", ids.getMaximum()), type, entries);
+        List<Integer> missing = ids.findMissing(session);
+        for (int from = 0; from < missing.size(); from += BATCH_SIZE) {
+            add(session.createNativeQuery(sql + " WHERE id IN (:ids)")
+                    .setParameter("ids", missing.subList(from, Math.min(from + BATCH_SIZE, missing.size()))),
+                    type, entries);
+        }
+    }
+
+    private void add(Query query, Type type, List<Entry> entries) {
+        IndexedIds ids = getIds(type);
+        // A native query with several columns returns each row as an untyped array.
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        for (Object[] r : rows) {
+            if (ids.add(((Number) r[0]).intValue()) && r[2] != null) {
+                entries.add(new Entry((String) r[2], type, ((Number) r[0]).intValue(), ((Number) r[1]).intValue()));
+            }
+        }
+    }
+
+    private IndexedIds getIds(Type type) {
+        switch (type) {
+            case Sector:
+                return sectorIds;
+            case StarSystem:
+                return systemIds;
+            default:
+                return planetIds;
+        }
+    }
+
+    /**
+     * Creates an index from a list of names, without using the database.
+     */
+    static NameIndex create(List<Entry> entries) {
+        return new NameIndex(new ArrayList<>(entries));
+    }
+
+    /**
+     * Records a newly created name, to be added to the shared index when the session
+     * commits. Does nothing if the index hasn't been built, since the name will be read
+     * from the database along with everything else.
+     *
+     * @param session   Session which created the named thing.
+     * @param name      Name of the sector, star system or planet.
+     * @param type      What sort of thing is named.
+     * @param id        Unique id of the thing.
+     * @param systemId  Id of the star system it is in, or zero for a sector.
+     */
+    public static void addName(EntityManager session, String name, Type type, int id, int systemId) {
+        if (index == null) {
+            return;
+        }
+        synchronized (changes) {
+            changes.computeIfAbsent(session, k -> new ArrayList<>()).add(new Entry(name, type, id, systemId));
+        }
+    }
+
+    /**
+     * Called when a session has committed, to add the names it created to the index.
+     *
+     * @param session   Session which has committed.
+     */
+    public static void committed(EntityManager session) {
+        List<Entry> created;
+        synchronized (changes) {
+            created = changes.remove(session);
+        }
+        NameIndex i = index;
+        if (created == null || i == null) {
+            return;
+        }
+        for (Entry e : created) {
+            if (i.getIds(e.type).add(e.id) && e.name != null) {
+                i.add(e);
+            }
+        }
+    }
+
+    /**
+     * Called when a session has rolled back, so the names it created are never indexed.
+     *
+     * @param session   Session which has rolled back.
+     */
+    public static void discarded(EntityManager session) {
+        synchronized (changes) {
+            changes.remove(session);
+        }
+    }
+
+    synchronized void add(Entry entry) {
+        added.add(entry);
+        if (added.size() >= MERGE_SIZE) {
+            Names         old = names;
+            List<Entry>   entries = new ArrayList<>(old.size() + added.size());
+            for (int i = 0; i < old.size(); i++) {
+                entries.add(old.get(i));
+            }
+            entries.addAll(added);
+            names = new Names(entries);
+            added.clear();
+        }
+    }
+
+    private static boolean startsWith(String name, String prefix) {
+        return name.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    /**
+     * Finds names which start with the given prefix, ignoring case. An exact match is
+     * always first, then sectors, then star systems, then planets. Within each type names
+     * are in alphabetical order, so shorter names come before longer ones which start
+     * with them.
+     *
+     * For very short prefixes with many matches, only the first matches in alphabetical
+     * order are considered.
+     *
+     * @param prefix    Start of the name to look for.
+     * @param limit     Maximum number of names to return.
+     * @return          List of matching names, may be empty.
+     */
+    public List<Entry> find(String prefix, int limit) {
+        List<Entry> matches = new ArrayList<>();
+        Names       n = names;
+
+        for (int i = n.lowerBound(prefix); i < n.size() && matches.size() < MAX_SCAN; i++) {
+            if (n.compare(i, prefix) != 0) {
+                break;
+            }
+            matches.add(n.get(i));
+        }
+        synchronized (this) {
+            for (Entry e : added) {
+                if (startsWith(e.name, prefix)) {
+                    matches.add(e);
+                }
+            }
+        }
+
+        matches.sort(Comparator.comparing((Entry e) -> !e.name.equalsIgnoreCase(prefix))
+                .thenComparing(Entry::getType)
+                .thenComparing(Entry::getName, String.CASE_INSENSITIVE_ORDER));
+
+        return (matches.size() > limit) ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+}
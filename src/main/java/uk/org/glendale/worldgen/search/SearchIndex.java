@@ -0,0 +1,432 @@
+/**
+ * SearchIndex.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.org.glendale.worldgen.astro.planets.codes.Pressure;
+import uk.org.glendale.worldgen.astro.planets.codes.Temperature;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In memory index of the attributes of star systems and planets, so that they can be
+ * searched on any combination of attributes without scanning the database.
+ *
+ * Star systems and planets are each held in a table of rows. For every value of every
+ * attribute there is a bitmap of the rows which have that value. A search ORs together
+ * the bitmaps for the wanted values of an attribute, then ANDs the results for each
+ * attribute. Rows are numbered densely from zero, so a bitmap takes one bit per row, and
+ * only attributes with a small number of possible values are indexed.
+ *
+ * Planets are also indexed against the sector, zone and trade codes of their star system,
+ * so they can be searched on those without needing to join against the systems.
+ *
+ * The index is read from the database when it is first needed. After that, it is checked
+ * for new star systems and planets at most once every REFRESH_INTERVAL when it is used,
+ * and whenever the server's ticker runs. Only rows which haven't been indexed yet are
+ * read, so this picks up data committed by any process without reading everything again.
+ * Rows which have already been indexed are never read again, so later changes to their
+ * attributes are not seen.
+ */
+public final class SearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndex.class);
+
+    public static final String SECTOR = "sector";
+    public static final String TYPE = "type";
+    public static final String ZONE = "zone";
+    public static final String PORT = "port";
+    public static final String TECH = "tech";
+    public static final String CODE = "code";
+    public static final String ATMOSPHERE = "atmosphere";
+    public static final String PRESSURE = "pressure";
+    public static final String TEMPERATURE = "temperature";
+    public static final String LIFE = "life";
+    public static final String GOVERNMENT = "government";
+
+    private static final String SYSTEMS_QUERY =
+            "SELECT id, sector_id, type, zone, port, tech, codes FROM systems";
+    private static final String PLANETS_QUERY =
+            "SELECT p.id, s.sector_id, p.type, p.atmosphere, p.pressure, p.temperature, " +
+            "p.life, p.port, p.government, p.tech, s.zone, s.codes " +
+            "FROM planets p JOIN systems s ON s.id = p.system_id";
+
+    // Minimum time between checks for new rows when the index is used, in milliseconds.
+    private static final long REFRESH_INTERVAL = 30_000;
+
+    // Maximum number of rows read at once when looking for ones which were missed.
+    private static final int BATCH_SIZE = 1000;
+
+    private static final Set<String> SYSTEM_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            SECTOR, TYPE, ZONE, PORT, TECH, CODE));
+    private static final Set<String> PLANET_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            SECTOR, TYPE, ATMOSPHERE, PRESSURE, TEMPERATURE, LIFE, PORT, GOVERNMENT, TECH, ZONE, CODE));
+    private static final Set<String> NUMERIC_ATTRIBUTES = Collections.singleton(TECH);
+
+    private static volatile SearchIndex index = null;
+
+    private final Table      systems;
+    private final Table      planets;
+    private final IndexedIds systemIds = new IndexedIds("systems");
+    private final IndexedIds planetIds = new IndexedIds("planets");
+    private final Object     updating = new Object();
+    private volatile long    lastChecked = 0;
+
+    /**
+     * A set of rows, each with a unique id, and bitmaps of which rows have each value of
+     * each attribute.
+     */
+    static class Table {
+        private final Map<String, Map<String, BitSet>> attributes = new HashMap<>();
+        private final Set<String> known;
+        private int[] ids = new int[1024];
+        private int   size = 0;
+
+        Table(Set<String> known) {
+            this.known = known;
+        }
+
+        /**
+         * Adds a new row, which has no attributes yet.
+         *
+         * @param id    Unique id of the object this row is for.
+         * @return      Number of the new row.
+         */
+        int addRow(int id) {
+            if (size == ids.length) {
+                int[] bigger = new int[size * 2];
+                System.arraycopy(ids, 0, bigger, 0, size);
+                ids = bigger;
+            }
+            ids[size] = id;
+            return size++;
+        }
+
+        void set(int row, String attribute, Object value) {
+            if (value != null) {
+                attributes.computeIfAbsent(attribute, k -> new HashMap<>())
+                        .computeIfAbsent(value.toString(), k -> new BitSet()).set(row);
+            }
+        }
+
+        boolean hasAttribute(String attribute) {
+            return known.contains(attribute);
+        }
+
+        /**
+         * Gets all the rows which have any one of the given values of an attribute. For
+         * numeric attributes, a value can also be a range such as "8-12", or "10+" for
+         * everything at 10 and above.
+         */
+        private BitSet any(String attribute, List<String> values) {
+            BitSet              rows = new BitSet();
+            Map<String, BitSet> bitmaps = attributes.get(attribute);
+
+            if (bitmaps == null) {
+                return rows;
+            }
+            for (String value : values) {
+                if (NUMERIC_ATTRIBUTES.contains(attribute) && (value.endsWith("+") || value.indexOf('-', 1) > 0)) {
+                    int min, max;
+                    if (value.endsWith("+")) {
+                        min = Integer.parseInt(value.substring(0, value.length() - 1));
+                        max = Integer.MAX_VALUE;
+                    } else {
+                        int split = value.indexOf('-', 1);
+                        min = Integer.parseInt(value.substring(0, split));
+                        max = Integer.parseInt(value.substring(split + 1));
+                    }
+                    for (Map.Entry<String, BitSet> entry : bitmaps.entrySet()) {
+                        int v = Integer.parseInt(entry.getKey());
+                        if (v >= min && v <= max) {
+                            rows.or(entry.getValue());
+                        }
+                    }
+                } else if (bitmaps.containsKey(value)) {
+                    rows.or(bitmaps.get(value));
+                }
+            }
+            return rows;
+        }
+
+        /**
+         * Finds all the rows which match every one of the filters. Each filter is an
+         * attribute, and a list of values of which any one must match.
+         *
+         * @param filters   Map of attribute names to wanted values.
+         * @return          Bitmap of matching rows.
+         */
+        BitSet select(Map<String, List<String>> filters) {
+            BitSet rows = new BitSet(size);
+            rows.set(0, size);
+
+            for (Map.Entry<String, List<String>> filter : filters.entrySet()) {
+                rows.and(any(filter.getKey(), filter.getValue()));
+                if (rows.isEmpty()) {
+                    break;
+                }
+            }
+            return rows;
+        }
+
+        int getId(int row) {
+            return ids[row];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Result of a search. Gives the total number of matches, and the ids of the first of them.
+     */
+    public static class Result {
+        private final int           count;
+        private final List<Integer> ids;
+
+        Result(int count, List<Integer> ids) {
+            this.count = count;
+            this.ids = ids;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public List<Integer> getIds() {
+            return ids;
+        }
+    }
+
+    SearchIndex(Table systems, Table planets) {
+        this.systems = systems;
+        this.planets = planets;
+    }
+
+    /**
+     * Gets the shared index, reading it from the database if it hasn't been loaded yet.
+     * If it hasn't been checked for new rows recently, they are read first.
+     *
+     * @param session   Session to read the index with.
+     * @return          Shared search index.
+     */
+    public static SearchIndex getIndex(EntityManager session) {
+        SearchIndex i = index;
+        if (i == null) {
+            synchronized (SearchIndex.class) {
+                i = index;
+                if (i == null) {
+                    i = index = load(session);
+                }
+            }
+        } else if (System.currentTimeMillis() - i.lastChecked >= REFRESH_INTERVAL) {
+            i.update(session, REFRESH_INTERVAL);
+        }
+        return i;
+    }
+
+    /**
+     * Reads any star systems and planets which have been committed since the shared index
+     * was last checked. Does nothing if the index hasn't been loaded.
+     *
+     * @param session   Session to read the new rows with.
+     */
+    public static void refresh(EntityManager session) {
+        SearchIndex i = index;
+        if (i != null) {
+            i.update(session, 0);
+        }
+    }
+
+    private static SearchIndex load(EntityManager session) {
+        long        start = System.currentTimeMillis();
+        SearchIndex i = new SearchIndex(new Table(SYSTEM_ATTRIBUTES), new Table(PLANET_ATTRIBUTES));
+
+        i.update(session, 0);
+        logger.info(String.format("Indexed [%d] systems and [%d] planets in [%d]ms",
+                i.systems.size(), i.planets.size(), System.currentTimeMillis() - start));
+
+        return i;
+    }
+
+    /**
+     * Reads rows which haven't been indexed yet, unless the index has been checked within
+     * the given interval. New rows are normally all above the highest indexed id, but any
+     * which were committed out of order are then read by id.
+     */
+    private void update(EntityManager session, long interval) {
+        synchronized (updating) {
+            long start = System.currentTimeMillis();
+            if (start - lastChecked < interval) {
+                return;
+            }
+            boolean loading = lastChecked == 0;
+            lastChecked = start;
+
+            int added = addSystems(getRows(session.createNativeQuery(SYSTEMS_QUERY + " WHERE id > :id")
+                    .setParameter("id", systemIds.getMaximum())));
+            List<Integer> missing = systemIds.findMissing(session);
+            for (int from = 0; from < missing.size(); from += BATCH_SIZE) {
+                added += addSystems(getRows(session.createNativeQuery(SYSTEMS_QUERY + " WHERE id IN (:ids)")
+                        .setParameter("ids", missing.subList(from, Math.min(from + BATCH_SIZE, missing.size())))));
+            }
+
+            added += addPlanets(getRows(session.createNativeQuery(PLANETS_QUERY + " WHERE p.id > :id")
+                    .setParameter("id", planetIds.getMaximum())));
+            missing = planetIds.findMissing(session);
+            for (int from = 0; from < missing.size(); from += BATCH_SIZE) {
+                added += addPlanets(getRows(session.createNativeQuery(PLANETS_QUERY + " WHERE p.id IN (:ids)")
+                        .setParameter("ids", missing.subList(from, Math.min(from + BATCH_SIZE, missing.size())))));
+            }
+
+            if (added > 0 && !loading) {
+                logger.info(String.format("Indexed [%d] new systems and planets in [%d]ms",
+                        added, System.currentTimeMillis() - start));
+            }
+        }
+    }
+
+    /**
+     * Gets the rows read by a native query, which returns each row as an untyped array.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object[]> getRows(Query query) {
+        return query.getResultList();
+    }
+
+    /**
+     * Adds rows read by SYSTEMS_QUERY, skipping any which have already been indexed.
+     *
+     * @return  Number of systems added.
+     */
+    synchronized int addSystems(List<Object[]> rows) {
+        int added = 0;
+        for (Object[] r : rows) {
+            if (!systemIds.add(((Number) r[0]).intValue())) {
+                continue;
+            }
+            int row = systems.addRow(((Number) r[0]).intValue());
+            systems.set(row, SECTOR, r[1]);
+            systems.set(row, TYPE, r[2]);
+            systems.set(row, ZONE, r[3]);
+            systems.set(row, PORT, r[4]);
+            systems.set(row, TECH, r[5]);
+            setCodes(systems, row, (String) r[6]);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Adds rows read by PLANETS_QUERY, skipping any which have already been indexed.
+     *
+     * @return  Number of planets added.
+     */
+    synchronized int addPlanets(List<Object[]> rows) {
+        int added = 0;
+        for (Object[] r : rows) {
+            if (!planetIds.add(((Number) r[0]).intValue())) {
+                continue;
+            }
+            int row = planets.addRow(((Number) r[0]).intValue());
+            planets.set(row, SECTOR, r[1]);
+            planets.set(row, TYPE, r[2]);
+            planets.set(row, ATMOSPHERE, r[3]);
+            if (r[4] != null) {
+                planets.set(row, PRESSURE, Pressure.getPressure(((Number) r[4]).intValue()));
+            }
+            if (r[5] != null) {
+                planets.set(row, TEMPERATURE, Temperature.getTemperature(((Number) r[5]).intValue()));
+            }
+            planets.set(row, LIFE, r[6]);
+            planets.set(row, PORT, r[7]);
+            planets.set(row, GOVERNMENT, r[8]);
+            planets.set(row, TECH, r[9]);
+            planets.set(row, ZONE, r[10]);
+            setCodes(planets, row, (String) r[11]);
+            added++;
+        }
+        return added;
+    }
+
+    private static void setCodes(Table table, int row, String codes) {
+        if (codes != null) {
+            for (String code : codes.trim().split(" +")) {
+                if (code.length() > 0) {
+                    table.set(row, CODE, code);
+                }
+            }
+        }
+    }
+
+    private static Result getResult(Table table, BitSet rows, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        for (int row = rows.nextSetBit(0); row >= 0 && ids.size() < limit; row = rows.nextSetBit(row + 1)) {
+            ids.add(table.getId(row));
+        }
+        return new Result(rows.cardinality(), ids);
+    }
+
+    /**
+     * Checks that all the filters are on attributes which are known for this type of object.
+     *
+     * @param table     Table to check against.
+     * @param filters   Filters to check.
+     * @return          Name of the first unknown attribute, or null if they are all known.
+     */
+    private static String getUnknownAttribute(Table table, Map<String, List<String>> filters) {
+        for (String attribute : filters.keySet()) {
+            if (!table.hasAttribute(attribute)) {
+                return attribute;
+            }
+        }
+        return null;
+    }
+
+    public String getUnknownSystemAttribute(Map<String, List<String>> filters) {
+        return getUnknownAttribute(systems, filters);
+    }
+
+    public String getUnknownPlanetAttribute(Map<String, List<String>> filters) {
+        return getUnknownAttribute(planets, filters);
+    }
+
+    /**
+     * Finds star systems which match all of the filters. Each filter is an attribute name,
+     * and a list of values of which any one must match.
+     *
+     * @param filters   Map of attribute names to wanted values.
+     * @param limit     Maximum number of ids to return.
+     * @return          Number of matching systems, and the ids of the first of them.
+     */
+    public synchronized Result findSystems(Map<String, List<String>> filters, int limit) {
+        return getResult(systems, systems.select(filters), limit);
+    }
+
+    /**
+     * Finds planets which match all of the filters. Each filter is an attribute name,
+     * and a list of values of which any one must match.
+     *
+     * @param filters   Map of attribute names to wanted values.
+     * @param limit     Maximum number of ids to return.
+     * @return          Number of matching planets, and the ids of the first of them.
+     */
+    public synchronized Result findPlanets(Map<String, List<String>> filters, int limit) {
+        return getResult(planets, planets.select(filters), limit);
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Description.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.text;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.org.glendale.worldgen.astro.planets.Planet;
+import uk.org.glendale.worldgen.astro.planets.PlanetFeature;
+import uk.org.glendale.worldgen.astro.systems.StarSystem;
+import uk.org.glendale.worldgen.civ.Facility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A description which is stored as the seed it was generated from, rather than as text.
+ * Since the TextGenerator makes all of its choices from the seed, the text can be rendered
+ * again whenever it is needed, and will always be the same for the same seed and phrases.
+ *
+ * It is stored in the normal description column in the form:
+ *
+ *   #seed:version:seed[:r=resource][:k=key][:f=FEATURE,FEATURE][:c]
+ *
+ * The version is the TextGenerator.TEMPLATE_VERSION the seed was created against. The
+ * resource and key are only used for star systems. Features are stored because they are
+ * not otherwise recorded against a planet, and 'c' means that the facilities on the planet
+ * should be described as well.
+ */
+public final class Description {
+    private static final Logger logger = LoggerFactory.getLogger(Description.class);
+
+    private static final String PREFIX = "#seed:";
+
+    private final int          version;
+    private final long         seed;
+    private final String       resource;
+    private final String       key;
+    private final List<String> features;
+    private final boolean      facilities;
+
+    private Description(int version, long seed, String resource, String key,
+                        List<String> features, boolean facilities) {
+        this.version = version;
+        this.seed = seed;
+        this.resource = resource;
+        this.key = key;
+        this.features = features;
+        this.facilities = facilities;
+    }
+
+    /**
+     * Creates a new description seed for a planet, recording the planet's features.
+     *
+     * @param planet    Planet to be described.
+     * @param seed      Random seed to generate the text from.
+     * @return          New description seed.
+     */
+    public static Description forPlanet(Planet planet, long seed) {
+        List<String> features = new ArrayList<>();
+        for (PlanetFeature feature : planet.getFeatures()) {
+            features.add(feature.toString());
+        }
+        return new Description(TextGenerator.TEMPLATE_VERSION, seed, null, null, features, false);
+    }
+
+    /**
+     * Creates a new description seed for a star system.
+     *
+     * @param resource  Name of the phrase file, as used by TextGenerator.
+     * @param key       Root key of the system description.
+     * @param seed      Random seed to generate the text from.
+     * @return          New description seed.
+     */
+    public static Description forSystem(String resource, String key, long seed) {
+        return new Description(TextGenerator.TEMPLATE_VERSION, seed, resource, key,
+                Collections.<String>emptyList(), false);
+    }
+
+    /**
+     * Gets a copy of this description which also describes the facilities on the planet.
+     */
+    public Description withFacilities() {
+        return new Description(version, seed, resource, key, features, true);
+    }
+
+    public boolean hasFacilities() {
+        return facilities;
+    }
+
+    /**
+     * Gets whether the stored text of a description is a seed, rather than actual text.
+     *
+     * @param text  Stored description, may be null.
+     * @return      True iff this is a seed which needs to be rendered.
+     */
+    public static boolean isSeed(String text) {
+        return text != null && text.startsWith(PREFIX);
+    }
+
+    /**
+     * Parses a stored description seed.
+     *
+     * @param text  Stored description, may be null.
+     * @return      Parsed seed, or null if the text isn't a valid seed.
+     */
+    public static Description parse(String text) {
+        if (!isSeed(text)) {
+            return null;
+        }
+        String[] parts = text.substring(PREFIX.length()).split(":");
+        if (parts.length < 2) {
+            logger.warn(String.format("Invalid description seed [%s]", text));
+            return null;
+        }
+        try {
+            int          version = Integer.parseInt(parts[0]);
+            long         seed = Long.parseLong(parts[1]);
+            String       resource = null;
+            String       key = null;
+            List<String> features = Collections.emptyList();
+            boolean      facilities = false;
+
+            for (int i = 2; i < parts.length; i++) {
+                String part = parts[i];
+                if (part.startsWith("r=")) {
+                    resource = part.substring(2);
+                } else if (part.startsWith("k=")) {
+                    key = part.substring(2);
+                } else if (part.startsWith("f=")) {
+                    features = Arrays.asList(part.substring(2).split(","));
+                } else if (part.equals("c")) {
+                    facilities = true;
+                }
+            }
+            return new Description(version, seed, resource, key, features, facilities);
+        } catch (NumberFormatException e) {
+            logger.warn(String.format("Invalid description seed [%s]", text));
+            return null;
+        }
+    }
+
+    /**
+     * Gets the form of this seed which is stored in the database.
+     */
+    public String toString() {
+        StringBuilder buffer = new StringBuilder(PREFIX);
+        buffer.append(version).append(':').append(seed);
+        if (resource != null) {
+            buffer.append(":r=").append(resource);
+        }
+        if (key != null) {
+            buffer.append(":k=").append(key);
+        }
+        if (!features.isEmpty()) {
+            buffer.append(":f=").append(String.join(",", features));
+        }
+        if (facilities) {
+            buffer.append(":c");
+        }
+        return buffer.toString();
+    }
+
+    private void checkVersion() {
+        if (version != TextGenerator.TEMPLATE_VERSION) {
+            logger.warn(String.format("Description seed version [%d] rendered with phrases version [%d]",
+                    version, TextGenerator.TEMPLATE_VERSION));
+        }
+    }
+
+    /**
+     * Renders the description of a planet.
+     *
+     * @param planet        Planet this seed belongs to.
+     * @param facilities    Facilities on the planet, only used if this seed includes them.
+     * @return              HTML description.
+     */
+    public String render(Planet planet, List<Facility> facilities) {
+        checkVersion();
+        TextGenerator text = new TextGenerator(planet);
+        text.setSeed(seed);
+        text.setFeatureNames(features);
+
+        String description = "<p>" + text.getFullDescription() + "</p>";
+        if (this.facilities) {
+            description += describeFacilities(planet, facilities, seed);
+        }
+        return description;
+    }
+
+    /**
+     * Renders the description of a star system.
+     *
+     * @param system    Star system this seed belongs to.
+     * @return          HTML description.
+     */
+    public String render(StarSystem system) {
+        checkVersion();
+        TextGenerator text = new TextGenerator(system, resource);
+        text.setSeed(seed);
+
+        return "<p>" + text.getSystemDescription(key) + "</p>";
+    }
+
+    /**
+     * Describes each facility on a planet. Each facility gets a chance to add a description,
+     * which has its own heading. If a facility does not have descriptions defined, then no
+     * heading is added.
+     *
+     * @param planet        Planet the facilities are on.
+     * @param facilities    Facilities to describe.
+     * @param seed          Seed to generate text from, or null to use random text.
+     * @return              HTML description of the facilities, may be empty.
+     */
+    public static String describeFacilities(Planet planet, List<Facility> facilities, Long seed) {
+        StringBuilder buffer = new StringBuilder();
+        for (Facility f : facilities) {
+            TextGenerator t = new TextGenerator(planet, f);
+            if (seed != null) {
+                t.setSeed(seed + f.getId());
+            }
+            String description = t.getFacilityDescription();
+            if (description.length() > 0) {
+                String type = f.getType().getTitle();
+                if (type.length() > 0) {
+                    type = " (" + type + ")";
+                }
+                buffer.append("<h5>").append(f.getTitle()).append(type).append("</h5>");
+                buffer.append("<p>").append(description).append("</p>");
+            }
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * DescriptionCache.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.text;
+
+import uk.org.glendale.worldgen.Config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of descriptions which have been rendered from a seed. When it is full, the
+ * least recently used description is thrown away. Since a seed always renders to the same
+ * text, a description which has been thrown away can simply be rendered again.
+ *
+ * Keys should include the stored seed, so that a description which has been regenerated
+ * doesn't pick up the old text.
+ */
+public final class DescriptionCache {
+    private static final Map<String, String> cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > Config.getConfiguration().getDescriptionCacheSize();
+        }
+    };
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private DescriptionCache() {
+    }
+
+    /**
+     * Gets a description from the cache, rendering it if it isn't there. Rendering is done
+     * outside of the lock, so two threads may occasionally render the same description, but
+     * they will both get the same text.
+     *
+     * @param key       Unique key for the description.
+     * @param renderer  Renders the description if it isn't cached.
+     * @return          Rendered description.
+     */
+    public static String get(String key, Supplier<String> renderer) {
+        synchronized (cache) {
+            String text = cache.get(key);
+            if (text != null) {
+                hits.increment();
+                return text;
+            }
+        }
+        misses.increment();
+        String text = renderer.get();
+        synchronized (cache) {
+            cache.put(key, text);
+        }
+        return text;
+    }
+
+    /**
+     * Discards all cached descriptions.
+     */
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Gets the number of descriptions which have been found in the cache.
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of descriptions which weren't in the cache, and had to be rendered.
+     */
+    public static long getMisses() {
+        return misses.sum();
+    }
+}
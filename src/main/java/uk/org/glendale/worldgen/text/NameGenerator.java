@@ -6,139 +6,281 @@
  */
 package uk.org.glendale.worldgen.text;
 
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
-import java.util.Properties;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import uk.org.glendale.utils.rpg.Die;
 
 /**
  * Random name generator.
  *
+ * The rules are read from a resource bundle once, and compiled into a Grammar which is
+ * shared by all generators for that resource. For each root and modifier that is used,
+ * the rules are resolved into a Style, in which each alternative is already split into
+ * words and each upper case rule letter already refers to the rule it stands for. So
+ * generating a name is just a matter of picking from arrays.
+ *
  * @author Samuel Penn
  *
  */
 public class NameGenerator {
-    private StringBuffer buffer = new StringBuffer();
+    private static final Map<String, Grammar> grammars = new ConcurrentHashMap<>();
 
-    private Properties names = null;
-    private ArrayList<String> roots = new ArrayList<String>();
+    private final Grammar grammar;
 
-    public NameGenerator(String resource) {
-        String bundleName = "text." + resource;
-
-        ResourceBundle bundle = ResourceBundle.getBundle(bundleName);
-        names = new Properties();
+    /**
+     * A single word of a rule, such as 'CVC'. Lower case characters are output as they are,
+     * upper case characters are replaced by a word from another rule.
+     */
+    private static class Word {
+        private final String  text;
+        private final Rules[] parts;
 
-        Enumeration keys = bundle.getKeys();
-        while (keys.hasMoreElements()) {
-            String key = (String) keys.nextElement();
-            names.setProperty(key, bundle.getString(key));
+        Word(String text, Rules[] parts) {
+            this.text = text;
+            this.parts = parts;
+        }
 
-            if (key.matches("[a-z]*\\.format")) {
-                roots.add(key.replaceAll("\\.format", ""));
+        void expand(StringBuilder out) {
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i] == null) {
+                    out.append(text.charAt(i));
+                } else {
+                    parts[i].expand(out);
+                }
             }
-
         }
     }
 
-    private void getResource(URL url) {
-        throw new UnsupportedOperationException("URLs are not yet supported");
+    /**
+     * All the alternatives for a rule (key, key.1, key.2 etc), each of which is a list of
+     * space separated words. One alternative is chosen at random, then a word from it.
+     */
+    private static class Rules {
+        private Word[][] alternatives;
+
+        void expand(StringBuilder out) {
+            Word[] words = alternatives[Die.rollZero(alternatives.length)];
+            if (words.length > 0) {
+                words[Die.rollZero(words.length)].expand(out);
+            }
+        }
     }
 
     /**
-     * Get the phrase for the given key from the resource bundle. Some keys will
-     * have a number of possible options (in the form key, key.1, key.2 etc). If
-     * a key has several options, one will be selected randomly.
-     *
-     * @param key
-     *            Key to use to find a phrase.
-     * @return The selected phrase, or null if none found.
+     * The rules for a particular root and modifier, fully resolved.
      */
-    private String getRules(String key) {
-        String text = null;
+    private static class Style {
+        // Each alternative format is a list of rules, one for each word of the name.
+        private final Rules[][] formats;
+        private final String    missing;
+        private final int       softMax;
+        private final int       hardMax;
+
+        Style(Rules[][] formats, String missing, int softMax, int hardMax) {
+            this.formats = formats;
+            this.missing = missing;
+            this.softMax = softMax;
+            this.hardMax = hardMax;
+        }
+    }
 
-        text = names.getProperty(key);
-        if (text != null) {
-            int i = 0;
-            while (names.getProperty(key + "." + (i + 1)) != null)
-                i++;
-            if (i > 0) {
-                int choice = (int) (Math.random() * (i + 1));
-                // System.out.println("Going for choice "+choice+" out of "+i);
-                if (choice != 0)
-                    text = names.getProperty(key + "." + choice);
+    /**
+     * The raw rules from a resource bundle, along with the styles built from them.
+     */
+    private static class Grammar {
+        private final Map<String, String> rules = new HashMap<>();
+        private final List<String>        roots = new ArrayList<>();
+        private final Map<String, Style>  styles = new ConcurrentHashMap<>();
+
+        Grammar(ResourceBundle bundle) {
+            Enumeration<String> keys = bundle.getKeys();
+            while (keys.hasMoreElements()) {
+                String key = keys.nextElement();
+                rules.put(key, bundle.getString(key));
+
+                if (key.matches("[a-z]*\\.format")) {
+                    roots.add(key.replaceAll("\\.format", ""));
+                }
             }
         }
-        // System.out.println("Got ["+key+"] ["+text+"]");
 
-        return text;
+        Style getStyle(String root, String modifier) {
+            return styles.computeIfAbsent(root + "/" + modifier, k -> new StyleBuilder(this, root, modifier).build());
+        }
     }
 
-    private String get(String style, String modifier, String key) {
-        String list = null;
+    /**
+     * Resolves the rules for a style. Rules are only built once each, even if they are
+     * referred to from many places.
+     */
+    private static class StyleBuilder {
+        private final Grammar            grammar;
+        private final String             root;
+        private final String             modifier;
+        private final Map<String, Rules> built = new HashMap<>();
+
+        StyleBuilder(Grammar grammar, String root, String modifier) {
+            this.grammar = grammar;
+            this.root = root;
+            this.modifier = modifier;
+        }
 
-        if (modifier != null)
-            list = getRules(key + "." + modifier);
-        if (list == null)
-            list = getRules(key);
+        /**
+         * Gets all the alternatives for a key, as key, key.1, key.2 etc.
+         */
+        private List<String> getAlternatives(String key) {
+            List<String> list = new ArrayList<>();
+            if (grammar.rules.containsKey(key)) {
+                list.add(grammar.rules.get(key));
+                for (int i = 1; grammar.rules.containsKey(key + "." + i); i++) {
+                    list.add(grammar.rules.get(key + "." + i));
+                }
+            }
+            return list;
+        }
 
-        // System.out.println("get["+modifier+","+key+"]: ["+list+"]");
+        /**
+         * Gets the rules for a key, using the modified version of the key if there is one.
+         */
+        private Rules getRules(String key) {
+            if (built.containsKey(key)) {
+                return built.get(key);
+            }
+            List<String> text = (modifier == null) ? new ArrayList<>() : getAlternatives(key + "." + modifier);
+            if (text.isEmpty()) {
+                text = getAlternatives(key);
+            }
+            if (text.isEmpty()) {
+                built.put(key, null);
+                return null;
+            }
+            // Added before it is filled in, so that rules can refer to themselves.
+            Rules rules = new Rules();
+            built.put(key, rules);
+
+            rules.alternatives = new Word[text.size()][];
+            for (int a = 0; a < text.size(); a++) {
+                String[] tokens = text.get(a).trim().split(" +");
+                Word[]   words = new Word[tokens.length];
+                for (int w = 0; w < tokens.length; w++) {
+                    String  token = tokens[w];
+                    Rules[] parts = new Rules[token.length()];
+                    for (int c = 0; c < token.length(); c++) {
+                        if (Character.isUpperCase(token.charAt(c))) {
+                            parts[c] = getRules(root + "." + token.charAt(c));
+                            if (parts[c] == null) {
+                                parts[c] = EMPTY;
+                            }
+                        }
+                    }
+                    words[w] = new Word(token, parts);
+                }
+                rules.alternatives[a] = words;
+            }
+            return rules;
+        }
 
-        String[] tokens = list.split(" +");
-        String rule = tokens[Die.rollZero(tokens.length)];
-        String word = "";
+        Style build() {
+            List<String> formats = (modifier == null) ? new ArrayList<>() : getAlternatives(root + "." + modifier + ".format");
+            if (formats.isEmpty()) {
+                formats = getAlternatives(root + ".format");
+            }
+
+            Rules[][] resolved = new Rules[formats.size()][];
+            for (int f = 0; f < formats.size(); f++) {
+                String[] keys = formats.get(f).split(" ");
+                resolved[f] = new Rules[keys.length];
+                for (int k = 0; k < keys.length; k++) {
+                    resolved[f][k] = getRules(keys[k]);
+                    if (resolved[f][k] == null) {
+                        resolved[f][k] = EMPTY;
+                    }
+                }
+            }
 
-        for (int i = 0; i < rule.length(); i++) {
-            char c = rule.charAt(i);
-            if (Character.isUpperCase(c)) {
-                word += get(style, modifier, style + "." + c);
-            } else {
-                word += c;
+            int softMax = 6;
+            int hardMax = 8;
+            try {
+                softMax = Integer.parseInt(getValue(root + ".soft.max", "6"));
+                hardMax = Integer.parseInt(getValue(root + ".hard.max", "8"));
+            } catch (NumberFormatException e) {
+                // Broken config.
             }
+
+            return new Style(resolved, "[" + root + ".format]", softMax, hardMax);
         }
 
-        return word;
+        private String getValue(String key, String defaultValue) {
+            return grammar.rules.containsKey(key) ? grammar.rules.get(key) : defaultValue;
+        }
     }
 
-    private String getName(String style, String modifier) {
-        String format = null;
+    // Used in place of rules which haven't been defined.
+    private static final Rules EMPTY = new Rules();
+    static {
+        EMPTY.alternatives = new Word[][] { new Word[0] };
+    }
 
-        if (modifier != null)
-            format = getRules(style + "." + modifier + ".format");
-        if (format == null)
-            format = getRules(style + ".format");
+    public NameGenerator(String resource) {
+        String bundleName = "text." + resource;
 
-        if (format == null) {
-            return "[" + style + ".format]";
-        }
+        grammar = grammars.computeIfAbsent(bundleName, k -> new Grammar(ResourceBundle.getBundle(k)));
+    }
 
-        String[] roots = format.split(" ");
-        String name = "";
+    private void getResource(URL url) {
+        throw new UnsupportedOperationException("URLs are not yet supported");
+    }
 
-        for (String f : roots) {
-            String n = get(style, modifier, f);
-            name += n.substring(0, 1).toUpperCase() + n.substring(1) + " ";
+    private String getName(Style style) {
+        if (style.formats.length == 0) {
+            return style.missing;
+        }
+        Rules[]       format = style.formats[Die.rollZero(style.formats.length)];
+        StringBuilder name = new StringBuilder();
+
+        for (Rules rules : format) {
+            int start = name.length();
+            rules.expand(name);
+            if (name.length() > start) {
+                name.setCharAt(start, Character.toUpperCase(name.charAt(start)));
+            }
+            name.append(' ');
         }
-        name = name.replaceAll(" '", "'");
-        name = name.replaceAll("_", " ");
 
+        // Join on apostrophes, turn underscores into spaces and capitalise each word.
+        StringBuilder out = new StringBuilder(name.length());
         for (int i = 0; i < name.length(); i++) {
-            if (name.charAt(i) == ' ' && i < name.length() - 2) {
-                name = name.substring(0, i + 1)
-                        + name.substring(i + 1, i + 2).toUpperCase()
-                        + name.substring(i + 2);
+            char c = name.charAt(i);
+            if (c == ' ' && i + 1 < name.length() && name.charAt(i + 1) == '\'') {
+                continue;
+            } else if (c == '_') {
+                c = ' ';
             }
+            if (out.length() > 0 && out.charAt(out.length() - 1) == ' ') {
+                c = Character.toUpperCase(c);
+            }
+            out.append(c);
         }
 
-        return name.trim();
+        return out.toString().trim();
+    }
+
+    private String getName(String style, String modifier) {
+        return getName(grammar.getStyle(style, modifier));
     }
 
     public String[] getRoots() {
-        return roots.toArray(new String[0]);
+        return grammar.roots.toArray(new String[0]);
     }
 
     /**
@@ -148,7 +290,8 @@ public class NameGenerator {
      * @return  Randomly generated name.
      */
     public String generateName() {
-        return getName(names.getProperty("root", "standard"), null);
+        String root = grammar.rules.get("root");
+        return getName((root == null) ? "standard" : root, null);
     }
 
     /**
@@ -166,32 +309,77 @@ public class NameGenerator {
      *
      * @param root      Ruleset to use.
      * @param modifier  Modifier to use.
-     *
-     * @throws Exception
      */
     public String generateName(String root, String modifier) {
-        String name = getName(root, modifier);
+        return generateName(grammar.getStyle(root, modifier));
+    }
 
-        int softMax = 6;
-        int hardMax = 8;
-        try {
-            softMax = Integer.parseInt(names.getProperty(root+".soft.max", "6"));
-            hardMax = Integer.parseInt(names.getProperty(root+".hard.max", "8"));
-        } catch (NumberFormatException e) {
-            // Broken config.
-        }
+    private String generateName(Style style) {
+        String name = getName(style);
 
         // If the name length is greater than the soft maximum, retry once.
         // Forbid names longer than the hard maximum.
-        int max = softMax;
+        int max = style.softMax;
         while (name.length() > max) {
-            name = getName(root, modifier);
-            max = hardMax;
+            name = getName(style);
+            max = style.hardMax;
         }
 
         return name;
     }
 
+    /**
+     * Generates a batch of names according to the specified ruleset and modifier. If the
+     * names must be unique, then duplicates are thrown away and replaced, but if too many
+     * duplicates are found (because the ruleset can't produce enough different names) then
+     * fewer names than asked for may be returned.
+     *
+     * @param root      Ruleset to use.
+     * @param modifier  Modifier to use, may be null.
+     * @param number    Number of names to generate.
+     * @param unique    If true, all the names will be different.
+     * @return          List of names.
+     */
+    public List<String> generateNames(String root, String modifier, int number, boolean unique) {
+        return generateNames(root, modifier, number, unique, null);
+    }
+
+    /**
+     * Generates a batch of unique names, none of which are in a set of names that are
+     * already taken.
+     *
+     * @param root      Ruleset to use.
+     * @param modifier  Modifier to use, may be null.
+     * @param number    Number of names to generate.
+     * @param unique    If true, all the names will be different.
+     * @param exclude   Names which must not be used, may be null.
+     * @return          List of names.
+     */
+    public List<String> generateNames(String root, String modifier, int number, boolean unique,
+                                      Collection<String> exclude) {
+        Style        style = grammar.getStyle(root, modifier);
+        List<String> names = new ArrayList<>(number);
+        Set<String>  seen = unique ? new HashSet<>() : null;
+        int          rejects = 0;
+        int          maxRejects = Math.max(number, 100);
+
+        while (names.size() < number) {
+            String name = generateName(style);
+            if (unique && (seen.contains(name) || (exclude != null && exclude.contains(name)))) {
+                if (rejects++ >= maxRejects) {
+                    break;
+                }
+                continue;
+            }
+            if (unique) {
+                seen.add(name);
+            }
+            names.add(name);
+        }
+
+        return names;
+    }
+
 
     public static void main(String[] args) throws Exception {
         NameGenerator name = new NameGenerator("systems");
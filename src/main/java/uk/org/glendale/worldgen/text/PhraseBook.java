@@ -0,0 +1,113 @@
+/**
+ * PhraseBook.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.text;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The compiled phrases from one or more resource bundles. Phrase books are read and
+ * compiled the first time they are needed, and then cached for the life of the
+ * application, so creating a TextGenerator doesn't need to read any files.
+ *
+ * A key may have several alternative phrases, given as key, key.1, key.2 and so on.
+ * These are stored together, so that one of them can be picked without searching for
+ * each numbered key in turn.
+ */
+class PhraseBook {
+    private static final Logger logger = LoggerFactory.getLogger(PhraseBook.class);
+
+    private static final Map<String, PhraseBook> cache = new ConcurrentHashMap<>();
+
+    private final Map<String, Template[]> phrases;
+
+    private PhraseBook(Map<String, Template[]> phrases) {
+        this.phrases = phrases;
+    }
+
+    /**
+     * Gets the phrase book made up of the given resource bundles. Where a key is defined
+     * in more than one bundle, the one from the last bundle is used.
+     *
+     * @param bundleNames   Names of the resource bundles to read.
+     * @return              Compiled phrases, which may be shared.
+     */
+    static PhraseBook getPhraseBook(String... bundleNames) {
+        return cache.computeIfAbsent(String.join(",", bundleNames), k -> load(bundleNames));
+    }
+
+    /**
+     * Discards all cached phrase books, so that they will be read again when next used.
+     */
+    static void clearCache() {
+        cache.clear();
+    }
+
+    private static PhraseBook load(String... bundleNames) {
+        Map<String, String> text = new HashMap<>();
+        for (String bundleName : bundleNames) {
+            try {
+                ResourceBundle bundle = ResourceBundle.getBundle(bundleName);
+                Enumeration<String> e = bundle.getKeys();
+                while (e.hasMoreElements()) {
+                    String key = e.nextElement();
+                    text.put(key, bundle.getString(key));
+                }
+            } catch (MissingResourceException e) {
+                logger.warn(String.format("Unable to find text bundle for [%s]", bundleName));
+            }
+        }
+
+        Map<String, Template> compiled = new HashMap<>();
+        for (Map.Entry<String, String> entry : text.entrySet()) {
+            compiled.put(entry.getKey(), Template.compile(entry.getValue()));
+        }
+
+        Map<String, Template[]> phrases = new HashMap<>();
+        for (String key : compiled.keySet()) {
+            // Alternatives are only used if they follow on from the base key without gaps.
+            List<Template> options = new ArrayList<>();
+            options.add(compiled.get(key));
+            for (int i = 1; compiled.containsKey(key + "." + i); i++) {
+                options.add(compiled.get(key + "." + i));
+            }
+            phrases.put(key, options.toArray(new Template[0]));
+        }
+
+        return new PhraseBook(Collections.unmodifiableMap(phrases));
+    }
+
+    /**
+     * Gets whether the exact key has been defined.
+     *
+     * @param key   Key to look for.
+     * @return      True iff the key has a phrase.
+     */
+    boolean hasPhrase(String key) {
+        return phrases.containsKey(key);
+    }
+
+    /**
+     * Gets all the alternative phrases for a key.
+     *
+     * @param key   Key to look for.
+     * @return      Array of phrases, or null if the key isn't defined.
+     */
+    Template[] getPhrases(String key) {
+        return phrases.get(key);
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * PropertyAccessors.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.text;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of the getter methods of a class, used to look up $Name style properties in
+ * phrases. The table for each class is built once, the first time it is needed, with a
+ * MethodHandle for each public getXxx() method keyed by the property name (Xxx). Reading
+ * a property is then a map lookup and a direct call, rather than a reflective search.
+ */
+class PropertyAccessors {
+    private static final Logger logger = LoggerFactory.getLogger(PropertyAccessors.class);
+
+    private static final Map<Class<?>, PropertyAccessors> cache = new ConcurrentHashMap<>();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<?>                  type;
+    private final Map<String, MethodHandle> getters;
+
+    private PropertyAccessors(Class<?> type, Map<String, MethodHandle> getters) {
+        this.type = type;
+        this.getters = getters;
+    }
+
+    /**
+     * Gets the accessor table for a class.
+     *
+     * @param type  Class to get the table for.
+     * @return      Shared accessor table.
+     */
+    static PropertyAccessors forClass(Class<?> type) {
+        return cache.computeIfAbsent(type, PropertyAccessors::build);
+    }
+
+    private static PropertyAccessors build(Class<?> type) {
+        Map<String, MethodHandle> getters = new HashMap<>();
+        MethodHandles.Lookup      lookup = MethodHandles.publicLookup();
+
+        for (Method method : type.getMethods()) {
+            String name = method.getName();
+            if (name.length() > 3 && name.startsWith("get") && method.getParameterCount() == 0 &&
+                    !Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class) {
+                try {
+                    getters.put(name.substring(3), lookup.unreflect(method).asType(GETTER_TYPE));
+                } catch (IllegalAccessException e) {
+                    logger.warn(String.format("Cannot access [%s.%s]", type.getSimpleName(), name));
+                }
+            }
+        }
+        logger.debug(String.format("Found [%d] properties for [%s]", getters.size(), type.getSimpleName()));
+
+        return new PropertyAccessors(type, Collections.unmodifiableMap(getters));
+    }
+
+    boolean hasProperty(String name) {
+        return getters.containsKey(name);
+    }
+
+    /**
+     * Reads the value of a property from an object of this class.
+     *
+     * @param target    Object to read the property of.
+     * @param name      Name of the property, without the 'get' prefix.
+     * @return          Value of the property, which may be null.
+     * @throws IllegalArgumentException If there is no such property.
+     */
+    Object get(Object target, String name) {
+        MethodHandle getter = getters.get(name);
+        if (getter == null) {
+            throw new IllegalArgumentException(
+                    String.format("No property [%s] for [%s]", name, type.getSimpleName()));
+        }
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
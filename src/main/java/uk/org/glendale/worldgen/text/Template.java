@@ -0,0 +1,439 @@
+/**
+ * Template.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.text;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A phrase which has been compiled into a tree of nodes, so that it can be rendered any
+ * number of times without having to be parsed again. Templates are immutable, and so can
+ * be shared between threads. The phrase syntax is described in TextGenerator.
+ */
+class Template {
+    private static final Logger logger = LoggerFactory.getLogger(Template.class);
+
+    static final Template EMPTY = new Template(Collections.<Node>emptyList());
+
+    private final List<Node> nodes;
+
+    /**
+     * Everything that a template needs from the generator when it is rendered.
+     */
+    interface Context {
+        /**
+         * Gets the value of a named property of the object being described.
+         */
+        String getProperty(String name);
+
+        /**
+         * Gets a randomly selected phrase for the given key.
+         *
+         * @return  Phrase, or null if there is no such key.
+         */
+        Template getPhrase(String key);
+
+        /**
+         * Chooses a random number between 0 and count - 1.
+         */
+        int choose(int count);
+    }
+
+    /**
+     * A single element of a compiled template.
+     */
+    interface Node {
+        void render(Context context, StringBuilder out);
+    }
+
+    private Template(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Renders this template, appending the result to the buffer.
+     *
+     * @param context   Provides properties and other phrases.
+     * @param out       Buffer to write output to.
+     */
+    void render(Context context, StringBuilder out) {
+        for (Node node : nodes) {
+            node.render(context, out);
+        }
+    }
+
+    String render(Context context) {
+        StringBuilder out = new StringBuilder();
+        render(context, out);
+        return out.toString();
+    }
+
+    /**
+     * Literal text, output as is.
+     */
+    private static class Text implements Node {
+        private final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        public void render(Context context, StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    /**
+     * $Prop, replaced by the value of the property. $$Prop converts an enum style
+     * value such as 'GasGiant' into lower case words, 'gas giant'.
+     */
+    private static class Property implements Node {
+        private final String  name;
+        private final boolean words;
+
+        Property(String name, boolean words) {
+            this.name = name;
+            this.words = words;
+        }
+
+        public void render(Context context, StringBuilder out) {
+            String value = context.getProperty(name);
+            if (!words) {
+                out.append(value);
+                return;
+            }
+            int start = out.length();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (Character.isUpperCase(c)) {
+                    out.append(' ').append(Character.toLowerCase(c));
+                } else {
+                    out.append(c);
+                }
+            }
+            // Same as trimming the value, since words can only add a leading space.
+            if (out.length() > start && out.charAt(start) == ' ') {
+                out.deleteCharAt(start);
+            }
+        }
+    }
+
+    /**
+     * $xDy, replaced by a roll of x dice each with y sides. Only single digit
+     * numbers are recognised.
+     */
+    private static class Dice implements Node {
+        private final int number;
+        private final int size;
+
+        Dice(int number, int size) {
+            this.number = number;
+            this.size = size;
+        }
+
+        public void render(Context context, StringBuilder out) {
+            // Rolled through the context, so that seeded descriptions are repeatable.
+            int total = 0;
+            for (int i = 0; i < number; i++) {
+                total += context.choose(size) + 1;
+            }
+            out.append(total);
+        }
+    }
+
+    /**
+     * [a|b|c], outputs one of the options at random.
+     */
+    private static class Choice implements Node {
+        private final Template[] options;
+
+        Choice(List<Template> options) {
+            this.options = options.toArray(new Template[0]);
+        }
+
+        public void render(Context context, StringBuilder out) {
+            if (options.length > 0) {
+                options[context.choose(options.length)].render(context, out);
+            }
+        }
+    }
+
+    /**
+     * {a|b|c}, chooses one of the keys at random, and outputs the phrase for it. The key
+     * itself may contain properties, such as {description.$StarPort}.
+     */
+    private static class Reference implements Node {
+        private final Template[] keys;
+
+        Reference(List<Template> keys) {
+            this.keys = keys.toArray(new Template[0]);
+        }
+
+        public void render(Context context, StringBuilder out) {
+            if (keys.length > 0) {
+                String   key = keys[context.choose(keys.length)].render(context);
+                Template phrase = context.getPhrase(key);
+                if (phrase != null) {
+                    phrase.render(context, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * (VALUE|TEST=a|TEST<b|TEST>c|default), a switch statement. If the value is equal to
+     * a test, then that option is output. If < or > is used, the option is selected if the
+     * test is less than or greater than the value, numerically if both are numbers. If no
+     * case matches, then the final option is used.
+     */
+    private static class Switch implements Node {
+        private final Template value;
+        private final char[]   operators;
+        private final String[] tests;
+        private final Template[] options;
+
+        Switch(Template value, char[] operators, String[] tests, Template[] options) {
+            this.value = value;
+            this.operators = operators;
+            this.tests = tests;
+            this.options = options;
+        }
+
+        private static int compare(String test, String value) {
+            try {
+                return Long.compare(Long.parseLong(test), Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                // Text values have always been compared the other way round.
+                return value.compareToIgnoreCase(test);
+            }
+        }
+
+        private boolean matches(int i, String v) {
+            switch (operators[i]) {
+                case '=':
+                    return tests[i].equals(v);
+                case '<':
+                    return compare(tests[i], v) < 0;
+                case '>':
+                    return compare(tests[i], v) > 0;
+                default:
+                    return true;
+            }
+        }
+
+        public void render(Context context, StringBuilder out) {
+            if (options.length == 0) {
+                return;
+            }
+            String v = value.render(context);
+            for (int i = 0; i < options.length; i++) {
+                if (matches(i, v)) {
+                    options[i].render(context, out);
+                    return;
+                }
+            }
+            options[options.length - 1].render(context, out);
+        }
+    }
+
+    /**
+     * Compiles a phrase into a template.
+     *
+     * @param phrase    Text of the phrase.
+     * @return          Compiled template.
+     */
+    static Template compile(String phrase) {
+        if (phrase == null || phrase.isEmpty()) {
+            return EMPTY;
+        }
+        Parser parser = new Parser(phrase);
+        return parser.parse();
+    }
+
+    /**
+     * Simple recursive descent parser for phrases. Brackets which aren't closed are
+     * treated as plain text.
+     */
+    private static class Parser {
+        private final String text;
+        private int          pos = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Template parse() {
+            List<Node> nodes = new ArrayList<>();
+            parseSequence(nodes, "");
+            return new Template(nodes);
+        }
+
+        /**
+         * Parses nodes until one of the terminating characters, or the end of the text,
+         * is reached. The terminator is not consumed.
+         */
+        private void parseSequence(List<Node> nodes, String terminators) {
+            StringBuilder literal = new StringBuilder();
+
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (terminators.indexOf(c) >= 0) {
+                    break;
+                }
+                Node node = null;
+                int  start = pos;
+                switch (c) {
+                    case '$':
+                        node = parseProperty();
+                        break;
+                    case '[':
+                        pos++;
+                        List<Template> options = parseOptions(']');
+                        node = (options == null) ? null : new Choice(options);
+                        break;
+                    case '{':
+                        pos++;
+                        List<Template> keys = parseOptions('}');
+                        node = (keys == null) ? null : new Reference(keys);
+                        break;
+                    case '(':
+                        node = parseSwitch();
+                        break;
+                    case ']':
+                        // Malformed text string, drop the stray bracket.
+                        logger.warn(String.format("Text string <<%s>> is malformed, probably spurious ']'", text));
+                        pos++;
+                        continue;
+                    default:
+                        break;
+                }
+                if (node != null) {
+                    if (literal.length() > 0) {
+                        nodes.add(new Text(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    nodes.add(node);
+                } else {
+                    // Plain text, or a bracket which is never closed.
+                    literal.append(c);
+                    pos = start + 1;
+                }
+            }
+            if (literal.length() > 0) {
+                nodes.add(new Text(literal.toString()));
+            }
+        }
+
+        private Node parseProperty() {
+            pos++;
+            boolean words = false;
+            if (pos < text.length() && text.charAt(pos) == '$') {
+                words = true;
+                pos++;
+            }
+            int start = pos;
+            while (pos < text.length() && Character.isLetterOrDigit(text.charAt(pos)) && text.charAt(pos) < 128) {
+                pos++;
+            }
+            if (pos == start) {
+                // A lone '$' is dropped.
+                return EMPTY_NODE;
+            }
+            String name = text.substring(start, pos);
+            if (name.length() == 3 && Character.isDigit(name.charAt(0)) && name.charAt(1) == 'D' &&
+                    Character.isDigit(name.charAt(2))) {
+                return new Dice(name.charAt(0) - '0', name.charAt(2) - '0');
+            }
+            return new Property(name, words);
+        }
+
+        /**
+         * Parses '|' separated options up to the closing character, which is consumed.
+         * Empty options are ignored.
+         *
+         * @return  List of options, or null if the closing character wasn't found.
+         */
+        private List<Template> parseOptions(char close) {
+            List<Template> options = new ArrayList<>();
+            String         terminators = "|" + close;
+
+            while (pos < text.length()) {
+                List<Node> nodes = new ArrayList<>();
+                parseSequence(nodes, terminators);
+                if (!nodes.isEmpty()) {
+                    options.add(new Template(nodes));
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char c = text.charAt(pos++);
+                if (c == close) {
+                    return options;
+                }
+            }
+            return null;
+        }
+
+        private Node parseSwitch() {
+            int start = pos;
+            pos++;
+            List<Template> value = new ArrayList<>();
+            List<Character> operators = new ArrayList<>();
+            List<String> tests = new ArrayList<>();
+            List<Template> options = new ArrayList<>();
+
+            // The value to switch on, up to the first '|'.
+            List<Node> nodes = new ArrayList<>();
+            parseSequence(nodes, "|)");
+            value.add(new Template(nodes));
+
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == ')') {
+                    char[] ops = new char[operators.size()];
+                    for (int i = 0; i < ops.length; i++) {
+                        ops[i] = operators.get(i);
+                    }
+                    return new Switch(value.get(0), ops, tests.toArray(new String[0]),
+                            options.toArray(new Template[0]));
+                }
+                // Each case is TEST=option, TEST<option, TEST>option or just option.
+                int  caseStart = pos;
+                char op = 0;
+                while (pos < text.length() && "|)".indexOf(text.charAt(pos)) < 0) {
+                    char t = text.charAt(pos);
+                    if (t == '=' || t == '<' || t == '>') {
+                        op = t;
+                        break;
+                    }
+                    pos++;
+                }
+                String test = "";
+                if (op != 0) {
+                    test = text.substring(caseStart, pos);
+                    pos++;
+                } else {
+                    pos = caseStart;
+                }
+                nodes = new ArrayList<>();
+                parseSequence(nodes, "|)");
+                operators.add(op);
+                tests.add(test);
+                options.add(new Template(nodes));
+            }
+            // No closing bracket, so this isn't a switch.
+            pos = start;
+            return null;
+        }
+    }
+
+    private static final Node EMPTY_NODE = (context, out) -> { };
+}
@@ -21,7 +21,6 @@ import uk.org.glendale.worldgen.astro.systems.StarSystemCode;
 import uk.org.glendale.worldgen.civ.Facility;
 import uk.org.glendale.worldgen.civ.FacilityType;
 
-import java.lang.reflect.Method;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
@@ -39,17 +38,82 @@ import java.util.*;
  * (Prop>20?a:b) Get property of planet, compare with value, then a otherwise b.
  * $Prop Value of property for planet.
  *
+ * Phrase files are compiled into templates the first time they are used, and cached
+ * in a PhraseBook, so generating text doesn't need to read or parse them again.
+ *
+ * If a seed is set, then all random choices are made from that seed, so the same seed
+ * and the same object always give the same text. This is what allows descriptions to
+ * be stored as just a seed (see Description), and rendered when they are needed.
  *
  * @author Samuel Penn
  */
 public class TextGenerator {
     private static final Logger logger = LoggerFactory.getLogger(TextGenerator.class);
-    private StringBuffer buffer = new StringBuffer();
     private Planet planet = null;
     private Facility facility = null;
     private StarSystem system = null;
 
-    private Properties phrases = null;
+    private final PhraseBook phrases;
+    private final Object target;
+    private final PropertyAccessors accessors;
+    private NumberFormat numberFormat = null;
+    private Random random = null;
+    private List<String> featureNames = null;
+
+    /**
+     * Version of the phrase files. This must be increased whenever a change to the phrases
+     * would cause an existing seed to give different text, so that stored seeds can tell
+     * which phrases they were created against.
+     */
+    public static final int TEMPLATE_VERSION = 1;
+
+    private final Template.Context context = new Template.Context() {
+        public String getProperty(String name) {
+            return TextGenerator.this.getProperty(name);
+        }
+
+        public Template getPhrase(String key) {
+            return TextGenerator.this.getPhrase(key);
+        }
+
+        public int choose(int count) {
+            return roll(count);
+        }
+    };
+
+    /**
+     * Makes all random choices from the given seed, rather than the global dice.
+     *
+     * @param seed  Seed to generate text from.
+     */
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Describes the planet as having these features, rather than the features set on the
+     * planet object. Features aren't stored, so this is used when a stored seed is rendered.
+     */
+    void setFeatureNames(List<String> featureNames) {
+        this.featureNames = featureNames;
+    }
+
+    private List<String> getFeatureNames() {
+        if (featureNames == null) {
+            featureNames = new ArrayList<>();
+            for (PlanetFeature feature : planet.getFeatures()) {
+                featureNames.add(feature.toString());
+            }
+        }
+        return featureNames;
+    }
+
+    /**
+     * Random number between 0 and count - 1.
+     */
+    private int roll(int count) {
+        return (random == null) ? Die.rollZero(count) : random.nextInt(count);
+    }
 
     /**
      * Get the phrase for the given key from the resource bundle. Some keys will
@@ -60,23 +124,12 @@ public class TextGenerator {
      *            Key to use to find a phrase.
      * @return The selected phrase, or null if none found.
      */
-    private String getPhrase(String key) {
-        String text = null;
-
-        text = phrases.getProperty(key);
-        if (text != null) {
-            int i = 0;
-            while (phrases.getProperty(key + "." + (i + 1)) != null) {
-                i++;
-            }
-            if (i > 0) {
-                int choice = Die.rollZero(i + 1);
-                if (choice != 0)
-                    text = phrases.getProperty(key + "." + choice);
-            }
+    private Template getPhrase(String key) {
+        Template[] options = phrases.getPhrases(key);
+        if (options == null) {
+            return null;
         }
-
-        return text;
+        return (options.length == 1) ? options[0] : options[roll(options.length)];
     }
 
     /**
@@ -87,56 +140,37 @@ public class TextGenerator {
      * @return      True iff the exact property exists.
      */
     private boolean hasPhrase(String key) {
-        return phrases.getProperty(key) != null;
+        return phrases.hasPhrase(key);
     }
 
     private static final String RESOURCE_BASE = "text.planets.";
     private static final String FACILITY_BASE = "text.facilities.";
     private static final String SYSTEM_BASE = "text.systems.";
 
-    private void readResource(String bundleName) {
-        try {
-            ResourceBundle bundle = ResourceBundle.getBundle(bundleName);
-            Enumeration<String> e = bundle.getKeys();
-            while (e.hasMoreElements()) {
-                String key = e.nextElement();
-                String value = bundle.getString(key);
-                phrases.setProperty(key, value);
-            }
-        } catch (MissingResourceException e) {
-            logger.warn(String.format("Unable to find text bundle for [%s]", bundleName));
-        }
-
-    }
-
-    /**
-     * Finds all the resources for this type of planet generator. Resources are
-     * named according to the planet type and group.
-     */
-    private void readResources() {
-        String type = planet.getType().name();
-        String group = planet.getType().getGroup().name();
-
-        phrases = new Properties();
-
-        readResource(RESOURCE_BASE + "all");
-        readResource(RESOURCE_BASE + group);
-        readResource(RESOURCE_BASE + group + "." + type);
-    }
-
     public TextGenerator(final StarSystem system, final String resource) {
         this.system = system;
-        phrases = new Properties();
-        readResource(SYSTEM_BASE + resource);
+        phrases = PhraseBook.getPhraseBook(SYSTEM_BASE + resource);
+        target = system;
+        accessors = (system == null) ? null : PropertyAccessors.forClass(system.getClass());
     }
 
+    /**
+     * Uses the resources for this type of planet. Resources are named according to the
+     * planet type and group.
+     */
     public TextGenerator(final Planet planet) {
         this.planet = planet;
         if (this.planet == null) {
             throw new IllegalStateException(
                     "Planet builder has not been correctly initiated");
         }
-        readResources();
+        String type = planet.getType().name();
+        String group = planet.getType().getGroup().name();
+
+        phrases = PhraseBook.getPhraseBook(RESOURCE_BASE + "all", RESOURCE_BASE + group,
+                RESOURCE_BASE + group + "." + type);
+        target = planet;
+        accessors = PropertyAccessors.forClass(planet.getClass());
     }
 
     public TextGenerator(final Planet planet, final Facility facility) {
@@ -147,240 +181,95 @@ public class TextGenerator {
             throw new IllegalStateException(
                     "Planet builder has not been correctly initiated");
         }
-        phrases = new Properties();
-
         String type = facility.getType().name().toLowerCase();
         String name = facility.getName();
 
-        readResource(FACILITY_BASE + type + "." + name);
-    }
-
-    /**
-     * Get a random phrase from the text fragment. The text may be bounded by [
-     * ] and will be delimited by '|'. For example, [hello|hi|greetings] will
-     * return one of 'hello', 'hi' or 'greetings'.
-     *
-     * @param text
-     *            Text to choose from.
-     * @return One of the phrases from the list of phrases.
-     */
-    private String random(String text) {
-        text = text.replaceAll("^[\\[\\{]", "");
-        text = text.replaceAll("[\\}\\]]$", "");
-        StringTokenizer tokens = new StringTokenizer(text, "|");
-        int count = tokens.countTokens();
-        String token = null;
-        int choice = (int) (Math.random() * count);
-
-        for (int i = 0; i <= choice; i++) {
-            token = tokens.nextToken();
-        }
-
-        return token;
-    }
-
-    /**
-     * Parse a line of text which has flow control sections. Currently supported
-     * flow control consists of: [a|b|c] - Choose one of a, b or c and display
-     * that. {a|b|c} - Choose one of a, b or c and look it up as a key phrase,
-     * then parse that before displaying it.
-     *
-     * @param line
-     *            Line to be parsed.
-     * @return Result instance of the parsed line.
-     */
-    private String parse(String line) {
-        if (line == null)
-            return "";
-
-        try {
-            // Replace any property variables, and change enums to lower case.
-            while (line.contains("$$")) {
-                String prop = line.substring(line.indexOf("$$") + 2);
-                String value = "";
-
-                prop = prop.replaceAll("[^A-Za-z0-9].*", "");
-                // System.out.println(prop);
-
-                value = getProperty(prop).replaceAll("([A-Z])", " $1").toLowerCase().trim();
-                line = line.replaceFirst("\\$\\$" + prop, value);
-            }
-
-            // Replace any property variables.
-            while (line.contains("$")) {
-                String prop = line.substring(line.indexOf("$") + 1);
-                String value = "";
-
-                prop = prop.replaceAll("[^A-Za-z0-9].*", "");
-                // System.out.println(prop);
-
-                value = getProperty(prop);
-                line = line.replaceFirst("\\$" + prop, value);
-            }
-
-            // Switch statement.
-            // (VARIABLE|VALUE=a|VALUE=b|VALUE=c|DEFAULT)
-            // If the VARIABLE is equal to a VALUE, display the option for that
-            // value.
-            // If VALUE> or VALUE< is used (instead of VALUE=), select the
-            // option if the
-            // VALUE is greater than or less than the VARIABLE.
-            while (line.contains("(") && line.contains(")")) {
-                String options = line.substring(line.indexOf("(") + 1,
-                        line.indexOf(")") + 1);
-                String[] tokens = options.split("\\|");
-                String option = "";
-                String value = tokens[0];
-
-                for (int i = 1; i < tokens.length; i++) {
-                    String test = tokens[i].replaceAll("[=<>].*", "");
-                    option = tokens[i].replaceAll(".*[=<>]", "");
-
-                    if (tokens[i].contains("=")) {
-                        if (test.equals(value)) {
-                            break;
-                        }
-                    } else if (tokens[i].contains("<")) {
-                        try {
-                            Long v = Long.parseLong(value);
-                            Long t = Long.parseLong(test);
-                            if (t < v) {
-                                break;
-                            }
-                        } catch (NumberFormatException e) {
-                            if (value.compareToIgnoreCase(test) < 0)
-                                break;
-                        }
-
-                    } else if (tokens[i].contains(">")) {
-                        // Is the tested value greater than this case?
-                        try {
-                            Long v = Long.parseLong(value);
-                            Long t = Long.parseLong(test);
-                            if (t > v) {
-                                break;
-                            }
-                        } catch (NumberFormatException e) {
-                            if (value.compareToIgnoreCase(test) > 0)
-                                break;
-                        }
-                    } else {
-                        // Default value.
-                        break;
-                    }
-                }
-
-                line = line.replaceFirst("\\(.*?\\)", option);
-                line = line.replaceAll("\\)", "");
-            }
-
-            // Choosen a random option.
-            while (line.contains("[") && line.contains("]")) {
-                int start = line.indexOf("[");
-                int end = line.indexOf("]") + 1;
-                if (end < start) {
-                    // Malformed text string. Try to repair and continue.
-                    logger.warn(String.format("Text string <<%s>> is malformed, probably spurious ']'", line));
-                    line = line.replaceFirst("\\]", "");
-                    continue;
-                }
-
-                String options = line.substring(start, end);
-                String option = random(options);
-
-                line = line.replaceFirst("\\[.*?\\]", option);
-            }
-
-            // Replace a random option with the substituted phrase.
-            while (line.contains("{") && line.contains("}")) {
-                String options = line.substring(line.indexOf("{"),
-                        line.indexOf("}") + 1);
-                String option = random(options);
-                // System.out.println("Replacing ["+option+"] in ["+line+"]...");
-                option = parse(getPhrase(option));
-                // System.out.println("...with ["+option+"]");
-
-                line = line.replaceFirst("\\{.*?\\}", option);
-            }
-        } catch (Throwable e) {
-            System.out.println("Unable to parse [" + line + "] ("
-                    + e.getMessage() + ")");
-            e.printStackTrace();
-        }
-        return line;
+        phrases = PhraseBook.getPhraseBook(FACILITY_BASE + type + "." + name);
+        // Facility descriptions refer to properties of the planet the facility is on.
+        target = planet;
+        accessors = PropertyAccessors.forClass(planet.getClass());
     }
 
     /**
-     * Get the named property from the Planet object. Uses reflection to call
-     * the right getter on the Planet. If no such property is found, then the
-     * empty string is returned. Result is always a string. If the contents
-     * looks like a number, then it will be formatted and truncated to 1dp if
-     * necessary.
+     * Get the named property from the Planet object (or the StarSystem if there is no
+     * planet). Properties are read through a table of getter methods which is built once
+     * for each class. If no such property is found, then the empty string is returned.
+     * Result is always a string. If the contents looks like a number, then it will be
+     * formatted and truncated to 1dp if necessary.
      *
-     * If the property name is of the form xDy, then a dice roll is actually
-     * done instead, rolling x dice of size y. e.g., $3D6 translates as roll 3
-     * six sided dice, and return the result.
+     * Dice rolls of the form $xDy are handled when the phrase is compiled, so don't
+     * reach here.
      *
      * @param name
      *            Name of property to fetch.
      * @return Value of the property, or empty string.
      */
     private String getProperty(String name) {
-        String value = "";
-        if (planet == null && system == null) {
-            return value;
+        if (target == null) {
+            return "";
         }
-
-        // Possible to make die rolls.
-        if (name.matches("[0-9]D[0-9]")) {
-            int number = Integer.parseInt(name.replaceAll("([0-9]+)D[0-9]+",
-                    "$1"));
-            int type = Integer.parseInt(name
-                    .replaceAll("[0-9]+D([0-9])+", "$1"));
-
-            return "" + Die.die(type, number);
+        if (!accessors.hasProperty(name)) {
+            logger.warn(String.format("getProperty: Cannot find method for [%s]", name));
+            return "";
         }
 
         try {
-            if (planet != null) {
-                Method method = planet.getClass().getMethod("get" + name);
-                Object result = method.invoke(planet);
-                value = "" + result;
-            } else if (system != null) {
-                Method method = system.getClass().getMethod("get" + name);
-                Object result = method.invoke(system);
-                value = "" + result;
+            Object result = accessors.get(target, name);
+            if (result instanceof Number) {
+                return getNumberFormat().format(((Number) result).doubleValue());
             }
-
-            try {
-                double i = Double.parseDouble(value);
-                DecimalFormat format = new DecimalFormat();
-                format.setMaximumFractionDigits(1);
-                value = format.format(i);
-            } catch (NumberFormatException e) {
-                // Do nothing.
+            String value = "" + result;
+            if (value.length() > 0 && NUMBER_START.indexOf(value.charAt(0)) >= 0) {
+                try {
+                    value = getNumberFormat().format(Double.parseDouble(value));
+                } catch (NumberFormatException e) {
+                    // Do nothing.
+                }
             }
-        } catch (Throwable e) {
-            System.out.println("getProperty: Cannot find method for [" + name
-                    + "]");
-            value = "";
+            return value;
+        } catch (RuntimeException e) {
+            logger.warn(String.format("getProperty: Unable to read [%s]", name), e);
+            return "";
         }
+    }
 
-        return value;
+    private static final String NUMBER_START = "0123456789-+.";
+
+    private NumberFormat getNumberFormat() {
+        if (numberFormat == null) {
+            DecimalFormat format = new DecimalFormat();
+            format.setMaximumFractionDigits(1);
+            numberFormat = format;
+        }
+        return numberFormat;
     }
 
-    private void addText(StringBuffer buffer, String key, int percentChance) {
-        if (Die.d100() > percentChance)
+    private void addText(StringBuilder buffer, String key, int percentChance) {
+        if (roll(100) + 1 > percentChance)
             return;
 
-        String text = getPhrase(key);
+        Template text = getPhrase(key);
         if (text == null)
             return;
 
         if (buffer.length() > 0) {
             buffer.append(" ");
         }
-        buffer.append(parse(text));
+        text.render(context, buffer);
+    }
+
+    /**
+     * Collapses runs of spaces into a single space, and trims the result.
+     */
+    private static String tidy(StringBuilder buffer) {
+        StringBuilder out = new StringBuilder(buffer.length());
+        for (int i = 0; i < buffer.length(); i++) {
+            char c = buffer.charAt(i);
+            if (c != ' ' || (out.length() > 0 && out.charAt(out.length() - 1) != ' ')) {
+                out.append(c);
+            }
+        }
+        return out.toString().trim();
     }
 
     /**
@@ -406,14 +295,14 @@ public class TextGenerator {
      * @return          String containing the full description of this planet.
      */
     private String getFullDescription(String rootKey) {
-        buffer = new StringBuffer();
+        StringBuilder buffer = new StringBuilder();
 
         // Look for features definitions of form planet.<type>.<feature>
-        for (PlanetFeature feature : planet.getFeatures()) {
-            String key = String.format("%s.%s", rootKey, feature.toString());
+        for (String feature : getFeatureNames()) {
+            String key = String.format("%s.%s", rootKey, feature);
             if (hasPhrase(key)) {
                 addText(buffer, key, 100);
-                return buffer.toString().replaceAll(" +", " ").trim();
+                return tidy(buffer);
             }
         }
 
@@ -424,9 +313,9 @@ public class TextGenerator {
         addText(buffer, rootKey + ".pressure." + planet.getPressure(), 75);
         addText(buffer, rootKey + ".biosphere." + planet.getLife(), 100);
 
-        for (PlanetFeature feature : planet.getFeatures()) {
-            String key = String.format("%s.feature.%s", rootKey, feature.toString());
-            if (phrases.containsKey(key)) {
+        for (String feature : getFeatureNames()) {
+            String key = String.format("%s.feature.%s", rootKey, feature);
+            if (hasPhrase(key)) {
                 addText(buffer, key, 100);
             } else {
                 logger.error("MISSING KEY " + key);
@@ -440,33 +329,33 @@ public class TextGenerator {
 		 * addText(buffer, key, 100); } else { key = "trade."+code; if
 		 * (phrases.getProperty(key) != null) { addText(buffer, key, 100); } } }
 		 */
-        return buffer.toString().replaceAll(" +", " ").trim();
+        return tidy(buffer);
     }
 
     public String getFacilityDescription() {
         String rootKey = facility.getName();
 
-        buffer = new StringBuffer();
+        StringBuilder buffer = new StringBuilder();
 
         addText(buffer, rootKey, 100);
 
-        return buffer.toString().replaceAll(" +", " ").trim();
+        return tidy(buffer);
     }
 
     public String getSystemDescription(String rootKey) {
-        buffer = new StringBuffer();
+        StringBuilder buffer = new StringBuilder();
 
         addText(buffer, "system." + rootKey, 100);
 
         for (StarSystemCode code : system.getTradeCodes()) {
             String key = "system." + rootKey + "." + code.name();
-            if (!phrases.containsKey(key)) {
+            if (!hasPhrase(key)) {
                 key = "system." + code.name();
             }
             addText(buffer, key, code.getNotability());
         }
 
-        return buffer.toString().replaceAll(" +", " ").trim();
+        return tidy(buffer);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,99 @@
+/**
+ * Span.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.trace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed section of work within a trace, such as a query or drawing an image. Spans are
+ * started by Tracer.span(), and are recorded in their trace when they are closed, so
+ * should be used in a try-with-resources block.
+ *
+ * If nothing is being traced, the span doesn't belong to a trace and closing it does nothing.
+ */
+public class Span implements AutoCloseable {
+    private final Trace  trace;
+    private final String category;
+    private final String name;
+    private final long   threadId;
+    private final String threadName;
+    private final long   start;
+    private long         duration = -1;
+    private Map<String, Object> args = null;
+
+    Span(Trace trace, String category, String name) {
+        this.trace = trace;
+        this.category = category;
+        this.name = name;
+        this.threadId = Thread.currentThread().getId();
+        this.threadName = Thread.currentThread().getName();
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Adds extra information to the span, which is shown when it is selected.
+     *
+     * @param key       Name of the value.
+     * @param value     Value to add.
+     * @return          This span.
+     */
+    public Span arg(String key, Object value) {
+        if (trace != null) {
+            if (args == null) {
+                args = new LinkedHashMap<>();
+            }
+            args.put(key, value);
+        }
+        return this;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    long getThreadId() {
+        return threadId;
+    }
+
+    String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Gets when the span started, as System.nanoTime().
+     */
+    long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets how long the span took in nanoseconds, or -1 if it hasn't finished.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    Map<String, Object> getArgs() {
+        return args;
+    }
+
+    /**
+     * Finishes the span, and records it in its trace. Closing it again does nothing.
+     */
+    @Override
+    public void close() {
+        if (trace != null && duration < 0) {
+            duration = System.nanoTime() - start;
+            trace.add(this);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Trace.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * All the spans recorded while handling a single request. A trace is normally used by the
+ * thread that started it, but it may be handed to other threads (such as those drawing
+ * images), so spans can be added from any thread.
+ *
+ * Traces are limited to MAX_SPANS, so that a request which makes thousands of queries
+ * doesn't use up lots of memory. Any more are counted but not kept.
+ */
+public class Trace {
+    static final int MAX_SPANS = 2000;
+
+    private final String     id;
+    private final Span       root;
+    private final long       startMillis;
+    private final List<Span> spans = new ArrayList<>();
+    private int              dropped = 0;
+
+    Trace(String name) {
+        this.id = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        this.startMillis = System.currentTimeMillis();
+        this.root = new Span(this, "request", name);
+    }
+
+    /**
+     * Gets the unique id of this trace.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the span which covers the whole trace.
+     */
+    public Span getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the time at which the trace was started, in milliseconds since the epoch.
+     */
+    long getStartMillis() {
+        return startMillis;
+    }
+
+    synchronized void add(Span span) {
+        if (spans.size() < MAX_SPANS || span == root) {
+            spans.add(span);
+        } else {
+            dropped++;
+        }
+    }
+
+    /**
+     * Gets a copy of all the spans which have finished, including the root span if the
+     * trace has finished.
+     */
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * Gets the number of spans which weren't kept because the trace was full.
+     */
+    public synchronized int getDropped() {
+        return dropped;
+    }
+}
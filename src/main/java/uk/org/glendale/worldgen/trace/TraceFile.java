@@ -0,0 +1,142 @@
+/**
+ * TraceFile.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.trace;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Appends traces to a local file in the Chrome trace event format, which can be opened
+ * in chrome://tracing or Perfetto without needing anything else to be running.
+ *
+ * The file uses the JSON array format, which allows the closing ']' to be left off, so
+ * traces can be appended as they arrive. Each trace is shown as a separate process,
+ * named after the request, with a row for each thread which worked on it.
+ *
+ * When the file grows beyond its maximum size, it is renamed to trace.1.json (and any
+ * older files are moved along) and a new file is started. Only a fixed number of old
+ * files are kept.
+ */
+public class TraceFile {
+    static final String NAME = "trace";
+
+    private final Path directory;
+    private final long maxSize;
+    private final int  maxFiles;
+    private final Gson gson = new Gson();
+    private int        sequence = 0;
+
+    /**
+     * Creates a trace file in the given directory. The directory is created if needed.
+     *
+     * @param directory     Directory to write traces to.
+     * @param maxSize       Size in bytes after which a new file is started.
+     * @param maxFiles      Number of files to keep, including the current one.
+     */
+    public TraceFile(Path directory, long maxSize, int maxFiles) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxFiles = maxFiles;
+    }
+
+    Path getPath(int index) {
+        return directory.resolve((index == 0) ? NAME + ".json" : NAME + "." + index + ".json");
+    }
+
+    /**
+     * Appends a finished trace to the file.
+     *
+     * @param trace         Trace to write.
+     * @throws IOException  If the file can't be written.
+     */
+    public synchronized void write(Trace trace) throws IOException {
+        Files.createDirectories(directory);
+
+        Path path = getPath(0);
+        if (Files.exists(path) && Files.size(path) > maxSize) {
+            roll();
+        }
+        boolean isNew = !Files.exists(path) || Files.size(path) == 0;
+
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (isNew) {
+                out.write("[\n");
+            }
+            int pid = ++sequence;
+            Span root = trace.getRoot();
+
+            out.write(metadata("process_name", pid, 0,
+                    root.getName() + " [" + trace.getId() + "]"));
+            Set<Long> threads = new HashSet<>();
+            for (Span span : trace.getSpans()) {
+                if (threads.add(span.getThreadId())) {
+                    out.write(metadata("thread_name", pid, span.getThreadId(), span.getThreadName()));
+                }
+                out.write(event(trace, span, pid));
+            }
+        }
+    }
+
+    private String metadata(String type, int pid, long tid, String name) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("name", name);
+        event.put("name", type);
+        event.put("ph", "M");
+        event.put("pid", pid);
+        event.put("tid", tid);
+        event.put("args", args);
+        return gson.toJson(event) + ",\n";
+    }
+
+    private String event(Trace trace, Span span, int pid) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("trace", trace.getId());
+        if (span.getArgs() != null) {
+            args.putAll(span.getArgs());
+        }
+        if (span == trace.getRoot() && trace.getDropped() > 0) {
+            args.put("dropped", trace.getDropped());
+        }
+        long offset = span.getStart() - trace.getRoot().getStart();
+
+        event.put("name", span.getName());
+        event.put("cat", span.getCategory());
+        event.put("ph", "X");
+        event.put("ts", trace.getStartMillis() * 1000 + offset / 1000);
+        event.put("dur", span.getDuration() / 1000);
+        event.put("pid", pid);
+        event.put("tid", span.getThreadId());
+        event.put("args", args);
+        return gson.toJson(event) + ",\n";
+    }
+
+    /**
+     * Moves each file along by one, throwing away the oldest.
+     */
+    private void roll() throws IOException {
+        Files.deleteIfExists(getPath(maxFiles - 1));
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            if (Files.exists(getPath(i))) {
+                Files.move(getPath(i), getPath(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
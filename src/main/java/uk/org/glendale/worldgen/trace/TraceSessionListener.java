@@ -0,0 +1,112 @@
+/**
+ * TraceSessionListener.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.trace;
+
+import org.hibernate.BaseSessionEventListener;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler.Stage;
+
+/**
+ * Adds spans for the database work done by Hibernate to the current trace: waiting for a
+ * connection, running each SQL statement or batch, and flushing the session. Hibernate
+ * creates one of these for each session, and a session is only used by one thread at a
+ * time, so it only needs to remember the spans which are currently open.
+ *
+ * The same work is also timed as stages of the GenerationProfiler, so that time spent in
+ * the database isn't counted against whichever generator happened to cause it.
+ */
+public class TraceSessionListener extends BaseSessionEventListener {
+    private static final long serialVersionUID = 1L;
+
+    // Longest SQL shown as the name of a span. The whole statement is in its arguments.
+    private static final int MAX_NAME = 60;
+
+    private Span connection;
+    private Span execute;
+    private Span batch;
+    private Span flush;
+
+    private Stage executeStage;
+    private Stage batchStage;
+    private Stage flushStage;
+
+    private static String getName(String sql) {
+        if (sql == null) {
+            return "sql";
+        }
+        sql = sql.trim().replaceAll("\\s+", " ");
+        return (sql.length() > MAX_NAME) ? sql.substring(0, MAX_NAME) + "..." : sql;
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionStart() {
+        connection = Tracer.span("db", "connection");
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        String sql = Tracer.getStatement();
+        execute = Tracer.span("sql", getName(sql)).arg("sql", sql);
+        executeStage = GenerationProfiler.start("db/sql");
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        if (execute != null) {
+            execute.close();
+            execute = null;
+        }
+        if (executeStage != null) {
+            executeStage.close();
+            executeStage = null;
+        }
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batch = Tracer.span("sql", "batch");
+        batchStage = GenerationProfiler.start("db/sql");
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        if (batch != null) {
+            batch.close();
+            batch = null;
+        }
+        if (batchStage != null) {
+            batchStage.close();
+            batchStage = null;
+        }
+    }
+
+    @Override
+    public void flushStart() {
+        flush = Tracer.span("db", "flush");
+        flushStage = GenerationProfiler.start("db/flush");
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        if (flush != null) {
+            flush.arg("entities", numberOfEntities).arg("collections", numberOfCollections).close();
+            flush = null;
+        }
+        if (flushStage != null) {
+            flushStage.close();
+            flushStage = null;
+        }
+    }
+}
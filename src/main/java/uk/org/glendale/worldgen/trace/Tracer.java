@@ -0,0 +1,223 @@
+/**
+ * Tracer.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.org.glendale.worldgen.Config;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Records where the time goes while handling a request, so that slow requests can be
+ * looked at afterwards. A trace is started for each request, and is held by the thread
+ * handling it, so any code called by that request can add spans to it without it being
+ * passed around. Code which hands work to another thread must pass the trace with it,
+ * using current() and attach().
+ *
+ * Only traces which take longer than trace.threshold milliseconds are kept, and are
+ * written to a rolling file in the trace.path directory. If trace.path isn't set,
+ * nothing is traced, and spans cost almost nothing.
+ */
+public final class Tracer {
+    private static final Logger logger = LoggerFactory.getLogger(Tracer.class);
+
+    // Size of each trace file, and the number of them to keep.
+    private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+    private static final int  MAX_FILES = 5;
+
+    private static final Span NONE = new Span(null, "", "");
+
+    private static final ThreadLocal<Trace>  current = new ThreadLocal<>();
+    private static final ThreadLocal<String> statement = new ThreadLocal<>();
+
+    private static volatile boolean   configured = false;
+    private static volatile TraceFile file = null;
+    private static volatile long      threshold = 0;
+
+    /**
+     * Work done inside a span, which gives a result.
+     */
+    public interface Work<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Work done inside a span, which has no result.
+     */
+    public interface Action<E extends Exception> {
+        void run() throws E;
+    }
+
+    private Tracer() {
+    }
+
+    /**
+     * Sets where traces are written to, and how slow a request must be for its trace to
+     * be kept.
+     *
+     * @param traceFile     File to write traces to, or null to turn tracing off.
+     * @param thresholdMs   Minimum time in milliseconds of traces to keep.
+     */
+    static synchronized void configure(TraceFile traceFile, long thresholdMs) {
+        file = traceFile;
+        threshold = thresholdMs;
+        configured = true;
+    }
+
+    /**
+     * Checks whether requests should be traced.
+     */
+    public static boolean isEnabled() {
+        if (!configured) {
+            synchronized (Tracer.class) {
+                if (!configured) {
+                    Config config = Config.getConfiguration();
+                    if (config.getTracePath() != null) {
+                        logger.info(String.format("Writing traces slower than [%d]ms to [%s]",
+                                config.getTraceThreshold(), config.getTracePath()));
+                        configure(new TraceFile(Paths.get(config.getTracePath()), MAX_FILE_SIZE, MAX_FILES),
+                                config.getTraceThreshold());
+                    } else {
+                        configure(null, 0);
+                    }
+                }
+            }
+        }
+        return file != null;
+    }
+
+    /**
+     * Starts a new trace on this thread, if tracing is enabled.
+     *
+     * @param name  Name of the trace, such as the route of the request.
+     * @return      The new trace, or null if tracing isn't enabled.
+     */
+    public static Trace start(String name) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Trace trace = new Trace(name);
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * Finishes the trace on this thread, writing it out if it was slow enough.
+     */
+    public static void finish() {
+        Trace trace = current.get();
+        current.remove();
+        statement.remove();
+        if (trace == null) {
+            return;
+        }
+        trace.getRoot().close();
+
+        long millis = trace.getRoot().getDuration() / 1000000;
+        if (millis >= threshold && file != null) {
+            logger.info(String.format("Slow request [%s] took [%d]ms, trace [%s]",
+                    trace.getRoot().getName(), millis, trace.getId()));
+            try {
+                file.write(trace);
+            } catch (IOException e) {
+                logger.warn("Unable to write trace", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the trace on this thread, so that it can be passed to another thread.
+     *
+     * @return  Current trace, or null if nothing is being traced.
+     */
+    public static Trace current() {
+        return current.get();
+    }
+
+    /**
+     * Makes spans on this thread part of the given trace. This is used by threads which
+     * work on behalf of a request, and should be undone with attach(null) when finished.
+     *
+     * @param trace     Trace to add spans to, or null to stop adding spans.
+     */
+    public static void attach(Trace trace) {
+        if (trace == null) {
+            current.remove();
+            statement.remove();
+        } else {
+            current.set(trace);
+        }
+    }
+
+    /**
+     * Starts a span on this thread. It must be closed when the work is done.
+     *
+     * @param category  Type of work, such as 'sql' or 'render'.
+     * @param name      Name of the work being done.
+     * @return          New span, which does nothing if this thread isn't being traced.
+     */
+    public static Span span(String category, String name) {
+        Trace trace = current.get();
+        return (trace == null) ? NONE : new Span(trace, category, name);
+    }
+
+    /**
+     * Does some work inside a span, which is closed when the work is done.
+     *
+     * @param category  Type of work, such as 'sql' or 'render'.
+     * @param name      Name of the work being done.
+     * @param work      Work to do.
+     * @return          Result of the work.
+     * @throws E        Anything thrown by the work.
+     */
+    public static <T, E extends Exception> T span(String category, String name, Work<T, E> work) throws E {
+        Span span = span(category, name);
+        try {
+            return work.run();
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Does some work which has no result inside a span, which is closed when the work is done.
+     *
+     * @param category  Type of work, such as 'sql' or 'render'.
+     * @param name      Name of the work being done.
+     * @param action    Work to do.
+     * @throws E        Anything thrown by the work.
+     */
+    public static <E extends Exception> void span(String category, String name, Action<E> action) throws E {
+        Span span = span(category, name);
+        try {
+            action.run();
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Notes the SQL statement which is about to be run on this thread, so that it can
+     * be added to the span for its execution.
+     *
+     * @param sql   SQL of the statement.
+     */
+    public static void setStatement(String sql) {
+        if (current.get() != null) {
+            statement.set(sql);
+        }
+    }
+
+    /**
+     * Gets the last SQL statement prepared on this thread while it was being traced.
+     */
+    static String getStatement() {
+        return statement.get();
+    }
+}
@@ -8,9 +8,12 @@ package uk.org.glendale.worldgen.web;
 
 import com.google.gson.Gson;
 import spark.Request;
+import spark.Response;
 import spark.ResponseTransformer;
 import uk.org.glendale.utils.graphics.SimpleImage;
+import uk.org.glendale.worldgen.StoredData;
 import uk.org.glendale.worldgen.exceptions.ApiException;
+import uk.org.glendale.worldgen.exceptions.ServerBusyException;
 
 import javax.imageio.ImageIO;
 import javax.servlet.ServletException;
@@ -243,4 +246,98 @@ public abstract class Controller {
             throw e;
         }
     }
+
+    /**
+     * Gets whether the client has asked for the summary view of a list, with the 'view'
+     * parameter set to 'summary'. List endpoints default to the 'full' view, which returns
+     * complete objects. Any other value is an error.
+     *
+     * @param request   HTTP Request object.
+     * @return          True iff a summary view was requested.
+     * @throws ApiException Exception if the view was not recognised.
+     */
+    protected boolean isSummaryView(Request request) throws ApiException {
+        String view = getStringParamWithDefault(request, "view", "full");
+
+        if (view.equals("summary")) {
+            return true;
+        } else if (view.equals("full")) {
+            return false;
+        }
+        throw new ApiException(400, ApiException.ApiErrorType.OUT_OF_BOUNDS,
+                String.format("Parameter 'view' has illegal value [%s], must be 'full' or 'summary'", view));
+    }
+
+    /**
+     * Cache-Control for responses which never change, such as stored planet maps.
+     */
+    protected static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+
+    /**
+     * Cache-Control for responses which may change, so clients must check their copy is
+     * still current (using its ETag) each time they use it.
+     */
+    protected static final String CACHE_REVALIDATE = "no-cache";
+
+    /**
+     * Sets the ETag and Cache-Control headers of a response, and checks whether the client
+     * already has this version. If it has, the response status is set to 304 Not Modified,
+     * and the caller should return an empty body.
+     *
+     * @param request       HTTP Request object.
+     * @param response      HTTP Response object.
+     * @param hash          Hash of the content, used as the ETag. If null, nothing is done.
+     * @param cacheControl  Value for the Cache-Control header.
+     * @return              True iff the client's copy is current, and nothing needs to be sent.
+     */
+    protected boolean isNotModified(Request request, Response response, String hash, String cacheControl) {
+        if (hash == null) {
+            return false;
+        }
+        String etag = "\"" + hash + "\"";
+        response.header("ETag", etag);
+        response.header("Cache-Control", cacheControl);
+
+        String match = request.headers("If-None-Match");
+        if (match != null) {
+            for (String tag : match.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(etag) || tag.equals("*")) {
+                    response.status(304);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets an output which writes stored data straight to the body of a response, setting
+     * its length. Once anything has been written, the caller should return an empty body.
+     *
+     * @param response      HTTP Response object.
+     * @return              Output for the response body.
+     */
+    protected StoredData.Output getBodyOutput(Response response) {
+        return length -> {
+            response.raw().setContentLengthLong(length);
+            return response.raw().getOutputStream();
+        };
+    }
+
+    /**
+     * Converts a refusal because the server is busy into a 503 error, and tells the client
+     * when to try again.
+     *
+     * @param response      HTTP Response object.
+     * @param e             Exception saying the server is busy.
+     * @return              Exception to throw, with a status of 503.
+     */
+    protected ApiException getBusyException(Response response, ServerBusyException e) {
+        response.header("Retry-After", String.valueOf(e.getRetryAfter()));
+        return new ApiException(503, e.getMessage());
+    }
 }
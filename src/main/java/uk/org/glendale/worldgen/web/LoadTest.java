@@ -0,0 +1,212 @@
+/**
+ * LoadTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simple HTTP load generator, for measuring how the web server copes with many clients at
+ * once. A number of clients each request the given URLs in turn, as fast as they can, for
+ * a fixed length of time. The throughput and the spread of response times are recorded.
+ *
+ * This is used to compare the server running on normal threads against running on virtual
+ * threads (server.virtualThreads), by running the same test against each. See main() for
+ * running it from the command line.
+ */
+public class LoadTest {
+    private final List<String> urls;
+    private final int          clients;
+    private final long         duration;
+
+    /**
+     * Results of a load test.
+     */
+    public static class Result {
+        private final long   requests;
+        private final long   errors;
+        private final long   millis;
+        private final long[] latencies;
+
+        Result(long requests, long errors, long millis, long[] latencies) {
+            this.requests = requests;
+            this.errors = errors;
+            this.millis = millis;
+            this.latencies = latencies;
+            Arrays.sort(this.latencies);
+        }
+
+        /**
+         * Gets the total number of requests made, including failed ones.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Gets the number of requests which failed, or had a status of 400 or more.
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Gets the number of requests completed per second.
+         */
+        public double getThroughput() {
+            return (requests * 1000.0) / Math.max(1, millis);
+        }
+
+        /**
+         * Gets a percentile of the response times, in milliseconds.
+         *
+         * @param percentile    Percentile to get, such as 50 or 99.
+         * @return              Response time in milliseconds, or zero if there were no requests.
+         */
+        public double getPercentile(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * latencies.length);
+            return latencies[Math.min(Math.max(rank, 1), latencies.length) - 1] / 1000000.0;
+        }
+    }
+
+    /**
+     * Growable array of response times, one per client so no locking is needed.
+     */
+    private static class Latencies {
+        long[] values = new long[1024];
+        int    size = 0;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Creates a new load test.
+     *
+     * @param urls      URLs to request. Each client requests them in turn.
+     * @param clients   Number of clients requesting at once.
+     * @param seconds   Number of seconds to run for.
+     */
+    public LoadTest(List<String> urls, int clients, int seconds) {
+        this.urls = urls;
+        this.clients = clients;
+        this.duration = seconds * 1000L;
+    }
+
+    /**
+     * Runs the load test, waiting for it to finish.
+     *
+     * @return  Results of the test.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public Result run() throws InterruptedException {
+        List<Thread>    threads = new ArrayList<>();
+        List<Latencies> latencies = new ArrayList<>();
+        AtomicLong      errors = new AtomicLong();
+        long            start = System.currentTimeMillis();
+        long            end = start + duration;
+
+        for (int c = 0; c < clients; c++) {
+            Latencies times = new Latencies();
+            int       first = c;
+            latencies.add(times);
+
+            Thread thread = new Thread(() -> {
+                for (int i = first; System.currentTimeMillis() < end; i++) {
+                    long    requestStart = System.nanoTime();
+                    boolean ok = request(urls.get(i % urls.size()));
+
+                    times.add(System.nanoTime() - requestStart);
+                    if (!ok) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }, "load-" + c);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int count = 0;
+        for (Latencies times : latencies) {
+            count += times.size;
+        }
+        long[] all = new long[count];
+        int    offset = 0;
+        for (Latencies times : latencies) {
+            System.arraycopy(times.values, 0, all, offset, times.size);
+            offset += times.size;
+        }
+
+        return new Result(count, errors.get(), System.currentTimeMillis() - start, all);
+    }
+
+    /**
+     * Makes a single request, reading the whole response.
+     *
+     * @return  True if the request succeeded.
+     */
+    private boolean request(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(60000);
+
+            int status = connection.getResponseCode();
+            try (InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) {
+                    byte[] buffer = new byte[8192];
+                    while (in.read(buffer) != -1) {
+                        // Discard the body.
+                    }
+                }
+            }
+            return status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs a load test from the command line. This doesn't need a database, so can be run
+     * from a different machine to the server.
+     *
+     * @param args  Clients, seconds, then one or more URLs.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 3) {
+            System.out.println("Usage: LoadTest <clients> <seconds> <url> [<url> ...]");
+            return;
+        }
+        int          clients = Integer.parseInt(args[0]);
+        int          seconds = Integer.parseInt(args[1]);
+        List<String> urls = Arrays.asList(Arrays.copyOfRange(args, 2, args.length));
+
+        System.out.println(String.format("Running %d clients for %ds against %d URLs", clients, seconds, urls.size()));
+        Result result = new LoadTest(urls, clients, seconds).run();
+
+        System.out.println(String.format("Requests: %d (%d errors)", result.getRequests(), result.getErrors()));
+        System.out.println(String.format("Throughput: %.1f requests/s", result.getThroughput()));
+        System.out.println(String.format("Latency: p50 %.1fms, p95 %.1fms, p99 %.1fms",
+                result.getPercentile(50), result.getPercentile(95), result.getPercentile(99)));
+    }
+}
@@ -13,11 +13,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.ModelAndView;
 import spark.Spark;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 import spark.template.velocity.VelocityTemplateEngine;
 import uk.org.glendale.worldgen.Main;
 import uk.org.glendale.worldgen.Ticker;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.astro.Universe;
+import uk.org.glendale.worldgen.metrics.Metrics;
+import uk.org.glendale.worldgen.trace.Trace;
+import uk.org.glendale.worldgen.trace.Tracer;
 
 import java.util.*;
 
@@ -75,6 +80,16 @@ public class Server extends Main {
     public void startServer() {
         logger.info("== WorldGen AppServer ==");
 
+        if (getConfiguration().getVirtualThreads()) {
+            if (VirtualThreadPool.isSupported()) {
+                logger.info("Handling requests on virtual threads");
+                EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+                        new EmbeddedJettyFactory().withThreadPool(new VirtualThreadPool("http-")));
+            } else {
+                logger.warn("Virtual threads need Java 21 or later, using normal threads");
+            }
+        }
+
         Spark.staticFileLocation("/public");
         Spark.port(getConfiguration().getHttpPort());
 
@@ -85,6 +100,10 @@ public class Server extends Main {
             System.exit(1);
         }
 
+        if (Tracer.isEnabled()) {
+            traceRequests();
+        }
+
         try (WorldGen wg = Server.getWorldGen()) {
             logger.debug("Current Time is: " + wg.getCurrentTime());
 
@@ -107,12 +126,34 @@ public class Server extends Main {
             }
             logger.debug("Finished controller loading");
 
+            // Build the name index now, rather than on the first autocomplete request.
+            wg.getNameIndex();
+
         } catch (Exception e) {
 
         }
 
     }
 
+    /**
+     * Starts a trace at the beginning of each request, and finishes it once the response
+     * has been sent. The trace is named after the route, so that traces of the same page
+     * can be compared.
+     */
+    private void traceRequests() {
+        before((request, response) -> {
+            String route = Metrics.getRoute(request.pathInfo());
+            Tracer.start(request.requestMethod() + " " + route).getRoot().arg("path", request.pathInfo());
+        });
+        afterAfter((request, response) -> {
+            Trace trace = Tracer.current();
+            if (trace != null) {
+                trace.getRoot().arg("status", response.status());
+                Tracer.finish();
+            }
+        });
+    }
+
     /**
      * Defaults to http://localhost:4567/index
      */
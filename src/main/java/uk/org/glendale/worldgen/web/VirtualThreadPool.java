@@ -0,0 +1,114 @@
+/**
+ * VirtualThreadPool.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.web;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pool for Jetty which runs every task on a new virtual thread. Virtual threads
+ * are cheap to create and to block, so requests which are waiting on the database don't
+ * use up a limited pool of threads. Instead, the number of requests which can use the
+ * database at once is limited by the size of the connection pool.
+ *
+ * Virtual threads need Java 21 or later. Since the code is built for older versions, they
+ * are created by reflection, and isSupported() should be checked first.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+    private final ExecutorService executor;
+    private final AtomicInteger   running = new AtomicInteger();
+
+    /**
+     * Creates a pool of virtual threads, named with the given prefix.
+     *
+     * @param prefix    Prefix for thread names, which are numbered from zero.
+     * @throws UnsupportedOperationException    If this Java runtime doesn't have virtual threads.
+     */
+    public VirtualThreadPool(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            Object   builder = Thread.class.getMethod("ofVirtual").invoke(null);
+
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+            Method create = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            executor = (ExecutorService) create.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this Java runtime", e);
+        }
+    }
+
+    /**
+     * Checks whether this Java runtime has virtual threads.
+     *
+     * @return  True iff virtual threads can be created.
+     */
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            running.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            // Keep waiting.
+        }
+    }
+
+    /**
+     * Gets the number of tasks which are currently running.
+     */
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    /**
+     * Virtual threads are created when needed, so none are ever idle.
+     */
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    /**
+     * There is no limit on the number of virtual threads, so the pool is never low.
+     */
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * CommodityAPI.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.web.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import uk.org.glendale.worldgen.WorldGen;
+import uk.org.glendale.worldgen.astro.commodities.Commodity;
+import uk.org.glendale.worldgen.astro.commodities.CommodityFactory;
+import uk.org.glendale.worldgen.astro.commodities.NoSuchCommodityException;
+import uk.org.glendale.worldgen.astro.commodities.ResourceIndex;
+import uk.org.glendale.worldgen.astro.sectors.NoSuchSectorException;
+import uk.org.glendale.worldgen.astro.sectors.Sector;
+import uk.org.glendale.worldgen.astro.systems.NoSuchStarSystemException;
+import uk.org.glendale.worldgen.astro.systems.StarSystem;
+import uk.org.glendale.worldgen.exceptions.ApiException;
+import uk.org.glendale.worldgen.web.Controller;
+import uk.org.glendale.worldgen.web.Server;
+
+import java.util.List;
+
+import static spark.Spark.get;
+
+/**
+ * REST API for finding out about commodities, and where they can be found.
+ */
+public class CommodityAPI extends Controller {
+    private static final Logger logger = LoggerFactory.getLogger(CommodityAPI.class);
+
+    private static final int DEFAULT_RADIUS = 6;
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    public void setupEndpoints() {
+        logger.info("Setting up endpoints for CommodityAPI");
+        get("/api/commodity/:name/sources", (request, response) -> getSources(request, response), json());
+    }
+
+    /**
+     * Gets a list of planets which have the named commodity as a resource, highest density
+     * first. The 'min' parameter gives the minimum density (default 1). If 'near' is given
+     * as the id of a star system, then only planets within 'radius' parsecs (default 6) of
+     * that system are returned, nearest first. At most 'limit' results are returned.
+     *
+     * The search is made against the in memory resource index, so no planets are read.
+     *
+     * @param request       HTTP Request object.
+     * @param response      HTTP Response object.
+     * @return              List of sources, each with planet and system id, density and distance.
+     */
+    public List<ResourceIndex.Source> getSources(Request request, Response response) {
+        try {
+            String name = getStringParam(request, "name");
+            int    minimum = getIntParamWithDefault(request, "min", 1);
+            int    near = getIntParamWithDefault(request, "near", 0);
+            int    radius = getIntParamWithDefault(request, "radius", DEFAULT_RADIUS);
+            int    limit = Math.min(getIntParamWithDefault(request, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+
+            if (radius < 0) {
+                throw new ApiException(400, ApiException.ApiErrorType.OUT_OF_BOUNDS,
+                        String.format("Parameter 'radius' has illegal value [%d], must not be negative", radius));
+            }
+            if (limit < 1) {
+                throw new ApiException(400, ApiException.ApiErrorType.OUT_OF_BOUNDS,
+                        String.format("Parameter 'limit' has illegal value [%d], must be positive", limit));
+            }
+            logger.info(String.format("getSources: [%s] min [%d] near [%d] radius [%d]", name, minimum, near, radius));
+
+            try (WorldGen worldGen = Server.getWorldGen()) {
+                CommodityFactory factory = worldGen.getCommodityFactory();
+                Commodity        commodity = factory.getCommodity(name);
+                ResourceIndex    index = factory.getResourceIndex();
+
+                response.type("application/json");
+
+                if (near > 0) {
+                    StarSystem system = worldGen.getStarSystemFactory().getStarSystem(near);
+                    Sector     sector = worldGen.getSectorFactory().getSector(system.getSectorId());
+
+                    return index.find(commodity.getId(), minimum, sector, system.getX(), system.getY(), radius, limit);
+                }
+                return index.find(commodity.getId(), minimum, limit);
+            } catch (NoSuchCommodityException e) {
+                throw new ApiException(404, String.format("There is no commodity [%s]", name));
+            } catch (NoSuchStarSystemException e) {
+                throw new ApiException(404, String.format("There is no star system with id [%d]", near));
+            } catch (NoSuchSectorException e) {
+                throw new ApiException(500, String.format("Star system [%d] is not in a sector", near));
+            }
+        } catch (ApiException e) {
+            logger.error(String.format("getSources: %s", e.getMessage()));
+
+            response.status(e.getStatusCode());
+            response.body(e.getMessage());
+
+            return null;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
+import uk.org.glendale.worldgen.ImageBlob;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.web.Controller;
 import uk.org.glendale.worldgen.web.Server;
@@ -57,15 +58,31 @@ public class ImageAPI extends Controller {
      *
      * @param request       Request object.
      * @param response      Response object.
-     * @return              Image data of type image/jpg.
+     * @return              Image data of type image/png.
      */
     public Object getImage(Request request, Response response) {
         String name = request.params(":name");
 
         try (WorldGen worldGen = Server.getWorldGen()) {
-            response.type("image/jpg");
+            response.type("image/png");
 
-            return worldGen.getImage(name).save().toByteArray();
+            // Images can be replaced, so clients must check that their copy is current.
+            String hash = worldGen.getImageHash(name);
+            if (hash == null) {
+                ImageBlob blob = worldGen.getImageBlob(name);
+                hash = (blob != null) ? blob.getHash() : null;
+            }
+            if (isNotModified(request, response, hash, CACHE_REVALIDATE)) {
+                return "";
+            }
+
+            // Images are stored as PNG, so send them as they are.
+            if (!worldGen.writeImage(name, getBodyOutput(response))) {
+                response.status(404);
+                logger.warn(String.format("No such image [%s] found", name));
+                return null;
+            }
+            return "";
         } catch (Exception e) {
             response.status(404);
             logger.warn("No such image found", e);
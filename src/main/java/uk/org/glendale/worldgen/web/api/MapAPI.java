@@ -10,11 +10,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
+import uk.org.glendale.worldgen.ContentHash;
+import uk.org.glendale.worldgen.RenderCache;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.astro.sectors.Sector;
-import uk.org.glendale.worldgen.astro.sectors.SectorFactory;
 import uk.org.glendale.worldgen.astro.sectors.SubSector;
 import uk.org.glendale.worldgen.astro.sectors.SubSectorImage;
+import uk.org.glendale.worldgen.exceptions.ApiException;
+import uk.org.glendale.worldgen.exceptions.ServerBusyException;
 import uk.org.glendale.worldgen.web.Controller;
 import uk.org.glendale.worldgen.web.Server;
 
@@ -40,28 +43,49 @@ public class MapAPI extends Controller {
      * @return              Image for the sub-sector map.
      */
     public Object getSectorMap(Request request, Response response) {
-        try (WorldGen worldGen = Server.getWorldGen()) {
-            SectorFactory factory = worldGen.getSectorFactory();
-            String sectorId = request.params("id");
-
-            Sector sector = factory.getSectorByIdentifier(sectorId);
+        try {
+            String    sectorId = request.params("id");
             SubSector subSector = SubSector.valueOf(request.params("sub").toUpperCase());
+            Sector    sector;
 
-            logger.info(String.format("getSectorMap: [%s / %s]", sectorId, subSector.toString()));
+            // Not held while the map is drawn, since that needs a session of its own.
+            try (WorldGen worldGen = Server.getWorldGen()) {
+                sector = worldGen.getSectorFactory().getSectorByIdentifier(sectorId);
+            }
 
-            SubSectorImage image = new SubSectorImage(worldGen, sector, subSector);
+            logger.info(String.format("getSectorMap: [%s / %s]", sectorId, subSector.toString()));
 
             String scaleParam = request.queryParamOrDefault("scale", "48");
             int scale = Integer.parseInt(scaleParam);
-            image.setScale(scale);
-            image.setStandalone(true);
+
+            String key = String.format("%s%s/s%d", RenderCache.getSectorKey(sector.getId()), subSector, scale);
+            byte[] data = RenderCache.get(key, () -> {
+                // Drawn on a render thread, so needs its own session.
+                try (WorldGen wg = Server.getWorldGen()) {
+                    SubSectorImage image = new SubSectorImage(wg, sector, subSector);
+
+                    image.setScale(scale);
+                    image.setStandalone(true);
+
+                    return image.getImage().save().toByteArray();
+                }
+            });
 
             response.type("image/jpg");
-            return image.getImage().save().toByteArray();
+            if (isNotModified(request, response, ContentHash.of(data), CACHE_REVALIDATE)) {
+                return "";
+            }
+            return data;
         } catch (NumberFormatException e) {
             response.status(400);
             response.body("Number format exception, Sector Id is not valid.");
             return null;
+        } catch (ServerBusyException e) {
+            ApiException busy = getBusyException(response, e);
+            logger.warn(String.format("getSectorMap: %s", busy.getMessage()));
+            response.status(busy.getStatusCode());
+            response.body(busy.getMessage());
+            return null;
         } catch (Exception e) {
             response.status(404);
             logger.warn("No such image found", e);
@@ -0,0 +1,183 @@
+/**
+ * MetricsAPI.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.web.api;
+
+import com.mchange.v2.c3p0.C3P0Registry;
+import com.mchange.v2.c3p0.PooledDataSource;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import uk.org.glendale.utils.graphics.SimpleImage;
+import uk.org.glendale.worldgen.Main;
+import uk.org.glendale.worldgen.RenderCache;
+import uk.org.glendale.worldgen.RenderExecutor;
+import uk.org.glendale.worldgen.metrics.Metrics;
+import uk.org.glendale.worldgen.metrics.PrometheusWriter;
+import uk.org.glendale.worldgen.metrics.StatementCounter;
+import uk.org.glendale.worldgen.text.DescriptionCache;
+import uk.org.glendale.worldgen.web.Controller;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.sql.SQLException;
+
+import static spark.Spark.afterAfter;
+import static spark.Spark.before;
+import static spark.Spark.get;
+
+/**
+ * Provides metrics about the running server, in the Prometheus text format, so that it
+ * can be scraped and graphed. This covers the time taken by each route, images drawn,
+ * the caches, the database and the JVM.
+ *
+ * Every request is timed by a filter, so this controller also records the metrics for
+ * all the other controllers.
+ */
+public class MetricsAPI extends Controller {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsAPI.class);
+
+    private static final String START_TIME = "worldgen.start";
+
+    public void setupEndpoints() {
+        logger.info("Setting up endpoints for MetricsAPI");
+        before((request, response) -> {
+            request.attribute(START_TIME, System.nanoTime());
+            StatementCounter.reset();
+        });
+        afterAfter((request, response) -> {
+            Long start = request.attribute(START_TIME);
+            if (start != null) {
+                Metrics.recordRequest(request.requestMethod(), request.pathInfo(), response.status(),
+                        System.nanoTime() - start, StatementCounter.getCount());
+            }
+        });
+        get("/api/metrics", (request, response) -> getMetrics(request, response));
+    }
+
+    /**
+     * Gets all the metrics for the server.
+     *
+     * @param request       Request object.
+     * @param response      Response object.
+     * @return              Metrics as Prometheus text.
+     */
+    public Object getMetrics(Request request, Response response) {
+        PrometheusWriter writer = new PrometheusWriter();
+
+        Metrics.write(writer);
+        writeCaches(writer);
+        writeDatabase(writer);
+        writeJVM(writer);
+
+        response.type(PrometheusWriter.CONTENT_TYPE);
+        return writer.toString();
+    }
+
+    private void writeCaches(PrometheusWriter writer) {
+        long renderHits = RenderCache.getHits(), renderMisses = RenderCache.getMisses();
+        long textHits = DescriptionCache.getHits(), textMisses = DescriptionCache.getMisses();
+
+        writer.declare("worldgen_cache_hits_total", "counter", "Number of lookups found in each cache.");
+        writer.sample("worldgen_cache_hits_total", renderHits, "cache", "render");
+        writer.sample("worldgen_cache_hits_total", textHits, "cache", "description");
+        writer.declare("worldgen_cache_misses_total", "counter", "Number of lookups not found in each cache.");
+        writer.sample("worldgen_cache_misses_total", renderMisses, "cache", "render");
+        writer.sample("worldgen_cache_misses_total", textMisses, "cache", "description");
+        writer.declare("worldgen_cache_hit_ratio", "gauge", "Fraction of lookups found in each cache.");
+        writer.sample("worldgen_cache_hit_ratio", ratio(renderHits, renderMisses), "cache", "render");
+        writer.sample("worldgen_cache_hit_ratio", ratio(textHits, textMisses), "cache", "description");
+        writer.declare("worldgen_render_cache_bytes", "gauge", "Total size of the images in the render cache.");
+        writer.sample("worldgen_render_cache_bytes", RenderCache.getSize());
+        writer.declare("worldgen_description_cache_entries", "gauge", "Number of descriptions in the cache.");
+        writer.sample("worldgen_description_cache_entries", DescriptionCache.size());
+
+        RenderExecutor executor = RenderExecutor.getExecutor();
+        writer.declare("worldgen_render_active", "gauge", "Number of images being drawn.");
+        writer.sample("worldgen_render_active", executor.getActiveCount());
+        writer.declare("worldgen_render_queued", "gauge", "Number of images waiting to be drawn.");
+        writer.sample("worldgen_render_queued", executor.getQueueSize());
+
+        writer.declare("worldgen_image_encode_total", "counter", "Number of images encoded as PNG.");
+        writer.sample("worldgen_image_encode_total", SimpleImage.getEncodeCount());
+        writer.declare("worldgen_image_encode_seconds_total", "counter", "Time spent encoding images as PNG.");
+        writer.sample("worldgen_image_encode_seconds_total", SimpleImage.getEncodeTime() / 1e9);
+    }
+
+    private static double ratio(long hits, long misses) {
+        return (hits + misses == 0) ? 0 : (double) hits / (hits + misses);
+    }
+
+    private void writeDatabase(PrometheusWriter writer) {
+        Statistics stats = Main.getStatistics();
+
+        // Hibernate only records the time taken by queries, not by loads and flushes.
+        long queryMillis = 0;
+        for (String query : stats.getQueries()) {
+            queryMillis += stats.getQueryStatistics(query).getExecutionTotalTime();
+        }
+        writer.declare("worldgen_db_queries_total", "counter", "Number of HQL and SQL queries run.");
+        writer.sample("worldgen_db_queries_total", stats.getQueryExecutionCount());
+        writer.declare("worldgen_db_query_seconds_total", "counter", "Time spent running HQL and SQL queries.");
+        writer.sample("worldgen_db_query_seconds_total", queryMillis / 1000.0);
+        writer.declare("worldgen_db_statements_total", "counter", "Number of JDBC statements prepared.");
+        writer.sample("worldgen_db_statements_total", stats.getPrepareStatementCount());
+        writer.declare("worldgen_db_entity_loads_total", "counter", "Number of entities loaded.");
+        writer.sample("worldgen_db_entity_loads_total", stats.getEntityLoadCount());
+        writer.declare("worldgen_db_flushes_total", "counter", "Number of session flushes.");
+        writer.sample("worldgen_db_flushes_total", stats.getFlushCount());
+        writer.declare("worldgen_db_transactions_total", "counter", "Number of transactions completed.");
+        writer.sample("worldgen_db_transactions_total", stats.getTransactionCount());
+        writer.declare("worldgen_db_sessions_total", "counter", "Number of sessions opened.");
+        writer.sample("worldgen_db_sessions_total", stats.getSessionOpenCount());
+
+        writer.declare("worldgen_db_connections", "gauge", "Number of pooled database connections, by state.");
+        for (Object pool : C3P0Registry.getPooledDataSources()) {
+            try {
+                writer.sample("worldgen_db_connections",
+                        ((PooledDataSource) pool).getNumBusyConnectionsDefaultUser(), "state", "busy");
+                writer.sample("worldgen_db_connections",
+                        ((PooledDataSource) pool).getNumIdleConnectionsDefaultUser(), "state", "idle");
+            } catch (SQLException e) {
+                logger.warn("Unable to get connection pool metrics", e);
+            }
+        }
+        writer.declare("worldgen_db_connection_waiters", "gauge", "Number of threads waiting for a connection.");
+        for (Object pool : C3P0Registry.getPooledDataSources()) {
+            try {
+                writer.sample("worldgen_db_connection_waiters",
+                        ((PooledDataSource) pool).getNumThreadsAwaitingCheckoutDefaultUser());
+            } catch (SQLException e) {
+                logger.warn("Unable to get connection pool metrics", e);
+            }
+        }
+    }
+
+    private void writeJVM(PrometheusWriter writer) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        writer.declare("jvm_memory_used_bytes", "gauge", "Memory used by the JVM, by area.");
+        writer.sample("jvm_memory_used_bytes", memory.getHeapMemoryUsage().getUsed(), "area", "heap");
+        writer.sample("jvm_memory_used_bytes", memory.getNonHeapMemoryUsage().getUsed(), "area", "nonheap");
+        writer.declare("jvm_memory_max_bytes", "gauge", "Maximum memory available to the JVM, by area.");
+        writer.sample("jvm_memory_max_bytes", memory.getHeapMemoryUsage().getMax(), "area", "heap");
+
+        writer.declare("jvm_gc_collections_total", "counter", "Number of garbage collections, by collector.");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            writer.sample("jvm_gc_collections_total", gc.getCollectionCount(), "gc", gc.getName());
+        }
+        writer.declare("jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collection, by collector.");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            writer.sample("jvm_gc_collection_seconds_total", gc.getCollectionTime() / 1000.0, "gc", gc.getName());
+        }
+
+        writer.declare("jvm_threads", "gauge", "Number of live threads.");
+        writer.sample("jvm_threads", ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+}
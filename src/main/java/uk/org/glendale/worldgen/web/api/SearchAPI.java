@@ -0,0 +1,142 @@
+/**
+ * SearchAPI.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.web.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import uk.org.glendale.worldgen.WorldGen;
+import uk.org.glendale.worldgen.exceptions.ApiException;
+import uk.org.glendale.worldgen.search.SearchIndex;
+import uk.org.glendale.worldgen.web.Controller;
+import uk.org.glendale.worldgen.web.Server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static spark.Spark.get;
+
+/**
+ * REST API for searching star systems and planets by their attributes, and for
+ * finding things by name.
+ */
+public class SearchAPI extends Controller {
+    private static final Logger logger = LoggerFactory.getLogger(SearchAPI.class);
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10000;
+    private static final int DEFAULT_NAMES = 10;
+    private static final int MAX_NAMES = 100;
+
+    public void setupEndpoints() {
+        logger.info("Setting up endpoints for SearchAPI");
+        get("/api/search", (request, response) -> search(request, response), json());
+        get("/api/autocomplete", (request, response) -> autocomplete(request, response), json());
+    }
+
+    /**
+     * Searches for planets (or star systems, if 'of' is 'systems') which match all of
+     * the given query parameters. Each parameter is an attribute, such as 'type', 'port'
+     * or 'sector', and may have a comma separated list of values, any of which can match.
+     * Tech level can also be given as a range, such as 'tech=10+' or 'tech=8-12'.
+     *
+     * For example, '?type=Gaian&atmosphere=Standard,HighOxygen&port=A&tech=10+&sector=1,2'.
+     *
+     * @param request       HTTP Request object.
+     * @param response      HTTP Response object.
+     * @return              Total number of matches, and the ids of up to 'limit' of them.
+     */
+    public Object search(Request request, Response response) {
+        try {
+            String of = getStringParamWithDefault(request, "of", "planets");
+            int    limit = Math.min(getIntParamWithDefault(request, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+
+            if (!of.equals("planets") && !of.equals("systems")) {
+                throw new ApiException(400, ApiException.ApiErrorType.WRONG_FORMAT,
+                        String.format("Parameter 'of' has illegal value [%s], must be 'planets' or 'systems'", of));
+            }
+            if (limit < 0) {
+                throw new ApiException(400, ApiException.ApiErrorType.OUT_OF_BOUNDS,
+                        String.format("Parameter 'limit' has illegal value [%d], must not be negative", limit));
+            }
+
+            Map<String, List<String>> filters = new LinkedHashMap<>();
+            for (String name : request.queryParams()) {
+                if (name.equals("of") || name.equals("limit")) {
+                    continue;
+                }
+                List<String> values = new ArrayList<>();
+                for (String value : request.queryParamsValues(name)) {
+                    values.addAll(Arrays.asList(value.split(",")));
+                }
+                filters.put(name, values);
+            }
+            logger.info(String.format("search: [%s] %s", of, filters));
+
+            try (WorldGen worldGen = Server.getWorldGen()) {
+                SearchIndex index = worldGen.getSearchIndex();
+
+                String unknown = of.equals("systems") ? index.getUnknownSystemAttribute(filters)
+                                                      : index.getUnknownPlanetAttribute(filters);
+                if (unknown != null) {
+                    throw new ApiException(400, ApiException.ApiErrorType.WRONG_FORMAT,
+                            String.format("Cannot search %s by [%s]", of, unknown));
+                }
+
+                response.type("application/json");
+
+                if (of.equals("systems")) {
+                    return index.findSystems(filters, limit);
+                }
+                return index.findPlanets(filters, limit);
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, ApiException.ApiErrorType.WRONG_FORMAT,
+                        String.format("Illegal numeric range (%s)", e.getMessage()));
+            }
+        } catch (ApiException e) {
+            logger.error(String.format("search: %s", e.getMessage()));
+
+            response.status(e.getStatusCode());
+            response.body(e.getMessage());
+
+            return null;
+        }
+    }
+
+    /**
+     * Finds sectors, star systems and planets whose names start with the 'q' parameter,
+     * ignoring case. Exact matches are first, then sectors, systems and planets. The
+     * 'limit' parameter gives the maximum number of names to return (default 10).
+     *
+     * @param request       HTTP Request object.
+     * @param response      HTTP Response object.
+     * @return              List of names, each with its type, id and star system id.
+     */
+    public Object autocomplete(Request request, Response response) {
+        try {
+            String prefix = getStringParam(request, "q").trim();
+            int    limit = Math.min(getIntParamWithDefault(request, "limit", DEFAULT_NAMES), MAX_NAMES);
+
+            try (WorldGen worldGen = Server.getWorldGen()) {
+                response.type("application/json");
+
+                return worldGen.getNameIndex().find(prefix, Math.max(limit, 1));
+            }
+        } catch (ApiException e) {
+            logger.error(String.format("autocomplete: %s", e.getMessage()));
+
+            response.status(e.getStatusCode());
+            response.body(e.getMessage());
+
+            return null;
+        }
+    }
+}
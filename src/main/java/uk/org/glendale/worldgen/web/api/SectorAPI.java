@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 import uk.org.glendale.utils.graphics.SimpleImage;
+import uk.org.glendale.worldgen.ContentHash;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.astro.sectors.NoSuchSectorException;
 import uk.org.glendale.worldgen.astro.sectors.Sector;
@@ -104,7 +105,11 @@ public class SectorAPI extends Controller {
                 }
             }
 
-            return worldGen.getSectorBackground(x, y).save().toByteArray();
+            byte[] data = worldGen.getSectorBackground(x, y).save().toByteArray();
+            if (isNotModified(request, response, ContentHash.of(data), CACHE_REVALIDATE)) {
+                return "";
+            }
+            return data;
         } catch (Exception e) {
             logger.error(e.getMessage());
         }
@@ -133,7 +138,11 @@ public class SectorAPI extends Controller {
                 }
             }
 
-            return image.save().toByteArray();
+            byte[] data = image.save().toByteArray();
+            if (isNotModified(request, response, ContentHash.of(data), CACHE_REVALIDATE)) {
+                return "";
+            }
+            return data;
         } catch (Exception e) {
             logger.error("Unable to get image for sector", e);
         }
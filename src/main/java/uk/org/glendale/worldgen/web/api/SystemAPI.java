@@ -12,6 +12,9 @@ import spark.Request;
 import spark.Response;
 import uk.org.glendale.utils.graphics.Icosahedron;
 import uk.org.glendale.utils.graphics.SimpleImage;
+import uk.org.glendale.worldgen.ContentHash;
+import uk.org.glendale.worldgen.RenderCache;
+import uk.org.glendale.worldgen.RenderExecutor;
 import uk.org.glendale.worldgen.WorldGen;
 import uk.org.glendale.worldgen.astro.planets.Planet;
 import uk.org.glendale.worldgen.astro.planets.PlanetFactory;
@@ -23,9 +26,11 @@ import uk.org.glendale.worldgen.astro.systems.StarSystem;
 import uk.org.glendale.worldgen.astro.systems.StarSystemFactory;
 import uk.org.glendale.worldgen.astro.systems.StarSystemImage;
 import uk.org.glendale.worldgen.exceptions.ApiException;
+import uk.org.glendale.worldgen.exceptions.ServerBusyException;
 import uk.org.glendale.worldgen.web.Controller;
 import uk.org.glendale.worldgen.web.Server;
 
+import javax.persistence.NoResultException;
 import java.io.IOException;
 import java.util.List;
 
@@ -58,36 +63,45 @@ public class SystemAPI extends Controller {
     public Object getSystemMap(Request request, Response response) {
         try {
             int  id = getIdParam(request, "id");
-            int  width = getIntParamWithDefault(request,"width", 2048);
+            // Width should be between 64px and 4096px.
+            int  width = Math.min(Math.max(64, getIntParamWithDefault(request,"width", 2048)), 4096);
             int  scale = getIntParamWithDefault(request, "scale", -1);
             long time = getLongParamWithDefault(request,"time", -1);
             boolean zones = getBooleanParamWithDefault(request, "zones", false);
 
+            try {
+                // The map is the same for the same parameters, so key it on all of them.
+                long   mapTime = getMapTime(time);
+                String key = String.format("%sw%d/s%d/z%b/t%d", RenderCache.getSystemKey(id),
+                        width, scale, zones, mapTime);
 
-            // Width should be between 64px and 4096px.
-            width = Math.min(Math.max(64, width), 4096);
-
-            try (WorldGen worldGen = Server.getWorldGen()) {
+                byte[] data = RenderCache.get(key, () -> {
+                    // Drawn on a render thread, so needs its own session.
+                    try (WorldGen wg = Server.getWorldGen()) {
+                        StarSystemFactory factory = wg.getStarSystemFactory();
 
-                StarSystemFactory factory = worldGen.getStarSystemFactory();
+                        StarSystem system = factory.getStarSystem(id);
+                        StarSystemImage image = new StarSystemImage(wg, system);
 
-                StarSystem system = factory.getStarSystem(id);
-                StarSystemImage image = new StarSystemImage(worldGen, system);
+                        image.setWidth(width);
+                        image.setScale(scale);
+                        image.setZones(zones);
+                        image.setTime(mapTime);
 
+                        return image.draw().save().toByteArray();
+                    }
+                });
 
                 response.type("image/jpg");
-
-                image.setWidth(width);
-                image.setScale(scale);
-                image.setZones(zones);
-                if (time > -1) {
-                    image.setTime(time);
+                if (isNotModified(request, response, ContentHash.of(data), CACHE_REVALIDATE)) {
+                    return "";
                 }
-
-                return image.draw().save().toByteArray();
+                return data;
             } catch (NoSuchStarSystemException e) {
                 throw new ApiException(404, String.format("There is no star system with id [%d]", id));
-            } catch (IOException e) {
+            } catch (ServerBusyException e) {
+                throw getBusyException(response, e);
+            } catch (Exception e) {
                 throw new ApiException(500, String.format("Inteneral error drawing map (%s)", e.getMessage()));
             }
         } catch (ApiException e) {
@@ -100,15 +114,32 @@ public class SystemAPI extends Controller {
     }
 
     /**
-     * Gets a list of all the planets that are part of the specified star system.
+     * Gets the time to draw a map at, which is the current simulation time if none is given.
+     * The session is closed straight away, rather than being held while the map is drawn
+     * on a render thread with a session of its own.
+     */
+    private long getMapTime(long time) {
+        if (time > -1) {
+            return time;
+        }
+        try (WorldGen worldGen = Server.getWorldGen()) {
+            return worldGen.getCurrentTime();
+        }
+    }
+
+    /**
+     * Gets a list of all the planets that are part of the specified star system. If the
+     * 'view' parameter is 'summary', then only summary information is returned for each
+     * planet, without descriptions or resources.
      *
      * @param request       HTTP Request object.
      * @param response      HTTP Response object.
-     * @return              List of planets.
+     * @return              List of planets or planet summaries.
      */
-    public List<Planet> getPlanets(Request request, Response response) {
+    public List<?> getPlanets(Request request, Response response) {
         try {
             int  id = getIdParam(request, "id");
+            boolean summary = isSummaryView(request);
 
             logger.info(String.format("getPlanets: [%d]", id));
 
@@ -118,7 +149,12 @@ public class SystemAPI extends Controller {
 
                 response.type("application/json");
 
-                return factory.getPlanets(system);
+                if (summary) {
+                    return factory.getPlanetSummaries(system);
+                }
+                List<Planet> planets = factory.getPlanets(system);
+                factory.renderDescriptions(planets);
+                return planets;
             } catch (NoSuchStarSystemException e) {
                 e.printStackTrace();
             }
@@ -134,15 +170,17 @@ public class SystemAPI extends Controller {
     }
 
     /**
-     * Gets a list of all the planets that orbit the specified star.
+     * Gets a list of all the planets that orbit the specified star. Supports the same
+     * 'view' parameter as getPlanets().
      *
      * @param request       HTTP Request object.
      * @param response      HTTP Response object.
-     * @return              List of planets.
+     * @return              List of planets or planet summaries.
      */
-    public List<Planet> getPlanetsAroundStar(Request request, Response response) {
+    public List<?> getPlanetsAroundStar(Request request, Response response) {
         try {
             int  id = getIdParam(request, "id");
+            boolean summary = isSummaryView(request);
 
             logger.info(String.format("getPlanetsAroundStar: [%d]", id));
 
@@ -151,7 +189,12 @@ public class SystemAPI extends Controller {
                 PlanetFactory factory = worldGen.getPlanetFactory();
 
                 response.type("application/json");
-                return factory.getPlanets(star);
+                if (summary) {
+                    return factory.getPlanetSummaries(star);
+                }
+                List<Planet> planets = factory.getPlanets(star);
+                factory.renderDescriptions(planets);
+                return planets;
             } catch (NoSuchStarException e) {
                 e.printStackTrace();
             }
@@ -176,20 +219,28 @@ public class SystemAPI extends Controller {
 
             logger.info(String.format("getPlanetMap: [%d] [%s]", id, name));
 
-            try (WorldGen worldGen = Server.getWorldGen()) {
-                PlanetFactory factory = worldGen.getPlanetFactory();
-
-                SimpleImage image = factory.getPlanetMap(id, name);
-
-                if (stretch) {
-                    logger.info("Stretching the image");
-                    image = Icosahedron.stretchImage(image, width);
+            try {
+                if (sendStoredPlanetMap(request, response, id, name, stretch, width)) {
+                    return "";
                 }
 
-                response.type("image/png");
-                return image.save(!stretch).toByteArray();
-            } catch (IOException e) {
-                e.printStackTrace();
+                logger.info("Stretching the image");
+                // The session used to check the map has been released by now, rather than being
+                // held while the render thread waits for a session of its own.
+                return RenderExecutor.getExecutor().render("planet", () -> {
+                    // Drawn on a render thread, so needs its own session.
+                    try (WorldGen wg = Server.getWorldGen()) {
+                        SimpleImage map = wg.getPlanetFactory().getPlanetMap(id, name);
+                        return Icosahedron.stretchImage(map, width).save(false).toByteArray();
+                    }
+                });
+            } catch (NoResultException e) {
+                throw new ApiException(404, String.format("Planet [%d] has no map [%s]", id, name));
+            } catch (ServerBusyException e) {
+                throw getBusyException(response, e);
+            } catch (Exception e) {
+                logger.error("Unable to get planet map", e);
+                throw new ApiException(500, String.format("Internal error getting map (%s)", e.getMessage()));
             }
         } catch (ApiException e) {
             logger.error(String.format("getPlanetMap: %s", e.getMessage()));
@@ -200,6 +251,42 @@ public class SystemAPI extends Controller {
         return null;
     }
 
+    /**
+     * Sends a planet map as it is stored, if that is all that is needed. Nothing is sent if
+     * the client already has the map.
+     *
+     * @return  True if the response is complete, false if the map needs to be stretched.
+     * @throws NoResultException    If the planet doesn't have the map.
+     */
+    private boolean sendStoredPlanetMap(Request request, Response response, int id, String name,
+                                        boolean stretch, int width) throws IOException {
+        try (WorldGen worldGen = Server.getWorldGen()) {
+            PlanetFactory factory = worldGen.getPlanetFactory();
+
+            // Check the stored hash first, so the map isn't loaded if the client has it.
+            String hash = factory.getPlanetMapHash(id, name);
+            if (hash == null) {
+                hash = factory.getStoredPlanetMap(id, name).getHash();
+            }
+            if (stretch) {
+                hash += "-" + width;
+            }
+            response.type("image/png");
+            if (isNotModified(request, response, hash, CACHE_IMMUTABLE)) {
+                return true;
+            }
+
+            if (!stretch) {
+                // Maps are stored as PNG, so send them as they are.
+                if (!factory.writePlanetMap(id, name, getBodyOutput(response))) {
+                    throw new NoResultException();
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
     /**
      * Gets a list of all the maps available for this planet.
      *
@@ -15,7 +15,7 @@ import uk.org.glendale.worldgen.text.NameGenerator;
 import uk.org.glendale.worldgen.web.Controller;
 import uk.org.glendale.worldgen.web.Server;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import static spark.Spark.get;
 
@@ -94,19 +94,7 @@ public class TextAPI extends Controller{
 
             logger.info(String.format("getRandomSystemNames: [%s] [%s] [%d]", root, modifier, number));
 
-            ArrayList<String> names = new ArrayList<>();
-            int nonUnique = 0;
-            for (int i=0; i < number; i++) {
-                String name = generator.generateName(root, modifier);
-                if (unique && names.contains(name)) {
-                    logger.trace(String.format("Rejecting non-unique name [%s]", name));
-                    if (nonUnique++ < Math.max(number, 100)) {
-                        i--;
-                    }
-                    continue;
-                }
-                names.add(name);
-            }
+            List<String> names = generator.generateNames(root, modifier, number, unique);
             logger.debug(String.format("Returning [%d/%d] names", names.size(), number));
 
             return names;
@@ -18,8 +18,9 @@ import uk.org.glendale.worldgen.astro.sectors.NoSuchSectorException;
 import uk.org.glendale.worldgen.astro.sectors.Sector;
 import uk.org.glendale.worldgen.astro.sectors.SectorFactory;
 import uk.org.glendale.worldgen.astro.systems.NoSuchStarSystemException;
-import uk.org.glendale.worldgen.astro.systems.StarSystem;
+import uk.org.glendale.worldgen.astro.systems.StarSystemSummary;
 import uk.org.glendale.worldgen.exceptions.ApiException;
+import uk.org.glendale.worldgen.trace.Tracer;
 import uk.org.glendale.worldgen.web.Controller;
 
 import java.util.HashMap;
@@ -50,11 +51,11 @@ public class SectorUI extends Controller {
             // Get information on this sector.
             SectorFactory factory = worldGen.getSectorFactory();
             Sector sector = null;
-            List<StarSystem> list = null;
+            List<StarSystemSummary> list = null;
             int x, y;
             try {
                 sector = factory.getSectorByIdentifier(id);
-                list = worldGen.getStarSystemFactory().getStarSystems(sector);
+                list = worldGen.getStarSystemFactory().getStarSystemSummaries(sector);
                 x = sector.getX();
                 y = sector.getY();
             } catch (NoSuchSectorException e) {
@@ -94,9 +95,9 @@ public class SectorUI extends Controller {
             model.put("coreward", coreward);
             model.put("rimward", rimward);
 
-            return new VelocityTemplateEngine().render(
+            return Tracer.span("template", "sector.vm", () -> new VelocityTemplateEngine().render(
                     new ModelAndView(model, "templates/sector.vm")
-            );
+            ));
 
         } catch (ApiException e) {
             logger.error("Failed to display star system", e);
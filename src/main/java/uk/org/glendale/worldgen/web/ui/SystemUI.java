@@ -13,13 +13,14 @@ import spark.Request;
 import spark.Response;
 import spark.template.velocity.VelocityTemplateEngine;
 import uk.org.glendale.worldgen.WorldGen;
-import uk.org.glendale.worldgen.astro.planets.Planet;
+import uk.org.glendale.worldgen.astro.planets.PlanetSummary;
 import uk.org.glendale.worldgen.astro.planets.codes.PlanetGroup;
 import uk.org.glendale.worldgen.astro.sectors.NoSuchSectorException;
 import uk.org.glendale.worldgen.astro.sectors.Sector;
 import uk.org.glendale.worldgen.astro.systems.NoSuchStarSystemException;
 import uk.org.glendale.worldgen.astro.systems.StarSystem;
 import uk.org.glendale.worldgen.exceptions.ApiException;
+import uk.org.glendale.worldgen.trace.Tracer;
 import uk.org.glendale.worldgen.web.Controller;
 import uk.org.glendale.worldgen.web.IndexController;
 import uk.org.glendale.worldgen.web.Server;
@@ -57,10 +58,10 @@ public class SystemUI extends Controller {
 
             int id = getIdParam(request, "id");
             StarSystem system = worldGen.getStarSystemFactory().getStarSystem(id);
-            List<Planet>    planets = worldGen.getPlanetFactory().getPlanets(system);
+            List<PlanetSummary> planets = worldGen.getPlanetFactory().getPlanetSummaries(system);
 
             Map<String, Integer> count = new HashMap<>();
-            for (Planet planet : planets) {
+            for (PlanetSummary planet : planets) {
                 if (!planet.isMoon()) {
                     String group = planet.getType().getGroup().name();
                     if (count.containsKey(group)) {
@@ -74,6 +75,7 @@ public class SystemUI extends Controller {
             Map<String,Object> model = new HashMap<>();
             model.put("id", id);
             model.put("system", system);
+            model.put("description", worldGen.getStarSystemFactory().getDescription(system));
             model.put("x", String.format("%02d", system.getX()));
             model.put("y", String.format("%02d", system.getY()));
 
@@ -85,9 +87,9 @@ public class SystemUI extends Controller {
             model.put("subsector", sector.getSubSectorName(system.getX(), system.getY()));
             model.put("count", count);
 
-            return new VelocityTemplateEngine().render(
+            return Tracer.span("template", "system.vm", () -> new VelocityTemplateEngine().render(
                     new ModelAndView(model, "templates/system.vm")
-            );
+            ));
 
         } catch (ApiException e) {
             logger.error("Failed to display star system", e);
@@ -47,7 +47,8 @@ DROP TABLE IF EXISTS blobs;
 CREATE TABLE blobs (
   id INT AUTO_INCREMENT,
   name VARCHAR(64) NOT NULL,
-  data LONGBLOB NOT NULL,
+  data LONGBLOB,
+  hash CHAR(40),
   PRIMARY KEY (id),
   UNIQUE KEY (name)
 );
@@ -137,12 +138,14 @@ create view sss (sector, system, x, y, luminosity, type) as
   where sectors.id = systems.sector_id and stars.system_id = systems.id
   order by x, y;
 
+/* Data is null when it is held in the content store (storage.mapPath). */
 DROP TABLE IF EXISTS planet_maps;
 CREATE TABLE planet_maps (
   id INT AUTO_INCREMENT,
   planet_id INT NOT NULL,
   name VARCHAR(64) NOT NULL,
-  data LONGBLOB NOT NULL,
+  data LONGBLOB,
+  hash CHAR(40),
   PRIMARY KEY (id),
   UNIQUE KEY (planet_id, name)
 );
@@ -202,3 +205,49 @@ CREATE TABLE facilities (
   PRIMARY KEY (id),
   FOREIGN KEY (planet_id) REFERENCES planets(id) ON DELETE CASCADE
 );
+
+/* Sectors loaded by the import command, so an interrupted import can be resumed. */
+DROP TABLE IF EXISTS dump_imports;
+CREATE TABLE dump_imports (
+  sector_id INT NOT NULL,
+  row_count BIGINT NOT NULL,
+  imported_date DATETIME NOT NULL,
+  PRIMARY KEY (sector_id)
+);
+
+/* Progress of sector generation, so an interrupted populate can be resumed. */
+DROP TABLE IF EXISTS generation_checkpoints;
+CREATE TABLE generation_checkpoints (
+  sector_id INT NOT NULL,
+  area VARCHAR(8) NOT NULL,
+  hex INT NOT NULL,
+  systems INT NOT NULL,
+  updated_date DATETIME NOT NULL,
+  PRIMARY KEY (sector_id, area)
+);
+
+/* Sectors and sub sectors waiting to be populated by worker processes. */
+DROP TABLE IF EXISTS generation_jobs;
+CREATE TABLE generation_jobs (
+  id INT NOT NULL AUTO_INCREMENT,
+  sector_id INT NOT NULL,
+  area VARCHAR(8) NOT NULL,
+  status VARCHAR(8) NOT NULL,
+  owner VARCHAR(128),
+  lease_expires DATETIME,
+  attempts INT NOT NULL,
+  last_error VARCHAR(1024),
+  updated_date DATETIME NOT NULL,
+  profile TEXT,
+  PRIMARY KEY (id),
+  UNIQUE KEY (sector_id, area),
+  KEY (status, lease_expires)
+);
+
+/* Next free id for each table, handed out in blocks by BlockIdGenerator. */
+DROP TABLE IF EXISTS id_blocks;
+CREATE TABLE id_blocks (
+  table_name VARCHAR(255) NOT NULL,
+  next_id BIGINT NOT NULL,
+  PRIMARY KEY (table_name)
+);
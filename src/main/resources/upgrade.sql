@@ -0,0 +1,13 @@
+/*
+ * Changes needed to bring a database created by an older schema.sql up to date.
+ * Columns which Hibernate maps are added by hbm2ddl, but it never changes existing
+ * columns or tables which are only used through SQL, so those changes are made here.
+ * Each MODIFY can safely be run again, but an ADD COLUMN fails if the column is there.
+ */
+
+/* Data is null when it is held in the content store (storage.mapPath). */
+ALTER TABLE blobs MODIFY data LONGBLOB NULL;
+ALTER TABLE planet_maps MODIFY data LONGBLOB NULL;
+
+/* Generation profiles stored by sector workers. */
+ALTER TABLE generation_jobs ADD COLUMN profile TEXT;
@@ -0,0 +1,38 @@
+/**
+ * ContentHashTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import org.junit.Test;
+import uk.org.glendale.worldgen.astro.planets.PlanetMap;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ContentHashTest {
+
+    @Test
+    public void hash() {
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d",
+                ContentHash.of("abc".getBytes(StandardCharsets.US_ASCII)));
+        assertNull(ContentHash.of(null));
+    }
+
+    /**
+     * The hash is set whenever map data is stored.
+     */
+    @Test
+    public void storedMaps() {
+        PlanetMap map = new PlanetMap(1, PlanetMap.MAIN, new byte[] { 1, 2, 3 });
+        String    hash = map.getHash();
+        assertEquals(ContentHash.of(new byte[] { 1, 2, 3 }), hash);
+
+        map.setData(new byte[] { 4 });
+        assertNotEquals(hash, map.getHash());
+        assertEquals(map.getHash(), new ImageBlob("test", new byte[] { 4 }).getHash());
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * ContentStoreTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.org.glendale.worldgen.astro.planets.PlanetMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Scanner;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ContentStoreTest {
+    private Path         root;
+    private ContentStore store;
+
+    @Before
+    public void createStore() throws IOException {
+        root = Files.createTempDirectory("maps");
+        store = new ContentStore(root);
+    }
+
+    @After
+    public void deleteStore() throws IOException {
+        ContentStore.setStore(null);
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void putAndGet() throws IOException {
+        byte[] data = { 1, 2, 3, 4, 5 };
+        String hash = ContentHash.of(data);
+
+        assertFalse(store.contains(hash));
+        store.put(hash, data);
+        assertTrue(store.contains(hash));
+        assertArrayEquals(data, store.get(hash));
+
+        // Files are sharded by the start of the hash.
+        Path path = store.getPath(hash);
+        assertEquals(root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)), path.getParent());
+        assertTrue(Files.isRegularFile(path));
+    }
+
+    /**
+     * Identical data is only stored once.
+     */
+    @Test
+    public void duplicates() throws IOException {
+        byte[] data = { 9, 8, 7 };
+        String hash = ContentHash.of(data);
+
+        store.put(hash, data);
+        store.put(hash, data.clone());
+
+        try (Stream<Path> files = Files.list(store.getPath(hash).getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void write() throws IOException {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        String                hash = ContentHash.of(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long[]                length = { -1 };
+
+        assertFalse(store.write(hash, l -> out));
+
+        store.put(hash, data);
+        assertTrue(store.write(hash, l -> { length[0] = l; return out; }));
+        assertEquals(data.length, length[0]);
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    /**
+     * Gets the definition of a column from the CREATE TABLE statement in schema.sql.
+     */
+    private String getColumn(String table, String column) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/schema.sql")) {
+            String schema = new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A").next();
+            String create = schema.substring(schema.indexOf("CREATE TABLE " + table + " ("));
+            create = create.substring(0, create.indexOf(");"));
+            for (String line : create.split("\n")) {
+                if (line.trim().startsWith(column + " ")) {
+                    return line.trim();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * With the store enabled, a map is written to the store and only its hash is persisted,
+     * so the data columns must allow nulls.
+     */
+    @Test
+    public void storedMap() throws IOException {
+        byte[] data = { 4, 5, 6 };
+
+        ContentStore.setStore(store);
+        PlanetMap map = new PlanetMap(1, PlanetMap.MAIN, data);
+        assertFalse(map.isInDatabase());
+        assertEquals(ContentHash.of(data), map.getHash());
+        assertTrue(store.contains(map.getHash()));
+        assertArrayEquals(data, map.getData());
+
+        assertFalse(getColumn("planet_maps", "data").contains("NOT NULL"));
+        assertFalse(getColumn("blobs", "data").contains("NOT NULL"));
+    }
+}
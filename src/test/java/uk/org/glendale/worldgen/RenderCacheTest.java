@@ -0,0 +1,78 @@
+/**
+ * RenderCacheTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RenderCacheTest {
+
+    @Test
+    public void cacheAndInvalidate() throws Exception {
+        RenderCache.clear();
+        AtomicInteger renders = new AtomicInteger();
+        String key = RenderCache.getSystemKey(7) + "w100";
+
+        byte[] first = RenderCache.get(key, () -> new byte[] { (byte) renders.incrementAndGet() });
+        byte[] second = RenderCache.get(key, () -> new byte[] { (byte) renders.incrementAndGet() });
+        assertSame(first, second);
+        assertEquals(1, renders.get());
+        assertEquals(1, RenderCache.getSize());
+
+        // A different system with a similar id mustn't be thrown away.
+        RenderCache.get(RenderCache.getSystemKey(70) + "w100", () -> new byte[2]);
+        RenderCache.invalidate(RenderCache.getSystemKey(7));
+        assertEquals(2, RenderCache.getSize());
+
+        RenderCache.get(key, () -> new byte[] { (byte) renders.incrementAndGet() });
+        assertEquals(2, renders.get());
+        RenderCache.clear();
+    }
+
+    /**
+     * Concurrent requests for the same image should only draw it once.
+     */
+    @Test
+    public void singleFlight() throws Exception {
+        RenderCache.clear();
+        AtomicInteger   renders = new AtomicInteger();
+        CountDownLatch  started = new CountDownLatch(1);
+        CountDownLatch  release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+            Future<byte[]> leader = pool.submit(() -> RenderCache.get("sector/1/A", () -> {
+                renders.incrementAndGet();
+                started.countDown();
+                release.await();
+                return new byte[] { 42 };
+            }));
+            started.await();
+
+            Future<byte[]> follower = pool.submit(() -> RenderCache.get("sector/1/A", () -> {
+                renders.incrementAndGet();
+                return new byte[] { 0 };
+            }));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertEquals(42, leader.get()[0]);
+            assertEquals(42, follower.get()[0]);
+            assertEquals(1, renders.get());
+        } finally {
+            pool.shutdown();
+            RenderCache.clear();
+        }
+    }
+}
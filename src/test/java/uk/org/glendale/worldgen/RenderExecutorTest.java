@@ -0,0 +1,118 @@
+/**
+ * RenderExecutorTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen;
+
+import org.junit.Test;
+import uk.org.glendale.worldgen.exceptions.ServerBusyException;
+import uk.org.glendale.worldgen.metrics.StatementCounter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RenderExecutorTest {
+
+    @Test
+    public void render() throws Exception {
+        RenderExecutor executor = new RenderExecutor(1, 1, 1000);
+        assertArrayEquals(new byte[] { 1, 2 }, executor.render("test", () -> new byte[] { 1, 2 }));
+
+        try {
+            executor.render("test", () -> { throw new IllegalStateException("broken"); });
+            fail("Renderer exception was not passed on");
+        } catch (IllegalStateException e) {
+            assertEquals("broken", e.getMessage());
+        }
+    }
+
+    /**
+     * SQL run while drawing an image is counted against the request which asked for it.
+     */
+    @Test
+    public void statementsCountedForRequest() throws Exception {
+        RenderExecutor executor = new RenderExecutor(1, 1, 1000);
+
+        StatementCounter.reset();
+        executor.render("test", () -> {
+            new StatementCounter().inspect("SELECT 1");
+            return new byte[1];
+        });
+        assertEquals(1, StatementCounter.getCount());
+    }
+
+    /**
+     * Once every thread is busy and the queue is full, more images are refused.
+     */
+    @Test
+    public void refusedWhenFull() throws Exception {
+        RenderExecutor executor = new RenderExecutor(1, 1, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        CompletableFuture<byte[]> running = executor.submit("test", () -> {
+            started.countDown();
+            release.await();
+            return new byte[1];
+        });
+        started.await();
+        CompletableFuture<byte[]> queued = executor.submit("test", () -> new byte[2]);
+
+        try {
+            executor.submit("test", () -> new byte[3]);
+            fail("Third image was accepted");
+        } catch (ServerBusyException e) {
+            assertTrue(e.getRetryAfter() > 0);
+        } finally {
+            release.countDown();
+        }
+        assertEquals(1, executor.await(running).length);
+        assertEquals(2, executor.await(queued).length);
+    }
+
+    /**
+     * Requests give up after the timeout, and images which haven't been started by then
+     * are never drawn.
+     */
+    @Test
+    public void timeout() throws Exception {
+        RenderExecutor executor = new RenderExecutor(1, 1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger  renders = new AtomicInteger();
+
+        CompletableFuture<byte[]> slow = executor.submit("test", () -> {
+            release.await();
+            return new byte[1];
+        });
+        CompletableFuture<byte[]> queued = executor.submit("test", () -> {
+            renders.incrementAndGet();
+            return new byte[2];
+        });
+
+        try {
+            executor.await(slow);
+            fail("Request did not time out");
+        } catch (ServerBusyException e) {
+            // Expected.
+        }
+        // Make sure the queued image's deadline has passed before it gets a thread.
+        Thread.sleep(50);
+        release.countDown();
+
+        // The slow image is still finished, but the queued one is dropped.
+        assertEquals(1, slow.get().length);
+        try {
+            queued.get();
+            fail("Queued image was drawn after its deadline");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ServerBusyException);
+        }
+        assertEquals(0, renders.get());
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * ResourceIndexTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.astro.commodities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResourceIndexTest {
+
+    /**
+     * Even numbered columns on a sector map are half a hex lower than odd numbered ones.
+     */
+    @Test
+    public void distance() {
+        int x = ResourceIndex.getHexX(0, 1), y = ResourceIndex.getHexY(0, 1);
+
+        assertEquals(0, ResourceIndex.getDistance(x, y, x, y));
+        assertEquals(1, ResourceIndex.getDistance(x, y, x, y + 1));
+        assertEquals(1, ResourceIndex.getDistance(x, y, x + 1, y));
+        assertEquals(2, ResourceIndex.getDistance(x, y, x + 1, y + 1));
+        assertEquals(1, ResourceIndex.getDistance(x + 1, y + 1, x + 2, y + 1));
+        assertEquals(1, ResourceIndex.getDistance(x + 1, y + 1, x + 2, y + 2));
+        assertEquals(4, ResourceIndex.getDistance(x, y, x + 4, y));
+    }
+
+    @Test
+    public void acrossSectors() {
+        int x1 = ResourceIndex.getHexX(0, 32), y1 = ResourceIndex.getHexY(0, 40);
+        int x2 = ResourceIndex.getHexX(1, 1), y2 = ResourceIndex.getHexY(1, 1);
+
+        assertEquals(1, ResourceIndex.getDistance(x1, y1, x2, y2));
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * DumpFormatTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.dump;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DumpFormatTest {
+
+    private byte[] writeDump(DumpFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DumpWriter writer = format.createWriter(out, false);
+
+        writer.beginTable("sectors", Arrays.asList("id", "name", "x", "y"));
+        writer.writeRow(new Object[] { 7, "Sector \"One\"", -1, 2 });
+        writer.beginTable("planet_maps", Arrays.asList("id", "planet_id", "name", "data"));
+        writer.writeRow(new Object[] { 3L, 42, "main", new byte[] { 1, 2, 3, -1 } });
+        writer.writeRow(new Object[] { 4L, 42, null, new byte[0] });
+        writer.close();
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Rows written in either format should be read back with the same values, and the
+     * format should be detected automatically.
+     */
+    private void roundTrip(DumpFormat format) throws IOException {
+        DumpReader reader = DumpFormat.openReader(new ByteArrayInputStream(writeDump(format)));
+
+        DumpRecord sector = reader.read();
+        assertEquals("sectors", sector.getTable());
+        assertEquals(7, ((Number) sector.getValue("id")).intValue());
+        assertEquals("Sector \"One\"", sector.getValue("name"));
+        assertEquals(-1, ((Number) sector.getValue("x")).intValue());
+
+        DumpRecord map = reader.read();
+        assertEquals("planet_maps", map.getTable());
+        assertEquals(Arrays.asList("id", "planet_id", "name", "data"), map.getColumns());
+        assertEquals(3L, ((Number) map.getValue("id")).longValue());
+        assertArrayEquals(new byte[] { 1, 2, 3, -1 }, (byte[]) map.getValue("data"));
+
+        map = reader.read();
+        assertNull(map.getValue("name"));
+        assertEquals(0, ((byte[]) map.getValue("data")).length);
+
+        assertNull(reader.read());
+        reader.close();
+    }
+
+    @Test
+    public void jsonRoundTrip() throws IOException {
+        roundTrip(DumpFormat.JSON);
+    }
+
+    @Test
+    public void binaryRoundTrip() throws IOException {
+        roundTrip(DumpFormat.BINARY);
+    }
+
+    @Test
+    public void insertSql() {
+        assertEquals("INSERT INTO `stars` (`id`, `name`) VALUES (?, ?), (?, ?)",
+                UniverseImporter.getInsertSql("stars", Arrays.asList("id", "name"), 2, false));
+        assertEquals("INSERT INTO `constants` (`name`) VALUES (?) ON DUPLICATE KEY UPDATE `name` = VALUES(`name`)",
+                UniverseImporter.getInsertSql("constants", Arrays.asList("name"), 1, true));
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * GenerationProfilerTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+import uk.org.glendale.worldgen.metrics.GenerationProfiler.Profile;
+
+import static org.junit.Assert.*;
+
+public class GenerationProfilerTest {
+    @After
+    public void stopProfiling() {
+        GenerationProfiler.setEnabled(false);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void notProfiling() {
+        Profile profile = new Profile();
+        GenerationProfiler.setEnabled(false);
+        profile.record(() -> GenerationProfiler.time("stars", () -> sleep(1)));
+        assertNull(profile.getTotals("stars"));
+    }
+
+    @Test
+    public void selfTimeExcludesInnerStages() {
+        Profile profile = new Profile();
+        GenerationProfiler.setEnabled(true);
+        profile.record(() -> {
+            for (int i = 0; i < 2; i++) {
+                GenerationProfiler.time("planet/Jovian", () -> {
+                    sleep(5);
+                    GenerationProfiler.time("map/JovianMapper", () -> sleep(20));
+                });
+            }
+        });
+        GenerationProfiler.Totals planet = profile.getTotals("planet/Jovian");
+        GenerationProfiler.Totals map = profile.getTotals("map/JovianMapper");
+
+        assertEquals(2, planet.count);
+        assertEquals(2, map.count);
+        assertEquals(map.totalTime, map.selfTime);
+        assertEquals(planet.totalTime - map.totalTime, planet.selfTime);
+        assertTrue(map.selfTime > planet.selfTime);
+
+        // The slowest stage on its own comes first.
+        String summary = profile.getSummary();
+        assertTrue(summary.startsWith("Stage"));
+        assertTrue(summary.indexOf("map/JovianMapper") < summary.indexOf("planet/Jovian"));
+    }
+
+    @Test
+    public void repeatedStageIsTimedOnce() {
+        Profile profile = new Profile();
+        GenerationProfiler.setEnabled(true);
+        profile.record(() -> GenerationProfiler.time("stars", () -> {
+            GenerationProfiler.time("stars", () -> sleep(1));
+        }));
+        GenerationProfiler.Totals stars = profile.getTotals("stars");
+        assertEquals(1, stars.count);
+        assertEquals(stars.totalTime, stars.selfTime);
+    }
+
+    /**
+     * Only stages on the thread recording a profile are counted in it.
+     */
+    @Test
+    public void otherThreadsAreNotCounted() throws InterruptedException {
+        Profile profile = new Profile();
+        Profile other = new Profile();
+        GenerationProfiler.setEnabled(true);
+
+        Thread heartbeat = new Thread(() -> GenerationProfiler.time("db/sql", () -> sleep(1)));
+        profile.record(() -> {
+            heartbeat.start();
+            heartbeat.join();
+            GenerationProfiler.time("stars", () -> sleep(1));
+        });
+        other.record(() -> GenerationProfiler.time("stars", () -> sleep(1)));
+        GenerationProfiler.time("stars", () -> sleep(1));
+
+        assertNull(profile.getTotals("db/sql"));
+        assertEquals(1, profile.getTotals("stars").count);
+        assertEquals(1, other.getTotals("stars").count);
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * MetricsTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @Test
+    public void routes() {
+        assertEquals("/", Metrics.getRoute("/"));
+        assertEquals("/api/system/:id/planets", Metrics.getRoute("/api/system/123/planets"));
+        assertEquals("/api/sector/:id/map", Metrics.getRoute("/api/sector/-1,2/map"));
+        assertEquals("/api/sector/Core", Metrics.getRoute("/api/sector/Core"));
+    }
+
+    @Test
+    public void quantiles() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getQuantile(0.5), 0.0);
+
+        // 90 fast requests and 10 slow ones.
+        for (int i = 0; i < 90; i++) {
+            histogram.record(2_000_000L);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(400_000_000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(4.18, histogram.getSum(), 0.0001);
+
+        double median = histogram.getQuantile(0.5);
+        assertTrue(median > 0.001 && median <= 0.0025);
+        double p99 = histogram.getQuantile(0.99);
+        assertTrue(p99 > 0.25 && p99 <= 0.5);
+
+        // Anything too slow for the buckets is counted, but only at the largest bound.
+        histogram.record(60_000_000_000L);
+        assertEquals(101, histogram.getCumulativeCount(Histogram.BOUNDS.length));
+        assertEquals(100, histogram.getCumulativeCount(Histogram.BOUNDS.length - 1));
+    }
+
+    @Test
+    public void write() {
+        Metrics.clear();
+        Metrics.recordRequest("GET", "/api/system/1", 200, 3_000_000L, 4);
+        Metrics.recordRequest("GET", "/api/system/2", 404, 1_000_000L, 1);
+        Metrics.recordRender("system", 50_000_000L);
+
+        PrometheusWriter writer = new PrometheusWriter();
+        Metrics.write(writer);
+        String text = writer.toString();
+
+        assertTrue(text.contains("# TYPE worldgen_http_request_duration_seconds histogram\n"));
+        assertTrue(text.contains(
+                "worldgen_http_request_duration_seconds_bucket{method=\"GET\",route=\"/api/system/:id\",le=\"0.001\"} 1\n"));
+        assertTrue(text.contains(
+                "worldgen_http_request_duration_seconds_bucket{method=\"GET\",route=\"/api/system/:id\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains(
+                "worldgen_http_responses_total{method=\"GET\",route=\"/api/system/:id\",status=\"4xx\"} 1\n"));
+        assertTrue(text.contains(
+                "worldgen_http_db_statements_total{method=\"GET\",route=\"/api/system/:id\"} 5\n"));
+        assertTrue(text.contains("worldgen_render_duration_seconds_count{type=\"system\"} 1\n"));
+        Metrics.clear();
+    }
+
+    @Test
+    public void tooManyRoutes() {
+        Metrics.clear();
+        for (int i = 0; i <= Metrics.MAX_ROUTES; i++) {
+            Metrics.recordRequest("GET", "/api/sector/Sector" + i, 200, 1000L, 0);
+        }
+        PrometheusWriter writer = new PrometheusWriter();
+        Metrics.write(writer);
+        assertTrue(writer.toString().contains("route=\"" + Metrics.OTHER + "\""));
+        assertFalse(writer.toString().contains("Sector" + Metrics.MAX_ROUTES + "\""));
+        Metrics.clear();
+    }
+}
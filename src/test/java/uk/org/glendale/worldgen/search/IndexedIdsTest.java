@@ -0,0 +1,35 @@
+/**
+ * IndexedIdsTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.search;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedIdsTest {
+
+    @Test
+    public void outOfOrderIds() {
+        IndexedIds ids = new IndexedIds("planets");
+
+        assertEquals(0, ids.getMaximum());
+        assertTrue(ids.add(201));
+        assertTrue(ids.add(202));
+        assertEquals(202, ids.getMaximum());
+
+        // Ids from an earlier block can be committed after later ones.
+        assertTrue(ids.add(101));
+        assertEquals(202, ids.getMaximum());
+        assertTrue(ids.contains(101));
+        assertFalse(ids.contains(102));
+
+        // Adding the same row again is ignored.
+        assertFalse(ids.add(201));
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * NameIndexTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.search;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NameIndexTest {
+
+    private NameIndex createIndex() {
+        return NameIndex.create(Arrays.asList(
+                new NameIndex.Entry("Solan II", NameIndex.Type.Planet, 101, 10),
+                new NameIndex.Entry("Solan", NameIndex.Type.StarSystem, 10, 10),
+                new NameIndex.Entry("Sol", NameIndex.Type.StarSystem, 11, 11),
+                new NameIndex.Entry("Solar Reach", NameIndex.Type.Sector, 1, 0),
+                new NameIndex.Entry("Tarn", NameIndex.Type.StarSystem, 12, 12),
+                new NameIndex.Entry("Sol I", NameIndex.Type.Planet, 102, 11)));
+    }
+
+    private List<String> names(List<NameIndex.Entry> entries) {
+        List<String> names = new ArrayList<>();
+        for (NameIndex.Entry e : entries) {
+            names.add(e.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void ranking() {
+        NameIndex index = createIndex();
+
+        assertEquals(Arrays.asList("Sol", "Solar Reach", "Solan", "Sol I", "Solan II"),
+                names(index.find("sol", 10)));
+        assertEquals(Arrays.asList("Solan", "Solan II"), names(index.find("SOLAN", 10)));
+        assertEquals(Arrays.asList("Sol", "Solar Reach"), names(index.find("sol", 2)));
+        assertTrue(index.find("x", 10).isEmpty());
+        assertTrue(index.find("Tarnished", 10).isEmpty());
+    }
+
+    @Test
+    public void added() {
+        NameIndex index = createIndex();
+
+        for (int i = 0; i < 1500; i++) {
+            index.add(new NameIndex.Entry("Tarn " + i, NameIndex.Type.Planet, 200 + i, 12));
+        }
+        List<NameIndex.Entry> found = index.find("tarn 149", 20);
+        assertEquals(Arrays.asList("Tarn 149", "Tarn 1490", "Tarn 1491", "Tarn 1492", "Tarn 1493",
+                "Tarn 1494", "Tarn 1495", "Tarn 1496", "Tarn 1497", "Tarn 1498", "Tarn 1499"), names(found));
+        assertEquals(349, found.get(0).getId());
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * SearchIndexTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.search;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static uk.org.glendale.worldgen.search.SearchIndex.*;
+
+public class SearchIndexTest {
+
+    private SearchIndex createIndex() {
+        SearchIndex.Table planets = new SearchIndex.Table(new HashSet<>(Arrays.asList(TYPE, PORT, TECH, SECTOR)));
+        Object[][] rows = {
+                { 10, "Gaian", "A", 12, 1 },
+                { 11, "Gaian", "B", 9, 1 },
+                { 12, "Arean", "A", 10, 2 },
+                { 13, "Gaian", "A", 8, 3 },
+                { 14, "Gaian", "X", 0, 2 },
+        };
+        for (Object[] r : rows) {
+            int row = planets.addRow((Integer) r[0]);
+            planets.set(row, TYPE, r[1]);
+            planets.set(row, PORT, r[2]);
+            planets.set(row, TECH, r[3]);
+            planets.set(row, SECTOR, r[4]);
+        }
+        return new SearchIndex(new SearchIndex.Table(Collections.emptySet()), planets);
+    }
+
+    @Test
+    public void andOr() {
+        SearchIndex index = createIndex();
+        Map<String, List<String>> filters = new HashMap<>();
+
+        filters.put(TYPE, Arrays.asList("Gaian"));
+        assertEquals(4, index.findPlanets(filters, 100).getCount());
+
+        filters.put(PORT, Arrays.asList("A", "B"));
+        assertEquals(Arrays.asList(10, 11, 13), index.findPlanets(filters, 100).getIds());
+
+        filters.put(SECTOR, Arrays.asList("1", "2"));
+        assertEquals(Arrays.asList(10, 11), index.findPlanets(filters, 100).getIds());
+
+        filters.put(TYPE, Arrays.asList("Jovian"));
+        assertEquals(0, index.findPlanets(filters, 100).getCount());
+    }
+
+    @Test
+    public void techRange() {
+        SearchIndex index = createIndex();
+        Map<String, List<String>> filters = new HashMap<>();
+
+        filters.put(TECH, Arrays.asList("10+"));
+        assertEquals(Arrays.asList(10, 12), index.findPlanets(filters, 100).getIds());
+
+        filters.put(TECH, Arrays.asList("8-9"));
+        assertEquals(Arrays.asList(11, 13), index.findPlanets(filters, 100).getIds());
+
+        filters.put(TECH, Arrays.asList("0", "12"));
+        SearchIndex.Result result = index.findPlanets(filters, 1);
+        assertEquals(2, result.getCount());
+        assertEquals(Arrays.asList(10), result.getIds());
+    }
+
+    @Test
+    public void newRows() {
+        SearchIndex index = new SearchIndex(new SearchIndex.Table(new HashSet<>(Arrays.asList(SECTOR, TYPE, CODE))),
+                new SearchIndex.Table(Collections.emptySet()));
+        Map<String, List<String>> filters = new HashMap<>();
+        filters.put(CODE, Arrays.asList("Ri"));
+
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { 201, 1, "Single", null, null, null, "Ag Ri" });
+        assertEquals(1, index.addSystems(rows));
+
+        // A later refresh can return rows which have already been indexed.
+        rows.add(new Object[] { 101, 1, "Binary", null, null, null, "Ri" });
+        assertEquals(1, index.addSystems(rows));
+        assertEquals(Arrays.asList(201, 101), index.findSystems(filters, 100).getIds());
+    }
+
+    @Test
+    public void unknownAttribute() {
+        Map<String, List<String>> filters = new HashMap<>();
+        filters.put("colour", Arrays.asList("Blue"));
+
+        assertEquals("colour", createIndex().getUnknownPlanetAttribute(filters));
+    }
+}
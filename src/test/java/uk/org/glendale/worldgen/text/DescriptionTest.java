@@ -0,0 +1,67 @@
+/**
+ * DescriptionTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.text;
+
+import org.junit.Test;
+import uk.org.glendale.worldgen.astro.planets.Planet;
+import uk.org.glendale.worldgen.astro.planets.codes.PlanetType;
+import uk.org.glendale.worldgen.astro.planets.generators.Dwarf;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class DescriptionTest {
+
+    @Test
+    public void storedForm() {
+        Planet planet = new Planet();
+        planet.setType(PlanetType.Hermian);
+        planet.addFeature(Dwarf.DwarfFeature.MetallicSea);
+
+        Description seed = Description.forPlanet(planet, 1234L).withFacilities();
+        String      stored = seed.toString();
+
+        assertTrue(Description.isSeed(stored));
+        assertFalse(Description.isSeed("<p>Mostly harmless.</p>"));
+        assertNull(Description.parse("<p>Mostly harmless.</p>"));
+        assertNull(Description.parse("#seed:x"));
+
+        Description parsed = Description.parse(stored);
+        assertNotNull(parsed);
+        assertTrue(parsed.hasFacilities());
+        assertEquals(stored, parsed.toString());
+    }
+
+    /**
+     * The same seed must always give the same text.
+     */
+    @Test
+    public void sameSeedSameText() {
+        Planet planet = new Planet();
+        planet.setType(PlanetType.Hermian);
+        planet.setRadius(1000);
+
+        Description seed = Description.parse(Description.forPlanet(planet, -5678L).toString());
+        String      text = seed.render(planet, new ArrayList<>());
+
+        assertEquals("<p>A small barren world 1,000km in radius.</p>", text);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(text, Description.parse(seed.toString()).render(planet, new ArrayList<>()));
+        }
+    }
+
+    @Test
+    public void cache() {
+        DescriptionCache.clear();
+        assertEquals("one", DescriptionCache.get("test/1", () -> "one"));
+        assertEquals("one", DescriptionCache.get("test/1", () -> "two"));
+        assertEquals(1, DescriptionCache.size());
+        DescriptionCache.clear();
+        assertEquals(0, DescriptionCache.size());
+    }
+}
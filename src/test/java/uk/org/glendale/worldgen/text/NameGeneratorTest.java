@@ -0,0 +1,45 @@
+/**
+ * NameGeneratorTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.text;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NameGeneratorTest {
+
+    @Test
+    public void uniqueNames() {
+        NameGenerator generator = new NameGenerator("systems");
+        List<String>  names = generator.generateNames("standard", null, 500, true);
+
+        assertEquals(500, names.size());
+        assertEquals(500, new HashSet<>(names).size());
+        for (String name : names) {
+            assertTrue(name, Character.isUpperCase(name.charAt(0)));
+            assertFalse(name, name.contains("_"));
+        }
+    }
+
+    @Test
+    public void excludedNames() {
+        NameGenerator generator = new NameGenerator("systems");
+        List<String>  taken = generator.generateNames("standard", null, 50, true);
+        List<String>  names = generator.generateNames("standard", null, 200, true, new HashSet<>(taken));
+
+        for (String name : names) {
+            assertFalse(name, taken.contains(name));
+        }
+        assertTrue(Arrays.asList(generator.getRoots()).contains("standard"));
+    }
+}
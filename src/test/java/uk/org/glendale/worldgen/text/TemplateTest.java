@@ -0,0 +1,91 @@
+/**
+ * TemplateTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.text;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TemplateTest {
+
+    /**
+     * Context which always chooses the last option, so output is predictable.
+     */
+    private static class TestContext implements Template.Context {
+        private final Map<String, String>   properties = new HashMap<>();
+        private final Map<String, Template> phrases = new HashMap<>();
+
+        public String getProperty(String name) {
+            return properties.containsKey(name) ? properties.get(name) : "";
+        }
+
+        public Template getPhrase(String key) {
+            return phrases.get(key);
+        }
+
+        public int choose(int count) {
+            return count - 1;
+        }
+    }
+
+    @Test
+    public void plainText() {
+        assertEquals("Just some text.", Template.compile("Just some text.").render(new TestContext()));
+        assertEquals("", Template.compile(null).render(new TestContext()));
+    }
+
+    @Test
+    public void properties() {
+        TestContext context = new TestContext();
+        context.properties.put("Name", "Foo");
+        context.properties.put("Type", "GasGiant");
+
+        assertEquals("Foo is a gas giant.", Template.compile("$Name is a $$Type.").render(context));
+    }
+
+    /**
+     * Dice rolls are compiled into the template, and never looked up as properties.
+     */
+    @Test
+    public void dice() {
+        TestContext context = new TestContext();
+        context.properties.put("1D1", "wrong");
+
+        assertEquals("Rolled 3.", Template.compile("Rolled $3D1.").render(context));
+    }
+
+    @Test
+    public void choicesAndReferences() {
+        TestContext context = new TestContext();
+        context.properties.put("Port", "Do");
+        context.phrases.put("port.Do", Template.compile("a [small|basic] port"));
+
+        assertEquals("It is big.", Template.compile("It is [small||big].").render(context));
+        assertEquals("It has a basic port.", Template.compile("It has {port.$Port}.").render(context));
+        assertEquals("Nothing .", Template.compile("Nothing {missing}.").render(context));
+    }
+
+    @Test
+    public void switches() {
+        TestContext context = new TestContext();
+        context.properties.put("Tech", "7");
+
+        assertEquals("High", Template.compile("($Tech|3>Low|5<High|Other)").render(context));
+        assertEquals("Other", Template.compile("($Tech|8=Eight|Other)").render(context));
+    }
+
+    @Test
+    public void malformed() {
+        TestContext context = new TestContext();
+
+        assertEquals("An [open bracket", Template.compile("An [open bracket").render(context));
+        assertEquals("A stray bracket", Template.compile("A stray] bracket").render(context));
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * TracerTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.trace;
+
+import com.google.gson.Gson;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TracerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void stopTracing() {
+        Tracer.attach(null);
+        Tracer.configure(null, 0);
+    }
+
+    /**
+     * Reads back all the events in a trace file. The file is left unterminated so that
+     * traces can be appended, so it needs closing before it can be parsed.
+     */
+    private List<Map<String, Object>> read(Path path) throws Exception {
+        String json = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim();
+        assertTrue(json.startsWith("["));
+        json = json.replaceAll(",$", "") + "]";
+        return new Gson().fromJson(json, List.class);
+    }
+
+    @Test
+    public void notTracing() {
+        Tracer.configure(null, 0);
+        assertFalse(Tracer.isEnabled());
+        assertNull(Tracer.start("GET /"));
+
+        // Spans can always be used, but do nothing.
+        try (Span span = Tracer.span("sql", "select")) {
+            span.arg("rows", 1);
+        }
+        assertNull(Tracer.current());
+    }
+
+    @Test
+    public void slowTraceIsWritten() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        Tracer.configure(new TraceFile(dir, 1024 * 1024, 3), 0);
+
+        Trace trace = Tracer.start("GET /sector/:id");
+        assertSame(trace, Tracer.current());
+        try (Span span = Tracer.span("factory", "SectorFactory.getSector")) {
+            Tracer.setStatement("select * from sectors");
+            Tracer.span("sql", "select").arg("sql", Tracer.getStatement()).close();
+        }
+
+        // Work done on another thread is part of the same trace.
+        Thread thread = new Thread(() -> {
+            Tracer.attach(trace);
+            Tracer.span("render", "draw").close();
+            Tracer.attach(null);
+        }, "render-test");
+        thread.start();
+        thread.join();
+
+        Tracer.finish();
+        assertNull(Tracer.current());
+
+        List<Map<String, Object>> events = read(dir.resolve("trace.json"));
+        int complete = 0;
+        boolean renderThread = false;
+        for (Map<String, Object> event : events) {
+            if ("X".equals(event.get("ph"))) {
+                complete++;
+                assertEquals(trace.getId(), ((Map) event.get("args")).get("trace"));
+            } else if ("render-test".equals(((Map) event.get("args")).get("name"))) {
+                renderThread = true;
+            }
+        }
+        // The root, factory, sql and render spans.
+        assertEquals(4, complete);
+        assertTrue(renderThread);
+    }
+
+    @Test
+    public void fastTraceIsDropped() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        Tracer.configure(new TraceFile(dir, 1024 * 1024, 3), 60000);
+
+        Tracer.start("GET /");
+        Tracer.span("sql", "select").close();
+        Tracer.finish();
+
+        assertFalse(Files.exists(dir.resolve("trace.json")));
+    }
+
+    @Test
+    public void filesAreRolled() throws Exception {
+        Path      dir = folder.getRoot().toPath();
+        TraceFile file = new TraceFile(dir, 100, 3);
+
+        for (int i = 0; i < 5; i++) {
+            Trace trace = new Trace("GET /" + i);
+            trace.getRoot().close();
+            file.write(trace);
+        }
+        assertTrue(Files.exists(file.getPath(0)));
+        assertTrue(Files.exists(file.getPath(1)));
+        assertTrue(Files.exists(file.getPath(2)));
+        assertFalse(Files.exists(file.getPath(3)));
+
+        // Every file can be read on its own.
+        for (int i = 0; i < 3; i++) {
+            assertFalse(read(file.getPath(i)).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * LoadTestTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.web;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class LoadTestTest {
+
+    @Test
+    public void percentiles() {
+        long[] latencies = new long[100];
+        for (int i = 0; i < latencies.length; i++) {
+            // 1ms to 100ms, in reverse order.
+            latencies[i] = (100 - i) * 1000000L;
+        }
+        LoadTest.Result result = new LoadTest.Result(100, 0, 2000, latencies);
+
+        assertEquals(50.0, result.getThroughput(), 0.001);
+        assertEquals(50.0, result.getPercentile(50), 0.001);
+        assertEquals(99.0, result.getPercentile(99), 0.001);
+        assertEquals(100.0, result.getPercentile(100), 0.001);
+        assertEquals(1.0, result.getPercentile(0), 0.001);
+
+        assertEquals(0.0, new LoadTest.Result(0, 0, 1000, new long[0]).getPercentile(99), 0.001);
+    }
+
+    /**
+     * Runs a short load test against a local server.
+     */
+    @Test
+    public void run() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> {
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/busy", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+            LoadTest.Result result = new LoadTest(Collections.singletonList(base + "/ok"), 2, 1).run();
+            assertTrue(result.getRequests() > 0);
+            assertEquals(0, result.getErrors());
+            assertTrue(result.getPercentile(99) >= result.getPercentile(50));
+
+            result = new LoadTest(Arrays.asList(base + "/ok", base + "/busy"), 1, 1).run();
+            assertTrue(result.getErrors() > 0);
+            assertTrue(result.getErrors() < result.getRequests());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * VirtualThreadPoolTest.java
+ *
+ * Copyright (c) 2017, Samuel Penn.
+ * See the file LICENSE at the root of the project.
+ */
+package uk.org.glendale.worldgen.web;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadPoolTest {
+
+    /**
+     * Runs many more blocking tasks at once than a normal thread pool would allow.
+     * Only runs on a Java version which has virtual threads.
+     */
+    @Test
+    public void blockingTasks() throws Exception {
+        assumeTrue(VirtualThreadPool.isSupported());
+
+        VirtualThreadPool pool = new VirtualThreadPool("test-");
+        int               tasks = 1000;
+        CountDownLatch    started = new CountDownLatch(tasks);
+        CountDownLatch    release = new CountDownLatch(1);
+        CountDownLatch    finished = new CountDownLatch(tasks);
+
+        pool.start();
+        try {
+            for (int i = 0; i < tasks; i++) {
+                pool.execute(() -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finished.countDown();
+                });
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals(tasks, pool.getThreads());
+            assertFalse(pool.isLowOnThreads());
+
+            release.countDown();
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void unsupported() {
+        if (!VirtualThreadPool.isSupported()) {
+            try {
+                new VirtualThreadPool("test-");
+                fail("Created virtual threads on a Java version without them");
+            } catch (UnsupportedOperationException e) {
+                // Expected.
+            }
+        }
+    }
+}